@@ -1,248 +1,324 @@
 package com.example.buddychat;
-import com.bfr.buddysdk.BuddySDK;
-import com.bfr.buddysdk.services.speech.STTTask;
-import com.bfr.buddy.speech.shared.ISTTCallback;
-import com.bfr.buddy.speech.shared.STTResult;
-import com.bfr.buddy.speech.shared.STTResultsData;
+import com.example.buddychat.speech.SpeechBackend.SttTask;
+import com.example.buddychat.speech.SpeechBackends;
+import com.example.buddychat.stt.EngineHealth;
+import com.example.buddychat.stt.Hypothesis;
 
 import android.content.res.AssetManager; // Required for Cerence local FCF
-import android.os.RemoteException;
 import android.util.Log;
 
+import java.util.EnumMap;
+import java.util.List;
 import java.util.Locale;
+import java.util.Map;
+import java.util.function.LongSupplier;
 
+// ====================================================================
+// STT engine manager: one preferred engine, automatic failover to Cerence FCF
+// ====================================================================
+/// The engine picked in prepareSTTEngine is the preferred one. Cloud engines
+/// (Google, Cerence free speech) are watched through EngineHealth; when one
+/// degrades, listening moves to the on-device CERENCE_LOCAL_FCF task, and
+/// after a cool-down the cloud engine is probed again (half-open, like a
+/// circuit breaker). A probe that degrades again doubles the cool-down.
+///
+/// Failover is on the error rate and on latency (see EngineHealth). The
+/// SDK has no end-of-speech event, so a cloud result's latency is taken to
+/// be the uplink RTT from setUplinkRtt (the chat heartbeat) when it came
+/// in: the audio has to go up and the text come back over that link. A
+/// congested evening uplink that keeps cloud results seconds late, error
+/// free or not, fails over to the on-device engine; a probe waits until
+/// the uplink is back under PROBE_MAX_RTT_MS.
+///
+/// Tasks come from SpeechBackends (BuddySDK.Speech on the robot). SDK
+/// callbacks arrive on binder threads; everything is synchronized.
 public class BuddySpeechToTextService implements SpeechToTextService {
 
     private static final String TAG = "BuddySttService";
 
-    private SttListener appSttListener;
-    private STTTask currentSttTask;
+    private static final SttEngineType FALLBACK        = SttEngineType.CERENCE_LOCAL_FCF;
+    private static final long          RETRY_CLOUD_MS  = 60_000;       // first cool-down before probing the cloud again
+    private static final long          MAX_RETRY_MS    = 10 * 60_000;
+    private static final int           PROBE_SUCCESSES = 3;            // results before a probe counts as recovered
+    private static final long          PROBE_MAX_RTT_MS = 600;         // don't probe the cloud over an uplink slower than this
+
+    private SttListener  appSttListener;
     private AssetManager assetManager; //for Cerence local FCF
-    private boolean isInitialized = false;
-    private boolean isListening = false;
+    private Locale       locale;
+    private LongSupplier uplinkRttMs = () -> -1;
+    private final LongSupplier clockMs;
+
+    private final Map<SttEngineType, SttTask>      tasks  = new EnumMap<>(SttEngineType.class);
+    private final Map<SttEngineType, EngineHealth> health = new EnumMap<>(SttEngineType.class);
+
+    private SttEngineType preferred;            // chosen in prepareSTTEngine
+    private SttEngineType active;               // what is listening (or would be)
+    private boolean       isInitialized;        // active task initialized
+    private boolean       isListening;
+    private boolean       wantListening;        // started and not paused/stopped: a switch resumes on the new engine
+    private boolean       continuous;
+    private long          failedOverMs;
+    private long          retryDelayMs = RETRY_CLOUD_MS;
+    private int           probeSuccesses = -1;  // >= 0 while probing the preferred engine
 
-    public BuddySpeechToTextService(AssetManager assets) {
+    public BuddySpeechToTextService(AssetManager assets) { this(assets, () -> System.nanoTime() / 1_000_000); }
+
+    BuddySpeechToTextService(AssetManager assets, LongSupplier clockMs) {   // tests: a fake clock
         this.assetManager = assets;
+        this.clockMs      = clockMs;
     }
 
+    /** RTT of the robot's uplink in ms (-1 unknown): the latency of cloud results, and a probe waits while it is above PROBE_MAX_RTT_MS */
+    public synchronized void setUplinkRtt(LongSupplier rttMs) { this.uplinkRttMs = rttMs; }
+
+    // --------------------------------------------------------------------
+    // SpeechToTextService
+    // --------------------------------------------------------------------
     @Override
-    public void prepareSTTEngine(SttEngineType engineType, Locale locale) {
-        if (currentSttTask != null) {
+    public synchronized void prepareSTTEngine(SttEngineType engineType, Locale locale) {
+        if (active != null) {
             Log.w(TAG, "An STT task already exists. Stopping the old one before creating a new one.");
-            stopListening(); // Stop and release the previous task
-        }
-
-        Log.i(TAG, "Preparing STT engine: " + engineType + " for locale: " + locale.toString());
-        try {
-            switch (engineType) {
-                case GOOGLE:
-                    currentSttTask = BuddySDK.Speech.createGoogleSTTTask(locale);
-                    break;
-                case CERENCE_FREE_SPEECH:
-                    currentSttTask = BuddySDK.Speech.createCerenceFreeSpeechTask(locale);
-                    break;
-                case CERENCE_LOCAL_FCF:
-                    String fcfFilename;
-                    // Example logic for fcf filename from MainActivity
-                    if (locale.getLanguage().equals(Locale.ENGLISH.getLanguage())) { // More robust locale check
-                        fcfFilename = "audio_en.fcf"; // Ensure this file exists in your assets
-                    } else if (locale.getLanguage().equals(Locale.FRENCH.getLanguage())) {
-                        fcfFilename = "audio_fr.fcf"; // Ensure this file exists in your assets
-                    } else {
-                        Log.e(TAG, "Cerence local FCF not supported for locale: " + locale);
-                        if (appSttListener != null) {
-                            appSttListener.onError("Cerence local FCF not supported for locale: " + locale);
-                        }
-                        currentSttTask = null; // Ensure task is null
-                        return;
-                    }
-                    Log.d(TAG, "Using Cerence local FCF file: " + fcfFilename);
-                    currentSttTask = BuddySDK.Speech.createCerenceTaskFromAssets(locale, fcfFilename, this.assetManager);
-                    break;
-                default:
-                    Log.e(TAG, engineType + " is not a supported STT engine type.");
-                    currentSttTask = null; // Ensure task is null
-                    if (appSttListener != null) {
-                        appSttListener.onError(engineType + " is not a supported STT engine type.");
-                    }
-                    return;
-            }
-            isInitialized = false;
-            isListening = false;
-            Log.i(TAG, "STT task created for " + engineType);
-        } catch (Exception e) {
-            Log.e(TAG, "Error creating STT task" + e.getMessage(), e);
-            currentSttTask = null; // Ensure task is null
-            if (appSttListener != null) {
-                appSttListener.onError("Error creating STT task: " + e.getMessage());
-            }
+            stopListening();
         }
+        Log.i(TAG, "Preparing STT engine: " + engineType + " for locale: " + locale);
+        this.locale    = locale;
+        this.preferred = engineType;
+        this.active    = engineType;
+        tasks.clear();
+        health.clear();
+        probeSuccesses = -1;
+        retryDelayMs   = RETRY_CLOUD_MS;
+        isInitialized  = false;
+        isListening    = false;
+        if (task(engineType) == null) error("Error creating STT task for " + engineType);
     }
 
     @Override
-    public void initializeListening(SttListener listener) {
+    public synchronized void initializeListening(SttListener listener) {
         this.appSttListener = listener;
-        if (currentSttTask == null) {
-            Log.e(TAG, "STT task is null. Call prepareSTTEngine first.");
+        if (task(active) == null) { error("STT engine not prepared. "); return; }
+        if (!isInitialized && !initialize(active)) return;
+        if (appSttListener != null) appSttListener.onSttReady();
+    }
 
-            if (this.appSttListener != null) {
-                this.appSttListener.onError("STT engine not prepared. ");
-            }
-            return;
-        }
-        if (isInitialized) {
-            Log.w(TAG, "STT task already initialized.");
-            if (this.appSttListener != null) {
-                this.appSttListener.onSttReady();
-            }
+    @Override
+    public synchronized void startListening(boolean listenContinuously) {
+        if (task(active) == null || !isInitialized) {
+            error("STT not ready to start. Prepare and initialize first");
             return;
         }
-        Log.d(TAG, "Initializing STT task");
+        if (isListening) { Log.w(TAG, "STT is already listening"); return; }
+        continuous    = listenContinuously;
+        wantListening = true;
+        maybeProbe();                    // may already start the preferred engine
+        if (!isListening) start(active);
+    }
+
+    @Override
+    public synchronized void pauseListening() {
+        SttTask task = tasks.get(active);
+        if (task == null || !isInitialized) { Log.w(TAG, "Cannot pause. STT task is null of not currently listening"); return; }
         try {
-            currentSttTask.initialize();
-            isInitialized = true;
-            Log.i(TAG, "STT Task Initialized");
-            if (this.appSttListener != null) {
-                this.appSttListener.onSttReady();
-            }
+            task.pause();
+            isListening   = false;
+            wantListening = false;
+            Log.i(TAG, "STT Task Paused");
+            if (appSttListener != null) appSttListener.onSttPaused();
         } catch (Exception e) {
-            Log.e(TAG, "Error initializing STT task" + e.getMessage(), e);
-            if (this.appSttListener != null) {
-                this.appSttListener.onError("Error initializing STT: " + e.getMessage());
-            }
+            error("Error pausing STT: " + e.getMessage());
         }
     }
 
-
     @Override
-    public void startListening(boolean listenContinuously) {
-        if (currentSttTask == null || !isInitialized) {
-            Log.e(TAG, "STT task is null or not initialized, Call prepareSTTEngine and initializeListening first");
-            if (this.appSttListener != null) {
-                this.appSttListener.onError("STT not ready to start. Prepare and initialize first");
-            }
-            return;
-        }
-        if (isListening) {
-            Log.w(TAG, "STT is already listening");
-            return;
-        }
-
-        Log.d(TAG, "Starting STT task, continuous: " + listenContinuously);
+    public synchronized void stopListening() {
+        SttTask task = tasks.get(active);
+        if (task == null) { Log.w(TAG, "Cannot stop. STT task is already null."); return; }
         try {
-            currentSttTask.start(listenContinuously, serviceSttCallback);
-            isListening = true;
+            task.stop();
+            Log.i(TAG, "STT Task Stopped");
+            isListening   = false;
+            wantListening = false;
+            isInitialized = false;
+            if (appSttListener != null) appSttListener.onSttStopped();
         } catch (Exception e) {
-            Log.e(TAG, "Error starting STT task: " + e.getMessage(), e);
-            isListening = false;
-            if (this.appSttListener != null) {
-                this.appSttListener.onError("Error starting STT: " + e.getMessage());
-            }
+            error("Error stopping STT: " + e.getMessage());
         }
     }
 
     @Override
-    public void pauseListening() {
-        if (currentSttTask == null || !isInitialized) {
-            Log.w(TAG, "Cannot pause. STT task is null of not currently listening");
-            return;
+    public synchronized void releaseService() {
+        Log.d(TAG, "Releasing STT service and all engine tasks");
+        for (SttTask task : tasks.values()) {
+            try { task.stop(); } catch (Exception e) { Log.e(TAG, "Error stopping task during release: " + e.getMessage(), e); }
+        }
+        tasks.clear();
+        isInitialized = false;
+        isListening   = false;
+        appSttListener = null;
+        assetManager   = null;
+    }
+
+    @Override public synchronized boolean       isListening () { return isListening; }
+    @Override public synchronized SttEngineType activeEngine() { return active; }
+
+    /** Health of every engine used so far (monitoring) */
+    public synchronized String stats() {
+        StringBuilder sb = new StringBuilder("stt " + active);
+        for (Map.Entry<SttEngineType, EngineHealth> e : health.entrySet()) sb.append(" | ").append(e.getKey()).append(' ').append(e.getValue());
+        return sb.toString();
+    }
+
+    // --------------------------------------------------------------------
+    // Engines (all holding `this`)
+    // --------------------------------------------------------------------
+    /** Task of an engine, created on first use; null if the engine can't run here */
+    private SttTask task(SttEngineType engine) {
+        SttTask task = tasks.get(engine);
+        if (task != null) return task;
+        String fcf = null;
+        if (engine == SttEngineType.CERENCE_LOCAL_FCF && (fcf = fcfFile(locale)) == null) {
+            Log.w(TAG, "Cerence local FCF not supported for locale: " + locale);
+            return null;
         }
-        Log.d(TAG, "Pausing STT task...");
         try {
-            currentSttTask.pause();
-            isListening = false;
-            Log.i(TAG, "STT Task Paused");
-            if (this.appSttListener != null) {
-                this.appSttListener.onSttPaused();
-            }
-        } catch (Exception e) {
-            Log.e(TAG, "Error pausing STT task: " + e.getMessage(), e);
-            if (this.appSttListener != null) {
-                this.appSttListener.onError("Error pausing STT: " + e.getMessage());
-            }
+            task = SpeechBackends.get().createSttTask(engine, locale, fcf, assetManager);
+        } catch (Throwable t) {
+            Log.w(TAG, "Can't create " + engine + " task: " + t);
+            return null;
         }
+        if (task != null) { tasks.put(engine, task); Log.i(TAG, "STT task created for " + engine); }
+        return task;
     }
 
-    @Override
-    public void stopListening() {
-        if (currentSttTask == null) {
-            Log.w(TAG, "Cannot stop. STT task is already null.");
-            return;
-        }
-        Log.d(TAG, "Stopping STT Task...");
+    private boolean initialize(SttEngineType engine) {
         try {
-            currentSttTask.stop();
-            Log.i(TAG, "STT Task Stopped");
-            isListening = false;
-            isInitialized = false;
-            if (this.appSttListener != null) {
-                this.appSttListener.onSttStopped();
-            }
+            tasks.get(engine).initialize();
+            isInitialized = true;
+            Log.i(TAG, "STT Task Initialized (" + engine + ")");
+            return true;
         } catch (Exception e) {
-            Log.e(TAG, "Error stopping STT task: " + e.getMessage());
-            if (this.appSttListener != null) {
-                this.appSttListener.onError("Error stopping STT: " + e.getMessage());
-            }
+            error("Error initializing STT: " + e.getMessage());
+            return false;
         }
-        // To fully release and require a new prepareSTTEngine call:
-        // currentSttTask = null;
-        // isInitialized = false;
     }
 
-    @Override
-    public void releaseService() {
-        Log.d(TAG, "Releasing STT service and current task");
-        if (currentSttTask != null) {
-            try {
-                currentSttTask.stop();
-            } catch (Exception e) {
-                Log.e(TAG, "Error stopping task during release: " + e.getMessage(), e);
-            }
-            currentSttTask = null;
+    private void start(SttEngineType engine) {
+        Log.d(TAG, "Starting " + engine + ", continuous: " + continuous);
+        try {
+            tasks.get(engine).start(continuous, callbackFor(engine));
+            isListening = true;
+        } catch (Exception e) {
+            isListening = false;
+            health(engine).recordError();
+            error("Error starting STT: " + e.getMessage());
+            evaluate();
         }
+    }
+
+    /** Move listening to another engine; the old task is paused, not released */
+    private void switchTo(SttEngineType engine, String reason) {
+        if (engine == active || task(engine) == null) return;
+        try { tasks.get(active).pause(); } catch (Exception e) { Log.w(TAG, "Pausing " + active + " failed: " + e); }
+        Log.w(TAG, "STT engine " + active + " -> " + engine + " (" + reason + "); " + stats());
+        active        = engine;
+        isListening   = false;
         isInitialized = false;
-        isListening = false;
-        this.appSttListener = null;
-        this.assetManager = null;
-    }
-
-    private final ISTTCallback.Stub serviceSttCallback = new ISTTCallback.Stub() {
-        @Override
-        public void onSuccess(STTResultsData iResults) throws RemoteException {
-            Log.i(TAG, "STT onSuccess received data.");
-            if (appSttListener == null) {
-                Log.w(TAG, "appSttListener is null in onSuccess, cannot propagate result.");
-                return;
-            }
-
-            if (iResults != null && iResults.getResults() != null && !iResults.getResults().isEmpty()) {
-                // first result as most relevant
-                STTResult topResult = iResults.getResults().get(0);
-                String utterance = topResult.getUtterance();
-                float confidence = topResult.getConfidence(); // Assuming getConfidence() returns a float
-                // String rule = topResult.getRule();
-
-                Log.i(TAG, "Utterance: " + utterance + ", Confidence: " + confidence);
-                appSttListener.onSpeechResult(utterance, confidence);
-
-                // If not continuous, the task might stop itself or need explicit stopping/re-initialization.
-                // Our service's isListening flag would be managed by start/stop/pause calls.
-            } else {
-                Log.w(TAG, "STT onSuccess but results are empty or null.");
-                // For clarity, we can call onError.
-                appSttListener.onError("No speech recognized or empty results.");
-            }
+        if (!initialize(engine)) return;
+        if (wantListening) start(engine);
+        if (appSttListener != null) appSttListener.onEngineChanged(engine, reason);
+    }
+
+    /** Fail over when the preferred cloud engine degrades; stay on a probe that succeeds */
+    private void evaluate() {
+        if (preferred == FALLBACK) return;
+        EngineHealth h = health(preferred);
+        if (active == preferred && h.degraded()) {
+            boolean probing = probeSuccesses >= 0;
+            retryDelayMs   = probing ? Math.min(MAX_RETRY_MS, retryDelayMs * 2) : RETRY_CLOUD_MS;
+            probeSuccesses = -1;
+            failedOverMs   = now();
+            switchTo(FALLBACK, probing ? "cloud still degraded" : "cloud degraded: " + h);
+        } else if (active == preferred && probeSuccesses >= 0 && ++probeSuccesses >= PROBE_SUCCESSES && h.healthy()) {
+            Log.i(TAG, preferred + " recovered: " + h);
+            probeSuccesses = -1;
+            retryDelayMs   = RETRY_CLOUD_MS;
         }
+    }
+
+    /** After the cool-down (and if the uplink looks fine) give the preferred engine another chance */
+    private void maybeProbe() {
+        if (active != FALLBACK || preferred == FALLBACK || now() - failedOverMs < retryDelayMs) return;
+        long rtt = uplinkRttMs.getAsLong();
+        if (rtt > PROBE_MAX_RTT_MS) return;  // uplink still congested
+        health(preferred).reset();
+        probeSuccesses = 0;
+        switchTo(preferred, "probing after " + retryDelayMs / 1000 + " s");
+    }
+
+    private EngineHealth health(SttEngineType engine) { return health.computeIfAbsent(engine, e -> EngineHealth.defaults()); }
+
+    private boolean isCloud(SttEngineType engine) { return engine != SttEngineType.CERENCE_LOCAL_FCF; }
+
+    private static String fcfFile(Locale locale) {
+        if (locale.getLanguage().equals(Locale.ENGLISH.getLanguage())) return "audio_en.fcf";  // Ensure this file exists in your assets
+        if (locale.getLanguage().equals(Locale.FRENCH .getLanguage())) return "audio_fr.fcf";
+        return null;
+    }
+
+    private void error(String msg) {
+        Log.e(TAG, msg);
+        if (appSttListener != null) appSttListener.onError(msg);
+    }
+
+    private long now() { return clockMs.getAsLong(); }
 
-        @Override
-        public void onError(String iError) throws RemoteException {
-            Log.e(TAG, "STT onError: " + iError);
-            if (appSttListener == null) {
-                Log.w(TAG, "appSttListener is null in onError, cannot propagate error.");
-                return;
-            }
-            appSttListener.onError(iError);
-            isListening = false; // Assume listening stops on error
+    // --------------------------------------------------------------------
+    // Task callbacks
+    // --------------------------------------------------------------------
+    /** Per engine, so late results from a task we switched away from are ignored */
+    private SttTask.Listener callbackFor(SttEngineType engine) {
+        return new SttTask.Listener() {
+            @Override public void onResults(List<Hypothesis> nbest) { onResult(engine, nbest);   }
+            @Override public void onError  (String e)                { onEngineError(engine, e); }
+            @Override public void onPartial(String u, float c)       { onPartialResult(engine, u, c); }
+        };
+    }
+
+    private void onPartialResult(SttEngineType engine, String utterance, float confidence) {
+        SttListener l;
+        synchronized (this) {
+            if (engine != active) return;
+            l = appSttListener;
+        }
+        if (l != null) l.onPartialResult(utterance, confidence);
+    }
+
+    private void onResult(SttEngineType engine, List<Hypothesis> nbest) {
+        SttListener l;
+        synchronized (this) {
+            if (engine != active) return;
+            l = appSttListener;
+            if (!nbest.isEmpty() && isCloud(engine)) health(engine).recordResult(uplinkRttMs.getAsLong());
+            if (!continuous) isListening = false;  // single-shot task is done
+            evaluate();
+            maybeProbe();
         }
-    };
+        if (l == null) { Log.w(TAG, "appSttListener is null in onSuccess, cannot propagate result."); return; }
+        if (nbest.isEmpty()) { l.onError("No speech recognized or empty results."); return; }
+        Log.i(TAG, "Utterance (" + engine + "): " + nbest.get(0) + " (+" + (nbest.size() - 1) + " alternates)");
+        l.onNBestResult(engine.name(), nbest);
+    }
+
+    private void onEngineError(SttEngineType engine, String error) {
+        SttListener l;
+        synchronized (this) {
+            if (engine != active) return;
+            Log.e(TAG, "STT onError (" + engine + "): " + error);
+            l = appSttListener;
+            isListening = false;  // Assume listening stops on error
+            health(engine).recordError();
+            evaluate();           // may restart listening on the fallback
+        }
+        if (l != null) l.onError(error);
+    }
 }
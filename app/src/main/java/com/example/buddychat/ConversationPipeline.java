@@ -0,0 +1,87 @@
+package com.example.buddychat;
+
+import android.widget.Button;
+import android.widget.TextView;
+import androidx.core.util.Consumer;
+
+import java.io.File;
+
+import com.example.buddychat.cache.ResponseCache;
+import com.example.buddychat.journal.ConversationJournal;
+import com.example.buddychat.metrics.Tracer;
+import com.example.buddychat.metrics.TurnLatency;
+import com.example.buddychat.network.ws.ChatSocketManager;
+import com.example.buddychat.network.ws.ChatUiCallbacks;
+import com.example.buddychat.network.ws.DurableOutbox;
+import com.example.buddychat.network.ws.SendObserver;
+import com.example.buddychat.stt.RecognitionGate;
+import com.example.buddychat.stt.STTCallbacks;
+import com.example.buddychat.stt.UtteranceCallback;
+import com.example.buddychat.stt.UtteranceCoalescer;
+import com.example.buddychat.tts.BuddyTTS;
+import com.example.buddychat.turn.TurnController;
+
+// ====================================================================
+// The conversation chain, from STT results to the socket and back to TTS
+// ====================================================================
+///   BuddySTT -> RecognitionGate -> TurnController -> UtteranceCoalescer
+///            -> STTCallbacks -> ChatSocketManager -> server
+///            -> ChatUiCallbacks -> BuddyTTS (-> TurnController)
+///
+/// MainActivity builds one around its views; the headless simulator builds
+/// one around throwaway views and a stand-in server. Nothing here touches
+/// BuddySDK directly (speech goes through SpeechBackends).
+public class ConversationPipeline {
+
+    /// Lower-ranked STT hypotheses sent along with each transcription (0 = none)
+    public static final int  STT_ALTERNATES       = 2;
+
+    /// Memory cap for on-device answers
+    public static final long RESPONSE_CACHE_BYTES = 256 * 1024;
+
+    public final ChatSocketManager chat;
+    public final ChatUiCallbacks   chatCallbacks;
+    public final STTCallbacks      sttCallbacks;
+    public final RecognitionGate   input;          // what BuddySTT reports to (-> turns -> coalescer -> callbacks)
+    public final ResponseCache     responses;
+
+    /**
+     * @param filesDir       where the durable outbox lives
+     * @param continuous     continuous listening (sentences may arrive in pieces; see UtteranceCoalescer)
+     * @param runningSink    told when a chat starts/ends
+     */
+    public ConversationPipeline(ChatSocketManager chat, TextView userView, TextView botView, Button startEnd,
+                                ConversationJournal journal, File filesDir, boolean continuous,
+                                Consumer<Boolean> runningSink) {
+        this.chat = chat;
+
+        /// WebSocket callback object
+        chatCallbacks = new ChatUiCallbacks(botView, startEnd, journal, runningSink);
+
+        /// STT callback object
+        sttCallbacks = new STTCallbacks(userView, new UtteranceCallback() {
+            @Override public boolean sendString  (String text, String trace)               { return chat.sendString  (text, trace);        }
+            @Override public boolean sendString  (String text, String trace, String[] alts){ return chat.sendString  (text, trace, alts);  }
+            @Override public boolean sendAnswered(String text, String trace, String reply) { return chat.sendAnswered(text, trace, reply); }
+            @Override public boolean sendPartial (String text, String trace)               { return chat.sendPartial (text, trace);        }
+        }, journal);
+        UtteranceCoalescer coalescer = UtteranceCoalescer.withDefaults(sttCallbacks);
+        coalescer.setEnabled(continuous);  // single-shot results are already whole
+        TurnController turns = new TurnController(coalescer, BuddyTTS::stop, trace -> chat.sendCancel(chatCallbacks.cancelReply(trace)));
+        BuddyTTS.setListener(turns);  // own voice is not an utterance; talking over it is a barge-in
+        input = new RecognitionGate(turns, STT_ALTERNATES);  // noise never reaches the socket
+        chat.setBackpressureListener(sttCallbacks);
+        chat.setBinaryTypes(ChatUiCallbacks.WANTED);  // other bin1 frames are dropped from their header
+        DurableOutbox.open(new File(filesDir, "outbox.log"), chat::setOutbox);  // utterances survive drops/restarts; attached once loaded
+        Tracer.setRttSource(chat::rttMs);
+        chat.setSendObserver(new SendObserver() {
+            @Override public void queued(String trace) { TurnLatency.queued(); Tracer.queued(trace); }
+            @Override public void sent  (String trace) { TurnLatency.sent  (); Tracer.sent  (trace); }
+        });
+
+        /// Cacheable replies (server-marked) answer repeats of the same utterance on-device
+        responses = new ResponseCache(RESPONSE_CACHE_BYTES);
+        chatCallbacks.setResponseCache(responses);
+        sttCallbacks .setResponseCache(responses, chatCallbacks::answerLocally);
+    }
+}
@@ -1,11 +1,15 @@
 package com.example.buddychat;
 
 import android.os.Bundle;
+import android.os.Handler;
+import android.os.Looper;
+import android.view.View;
 import android.util.Log;
 import android.widget.TextView;
 import android.widget.Button;
 import android.widget.Toast;
 
+import java.io.File;
 import java.util.Locale;
 
 // Buddy SDK
@@ -14,12 +18,25 @@ import com.bfr.buddysdk.BuddyActivity;
 
 // Speech System
 import com.example.buddychat.network.NetworkUtils;
+import com.example.buddychat.network.auth.TokenManager;
+import com.example.buddychat.network.auth.TokenStore;
 import com.example.buddychat.network.model.Profile;
 import com.example.buddychat.network.ws.ChatSocketManager;
 import com.example.buddychat.network.ws.ChatUiCallbacks;
+import com.example.buddychat.network.model.ApiResponse;
+
+// Conversation transcript on flash
+import com.example.buddychat.journal.ConversationJournal;
+
+// Per-stage turn latency
+import com.example.buddychat.metrics.Tracer;
+import com.example.buddychat.metrics.TurnLatency;
+
+// Startup dependency graph
+import com.example.buddychat.startup.StartupOrchestrator;
 
 // BuddySDK.Speech wrappers
-import com.example.buddychat.stt.STTCallbacks;
+import com.example.buddychat.stt.RecognitionGate;
 import com.example.buddychat.tts.BuddyTTS;
 import com.example.buddychat.stt.BuddySTT;
 import com.example.buddychat.stt.BuddySTT.Engine;
@@ -37,23 +54,40 @@ public class MainActivity extends BuddyActivity {
     // --------------------------------------------------------------------
     private final String TAG = "BuddyChatMain";
 
+    /// Pre-open the chat socket once we have a token, so Start promotes it instead of dialing
+    /// (the effect on Start -> first reply is unmeasured; compare the warm/cold LATENCY lines)
+    private static final boolean WARM_STANDBY = true;
+
+    /// Continuous listening (sentences may arrive in pieces; see UtteranceCoalescer)
+    private static final boolean LISTEN_CONTINUOUS = true;
+
     /// UI References
     private TextView textUserInfo;
     private TextView userView;
     private TextView botView;
     private Button   buttonStartEnd;
+    private TextView debugOverlay;
+
+    /// Latency overlay refresh
+    private static final long    OVERLAY_REFRESH_MS = 1_000;
+    private final        Handler overlayHandler     = new Handler(Looper.getMainLooper());
 
     /// WebSocket related
-    private volatile String            authToken;
+    private          TokenManager      tokens;
     private          boolean           isRunning = false;
     private final    ChatSocketManager chat      = new ChatSocketManager();
     private          ChatUiCallbacks   chatCallbacks;
-    private          STTCallbacks      sttCallbacks;
+    private          RecognitionGate   sttGate;        // what BuddySTT actually reports to (-> turns -> coalescer -> callbacks)
+    private          ConversationJournal journal;
+
+    /// Startup steps (health, auth, profile, SDK, TTS, STT); Start is enabled once the gating ones are done
+    private          StartupOrchestrator startup;
+    private volatile boolean             profileShown;  // welcome already on screen (from cache or network)
 
     // ====================================================================
     // Startup code
     // ====================================================================
-    // I don't know if maybe all of this should just go into the onSDKReady() function...
+    // Network steps start here; the speech steps wait for onSDKReady() via the orchestrator
     @Override
     protected void onCreate(Bundle savedInstanceState) {
         /// Setup the app & layout
@@ -64,16 +98,27 @@ public class MainActivity extends BuddyActivity {
         /// Setup UI
         initializeUI(); wireButtons();
 
-        /// WebSocket callback object
-        chatCallbacks = new ChatUiCallbacks(botView, buttonStartEnd, running -> isRunning = running);
+        /// Transcript journal (opens in the background)
+        journal = ConversationJournal.open(new File(getFilesDir(), "journal"));
 
-        /// STT callback object (we can pass it stuff here, like the textView)
-        sttCallbacks = new STTCallbacks(userView, chat::sendString);
+        /// STT -> socket -> TTS chain (see ConversationPipeline)
+        chat.setEndpoint(NetworkUtils.CHAT_ENDPOINT);
+        ConversationPipeline pipeline = new ConversationPipeline(chat, userView, botView, buttonStartEnd, journal, getFilesDir(), LISTEN_CONTINUOUS, running -> {
+            isRunning = running;
+            if (!running) prewarmChat();  // ready for the next Start
+        });
+        chatCallbacks = pipeline.chatCallbacks;
+        sttGate       = pipeline.input;
 
-        /// Login + set tokens
+        /// Login + set tokens (stored tokens are reused across launches)
+        tokens = new TokenManager(new TokenStore(getApplicationContext()));
         Log.d("API", "Logging in on app startup...");
         textUserInfo.setText(R.string.logging_in);
-        doLoginAndProfile();
+
+        /// Everything else that has to happen before Start is usable
+        buttonStartEnd.setEnabled(false);
+        startup = buildStartup();
+        startup.start(startupListener);
     }
 
     // ====================================================================
@@ -87,15 +132,14 @@ public class MainActivity extends BuddyActivity {
         // Transfer the touch information to BuddyCore in the background
         BuddySDK.UI.setViewAsFace(findViewById(R.id.view_face));
 
-        // Setup STT & TTS
-        BuddyTTS.init(getApplicationContext());
-        BuddySTT.init(this, Locale.ENGLISH, Engine.CERENCE_FREE, true);
+        // STT & TTS setup are startup steps that depend on this one
+        startup.complete("sdk");
     }
 
     /** Came from the STT example... not sure if needed? */
     @Override public void onPause  () { super.onPause ();  Log.i(TAG, "onPause"  ); }
     @Override public void onResume () { super.onResume();  Log.i(TAG, "onResume" ); }
-    @Override public void onDestroy() { super.onDestroy(); Log.i(TAG, "onDestroy"); }
+    @Override public void onDestroy() { super.onDestroy(); Log.i(TAG, "onDestroy"); overlayHandler.removeCallbacks(refreshOverlay); journal.close(); }
 
 
     // ====================================================================
@@ -107,45 +151,116 @@ public class MainActivity extends BuddyActivity {
         userView       = findViewById(R.id.userView      );
         botView        = findViewById(R.id.botView       );
         buttonStartEnd = findViewById(R.id.buttonStartEnd);
+        debugOverlay   = findViewById(R.id.debugOverlay  );
     }
 
     /** Set button listeners */
     private void wireButtons() {
         buttonStartEnd.setOnClickListener(v -> {
-            if (!isRunning) { chat.connect(authToken, chatCallbacks); }
-            else            { chat.endChat();                         }
-            BuddyTTS.toggle(); BuddySTT.toggle(sttCallbacks);
+            if (!isRunning) {
+                chatCallbacks.markStart(chat.isStandby());
+                chat.connect(tokens::currentAccessToken, chatCallbacks);
+            }
+            else { chat.endChat(); }
+            BuddyTTS.toggle(); BuddySTT.toggle(sttGate);
+            if (!isRunning) BuddyTTS.speak(getString(R.string.greeting));
 
             // Logging
             String logMsg = "Chat connected; STT & TTS started.";
             if (!isRunning) { logMsg = "Chat ended; STT & TTS paused."; }
             Toast.makeText(this, logMsg, Toast.LENGTH_LONG).show();
         });
+
+        // Debug: latency overlay
+        buttonStartEnd.setOnLongClickListener(v -> { toggleOverlay(); return true; });
+        debugOverlay  .setOnClickListener(v -> {
+            File dir   = getExternalFilesDir(null);
+            if (dir == null) dir = getFilesDir();
+            File out   = TurnLatency.dump(dir);
+            File spans = Tracer.export(dir);
+            exportTranscript(new File(dir, "transcript.tsv"));
+            Toast.makeText(this, out != null && spans != null ? "Saved " + out.getName() + ", " + spans.getName() + ", transcript.tsv" : "Dump failed", Toast.LENGTH_SHORT).show();
+        });
+    }
+
+    /** Full transcript from the journal, written off the UI thread */
+    private void exportTranscript(File out) {
+        new Thread(() -> journal.exportText(out, 0), "TranscriptExport").start();
+    }
+
+    /** Show/hide the per-stage latency table; refreshed every second while visible */
+    private void toggleOverlay() {
+        boolean show = debugOverlay.getVisibility() != View.VISIBLE;
+        debugOverlay.setVisibility(show ? View.VISIBLE : View.GONE);
+        overlayHandler.removeCallbacks(refreshOverlay);
+        if (show) refreshOverlay.run();
+    }
+
+    private final Runnable refreshOverlay = new Runnable() {
+        @Override public void run() {
+            debugOverlay.setText(TurnLatency.summary() + BuddyTTS.stats() + "\n" + BuddySTT.stats());
+            overlayHandler.postDelayed(this, OVERLAY_REFRESH_MS);
+        }
+    };
+
+    // ====================================================================
+    // Startup graph
+    // ====================================================================
+    //   health ----------------------------------- (timed only)
+    //   profile-cache (disk only) --+
+    //   auth -----------------------+--> profile  (both timed only)
+    //   sdk (onSDKReady) --> tts, stt
+    // Start is enabled when auth, sdk, tts and stt are all done.
+    private StartupOrchestrator buildStartup() {
+        return new StartupOrchestrator()
+                .add("health", false, done -> NetworkUtils.pingHealth(new NetworkUtils.HealthCallback() {
+                    @Override public void onSuccess(ApiResponse h) { done.success();   }
+                    @Override public void onError  (Throwable t  ) { done.failure(t); }
+                }))
+                .add("auth",    true,  this::doLogin)
+                .add("profile-cache", false, this::doCachedProfile)
+                .add("profile", false, this::doProfile, "auth", "profile-cache")
+                .addExternal("sdk", true)
+                .add("tts", true, this::runOnUiThread, done -> {
+                    BuddyTTS.init(getApplicationContext());
+                    done.success();
+                }, "sdk")
+                .add("stt", true, this::runOnUiThread, done -> {
+                    BuddySTT.init(this, Locale.ENGLISH, Engine.CERENCE_FREE, LISTEN_CONTINUOUS);
+                    BuddySTT.setUplinkRtt(chat::rttMs);  // a congested uplink fails cloud STT over to the local engine
+                    done.success();
+                }, "sdk");
+    }
+
+    private final StartupOrchestrator.Listener startupListener = new StartupOrchestrator.Listener() {
+        @Override public void onStepDone(String step, long ms, Throwable error) {
+            Log.i("STARTUP", String.format("%s done in %d ms%s", step, ms, error == null ? "" : " (failed: " + error.getMessage() + ")"));
+        }
+        @Override public void onReady(StartupOrchestrator.Report report) {
+            Log.i("STARTUP", "Ready: " + report);
+            runOnUiThread(() -> buttonStartEnd.setEnabled(true));
+        }
+        @Override public void onFailed(String step, Throwable error) {
+            Log.e("STARTUP", "Startup step failed: " + step, error);
+            runOnUiThread(() -> botView.setText(String.format("Startup failed (%s): %s", step, error.getMessage())));
+        }
+    };
+
+    /** Open the standby socket for the next chat (no-op if disabled, chatting, or already warm) */
+    private void prewarmChat() {
+        if (WARM_STANDBY) chat.prewarm(tokens::currentAccessToken);
     }
 
     // ====================================================================
     // Handle API requests for logging in
     // ====================================================================
-    // TODO: This probably should be put into a separate file
-    /** Adds some stuff to the UI (username, etc), and sets the auth token. */
-    private void doLoginAndProfile() {
-        /// Test the API
-        NetworkUtils.pingHealth();
-
-        /// Login
-        NetworkUtils.login(new NetworkUtils.AuthCallback() {
+    /** Login (or reuse/refresh the stored token). Failures are shown but retried, so the step only ever succeeds. */
+    private void doLogin(StartupOrchestrator.Completion done) {
+        tokens.start(new NetworkUtils.AuthCallback() {
             @Override public void onSuccess(String token) {
-                authToken = token;
-                runOnUiThread(() -> botView.setText(R.string.get_profile));
-
-                NetworkUtils.fetchProfile(token, new NetworkUtils.ProfileCallback() {
-                    @Override public void onSuccess(Profile p) {
-                        runOnUiThread(() -> textUserInfo.setText(String.format("%s %s | %s", p.plwd.first_name, p.plwd.last_name, p.plwd.username)));
-                        runOnUiThread(() -> botView     .setText(String.format("Welcome %s", p.plwd.username)));
-                        runOnUiThread(() -> Toast.makeText(MainActivity.this, String.format("Welcome %s", p.plwd.username), Toast.LENGTH_LONG).show());
-                    }
-                    @Override public void onError(Throwable t) {runOnUiThread(() -> botView.setText(String.format("Profile fail: %s", t.getMessage())));}
-                });
+                if (!profileShown) runOnUiThread(() -> botView.setText(R.string.get_profile));
+                prewarmChat();
+                done.success();
             }
 
             @Override public void onError(Throwable t) {
@@ -154,6 +269,40 @@ public class MainActivity extends BuddyActivity {
             }
         });
     }
+
+    /** Welcome from the HTTP cache, before login has even finished; a miss is not an error */
+    private void doCachedProfile(StartupOrchestrator.Completion done) {
+        NetworkUtils.loadCachedProfile(new NetworkUtils.ProfileCallback() {
+            @Override public void onSuccess(Profile p) { showProfile(p); done.success(); }
+            @Override public void onNotModified()      { done.success(); }
+            @Override public void onError(Throwable t) {
+                Log.d("PROFILE", "No cached profile: " + t.getMessage());
+                done.success();
+            }
+        });
+    }
+
+    /** Revalidate with the server; only touches the UI if the profile changed */
+    private void doProfile(StartupOrchestrator.Completion done) {
+        NetworkUtils.fetchProfile(tokens.currentAccessToken(), new NetworkUtils.ProfileCallback() {
+            @Override public void onSuccess(Profile p) { showProfile(p); done.success(); }
+            @Override public void onNotModified()      { done.success(); }
+            @Override public void onError(Throwable t) {
+                // Keep showing the cached welcome through brief outages
+                if (!profileShown) runOnUiThread(() -> botView.setText(String.format("Profile fail: %s", t.getMessage())));
+                done.failure(t);
+            }
+        });
+    }
+
+    /** Adds some stuff to the UI (username, etc) */
+    private void showProfile(Profile p) {
+        boolean first = !profileShown;
+        profileShown  = true;
+        runOnUiThread(() -> textUserInfo.setText(String.format("%s %s | %s", p.plwd.first_name, p.plwd.last_name, p.plwd.username)));
+        runOnUiThread(() -> botView     .setText(String.format("Welcome %s", p.plwd.username)));
+        if (first) runOnUiThread(() -> Toast.makeText(MainActivity.this, String.format("Welcome %s", p.plwd.username), Toast.LENGTH_LONG).show());
+    }
 }
 
 
@@ -1,9 +1,18 @@
 package com.example.buddychat;
 import com.bfr.buddysdk.BuddyApplication;
 
+import android.util.Log;
+
+import com.example.buddychat.network.ChatLog;
+import com.example.buddychat.network.NetworkUtils;
+
 public class MainApplication extends BuddyApplication {
     @Override
     public void onCreate() {
         super.onCreate();
+        // Chat client (plain-JVM module) logs to logcat like the rest of the app
+        ChatLog.setMinLevel(ChatLog.VERBOSE);
+        ChatLog.setSink((level, tag, msg, t) -> Log.println(level, tag, t == null ? msg : msg + "\n" + Log.getStackTraceString(t)));
+        NetworkUtils.init(this);  // HTTP disk cache for /profile/ and /health/
     }
 }
@@ -24,4 +24,9 @@ public interface SpeechToTextService {
     void stopListening();
 
     void releaseService();
+
+    boolean isListening();
+
+    //engine currently listening; may differ from the prepared one after an automatic failover
+    SttEngineType activeEngine();
 }
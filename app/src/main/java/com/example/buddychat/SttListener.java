@@ -1,9 +1,21 @@
 package com.example.buddychat;
 
+import com.example.buddychat.stt.Hypothesis;
+
+import java.util.List;
+
 public interface SttListener {
     //called when speech is successfully recognized
     void onSpeechResult(String utterance, float confidence);
 
+    //called with interim hypotheses, for engines that produce them; the final onSpeechResult wins
+    default void onPartialResult(String utterance, float confidence) {}
+
+    //called with every hypothesis of a result, best first (never empty); defaults to onSpeechResult(top)
+    default void onNBestResult(String engine, List<Hypothesis> nbest) {
+        onSpeechResult(nbest.get(0).utterance, nbest.get(0).confidence);
+    }
+
     void onError(String errorMessage);
 
     //called when the STT engine is ready to listen
@@ -12,4 +24,7 @@ public interface SttListener {
     void onSttPaused();
 
     void onSttStopped();
+
+    //called when listening moved to another engine (automatic failover / fail-back)
+    default void onEngineChanged(SpeechToTextService.SttEngineType engine, String reason) {}
 }
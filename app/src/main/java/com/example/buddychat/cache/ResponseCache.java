@@ -0,0 +1,153 @@
+package com.example.buddychat.cache;
+
+import android.util.Log;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.function.LongSupplier;
+
+// ====================================================================
+// On-device answers for utterances the server marked as cacheable
+// ====================================================================
+/// Keyed by normalized utterance text ("Thank you!" == "thank you"). The
+/// server decides what may be cached: an llm_response / llm_done carrying
+/// "cache" (a TTL in seconds, or true for the default) is stored under
+/// the utterance that produced it, found through the reply's trace id.
+///
+/// Eviction: entries expire after their TTL; beyond the memory cap (a
+/// rough char count of keys + values) the least recently used go first.
+///
+/// Traces answered locally are remembered for a while, so a reply the
+/// server sends for them anyway can be dropped instead of spoken twice.
+///
+/// Thread-safe (all methods synchronized; everything here is tiny).
+public class ResponseCache {
+    private static final String TAG = "ResponseCache";
+
+    private static final long DEFAULT_TTL_MS = 24 * 3_600_000L;
+    private static final long MIN_TTL_MS     = 60_000;
+    private static final long MAX_TTL_MS     = 7 * DEFAULT_TTL_MS;
+    private static final int  ENTRY_OVERHEAD = 64;           // bytes per entry beyond the two strings, roughly
+    private static final int  MAX_TRACKED    = 32;           // traces remembered for fill / duplicate drop
+
+    private static final class Entry {
+        final String reply;
+        final long   expiresMs;
+        final int    bytes;
+        Entry(String reply, long expiresMs, int bytes) { this.reply = reply; this.expiresMs = expiresMs; this.bytes = bytes; }
+    }
+
+    private final long         maxBytes;
+    private final LongSupplier clockMs;
+    private       long         bytes;
+    private       int  hits, misses;
+
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(32, 0.75f, true);  // access order = LRU
+
+    /// trace -> normalized utterance, for misses waiting for a (maybe cacheable) reply
+    private final Map<String, String>  awaiting = bounded();
+    /// traces answered from the cache
+    private final Map<String, Boolean> answered = bounded();
+
+    public ResponseCache(long maxBytes) { this(maxBytes, System::currentTimeMillis); }
+
+    ResponseCache(long maxBytes, LongSupplier clockMs) {   // tests: a fake clock
+        this.maxBytes = maxBytes;
+        this.clockMs  = clockMs;
+    }
+
+    // --------------------------------------------------------------------
+    // Usage
+    // --------------------------------------------------------------------
+    /** Cached reply for `utterance`, or null; a miss remembers `trace` so the reply can fill the cache */
+    public synchronized String lookup(String utterance, String trace) {
+        String key = normalize(utterance);
+        Entry  e   = entries.get(key);
+        if (e != null && e.expiresMs <= now()) { remove(key); e = null; }
+        if (e == null) {
+            misses++;
+            if (trace != null && !key.isEmpty()) awaiting.put(trace, key);
+            return null;
+        }
+        hits++;
+        if (trace != null) answered.put(trace, Boolean.TRUE);
+        Log.d(TAG, String.format(Locale.US, "Hit '%s' (%d hits / %d misses)", key, hits, misses));
+        return e.reply;
+    }
+
+    /** A reply for `trace` arrived; stored if the server marked it cacheable (`cacheField` non-null) */
+    public synchronized void offer(String trace, String reply, String cacheField) {
+        String key = trace != null ? awaiting.remove(trace) : null;
+        if (key == null || cacheField == null || reply == null || reply.isEmpty()) return;
+        long ttl = ttlMs(cacheField);
+        if (ttl <= 0) return;
+
+        remove(key);
+        Entry e = new Entry(reply, now() + ttl, 2 * (key.length() + reply.length()) + ENTRY_OVERHEAD);
+        entries.put(key, e);
+        bytes += e.bytes;
+        evict();
+        Log.d(TAG, String.format(Locale.US, "Cached '%s' for %d s (%d entries, %d bytes)", key, ttl / 1000, entries.size(), bytes));
+    }
+
+    /** The server replied to a turn we already answered on-device: drop it */
+    public synchronized boolean answeredLocally(String trace) { return trace != null && answered.containsKey(trace); }
+
+    public synchronized void clear() { entries.clear(); bytes = 0; }
+
+    /** Cached replies, and their rough size against the cap (monitoring) */
+    public synchronized int  size()  { return entries.size(); }
+    public synchronized long bytes() { return bytes; }
+
+    // --------------------------------------------------------------------
+    // Helpers
+    // --------------------------------------------------------------------
+    /** Lowercase, letters/digits only, single spaces */
+    static String normalize(String s) {
+        StringBuilder sb = new StringBuilder(s.length());
+        boolean space = false;
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (Character.isLetterOrDigit(c) || c == '\'') {
+                if (space && sb.length() > 0) sb.append(' ');
+                sb.append(Character.toLowerCase(c));
+                space = false;
+            } else {
+                space = true;
+            }
+        }
+        return sb.toString();
+    }
+
+    /** "true" -> default; a number -> that many seconds (clamped); anything else (false, 0) -> not cacheable */
+    private static long ttlMs(String field) {
+        if ("true".equals(field)) return DEFAULT_TTL_MS;
+        try {
+            long s = Long.parseLong(field.trim());
+            return s <= 0 ? 0 : Math.max(MIN_TTL_MS, Math.min(MAX_TTL_MS, s * 1000));
+        } catch (NumberFormatException e) { return 0; }
+    }
+
+    private void evict() {
+        long now = now();
+        for (Iterator<Map.Entry<String, Entry>> it = entries.entrySet().iterator(); it.hasNext(); ) {
+            Entry e = it.next().getValue();
+            if (e.expiresMs <= now || bytes > maxBytes) { bytes -= e.bytes; it.remove(); }  // LRU order: oldest first
+        }
+    }
+
+    private void remove(String key) {
+        Entry old = entries.remove(key);
+        if (old != null) bytes -= old.bytes;
+    }
+
+    private static <V> Map<String, V> bounded() {
+        return new LinkedHashMap<String, V>() {
+            @Override protected boolean removeEldestEntry(Map.Entry<String, V> e) { return size() > MAX_TRACKED; }
+        };
+    }
+
+    private long now() { return clockMs.getAsLong(); }
+}
@@ -0,0 +1,312 @@
+package com.example.buddychat.journal;
+
+import android.util.Log;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
+
+// ====================================================================
+// Append-only, memory-mapped log of everything said in a conversation
+// ====================================================================
+/// The journal is a directory of fixed-size segments, seg-<base>.log, each
+/// mapped into memory. <base> is the global offset of the segment's first
+/// byte, so finding a segment never needs a scan and offsets keep growing
+/// across rotations. One record:
+///
+///   [len:int32] [crc32:int32] [kind:1] [time ms:int64] [traceLen:1] [trace ascii] [text utf-8]
+///
+/// len/crc cover everything after them. len is written last, so a record
+/// is either complete or invisible. Segment files are preallocated with
+/// zeros and a len of 0 marks the end. On open only the newest segment is
+/// scanned, to find where to resume after a crash; older segments are
+/// never read at startup.
+///
+/// All writes happen on one background thread and the text is encoded
+/// straight into the mapping (no byte[] per record). Pages are forced to
+/// flash at most every FORCE_DELAY_MS. Retention is by segment count: at
+/// 4 MiB x 64 that is months of conversation before the oldest is deleted.
+///
+/// replay() may run on any thread except the UI thread; it sees every record
+/// committed before it started.
+public class ConversationJournal {
+    private static final String TAG = "Journal";
+
+    public enum Kind { USER, BOT, CHAT_START, CHAT_END }
+
+    /** Called for each record; return false to stop */
+    public interface Visitor {
+        boolean onRecord(long offset, Kind kind, long timeMs, String trace, String text);
+    }
+
+    public  static final int  SEGMENT_BYTES  = 4 << 20;
+    private static final int  MAX_SEGMENTS   = 64;
+    private static final int  MAX_TEXT_CHARS = 16_384;      // longer text is truncated (worst case 48 KiB encoded)
+    private static final int  MAX_TRACE      = 64;
+    private static final int  HEADER         = 4 + 4;       // len, crc
+    private static final int  FIXED_BODY     = 1 + 8 + 1;   // kind, time, traceLen
+    private static final long FORCE_DELAY_MS = 2_000;
+
+    private static final String PREFIX = "seg-";
+    private static final String SUFFIX = ".log";
+    private static final Kind[] KINDS  = Kind.values();
+
+    private final File                                 dir;
+    private final ConcurrentSkipListMap<Long, File>    segments = new ConcurrentSkipListMap<>();
+    private final ScheduledExecutorService             io = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "Journal");
+        t.setDaemon(true);
+        return t;
+    });
+
+    // Writer state (journal thread only)
+    private       FileChannel      activeChannel;
+    private       MappedByteBuffer active;
+    private       long             activeBase;
+    private       boolean          forcePending;
+    private final CRC32            crc  = new CRC32();
+    private final CharsetEncoder   utf8 = StandardCharsets.UTF_8.newEncoder()
+            .onMalformedInput(CodingErrorAction.REPLACE)
+            .onUnmappableCharacter(CodingErrorAction.REPLACE);
+
+    /// Offset just past the last committed record; readers never go beyond it
+    private volatile long end;
+
+    private ConversationJournal(File dir) { this.dir = dir; }
+
+    /** Returns at once; the crash-recovery scan runs on the journal thread ahead of any append */
+    public static ConversationJournal open(File dir) {
+        ConversationJournal j = new ConversationJournal(dir);
+        j.io.execute(j::recover);
+        return j;
+    }
+
+    // --------------------------------------------------------------------
+    // Usage
+    // --------------------------------------------------------------------
+    /** Queue a record (any thread, never blocks); `trace` may be null */
+    public void append(Kind kind, String trace, String text) {
+        final long now = System.currentTimeMillis();
+        io.execute(() -> {
+            try { write(kind, now, trace, text != null ? text : ""); }
+            catch (Exception e) { Log.w(TAG, "Append failed: " + e); }
+        });
+    }
+
+    /** Offset at which the next record will be written (where a live replay can resume) */
+    public long endOffset() { return end; }
+
+    /** Force everything to flash and stop the writer; appends after this are dropped */
+    public void close() {
+        io.execute(() -> {
+            try { if (active != null) { active.force(); activeChannel.close(); } }
+            catch (IOException e) { Log.w(TAG, "Close failed: " + e); }
+        });
+        io.shutdown();
+    }
+
+    /**
+     * Visit records from `fromOffset` (0, or an offset a previous replay/visit returned).
+     * @return the offset just past the last record visited, to resume from later
+     */
+    public long replay(long fromOffset, Visitor v) {
+        final long limit = end;
+        long next = fromOffset;
+
+        Map.Entry<Long, File> e = segments.floorEntry(fromOffset);
+        if (e == null) e = segments.firstEntry();
+        if (e != null && next < e.getKey()) next = e.getKey();  // older segments were deleted
+
+        byte[] scratch = new byte[256];
+        while (e != null && next < limit) {
+            long base = e.getKey();
+            try (FileChannel ch = FileChannel.open(e.getValue().toPath(), StandardOpenOption.READ)) {
+                MappedByteBuffer b = ch.map(FileChannel.MapMode.READ_ONLY, 0, ch.size());
+                int pos = (int) (next - base);
+                while (pos + HEADER <= b.limit() && base + pos < limit) {
+                    int len = b.getInt(pos);
+                    if (len < FIXED_BODY || pos + HEADER + len > b.limit()) break;  // end of this segment
+
+                    int  body = pos + HEADER;
+                    int  k    = b.get(body);
+                    long time = b.getLong(body + 1);
+                    int  tLen = b.get(body + 9) & 0xFF;
+                    int  xLen = len - FIXED_BODY - tLen;
+                    if (scratch.length < Math.max(tLen, xLen)) scratch = new byte[Math.max(tLen, xLen) * 2];
+
+                    b.position(body + FIXED_BODY);
+                    String trace = null;
+                    if (tLen > 0) { b.get(scratch, 0, tLen); trace = new String(scratch, 0, tLen, StandardCharsets.US_ASCII); }
+                    b.get(scratch, 0, xLen);
+                    String text = new String(scratch, 0, xLen, StandardCharsets.UTF_8);
+
+                    long offset = base + pos;
+                    pos += HEADER + len;
+                    next = base + pos;
+                    if (k >= 0 && k < KINDS.length && !v.onRecord(offset, KINDS[k], time, trace, text)) return next;
+                }
+            } catch (IOException ex) {
+                Log.w(TAG, "Skipping unreadable segment " + e.getValue().getName() + ": " + ex);  // e.g. deleted by retention
+            }
+            e = segments.higherEntry(base);
+            if (e != null) next = e.getKey();
+        }
+        return Math.min(next, limit);
+    }
+
+    /** Human-readable transcript from `fromOffset` to `out` (tab-separated: time, kind, trace, text) */
+    public boolean exportText(File out, long fromOffset) {
+        SimpleDateFormat fmt = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss", Locale.US);
+        try (Writer w = new FileWriter(out)) {
+            IOException[] failed = { null };
+            replay(fromOffset, (offset, kind, timeMs, trace, text) -> {
+                try {
+                    w.write(fmt.format(new Date(timeMs)) + '\t' + kind + '\t' + (trace != null ? trace : "-") + '\t'
+                            + text.replace('\n', ' ') + '\n');
+                    return true;
+                } catch (IOException ex) { failed[0] = ex; return false; }
+            });
+            if (failed[0] != null) throw failed[0];
+            return true;
+        } catch (IOException e) {
+            Log.w(TAG, "Transcript export failed: " + e);
+            return false;
+        }
+    }
+
+    // --------------------------------------------------------------------
+    // Writing (journal thread)
+    // --------------------------------------------------------------------
+    private void write(Kind kind, long time, String trace, String text) throws IOException {
+        if (active == null) return;  // recovery failed; the journal is off
+        if (text.length() > MAX_TEXT_CHARS) text = text.substring(0, MAX_TEXT_CHARS);
+        int tLen = trace == null ? 0 : Math.min(trace.length(), MAX_TRACE);
+
+        int worst = HEADER + FIXED_BODY + tLen + text.length() * 3;
+        if (active.remaining() < worst + HEADER) rotate();  // keep room for the zero len that ends a segment
+
+        int p = active.position();
+        active.position(p + HEADER);
+        active.put((byte) kind.ordinal()).putLong(time).put((byte) tLen);
+        for (int i = 0; i < tLen; i++) active.put((byte) trace.charAt(i));
+        utf8.reset();
+        utf8.encode(CharBuffer.wrap(text), active, true);
+        utf8.flush(active);
+        int bodyEnd = active.position();
+
+        ByteBuffer body = active.duplicate();
+        body.position(p + HEADER).limit(bodyEnd);
+        crc.reset();
+        crc.update(body);
+        active.putInt(p + 4, (int) crc.getValue());
+        active.putInt(p, bodyEnd - p - HEADER);   // commit
+        end = activeBase + bodyEnd;
+
+        if (!forcePending) {
+            forcePending = true;
+            io.schedule(this::force, FORCE_DELAY_MS, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private void force() {
+        forcePending = false;
+        if (active != null) active.force();
+    }
+
+    /** Start a new segment right where the current one ends */
+    private void rotate() throws IOException {
+        long base = activeBase + (active != null ? active.position() : 0);
+        if (active != null) {
+            active.force();
+            activeChannel.close();
+            active = null;   // let the old 4 MiB mapping go (and leave the journal off if the next map fails)
+        }
+        map(new File(dir, name(base)), base);
+        segments.put(base, new File(dir, name(base)));
+        Log.d(TAG, "New segment at offset " + base);
+
+        while (segments.size() > MAX_SEGMENTS) {
+            Map.Entry<Long, File> oldest = segments.pollFirstEntry();
+            if (!oldest.getValue().delete()) Log.w(TAG, "Could not delete " + oldest.getValue());
+        }
+    }
+
+    private void map(File f, long base) throws IOException {
+        RandomAccessFile raf = new RandomAccessFile(f, "rw");
+        if (raf.length() < SEGMENT_BYTES) raf.setLength(SEGMENT_BYTES);  // zero-filled
+        activeChannel = raf.getChannel();
+        active        = activeChannel.map(FileChannel.MapMode.READ_WRITE, 0, SEGMENT_BYTES);
+        activeBase    = base;
+    }
+
+    // --------------------------------------------------------------------
+    // Recovery (journal thread, once)
+    // --------------------------------------------------------------------
+    private void recover() {
+        try {
+            if (!dir.isDirectory() && !dir.mkdirs()) throw new IOException("Can't create " + dir);
+            File[] files = dir.listFiles();
+            if (files != null) {
+                for (File f : files) {
+                    String n = f.getName();
+                    if (!n.startsWith(PREFIX) || !n.endsWith(SUFFIX)) continue;
+                    try { segments.put(Long.parseLong(n.substring(PREFIX.length(), n.length() - SUFFIX.length())), f); }
+                    catch (NumberFormatException ignored) { }
+                }
+            }
+            if (segments.isEmpty()) { rotate(); end = 0; return; }
+
+            // Resume in the newest segment after its last intact record
+            Map.Entry<Long, File> last = segments.lastEntry();
+            map(last.getValue(), last.getKey());
+            int pos = 0;
+            boolean torn = false;
+            while (pos + HEADER <= SEGMENT_BYTES) {
+                int len = active.getInt(pos);
+                if (len == 0) break;
+                if (len < FIXED_BODY || pos + HEADER + len > SEGMENT_BYTES || !crcOk(pos, len)) { torn = true; break; }
+                pos += HEADER + len;
+            }
+            if (torn) {  // crashed mid-append: wipe the leftovers so they can't pass for a record later
+                Log.w(TAG, "Torn record at offset " + (last.getKey() + pos) + "; truncating");
+                for (int i = pos; i < SEGMENT_BYTES; i++) active.put(i, (byte) 0);
+                active.force();
+            }
+            active.position(pos);
+            end = activeBase + pos;
+            Log.d(TAG, String.format(Locale.US, "Opened: %d segments, end offset %d", segments.size(), end));
+        } catch (IOException e) {
+            active = null;
+            Log.e(TAG, "Journal unavailable: " + e);
+        }
+    }
+
+    private boolean crcOk(int pos, int len) {
+        ByteBuffer body = active.duplicate();
+        body.position(pos + HEADER).limit(pos + HEADER + len);
+        crc.reset();
+        crc.update(body);
+        return (int) crc.getValue() == active.getInt(pos + 4);
+    }
+
+    private static String name(long base) { return String.format(Locale.US, "%s%020d%s", PREFIX, base, SUFFIX); }
+}
@@ -0,0 +1,162 @@
+package com.example.buddychat.metrics;
+
+import android.util.Log;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.LongSupplier;
+
+// ====================================================================
+// Per-turn spans, keyed by the trace id carried in the chat frames
+// ====================================================================
+/// STTCallbacks starts a trace per utterance; the id goes out in the
+/// transcription frame ("trace") and the server echoes it on its replies,
+/// so robot-side spans can be joined with backend logs offline.
+///
+/// Spans per turn:
+///   stt        onText -> transcription queued
+///   queue      queued -> handed to OkHttp
+///   roundtrip  sent   -> first reply frame (network + server)
+///   network    estimate: the socket's smoothed ping RTT (see Heartbeat)
+///   server     estimate: roundtrip - network, centred in the roundtrip
+///   tts        one per spoken chunk, startSpeaking -> onSuccess
+///
+/// Spans live in a fixed ring of CAPACITY entries (oldest overwritten) and
+/// are exported as TSV with wall-clock microsecond start times.
+public final class Tracer {
+    private static final String TAG = "TRACE";
+
+    public  static final int CAPACITY      = 1024;
+    private static final int MAX_IN_FLIGHT = 16;     // turns still waiting for a reply
+
+    // Turn marks, System.nanoTime(); 0 = not reached
+    private static final int BEGIN = 0, QUEUED = 1, SENT = 2, REPLY = 3;
+
+    // Span ring (guarded by Tracer.class)
+    private static final String[] spanTrace   = new String[CAPACITY];
+    private static final String[] spanName    = new String[CAPACITY];
+    private static final long[]   spanStartUs = new long  [CAPACITY];   // epoch micros
+    private static final long[]   spanDurUs   = new long  [CAPACITY];
+    private static int            next, size;
+    private static long           overwritten;
+
+    // Turns in flight (guarded by Tracer.class)
+    private static final Map<String, long[]> turns = new LinkedHashMap<String, long[]>() {
+        @Override protected boolean removeEldestEntry(Map.Entry<String, long[]> e) { return size() > MAX_IN_FLIGHT; }
+    };
+    private static volatile String       latest;
+    private static volatile LongSupplier rttMs = () -> -1;
+
+    // Anchor to turn nanoTime into wall-clock time once, not per span
+    private static final long BASE_NS       = System.nanoTime();
+    private static final long BASE_EPOCH_US = System.currentTimeMillis() * 1000;
+
+    private Tracer() {}  // static-only class
+
+    // --------------------------------------------------------------------
+    // Setup
+    // --------------------------------------------------------------------
+    /** 16 hex chars, random */
+    public static String newTraceId() {
+        String hex = Long.toHexString(ThreadLocalRandom.current().nextLong());
+        return "0000000000000000".substring(hex.length()) + hex;
+    }
+
+    /** Where the network estimate comes from (e.g. ChatSocketManager::rttMs) */
+    public static void setRttSource(LongSupplier source) { rttMs = source; }
+
+    /** Trace of the most recent utterance (fallback for replies that don't echo one) */
+    public static String latest() { return latest; }
+
+    // --------------------------------------------------------------------
+    // Marks
+    // --------------------------------------------------------------------
+    public static synchronized void begin(String trace) {
+        long[] t = new long[4];
+        t[BEGIN] = System.nanoTime();
+        turns.put(trace, t);
+        latest = trace;
+    }
+
+    public static synchronized void queued(String trace) {
+        long[] t = mark(trace, QUEUED);
+        if (t != null) span(trace, "stt", t[BEGIN], t[QUEUED]);
+    }
+
+    public static synchronized void sent(String trace) {
+        long[] t = mark(trace, SENT);
+        if (t != null) span(trace, "queue", t[QUEUED], t[SENT]);
+    }
+
+    /** First reply frame for `trace` (later deltas are ignored); null means "the latest" */
+    public static synchronized void reply(String trace) {
+        if (trace == null) trace = latest;
+        long[] t = mark(trace, REPLY);
+        if (t == null || t[SENT] == 0) return;
+        turns.remove(trace);  // nothing else to wait for; tts spans carry their own times
+
+        long roundtrip = t[REPLY] - t[SENT];
+        span(trace, "roundtrip", t[SENT], t[REPLY]);
+        long rtt = rttMs.getAsLong() * 1_000_000;
+        if (rtt >= 0 && rtt < roundtrip) {
+            span(trace, "network", t[SENT], t[SENT] + rtt);
+            span(trace, "server",  t[SENT] + rtt / 2, t[REPLY] - rtt / 2);
+        }
+    }
+
+    /** One TTS chunk of `trace` (null for speech that isn't a reply) finished */
+    public static synchronized void ttsChunk(String trace, long startNs) {
+        span(trace != null ? trace : "-", "tts", startNs, System.nanoTime());
+    }
+
+    /** Set mark `which` once; returns the turn's marks, or null if unknown/already set */
+    private static long[] mark(String trace, int which) {
+        long[] t = trace != null ? turns.get(trace) : null;
+        if (t == null || t[which] != 0) return null;
+        t[which] = System.nanoTime();
+        return t;
+    }
+
+    private static void span(String trace, String name, long startNs, long endNs) {
+        if (startNs == 0) return;
+        if (size == CAPACITY) overwritten++; else size++;
+        spanTrace  [next] = trace;
+        spanName   [next] = name;
+        spanStartUs[next] = BASE_EPOCH_US + (startNs - BASE_NS) / 1_000;
+        spanDurUs  [next] = (endNs - startNs) / 1_000;
+        next = (next + 1) % CAPACITY;
+    }
+
+    // --------------------------------------------------------------------
+    // Export
+    // --------------------------------------------------------------------
+    /** Write the buffer (oldest first) to dir/spans-<timestamp>.tsv; returns the file, or null on failure */
+    public static File export(File dir) {
+        String name = "spans-" + new SimpleDateFormat("yyyyMMdd-HHmmss", Locale.US).format(new Date()) + ".tsv";
+        File   out  = new File(dir, name);
+        StringBuilder sb = new StringBuilder(64 * CAPACITY);
+        synchronized (Tracer.class) {
+            sb.append("# trace\tspan\tstart_us\tdur_us (overwritten: ").append(overwritten).append(")\n");
+            for (int k = 0, i = (next - size + CAPACITY) % CAPACITY; k < size; k++, i = (i + 1) % CAPACITY) {
+                sb.append(spanTrace[i]).append('\t').append(spanName[i]).append('\t')
+                  .append(spanStartUs[i]).append('\t').append(spanDurUs[i]).append('\n');
+            }
+        }
+        try (Writer w = new FileWriter(out)) {
+            w.write(sb.toString());
+            Log.i(TAG, "Spans exported to " + out);
+            return out;
+        } catch (IOException e) {
+            Log.w(TAG, "Span export failed: " + e);
+            return null;
+        }
+    }
+}
@@ -0,0 +1,125 @@
+package com.example.buddychat.metrics;
+
+import android.util.Log;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.Locale;
+
+// ====================================================================
+// Where the time goes in one conversational turn
+// ====================================================================
+/// Each component marks its point in the turn (STT result, queued, written,
+/// reply, speech) and the gap since the previous mark goes into that
+/// stage's histogram. Only the most recent turn is tracked; marks are
+/// volatile timestamps, so a mark costs a System.nanoTime() and one atomic
+/// increment, with no allocation.
+///
+/// summary() feeds the debug overlay, dump() writes the same table to a file.
+public final class TurnLatency {
+    private static final String TAG = "LATENCY";
+
+    public enum Stage {
+        STT_DISPATCH  ("stt->queued"  ),   // STTCallbacks.onText until the transcription is queued
+        SEND_QUEUE    ("queued->sent" ),   // outbound queue until handed to OkHttp
+        SERVER        ("sent->reply"  ),   // first llm_response / llm_delta back
+        SPEAK_DISPATCH("reply->speak" ),   // until the first chunk goes to BuddyTTS
+        TTS_WAIT      ("tts queued"   ),   // per item: SpeechScheduler queue until handed to the engine
+        TTS_CHUNK     ("speak->done"  ),   // per chunk: startSpeaking until ITTSCallback.onSuccess
+        TURN          ("stt->speak"   );   // end to end: user stops talking, robot starts
+
+        public final String label;
+        Stage(String label) { this.label = label; }
+    }
+
+    private static final LatencyHistogram[] HIST = new LatencyHistogram[Stage.values().length];
+    static { for (int i = 0; i < HIST.length; i++) HIST[i] = new LatencyHistogram(); }
+
+    /// Marks of the turn in flight, System.nanoTime(); 0 = not reached yet
+    private static volatile long sttNs, queuedNs, sentNs, replyNs;
+    private static volatile boolean spoken;  // SPEAK_DISPATCH/TURN already recorded for this turn
+
+    private TurnLatency() {}  // static-only class
+
+    // --------------------------------------------------------------------
+    // Marks
+    // --------------------------------------------------------------------
+    /** A final STT result arrived: starts a new turn */
+    public static void sttDelivered() {
+        queuedNs = sentNs = replyNs = 0;
+        spoken   = false;
+        sttNs    = System.nanoTime();
+    }
+
+    public static void queued() { queuedNs = stamp(Stage.STT_DISPATCH, sttNs   ); }
+    public static void sent  () { sentNs   = stamp(Stage.SEND_QUEUE,   queuedNs); }
+
+    /** First reply frame of the turn (later deltas are ignored) */
+    public static void replyReceived() {
+        if (replyNs != 0 || sentNs == 0) return;
+        replyNs = stamp(Stage.SERVER, sentNs);
+    }
+
+    /** Answered on-device (ResponseCache): the "reply" is here without any network */
+    public static void answeredLocally() { replyNs = System.nanoTime(); }
+
+    /** A chunk was handed to TTS; only the first one of a turn counts */
+    public static void speakInvoked() {
+        if (spoken || replyNs == 0) return;   // e.g. the greeting, which isn't a reply
+        spoken = true;
+        stamp(Stage.SPEAK_DISPATCH, replyNs);
+        stamp(Stage.TURN,           sttNs  );
+    }
+
+    /** A TTS item left the queue for the engine; `enqueuedNs` is when it was queued */
+    public static void ttsWait(long enqueuedNs) { stamp(Stage.TTS_WAIT, enqueuedNs); }
+
+    /** One TTS chunk finished; `startNs` is when it was handed to the SDK */
+    public static void ttsChunkDone(long startNs) { stamp(Stage.TTS_CHUNK, startNs); }
+
+    /** Record now - fromNs (if fromNs was reached) and return now */
+    private static long stamp(Stage stage, long fromNs) {
+        long now = System.nanoTime();
+        if (fromNs != 0) HIST[stage.ordinal()].record((now - fromNs) / 1_000);
+        return now;
+    }
+
+    // --------------------------------------------------------------------
+    // Reporting
+    // --------------------------------------------------------------------
+    /** Fixed-width table: stage, count, p50/p95/p99/max in ms */
+    public static String summary() {
+        StringBuilder sb = new StringBuilder(String.format(Locale.US, "%-13s %5s %7s %7s %7s %7s%n",
+                "stage", "n", "p50", "p95", "p99", "max"));
+        for (Stage s : Stage.values()) {
+            LatencyHistogram h = HIST[s.ordinal()];
+            sb.append(String.format(Locale.US, "%-13s %5d %7s %7s %7s %7s%n", s.label, h.count(),
+                    ms(h.percentile(0.50)), ms(h.percentile(0.95)), ms(h.percentile(0.99)), ms(h.max())));
+        }
+        return sb.toString();
+    }
+
+    /** Write summary() to dir/latency-<timestamp>.txt; returns the file, or null on failure */
+    public static File dump(File dir) {
+        String name = "latency-" + new SimpleDateFormat("yyyyMMdd-HHmmss", Locale.US).format(new Date()) + ".txt";
+        File   out  = new File(dir, name);
+        try (Writer w = new FileWriter(out)) {
+            w.write(summary());
+            Log.i(TAG, "Latency dumped to " + out);
+            return out;
+        } catch (IOException e) {
+            Log.w(TAG, "Latency dump failed: " + e);
+            return null;
+        }
+    }
+
+    public static void reset() { for (LatencyHistogram h : HIST) h.reset(); }
+
+    private static String ms(long micros) {
+        return micros < 0 ? "-" : String.format(Locale.US, "%.1f", micros / 1000.0);
+    }
+}
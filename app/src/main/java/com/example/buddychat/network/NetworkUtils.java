@@ -2,36 +2,51 @@ package com.example.buddychat.network;
 import com.example.buddychat.BuildConfig;
 
 import androidx.annotation.NonNull;
+import android.content.Context;
 import android.util.Log;
 
+import java.io.File;
 import java.io.IOException;
 import okhttp3.*;
 
-import com.google.gson.Gson;
-import com.google.gson.JsonObject;
-
 import com.example.buddychat.network.model.Profile;
+import com.example.buddychat.network.model.ApiResponse;
 import com.example.buddychat.network.model.AuthResponse;
+import com.example.buddychat.network.ws.ChatSocketManager;
 
 
 // ====================================================================
 // API call utility
 // ====================================================================
-// Right now just logging in & health check
+// Logging in, token refresh, health check, profile. Requests and replies
+// are ChatApi's; this adds the app's credentials, host and callbacks.
+// /profile/ and /health/ go through a small disk cache (after init()):
+// the profile can be shown from cache at launch, then revalidated with a
+// conditional request (ETag / If-Modified-Since) once we have a token.
 public class NetworkUtils {
     // --------------------------------------------------------------------
     // Constants
     // --------------------------------------------------------------------
-    public static final OkHttpClient CLIENT = new OkHttpClient(); // Re-used client
-    private static final Gson GSON = new Gson();
+    public static final OkHttpClient CLIENT = ChatApi.CLIENT; // Re-used client (chat sockets share it)
     private static final String TAG  = "HTTP";
-    //private static final String BASE = "https://sandbox.cognibot.org/api";
-    //private static final String BASE = "http://10.0.2.2:8000/api";
-    private static final String BASE =
-            "1".equals(BuildConfig.TEST_LOCAL)
-                    ? "http://10.0.2.2:8000/api"            // local docker container
-                    : "https://cognibot.org/api";         // cloud server
-                    //: "https://sandbox.cognibot.org/api";   // cloud server
+
+    private static final long   CACHE_BYTES = 2L * 1024 * 1024;
+    private static final String CACHE_DIR   = "http";
+
+    /// REST client; same pool/dispatcher as CLIENT, plus the disk cache once init() has run
+    private static volatile OkHttpClient http = CLIENT;
+
+    /// Body of the cached profile we last showed, to tell a real change from a plain 200
+    private static volatile String shownProfileRaw;
+
+    private static final boolean LOCAL = "1".equals(BuildConfig.TEST_LOCAL);   // local docker container
+
+    /// REST endpoints (cloud unless TEST_LOCAL); rebuilt on `http` in init()
+    private static final HttpUrl BASE = LOCAL ? HttpUrl.get("http://10.0.2.2:8000/api/") : ChatApi.CLOUD;
+    private static volatile ChatApi api = new ChatApi(CLIENT, BASE);
+
+    /// Chat socket endpoint for ChatSocketManager.setEndpoint
+    public static final HttpUrl CHAT_ENDPOINT = LOCAL ? HttpUrl.get("http://10.0.2.2:8000/ws/chat/") : ChatSocketManager.DEFAULT_ENDPOINT;
 
 
     // --------------------------------------------------------------------
@@ -43,25 +58,65 @@ public class NetworkUtils {
     }
     public interface ProfileCallback {
         void onSuccess(Profile p);
+        void onNotModified();     // revalidation found the already-shown profile is current
+        void onError(Throwable t);
+    }
+    public interface HealthCallback {
+        void onSuccess(ApiResponse health);
         void onError(Throwable t);
     }
+    public interface TokenCallback {
+        void onSuccess(AuthResponse tokens);   // access + refresh pair
+        void onError(Throwable t);             // HttpException for non-2xx replies
+    }
+
+    // --------------------------------------------------------------------
+    // Setup: disk cache (call once, from MainApplication)
+    // --------------------------------------------------------------------
+    public static void init(Context ctx) {
+        Cache cache = new Cache(new File(ctx.getCacheDir(), CACHE_DIR), CACHE_BYTES);
+        http = CLIENT.newBuilder().cache(cache).addNetworkInterceptor(CACHEABLE).build();
+        api  = new ChatApi(http, BASE);
+    }
+
+    /// The API sends no caching headers; without this OkHttp would not store
+    /// /profile/ or /health/ at all. max-age=0 means "store, but always
+    /// revalidate" so a stale copy is only used when we ask for it.
+    private static final Interceptor CACHEABLE = chain -> {
+        Response r    = chain.proceed(chain.request());
+        String   path = chain.request().url().encodedPath();
+        if (!(path.endsWith("/profile/") || path.endsWith("/health/"))) return r;
+        if (r.header("Cache-Control") != null) return r;  // server knows best
+        return r.newBuilder().header("Cache-Control", "private, max-age=0").removeHeader("Pragma").build();
+    };
+
+    private static final CacheControl REVALIDATE = new CacheControl.Builder().noCache().build();
 
     // --------------------------------------------------------------------
     // Pings the /health endpoint and logs the HTTP status + body
     // --------------------------------------------------------------------
     public static void pingHealth() {
-        Request request = new Request.Builder().url(BASE + "/health/").get().build();
+        pingHealth(new HealthCallback() {
+            @Override public void onSuccess(ApiResponse h) { }
+            @Override public void onError  (Throwable t  ) { }
+        });
+    }
 
-        CLIENT.newCall(request).enqueue(new Callback() {
+    /** Same, but tells the caller when it is done (startup uses it as a timed step) */
+    public static void pingHealth(HealthCallback cb) {
+        Request request = api.healthRequest().cacheControl(REVALIDATE).build();
+
+        http.newCall(request).enqueue(new Callback() {
             @Override
-            public void onFailure(@NonNull Call call, @NonNull IOException e) {Log.e(TAG, "Ping failed", e);}
+            public void onFailure(@NonNull Call call, @NonNull IOException e) {Log.e(TAG, "Ping failed", e); cb.onError(e);}
 
             @Override
             public void onResponse(@NonNull Call call, @NonNull Response response) throws IOException {
-                try (ResponseBody body = response.body()) {
-                    String text = body != null ? body.string() : "<empty>";
+                try {
+                    String text = ChatApi.body(response);
                     Log.d(TAG, "Status " + response.code() + " – " + text);
-                }
+                    cb.onSuccess(ChatApi.parse(text, ApiResponse.class));
+                } catch (IOException | RuntimeException ex) { Log.d(TAG, "Status " + response.code()); cb.onError(ex); }
             }
         });
     }
@@ -73,8 +128,7 @@ public class NetworkUtils {
         Log.d("NETWORK", "getTokens not yet implemented.");
 
         String apiUser = BuildConfig.API_USER;
-        String apiPass = BuildConfig.API_PASS;
-        String message = String.format("Username: %s, Password: %s", apiUser, apiPass);
+        String message = String.format("Username: %s", apiUser);   // never the password
 
         Log.d("TEST", message);
     }
@@ -83,17 +137,18 @@ public class NetworkUtils {
     // Login
     // --------------------------------------------------------------------
     public static void login(AuthCallback cb) {
-        // Setup the request payload
-        JsonObject payload = new JsonObject();
-        payload.addProperty("username", BuildConfig.API_USER);
-        payload.addProperty("password", BuildConfig.API_PASS);
+        loginTokens(new TokenCallback() {
+            @Override public void onSuccess(AuthResponse tokens) { cb.onSuccess(tokens.access); }
+            @Override public void onError  (Throwable t        ) { cb.onError(t);               }
+        });
+    }
 
-        String endpoint = String.format("%s/token/", BASE);
-        RequestBody body = RequestBody.create(GSON.toJson(payload), MediaType.get("application/json"));
-        Request     req  = new Request.Builder().url(endpoint).post(body).build();
+    /** Same as login(), but hands back the refresh token too */
+    public static void loginTokens(TokenCallback cb) {
+        Request req = api.loginRequest(BuildConfig.API_USER, BuildConfig.API_PASS);
 
         // Logging
-        Log.d("LOGIN", String.format("Calling %s with username: %s, password: %s", endpoint, BuildConfig.API_USER, BuildConfig.API_PASS));
+        Log.d("LOGIN", String.format("Calling %s with username: %s", req.url(), BuildConfig.API_USER));
 
         // Make the API call
         CLIENT.newCall(req).enqueue(new Callback() {
@@ -102,37 +157,82 @@ public class NetworkUtils {
 
             @Override
             public void onResponse(@NonNull Call c, @NonNull Response r) {
-                try (ResponseBody b = r.body()) {
-                    if (!r.isSuccessful()) throw new IOException("HTTP " + r.code());
-                    String raw = b.string();
-                    Log.d("HTTP", "Token JSON = " + raw);
-
-                    AuthResponse ar = GSON.fromJson(raw, AuthResponse.class);
-                    cb.onSuccess(ar.access);
+                try {
+                    String raw = ChatApi.body(r);   // holds the tokens: never logged
+                    AuthResponse ar = ChatApi.parseTokens(raw, null);
+                    cb.onSuccess(ar);
                     Log.d("LOGIN", "Success");
                 } catch (Exception ex) { cb.onError(ex); }
             }
         });
     }
 
+    // --------------------------------------------------------------------
+    // Refresh: trade the refresh token for a new access token
+    // --------------------------------------------------------------------
+    /** Without token rotation the reply has no "refresh"; the old one is carried over. */
+    public static void refreshTokens(String refreshToken, TokenCallback cb) {
+        Request req = api.refreshRequest(refreshToken);
+
+        CLIENT.newCall(req).enqueue(new Callback() {
+            @Override public void onFailure (@NonNull Call c, @NonNull IOException e) { cb.onError(e); }
+            @Override public void onResponse(@NonNull Call c, @NonNull Response r) {
+                try {
+                    AuthResponse ar = ChatApi.parseTokens(ChatApi.body(r), refreshToken);
+                    cb.onSuccess(ar);
+                    Log.d("LOGIN", "Token refreshed");
+                } catch (Exception ex) { cb.onError(ex); }
+            }
+        });
+    }
+
     // --------------------------------------------------------------------
     // Use tokens to get profile information
     // --------------------------------------------------------------------
+    /** Revalidate against the server; onSuccess only if the profile differs from what was shown */
     public static void fetchProfile(String accessToken, ProfileCallback cb) {
-        Request req = new Request.Builder()
-                .url(BASE + "/profile/")
-                .header("Authorization", "Bearer " + accessToken)
-                .get().build();
+        Request req = api.profileRequest(accessToken)
+                .cacheControl(REVALIDATE)   // conditional request if we hold a cached copy
+                .build();
 
-        CLIENT.newCall(req).enqueue(new Callback() {
+        http.newCall(req).enqueue(new Callback() {
             @Override public void onFailure (@NonNull Call c, @NonNull IOException e) { cb.onError(e); }
             @Override public void onResponse(@NonNull Call c, @NonNull Response r) {
-                try (ResponseBody b = r.body()) {
-                    if (!r.isSuccessful()) throw new IOException("HTTP " + r.code());
-                    String raw = b.string();
+                try {
+                    String raw = ChatApi.body(r);
+                    Response net = r.networkResponse();
+                    boolean notModified = net != null && net.code() == 304;
+                    if (notModified || raw.equals(shownProfileRaw)) {
+                        Log.i("HTTP", "PROFILE unchanged" + (notModified ? " (304)" : ""));
+                        cb.onNotModified();
+                        return;
+                    }
                     Log.i("HTTP", "PROFILE JSON = " + raw);
 
-                    Profile p = GSON.fromJson(raw, Profile.class);
+                    Profile p = ChatApi.parseProfile(raw);
+                    shownProfileRaw = raw;
+                    cb.onSuccess(p);
+
+                } catch (Exception ex) { cb.onError(ex); }
+            }
+        });
+    }
+
+    /** Profile from the disk cache only (no token, no network); HttpException(504) if nothing is cached */
+    public static void loadCachedProfile(ProfileCallback cb) {
+        Request req = api.profileRequest(null)
+                .cacheControl(CacheControl.FORCE_CACHE)
+                .build();
+
+        http.newCall(req).enqueue(new Callback() {
+            @Override public void onFailure (@NonNull Call c, @NonNull IOException e) { cb.onError(e); }
+            @Override public void onResponse(@NonNull Call c, @NonNull Response r) {
+                try {
+                    String raw = ChatApi.body(r);
+                    Log.i("HTTP", "PROFILE (cached) JSON = " + raw);
+
+                    Profile p = ChatApi.parseProfile(raw);
+                    shownProfileRaw = raw;
                     cb.onSuccess(p);
 
                 } catch (Exception ex) { cb.onError(ex); }
@@ -0,0 +1,168 @@
+package com.example.buddychat.network.auth;
+
+import android.util.Log;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+
+import com.example.buddychat.network.ChatApi;
+import com.example.buddychat.network.NetworkUtils;
+import com.example.buddychat.network.model.AuthResponse;
+
+// ====================================================================
+// Keeps a valid access token around without blocking anyone on the network
+// ====================================================================
+/// On start the persisted pair is used right away if the access token still
+/// has life in it; otherwise we refresh, and only fall back to a full /token/
+/// login when the refresh token is also gone. A background timer refreshes
+/// REFRESH_MARGIN_MS before expiry, so currentAccessToken() is always a
+/// plain field read for ChatSocketManager.
+public class TokenManager {
+    private static final String TAG = "TokenManager";
+
+    private static final long REFRESH_MARGIN_MS = 60_000;   // refresh this long before `exp`
+    private static final long RETRY_DELAY_MS    = 15_000;   // after a failed refresh/login (network down)
+    private static final long UNKNOWN_EXP_MS    = 5 * 60_000;  // tokens without a readable exp: assume 5 min
+
+    private final TokenStore store;
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "TokenRefresh");
+        t.setDaemon(true);
+        return t;
+    });
+
+    private volatile String             access;
+    private volatile long               accessExpMs;   // wall-clock ms; 0 = unknown
+    private          String             refresh;       // guarded by `this`
+    private          ScheduledFuture<?> timer;         // guarded by `this`
+
+    public TokenManager(TokenStore store) { this.store = store; }
+
+    // --------------------------------------------------------------------
+    // Usage
+    // --------------------------------------------------------------------
+    /**
+     * Get a usable token as fast as possible. `ready.onSuccess` is called once: straight
+     * away (no network) when the stored token is still valid, otherwise after refresh/login.
+     * Failed refreshes and logins call `ready.onError` and are retried until one succeeds.
+     */
+    public void start(NetworkUtils.AuthCallback ready) {
+        AuthResponse saved = store.load();
+        if (saved != null && saved.access != null && expiresAt(saved.access) - REFRESH_MARGIN_MS > now()) {
+            Log.d(TAG, "Using stored access token");
+            accept(saved);
+            ready.onSuccess(saved.access);
+            return;
+        }
+        if (saved != null && saved.refresh != null && !expired(saved.refresh)) {
+            synchronized (this) { refresh = saved.refresh; }
+            refreshNow(ready);
+            return;
+        }
+        login(ready);
+    }
+
+    /** Valid access token (or null before the first login); never touches the network */
+    public String currentAccessToken() { return access; }
+
+    /** Drop everything, e.g. after a 401 that a refresh could not fix */
+    public synchronized void clear() {
+        access = null; accessExpMs = 0; refresh = null;
+        if (timer != null) { timer.cancel(false); timer = null; }
+        store.clear();
+    }
+
+    // --------------------------------------------------------------------
+    // Refresh / login
+    // --------------------------------------------------------------------
+    private void refreshNow(NetworkUtils.AuthCallback ready) {
+        String rt;
+        synchronized (this) { rt = refresh; }
+        if (rt == null) { login(ready); return; }
+
+        NetworkUtils.refreshTokens(rt, new NetworkUtils.TokenCallback() {
+            @Override public void onSuccess(AuthResponse tokens) {
+                accept(tokens);
+                if (ready != null) ready.onSuccess(tokens.access);
+            }
+            @Override public void onError(Throwable t) {
+                if (isRejected(t)) { Log.w(TAG, "Refresh token rejected; logging in again"); login(ready); }
+                else {
+                    Log.w(TAG, "Refresh failed: " + t);
+                    if (ready != null) ready.onError(t);   // as for a failed login
+                    retry(ready);
+                }
+            }
+        });
+    }
+
+    private void login(NetworkUtils.AuthCallback ready) {
+        NetworkUtils.loginTokens(new NetworkUtils.TokenCallback() {
+            @Override public void onSuccess(AuthResponse tokens) {
+                accept(tokens);
+                if (ready != null) ready.onSuccess(tokens.access);
+            }
+            @Override public void onError(Throwable t) {
+                Log.w(TAG, "Login failed: " + t);
+                if (ready != null) ready.onError(t);   // let the UI say so...
+                retry(ready);                          // ...but keep trying in the background
+            }
+        });
+    }
+
+    private synchronized void retry(NetworkUtils.AuthCallback ready) {
+        if (timer != null) timer.cancel(false);
+        timer = scheduler.schedule(() -> refreshNow(ready), RETRY_DELAY_MS, TimeUnit.MILLISECONDS);
+    }
+
+    /** Store the new pair and arm the proactive refresh */
+    private synchronized void accept(AuthResponse tokens) {
+        access      = tokens.access;
+        accessExpMs = expiresAt(tokens.access);
+        if (tokens.refresh != null) refresh = tokens.refresh;
+        store.save(tokens);
+
+        long delay = refreshDelayMs(accessExpMs, now());
+        if (timer != null) timer.cancel(false);
+        timer = scheduler.schedule(() -> refreshNow(null), delay, TimeUnit.MILLISECONDS);
+        Log.d(TAG, String.format("Access token valid for %d s; refresh in %d s",
+                (accessExpMs - now()) / 1000, delay / 1000));
+    }
+
+    private static boolean isRejected(Throwable t) {
+        return t instanceof ChatApi.HttpException
+                && (((ChatApi.HttpException) t).code == 401 || ((ChatApi.HttpException) t).code == 400);
+    }
+
+    // --------------------------------------------------------------------
+    // JWT helpers
+    // --------------------------------------------------------------------
+    /** `exp` claim in wall-clock ms; tokens we can't read get a short assumed lifetime */
+    static long expiresAt(String jwt) { return expiresAt(jwt, now()); }
+
+    static long expiresAt(String jwt, long nowMs) {
+        try {
+            String[] parts = jwt.split("\\.");
+            byte[]   json  = Base64.getUrlDecoder().decode(parts[1]);
+            JsonObject claims = JsonParser.parseString(new String(json, StandardCharsets.UTF_8)).getAsJsonObject();
+            return claims.get("exp").getAsLong() * 1000L;
+        } catch (Exception e) {
+            Log.w(TAG, "Can't read token expiry: " + e);
+            return nowMs + UNKNOWN_EXP_MS;
+        }
+    }
+
+    /** How long until the proactive refresh for a token expiring at `expMs`; 0 = now */
+    static long refreshDelayMs(long expMs, long nowMs) { return Math.max(0, expMs - REFRESH_MARGIN_MS - nowMs); }
+
+    private static boolean expired(String jwt) { return expiresAt(jwt) <= now(); }
+
+    private static long now() { return System.currentTimeMillis(); }
+}
@@ -0,0 +1,113 @@
+package com.example.buddychat.network.auth;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.security.keystore.KeyGenParameterSpec;
+import android.security.keystore.KeyProperties;
+import android.util.Base64;
+import android.util.Log;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.KeyStore;
+
+import javax.crypto.Cipher;
+import javax.crypto.KeyGenerator;
+import javax.crypto.SecretKey;
+import javax.crypto.spec.GCMParameterSpec;
+
+import com.example.buddychat.network.model.AuthResponse;
+
+// ====================================================================
+// Persists the access/refresh pair, encrypted with an Android Keystore key
+// ====================================================================
+/// The AES key never leaves the Keystore; SharedPreferences only ever see
+/// base64(iv | ciphertext). If the Keystore is unusable the store just
+/// behaves as empty and the app falls back to a normal login.
+public class TokenStore {
+    private static final String TAG       = "TokenStore";
+    private static final String PREFS     = "buddychat_auth";
+    private static final String KEY_ALIAS = "buddychat_tokens";
+    private static final String KEYSTORE  = "AndroidKeyStore";
+    private static final String CIPHER    = "AES/GCM/NoPadding";
+    private static final int    IV_BYTES  = 12;
+    private static final int    TAG_BITS  = 128;
+
+    private static final String K_ACCESS  = "access";
+    private static final String K_REFRESH = "refresh";
+
+    private final SharedPreferences prefs;
+
+    public TokenStore(Context ctx) {
+        this.prefs = ctx.getApplicationContext().getSharedPreferences(PREFS, Context.MODE_PRIVATE);
+    }
+
+    // --------------------------------------------------------------------
+    // Usage
+    // --------------------------------------------------------------------
+    /** Stored pair, or null if there is none (or it can't be decrypted) */
+    public AuthResponse load() {
+        String access  = decrypt(prefs.getString(K_ACCESS,  null));
+        String refresh = decrypt(prefs.getString(K_REFRESH, null));
+        if (access == null && refresh == null) return null;
+        AuthResponse ar = new AuthResponse();
+        ar.access  = access;
+        ar.refresh = refresh;
+        return ar;
+    }
+
+    public void save(AuthResponse tokens) {
+        String access  = encrypt(tokens.access );
+        String refresh = encrypt(tokens.refresh);
+        if (access == null || refresh == null) { clear(); return; }
+        prefs.edit().putString(K_ACCESS, access).putString(K_REFRESH, refresh).apply();
+    }
+
+    public void clear() { prefs.edit().clear().apply(); }
+
+    // --------------------------------------------------------------------
+    // Crypto helpers
+    // --------------------------------------------------------------------
+    private String encrypt(String plain) {
+        if (plain == null) return null;
+        try {
+            Cipher c = Cipher.getInstance(CIPHER);
+            c.init(Cipher.ENCRYPT_MODE, key());
+            byte[] iv  = c.getIV();
+            byte[] enc = c.doFinal(plain.getBytes(StandardCharsets.UTF_8));
+            ByteBuffer out = ByteBuffer.allocate(iv.length + enc.length).put(iv).put(enc);
+            return Base64.encodeToString(out.array(), Base64.NO_WRAP);
+        } catch (Exception e) {
+            Log.w(TAG, "Encrypt failed: " + e);
+            return null;
+        }
+    }
+
+    private String decrypt(String stored) {
+        if (stored == null) return null;
+        try {
+            byte[] raw = Base64.decode(stored, Base64.NO_WRAP);
+            Cipher c = Cipher.getInstance(CIPHER);
+            c.init(Cipher.DECRYPT_MODE, key(), new GCMParameterSpec(TAG_BITS, raw, 0, IV_BYTES));
+            return new String(c.doFinal(raw, IV_BYTES, raw.length - IV_BYTES), StandardCharsets.UTF_8);
+        } catch (Exception e) {
+            Log.w(TAG, "Decrypt failed (key reset?): " + e);
+            return null;
+        }
+    }
+
+    /** Get or lazily create the Keystore key */
+    private static SecretKey key() throws Exception {
+        KeyStore ks = KeyStore.getInstance(KEYSTORE);
+        ks.load(null);
+        if (ks.containsAlias(KEY_ALIAS)) return (SecretKey) ks.getKey(KEY_ALIAS, null);
+
+        KeyGenerator gen = KeyGenerator.getInstance(KeyProperties.KEY_ALGORITHM_AES, KEYSTORE);
+        gen.init(new KeyGenParameterSpec.Builder(KEY_ALIAS, KeyProperties.PURPOSE_ENCRYPT | KeyProperties.PURPOSE_DECRYPT)
+                .setBlockModes(KeyProperties.BLOCK_MODE_GCM)
+                .setEncryptionPaddings(KeyProperties.ENCRYPTION_PADDING_NONE)
+                .setKeySize(256)
+                .build());
+        return gen.generateKey();
+    }
+}
@@ -10,10 +10,19 @@ import android.widget.TextView;
 import android.widget.Toast;
 import androidx.core.util.Consumer;
 
-import org.json.JSONObject;
-import org.json.JSONException;
+import java.util.EnumSet;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
 
-// Text-To-Speech wrapper class
+import com.example.buddychat.cache.ResponseCache;
+import com.example.buddychat.journal.ConversationJournal;
+import com.example.buddychat.metrics.Tracer;
+import com.example.buddychat.metrics.TurnLatency;
+import com.example.buddychat.network.protocol.ChatCodec;
+import com.example.buddychat.network.protocol.ChatMessage;
+
+// Text-To-Speech pipeline (sentence chunks -> BuddyTTS)
+import com.example.buddychat.tts.SpeechPipeline;
 import com.example.buddychat.tts.BuddyTTS;
 
 // ====================================================================
@@ -23,6 +32,10 @@ import com.example.buddychat.tts.BuddyTTS;
 public class ChatUiCallbacks implements ChatListener {
     private static final String TAG  = "LISTENER";
 
+    // Frame types we act on; the codec skips everything else after reading "type"
+    public static final Set<ChatMessage.Type> WANTED = EnumSet.of(
+            ChatMessage.Type.LLM_RESPONSE, ChatMessage.Type.LLM_DELTA, ChatMessage.Type.LLM_DONE);
+
     // UI references that will be modified
     private final TextView statusView;
     private final Button   startEndBtn;
@@ -33,16 +46,67 @@ public class ChatUiCallbacks implements ChatListener {
     // Handler to hop onto UI thread.
     private final Handler ui = new Handler(Looper.getMainLooper());
 
-    public ChatUiCallbacks(TextView statusView, Button startEndBtn, Consumer<Boolean> runningStateSink) {
+    // Streaming replies (llm_delta ... llm_done)
+    private final ReplyAssembler reply         = new ReplyAssembler();
+    private final AtomicBoolean  renderPending = new AtomicBoolean(false);
+    private       int            renderedVersion = -1;  // UI thread only
+
+    // Speaks each sentence as soon as it is complete
+    private final SpeechPipeline speech = new SpeechPipeline();
+
+    // Transcript on flash (final replies + chat start/end)
+    private final ConversationJournal journal;
+
+    // Optional: fills from cacheable replies, and drops replies to turns answered locally
+    private volatile ResponseCache responses;
+
+    // Reply the user talked over (see cancelReply); the rest of it is dropped
+    private volatile String cancelledTrace;
+
+    // Start-to-first-reply latency (see markStart)
+    private volatile long    startNs;
+    private volatile boolean startWarm;
+
+    public ChatUiCallbacks(TextView statusView, Button startEndBtn, ConversationJournal journal, Consumer<Boolean> runningStateSink) {
         this.statusView        = statusView;
         this.startEndBtn       = startEndBtn;
+        this.journal           = journal;
         this.runningStateSink  = runningStateSink;
     }
 
+    public void setResponseCache(ResponseCache responses) { this.responses = responses; }
+
+    /** Reply from the on-device cache: spoken and shown like a server reply (any thread) */
+    public void answerLocally(String trace, String text) {
+        TurnLatency.answeredLocally();
+        speech.speakAll(text, trace);
+        journal.append(ConversationJournal.Kind.BOT, trace, text);
+        showReply(text, "local");
+    }
+
+    /** Barge-in: stop the reply to `trace` (speech is already stopped); later frames of it are dropped. Returns the trace used */
+    public String cancelReply(String trace) {
+        if (trace == null) trace = Tracer.latest();
+        cancelledTrace = trace;
+        String said = reply.isActive() ? reply.snapshot() : null;
+        reply.reset(); speech.reset();
+        BuddyTTS.cancel(trace);  // anything of it still queued
+        if (said != null) journal.append(ConversationJournal.Kind.BOT, trace, said + " [interrupted]");
+        Log.d(TAG, "Reply cancelled (" + trace + ")");
+        return trace;
+    }
+
+    /** Start was tapped; the first reply text that follows is logged as the greeting latency */
+    public void markStart(boolean warm) {
+        startWarm = warm;
+        startNs   = System.nanoTime();
+    }
+
     // --------------------------------------------------------------------
     // ChatListener
     // --------------------------------------------------------------------
     @Override public void onOpen() {
+        journal.append(ConversationJournal.Kind.CHAT_START, null, "");
         ui.post(() -> {
             runningStateSink.accept(true);  // tells MainActivity
             startEndBtn.setText(R.string.end_chat);
@@ -54,30 +118,112 @@ public class ChatUiCallbacks implements ChatListener {
     @Override public void onMessage(String raw) {
         try {
             // Process the data we received
-            JSONObject obj  = new JSONObject(raw);
-            String type     = obj.optString("type", "");
-            if (!"llm_response".equals(type)) return;     // ignore other message kinds
-
-            final String body = obj.optString("data", "(empty)");
-            final String time = obj.optString("time", "");
-
-            // Hop to UI thread to do actions
-            ui.post(() -> {
-                // Log the message
-                Log.d(TAG, String.format("%s: %s", time, body));
-                statusView.setText(String.format("Buddy: %s (%s)", body, time));
+            ChatMessage msg = ChatCodec.decode(raw, WANTED);
+            if (msg != null) dispatch(msg);     // null: some other message kind
 
-                // Fire off text-to-speech for this message
-                BuddyTTS.speak(body);
-            });
-
-        } catch (JSONException e) {
+        } catch (ChatCodec.MalformedFrameException e) {
             ui.post(() -> Toast.makeText(
                     startEndBtn.getContext(), "Bad JSON: " + e.getMessage(), Toast.LENGTH_SHORT).show());
         }
     }
 
+    /** Binary frames arrive already decoded */
+    @Override public void onMessage(ChatMessage msg) {
+        if (WANTED.contains(msg.type)) dispatch(msg);
+    }
+
+    // --------------------------------------------------------------------
+    // Message kinds
+    // --------------------------------------------------------------------
+    private void dispatch(ChatMessage msg) {
+        ResponseCache rc = responses;
+        if (rc != null && rc.answeredLocally(msg.trace)) {
+            Log.d(TAG, "Dropping server reply to a locally answered turn (" + msg.trace + ")");
+            return;
+        }
+        long t0 = startNs;
+        if (t0 != 0) {
+            startNs = 0;
+            Log.i("LATENCY", String.format("Start -> first reply: %d ms (%s)",
+                    (System.nanoTime() - t0) / 1_000_000, startWarm ? "warm standby" : "cold connect"));
+        }
+        if (msg.type == ChatMessage.Type.LLM_RESPONSE || msg.type == ChatMessage.Type.LLM_DELTA) {
+            TurnLatency.replyReceived();
+            Tracer.reply(msg.trace);
+        }
+        if (msg.trace == null) msg.trace = Tracer.latest();  // server didn't echo it: assume the latest turn
+        if (msg.trace != null && msg.trace.equals(cancelledTrace)) {
+            Log.d(TAG, "Dropping " + msg.type.wire + " of an interrupted reply (" + msg.trace + ")");
+            return;
+        }
+        switch (msg.type) {
+            case LLM_DELTA   : onDelta(msg);    break;
+            case LLM_DONE    : onDone(msg);     break;
+            case LLM_RESPONSE: onResponse(msg); break;
+            default          : break;
+        }
+    }
+
+    /** Complete (non-streamed) reply */
+    private void onResponse(ChatMessage msg) {
+        final String body = msg.dataOr("(empty)");
+        final String time = msg.timeOr("");
+        reply.reset();  // a full reply supersedes any half-streamed one
+        speech.speakAll(body, msg.trace);
+        journal.append(ConversationJournal.Kind.BOT, msg.trace, body);
+        if (responses != null) responses.offer(msg.trace, body, msg.cache);
+        showReply(body, time);
+    }
+
+    /** One chunk of a streamed reply; redraw at most once per UI frame */
+    private void onDelta(ChatMessage msg) {
+        final String delta = msg.dataOr("");
+        if (!reply.isActive()) speech.reset();
+        reply.append(msg.id, delta);
+        speech.feed(delta, msg.trace);
+        if (renderPending.compareAndSet(false, true)) { ui.post(this::renderPartial); }
+    }
+
+    /** End of a streamed reply; "data" is optional and, if present, is the full text */
+    private void onDone(ChatMessage msg) {
+        final boolean streamed = reply.isActive();
+        final String  body     = reply.finish(msg.id, msg.dataOr(""));
+        final String  time     = msg.timeOr("");
+        if (body == null) { Log.d(TAG, "Ignoring llm_done for superseded reply " + msg.id); return; }
+
+        // Deltas were already spoken sentence by sentence; otherwise speak it all now
+        if (streamed) { speech.finish(msg.trace);         }
+        else          { speech.speakAll(body, msg.trace); }
+        journal.append(ConversationJournal.Kind.BOT, msg.trace, body);
+        if (responses != null) responses.offer(msg.trace, body, msg.cache);
+
+        showReply(body.isEmpty() ? "(empty)" : body, time);
+    }
+
+    /** UI thread: draw whatever has streamed in so far */
+    private void renderPartial() {
+        renderPending.set(false);
+        if (!reply.isActive()) return;                    // finished/reset while we were queued
+        int version = reply.version();
+        if (version == renderedVersion) return;
+        renderedVersion = version;
+        statusView.setText(String.format("Buddy: %s...", reply.snapshot()));
+    }
+
+    /** Final text for a turn (speech is handled by the pipeline) */
+    private void showReply(String body, String time) {
+        // Hop to UI thread to do actions
+        ui.post(() -> {
+            // Log the message
+            Log.d(TAG, String.format("%s: %s", time, body));
+            statusView.setText(String.format("Buddy: %s (%s)", body, time));
+        });
+    }
+
     @Override public void onClosed() {
+        startNs = 0;
+        journal.append(ConversationJournal.Kind.CHAT_END, null, "");
+        reply.reset(); speech.reset();
         ui.post(() -> {
             runningStateSink.accept(false);  // tells MainActivity
             startEndBtn.setText(R.string.start_chat);
@@ -87,10 +233,29 @@ public class ChatUiCallbacks implements ChatListener {
     }
 
     @Override public void onError(Throwable t) {
+        reply.reset(); speech.reset();
         ui.post(() -> {
             String wsError = String.format("WS error: %s", t.getMessage());
             Toast.makeText(startEndBtn.getContext(), wsError, Toast.LENGTH_LONG).show();
             Log.d(TAG, wsError);
         });
     }
+
+    /** SLOW: the server is up but late; LOST: the network is gone (a reconnect follows) */
+    @Override public void onLinkQuality(LinkQuality quality, long rttMs) {
+        ui.post(() -> {
+            String msg = String.format("Link %s (rtt %s)", quality, rttMs < 0 ? "?" : rttMs + " ms");
+            if (quality == LinkQuality.SLOW) Toast.makeText(startEndBtn.getContext(), "Server is slow to answer...", Toast.LENGTH_SHORT).show();
+            Log.d(TAG, msg);
+        });
+    }
+
+    @Override public void onReconnecting(int attempt, long delayMs) {
+        reply.reset(); speech.reset();  // the half-streamed reply died with the socket
+        ui.post(() -> {
+            String msg = String.format("Connection lost, reconnecting (try %d)...", attempt);
+            if (attempt == 1) Toast.makeText(startEndBtn.getContext(), msg, Toast.LENGTH_SHORT).show();
+            Log.d(TAG, msg);
+        });
+    }
 }
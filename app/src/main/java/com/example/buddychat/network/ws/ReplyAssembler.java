@@ -0,0 +1,65 @@
+package com.example.buddychat.network.ws;
+
+// ====================================================================
+// Assembles a streamed LLM reply out of llm_delta frames
+// ====================================================================
+/// Deltas arrive on the OkHttp reader thread, the UI reads snapshots on
+/// the main thread. Text is appended into one growing buffer, so a long
+/// answer costs amortized O(n) instead of rebuilding the string per chunk.
+public class ReplyAssembler {
+    private static final int INITIAL_CAPACITY = 512;
+
+    private final StringBuilder text = new StringBuilder(INITIAL_CAPACITY);
+    private       String        replyId;        // id of the reply being streamed (may be null)
+    private       boolean       active;         // true between the first delta and llm_done
+    private       int           version;        // bumped on every append; lets the UI skip no-op redraws
+
+    // --------------------------------------------------------------------
+    // Writer side (socket thread)
+    // --------------------------------------------------------------------
+    /** Append one delta. A delta for a different reply id starts a new reply. */
+    public synchronized void append(String id, CharSequence delta) {
+        if (!active || (id != null && !id.equals(replyId))) { begin(id); }
+        text.append(delta);
+        version++;
+    }
+
+    /**
+     * Mark the reply complete; returns the full text and resets for the next one.
+     * A late llm_done for a reply that a newer one superseded returns null and
+     * leaves the newer one streaming.
+     */
+    public synchronized String finish(String id, String finalText) {
+        if (active && id != null && replyId != null && !id.equals(replyId)) return null;
+        // The server may send the authoritative full text with llm_done; prefer it
+        String full = (finalText != null && !finalText.isEmpty()) ? finalText : text.toString();
+        active  = false;
+        replyId = null;
+        text.setLength(0);
+        version++;
+        return full;
+    }
+
+    /** Drop whatever has been streamed so far (chat ended, socket dropped...) */
+    public synchronized void reset() {
+        active  = false;
+        replyId = null;
+        text.setLength(0);
+        version++;
+    }
+
+    // --------------------------------------------------------------------
+    // Reader side (UI thread)
+    // --------------------------------------------------------------------
+    public synchronized boolean isActive() { return active;  }
+    public synchronized int     version () { return version; }
+
+    /** Current partial text; only called once per frame by the UI, not per delta. */
+    public synchronized String snapshot() { return text.toString(); }
+
+    private void begin(String id) {
+        text.setLength(0);
+        replyId = id;
+        active  = true;
+    }
+}
@@ -0,0 +1,89 @@
+package com.example.buddychat.speech;
+
+import android.content.res.AssetManager;
+import android.util.Log;
+
+import java.util.Locale;
+
+import com.bfr.buddy.speech.shared.ISTTCallback;
+import com.bfr.buddy.speech.shared.ITTSCallback;
+import com.bfr.buddy.speech.shared.STTResultsData;
+import com.bfr.buddysdk.BuddySDK;
+import com.bfr.buddysdk.services.speech.STTTask;
+
+import com.example.buddychat.SpeechToTextService;
+import com.example.buddychat.stt.Hypothesis;
+import com.example.buddychat.tts.SpeechScheduler;
+
+// ====================================================================
+// SpeechBackend on the robot: BuddySDK.Speech
+// ====================================================================
+public class BuddySdkBackend implements SpeechBackend {
+    private static final String TAG = "BuddySdkBackend";
+
+    // --------------------------------------------------------------------
+    // STT
+    // --------------------------------------------------------------------
+    @Override
+    public SttTask createSttTask(SpeechToTextService.SttEngineType engine, Locale locale, String fcfAsset, AssetManager assets) {
+        STTTask task;
+        switch (engine) {
+            case GOOGLE             : task = BuddySDK.Speech.createGoogleSTTTask(locale); break;
+            case CERENCE_FREE_SPEECH: task = BuddySDK.Speech.createCerenceFreeSpeechTask(locale); break;
+            case CERENCE_LOCAL_FCF  : task = BuddySDK.Speech.createCerenceTaskFromAssets(locale, fcfAsset, assets); break;
+            default                 : return null;
+        }
+        return task == null ? null : new SdkTask(task);
+    }
+
+    private static final class SdkTask implements SttTask {
+        private final STTTask task;
+        SdkTask(STTTask task) { this.task = task; }
+
+        @Override public void initialize() { task.initialize(); }
+        @Override public void pause     () { task.pause();      }
+        @Override public void stop      () { task.stop();       }
+
+        @Override public void start(boolean continuous, Listener l) {
+            task.start(continuous, new ISTTCallback.Stub() {
+                @Override public void onSuccess(STTResultsData res) { l.onResults(Hypothesis.fromResults(res)); }
+                @Override public void onError  (String e)           { l.onError(e);                             }
+            });
+        }
+    }
+
+    // --------------------------------------------------------------------
+    // TTS
+    // --------------------------------------------------------------------
+    /// ReadSpeaker; each item gets its own callback so a stopped one can't advance the queue
+    private final SpeechScheduler.Speaker speaker = new SpeechScheduler.Speaker() {
+        @Override public void speak(String text, SpeechScheduler.Done done) {
+            BuddySDK.Speech.startSpeaking(text, new ITTSCallback.Stub() {
+                @Override public void onSuccess(String s) { Log.d(TAG, s); done.finished(true,  s); }
+                @Override public void onPause  ()         {                                         }
+                @Override public void onResume ()         {                                         }
+                @Override public void onError  (String s) {                  done.finished(false, s); }
+            });
+        }
+        @Override public void stop() { if (isReadyToSpeak()) BuddySDK.Speech.stopSpeaking(); }
+    };
+
+    @Override public SpeechScheduler.Speaker speaker() { return speaker; }
+
+    @Override
+    public boolean isReadyToSpeak() {
+        // If the SDK class itself is missing, or the service isn't bound yet, return false
+        try                         { return BuddySDK.Speech != null && BuddySDK.Speech.isReadyToSpeak(); }
+        catch (RuntimeException ex) { Log.w(TAG, "Buddy speech not ready: " + ex.getMessage()); return false; }
+    }
+
+    @Override
+    public void loadVoice(String voice) {
+        BuddySDK.Speech.loadReadSpeaker();
+        BuddySDK.Speech.setSpeakerVoice(voice);
+    }
+
+    @Override public void setPitch (int pitch ) { BuddySDK.Speech.setSpeakerPitch (pitch ); }
+    @Override public void setSpeed (int speed ) { BuddySDK.Speech.setSpeakerSpeed (speed ); }
+    @Override public void setVolume(int volume) { BuddySDK.Speech.setSpeakerVolume(volume); }
+}
@@ -0,0 +1,260 @@
+package com.example.buddychat.speech;
+
+import android.content.res.AssetManager;
+import android.util.Log;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+import com.example.buddychat.SpeechToTextService;
+import com.example.buddychat.stt.Hypothesis;
+import com.example.buddychat.tts.SpeechScheduler;
+
+// ====================================================================
+// Deterministic stand-in for the robot's speech stack
+// ====================================================================
+/// STT plays a script: each step is a result (or an error) delivered a
+/// fixed delay after the previous one, starting when a task is started.
+/// Single-shot tasks deliver one step per start, continuous ones keep
+/// going until the script runs out. Partial steps (interim hypotheses)
+/// don't end a start; they lead up to the result that follows them. An engine marked broken errors on
+/// every start instead, which is enough to exercise failover.
+///
+/// TTS "speaks" for speakBaseMs + speakMsPerChar per character and then
+/// reports success; stop() drops the pending completion like the SDK does.
+/// With setEcho(true) everything spoken is also heard by the listening
+/// task half-way through, the way the robot's microphone picks up its
+/// own voice.
+///
+/// Everything runs on one scheduler thread, in order; events() is the log
+/// of what happened with times relative to construction.
+public class SimulatedSpeechBackend implements SpeechBackend {
+    private static final String TAG = "SimSpeech";
+
+    private static final class Step {
+        final long             afterMs;
+        final List<Hypothesis> nbest;   // null = error
+        final String           error;
+        final boolean          partial; // nbest.get(0) is an interim hypothesis
+        Step(long afterMs, List<Hypothesis> nbest, String error)                  { this(afterMs, nbest, error, false); }
+        Step(long afterMs, List<Hypothesis> nbest, String error, boolean partial) {
+            this.afterMs = afterMs; this.nbest = nbest; this.error = error; this.partial = partial;
+        }
+    }
+
+    private final long speakBaseMs;
+    private final long speakMsPerChar;
+    private final long t0Ms = now();
+
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "SimSpeech");
+        t.setDaemon(true);
+        return t;
+    });
+
+    // All of the below are guarded by `this`
+    private final ArrayDeque<Step>   script  = new ArrayDeque<>();
+    private final Set<SpeechToTextService.SttEngineType> broken = EnumSet.noneOf(SpeechToTextService.SttEngineType.class);
+    private final List<String>       events  = new ArrayList<>();
+    private final List<String>       spoken  = new ArrayList<>();
+    private SimTask                  listening;
+    private ScheduledFuture<?>       speaking;
+    private boolean                  echo;
+
+    public SimulatedSpeechBackend(long speakBaseMs, long speakMsPerChar) {
+        this.speakBaseMs    = speakBaseMs;
+        this.speakMsPerChar = speakMsPerChar;
+    }
+
+    /** 200 ms plus ~65 ms per character (about 150 words per minute) */
+    public static SimulatedSpeechBackend defaults() { return new SimulatedSpeechBackend(200, 65); }
+
+    // --------------------------------------------------------------------
+    // Script
+    // --------------------------------------------------------------------
+    /** The user says `text` afterMs after the previous step */
+    public SimulatedSpeechBackend say(long afterMs, String text, float confidence) {
+        return nbest(afterMs, new Hypothesis(text, confidence, null));
+    }
+
+    /** A result with alternates, best first */
+    public synchronized SimulatedSpeechBackend nbest(long afterMs, Hypothesis... nbest) {
+        script.add(new Step(afterMs, Arrays.asList(nbest), null));
+        return this;
+    }
+
+    /** Interim hypothesis of the utterance being said, afterMs after the previous step */
+    public synchronized SimulatedSpeechBackend partial(long afterMs, String text, float confidence) {
+        script.add(new Step(afterMs, Collections.singletonList(new Hypothesis(text, confidence, null)), null, true));
+        return this;
+    }
+
+    /** The engine reports `error` afterMs after the previous step */
+    public synchronized SimulatedSpeechBackend fail(long afterMs, String error) {
+        script.add(new Step(afterMs, null, error));
+        return this;
+    }
+
+    /** A broken engine errors on every start (e.g. the cloud being unreachable) */
+    public synchronized void setBroken(SpeechToTextService.SttEngineType engine, boolean isBroken) {
+        if (isBroken) broken.add(engine); else broken.remove(engine);
+    }
+
+    /** Let the listening task hear what is spoken */
+    public synchronized void setEcho(boolean echo) { this.echo = echo; }
+
+    public synchronized int          remainingSteps() { return script.size(); }
+    public synchronized boolean      isSpeaking()     { return speaking != null; }
+    public synchronized List<String> spoken()         { return new ArrayList<>(spoken); }
+    public synchronized List<String> events()         { return Collections.unmodifiableList(new ArrayList<>(events)); }
+
+    public void shutdown() { scheduler.shutdownNow(); }
+
+    // --------------------------------------------------------------------
+    // SpeechBackend
+    // --------------------------------------------------------------------
+    @Override
+    public SttTask createSttTask(SpeechToTextService.SttEngineType engine, Locale locale, String fcfAsset, AssetManager assets) {
+        return new SimTask(engine);
+    }
+
+    @Override public SpeechScheduler.Speaker speaker()        { return speaker; }
+    @Override public boolean                 isReadyToSpeak() { return true;    }
+    @Override public void                    loadVoice(String voice) { log("tts voice " + voice); }
+    @Override public void                    setPitch (int pitch )   { log("tts pitch "  + pitch ); }
+    @Override public void                    setSpeed (int speed )   { log("tts speed "  + speed ); }
+    @Override public void                    setVolume(int volume)   { log("tts volume " + volume); }
+
+    private final SpeechScheduler.Speaker speaker = new SpeechScheduler.Speaker() {
+        @Override public void speak(String text, SpeechScheduler.Done done) {
+            long ms = speakBaseMs + speakMsPerChar * text.length();
+            synchronized (SimulatedSpeechBackend.this) {
+                spoken.add(text);
+                log("tts start (" + ms + " ms): " + text);
+                if (echo && listening != null) {
+                    SimTask heard = listening;
+                    scheduler.schedule(() -> heard.deliver(Collections.singletonList(new Hypothesis(text, 0.8f, null)), null),
+                            ms / 2, TimeUnit.MILLISECONDS);
+                }
+                ScheduledFuture<?>[] self = new ScheduledFuture<?>[1];
+                self[0] = scheduler.schedule(() -> {
+                    synchronized (SimulatedSpeechBackend.this) {
+                        if (speaking != self[0]) return;   // stopped
+                        speaking = null;
+                        log("tts done");
+                    }
+                    done.finished(true, "done");
+                }, ms, TimeUnit.MILLISECONDS);
+                speaking = self[0];
+            }
+        }
+
+        @Override public void stop() {
+            synchronized (SimulatedSpeechBackend.this) {
+                if (speaking == null) return;
+                speaking.cancel(false);
+                speaking = null;
+                log("tts stopped");
+            }
+        }
+    };
+
+    // --------------------------------------------------------------------
+    // STT task
+    // --------------------------------------------------------------------
+    private final class SimTask implements SttTask {
+        private final SpeechToTextService.SttEngineType engine;
+        private Listener           listener;
+        private boolean            continuous;
+        private ScheduledFuture<?> next;
+
+        SimTask(SpeechToTextService.SttEngineType engine) { this.engine = engine; }
+
+        @Override public void initialize() { log("stt " + engine + " initialized"); }
+        @Override public void pause     () { halt("paused");  }
+        @Override public void stop      () { halt("stopped"); }
+
+        @Override public void start(boolean continuous, Listener l) {
+            synchronized (SimulatedSpeechBackend.this) {
+                this.listener   = l;
+                this.continuous = continuous;
+                listening       = this;
+                log("stt " + engine + " started" + (continuous ? " (continuous)" : ""));
+                if (broken.contains(engine)) {
+                    scheduler.execute(() -> deliver(null, engine + " unreachable"));
+                    return;
+                }
+                scheduleNext();
+            }
+        }
+
+        /** Holding the backend's lock */
+        private void scheduleNext() {
+            Step s = script.peek();
+            if (s == null) return;
+            next = scheduler.schedule(() -> {
+                Step step;
+                synchronized (SimulatedSpeechBackend.this) {
+                    if (listening != this || script.peek() != s) return;   // paused, or another task took it
+                    step = script.poll();
+                }
+                if (step.partial) deliverPartial(step.nbest.get(0));
+                else              deliver(step.nbest, step.error);
+                synchronized (SimulatedSpeechBackend.this) {
+                    if ((continuous || step.partial) && listening == this) scheduleNext();
+                }
+            }, s.afterMs, TimeUnit.MILLISECONDS);
+        }
+
+        void deliver(List<Hypothesis> nbest, String error) {
+            Listener l;
+            synchronized (SimulatedSpeechBackend.this) {
+                if (listening != this) return;
+                l = listener;
+                if (nbest != null) log("stt " + engine + " heard: " + nbest.get(0));
+                else               log("stt " + engine + " error: " + error);
+                if (!continuous || nbest == null) listening = null;   // single-shot done / engine gave up
+            }
+            if (nbest != null) l.onResults(nbest); else l.onError(error);
+        }
+
+        void deliverPartial(Hypothesis h) {
+            Listener l;
+            synchronized (SimulatedSpeechBackend.this) {
+                if (listening != this) return;
+                l = listener;
+                log("stt " + engine + " partial: " + h);
+            }
+            l.onPartial(h.utterance, h.confidence);
+        }
+
+        private void halt(String how) {
+            synchronized (SimulatedSpeechBackend.this) {
+                if (next != null) next.cancel(false);
+                if (listening == this) listening = null;
+                log("stt " + engine + " " + how);
+            }
+        }
+    }
+
+    // --------------------------------------------------------------------
+    // Internal
+    // --------------------------------------------------------------------
+    private synchronized void log(String event) {
+        String line = String.format(Locale.US, "%6d %s", now() - t0Ms, event);
+        events.add(line);
+        Log.d(TAG, line);
+    }
+
+    private static long now() { return System.nanoTime() / 1_000_000; }
+}
@@ -0,0 +1,49 @@
+package com.example.buddychat.speech;
+
+import android.content.res.AssetManager;
+
+import java.util.List;
+import java.util.Locale;
+
+import com.example.buddychat.SpeechToTextService;
+import com.example.buddychat.stt.Hypothesis;
+import com.example.buddychat.tts.SpeechScheduler;
+
+// ====================================================================
+// Everything the app needs from a speech stack
+// ====================================================================
+/// The only place that talks to BuddySDK.Speech is BuddySdkBackend; the
+/// STT engine manager and BuddyTTS go through SpeechBackends.get(), so a
+/// SimulatedSpeechBackend can stand in off the robot (emulator, JVM).
+public interface SpeechBackend {
+
+    /** One recognition engine; results come back as N-best lists, best first */
+    interface SttTask {
+        interface Listener {
+            void onResults(List<Hypothesis> nbest);   // may be empty ("nothing recognized")
+            void onError  (String error);
+            /** Interim hypothesis of the utterance in progress; the BuddySDK engines have none */
+            default void onPartial(String utterance, float confidence) {}
+        }
+        void initialize();
+        void start(boolean continuous, Listener listener);
+        void pause();
+        void stop();
+    }
+
+    /** Task for `engine`, or null if it can't run here; may throw like the SDK does */
+    SttTask createSttTask(SpeechToTextService.SttEngineType engine, Locale locale, String fcfAsset, AssetManager assets);
+
+    /** What speaks for SpeechScheduler */
+    SpeechScheduler.Speaker speaker();
+
+    boolean isReadyToSpeak();
+
+    /** Load the TTS engine with a voice (async on the robot; cheap to call again) */
+    void loadVoice(String voice);
+
+    /** Voice settings, in the SDK's units */
+    void setPitch (int pitch );
+    void setSpeed (int speed );
+    void setVolume(int volume);
+}
@@ -0,0 +1,22 @@
+package com.example.buddychat.speech;
+
+// ====================================================================
+// The process-wide SpeechBackend (BuddySDK unless something else is installed)
+// ====================================================================
+public final class SpeechBackends {
+    private static volatile SpeechBackend current;
+
+    private SpeechBackends() {}  // static-only class
+
+    public static SpeechBackend get() {
+        SpeechBackend b = current;
+        if (b != null) return b;
+        synchronized (SpeechBackends.class) {
+            if (current == null) current = new BuddySdkBackend();
+            return current;
+        }
+    }
+
+    /** Swap the backend, e.g. for SimulatedSpeechBackend; do it before BuddySTT.init / BuddyTTS.init */
+    public static void install(SpeechBackend backend) { current = backend; }
+}
@@ -0,0 +1,209 @@
+package com.example.buddychat.startup;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+// ====================================================================
+// Runs the app's startup steps as a dependency graph
+// ====================================================================
+/// Each step names the steps it depends on and starts as soon as they are
+/// all done, so independent work (network login, SDK speech init...) runs
+/// at the same time. Steps are asynchronous: they get a Completion and
+/// call it from whatever callback finishes them. "Gating" steps decide
+/// readiness; the rest (e.g. profile, health) still run and are timed but
+/// don't hold up the UI. External steps are finished from outside (e.g.
+/// onSDKReady) and may complete before start() is even called.
+///
+/// The background pool is shut down once the graph has settled: nothing
+/// running and nothing left that could start.
+public class StartupOrchestrator {
+    // --------------------------------------------------------------------
+    // Callbacks
+    // --------------------------------------------------------------------
+    public interface Step       { void run(Completion done); }
+    public interface Completion { void success(); void failure(Throwable t); }
+
+    public interface Listener {
+        void onStepDone(String step, long elapsedMs, Throwable error);  // error is null on success
+        void onReady(Report report);                                    // all gating steps succeeded
+        void onFailed(String step, Throwable error);                    // a gating step failed
+    }
+
+    /** Timings of one startup, in ms since the orchestrator was created */
+    public static class Report {
+        public final Map<String, long[]> steps = new LinkedHashMap<>();  // name -> {startMs, endMs}
+        public long timeToInteractiveMs;
+
+        @Override public String toString() {
+            StringBuilder sb = new StringBuilder(String.format(Locale.US, "TTI %d ms", timeToInteractiveMs));
+            for (Map.Entry<String, long[]> e : steps.entrySet()) {
+                long[] t = e.getValue();
+                sb.append(String.format(Locale.US, " | %s %d-%d (%d ms)", e.getKey(), t[0], t[1], t[1] - t[0]));
+            }
+            return sb.toString();
+        }
+    }
+
+    // --------------------------------------------------------------------
+    // Internal
+    // --------------------------------------------------------------------
+    private enum State { WAITING, RUNNING, DONE, FAILED }
+
+    private static final class Node {
+        final String   name;
+        final Step     step;       // null for external steps
+        final Executor executor;
+        final String[] deps;
+        final boolean  gating;
+        State     state = State.WAITING;
+        long      startNs, endNs;
+        Throwable error;     // why it failed, kept for an external step that fails before start()
+        Node(String name, Step step, Executor executor, String[] deps, boolean gating) {
+            this.name = name; this.step = step; this.executor = executor; this.deps = deps; this.gating = gating;
+        }
+    }
+
+    private final long              t0    = System.nanoTime();
+    private final Map<String, Node> nodes = new LinkedHashMap<>();
+    private final ExecutorService   pool  = Executors.newFixedThreadPool(2, r -> {
+        Thread t = new Thread(r, "Startup");
+        t.setDaemon(true);
+        return t;
+    });
+    private Listener listener;
+    private boolean  started, finished;
+
+    // --------------------------------------------------------------------
+    // Graph definition
+    // --------------------------------------------------------------------
+    /** Step run on the orchestrator's background pool */
+    public StartupOrchestrator add(String name, boolean gating, Step step, String... deps) {
+        return add(name, gating, pool, step, deps);
+    }
+
+    /** Step run on a specific executor (e.g. the UI thread for SDK calls) */
+    public synchronized StartupOrchestrator add(String name, boolean gating, Executor executor, Step step, String... deps) {
+        for (String d : deps) {
+            if (!nodes.containsKey(d)) throw new IllegalArgumentException(name + " depends on unknown step " + d);
+        }
+        nodes.put(name, new Node(name, step, executor, deps, gating));
+        return this;
+    }
+
+    /** Step completed from outside via complete()/fail() */
+    public StartupOrchestrator addExternal(String name, boolean gating) {
+        return add(name, gating, (Executor) null, null);
+    }
+
+    // --------------------------------------------------------------------
+    // Running
+    // --------------------------------------------------------------------
+    public void start(Listener l) {
+        List<Node> early = new ArrayList<>();   // external steps that finished before start(), replayed below
+        synchronized (this) {
+            listener = l;
+            started  = true;   // from here on finish() reports for itself
+            for (Node n : nodes.values()) {
+                if (n.step != null) continue;
+                if (n.state == State.WAITING) { n.state = State.RUNNING; n.startNs = t0; }
+                else                          early.add(n);
+            }
+        }
+        for (Node n : early) report(n, n.error);
+        launchReady();
+    }
+
+    public void complete(String name)          { finish(name, null); }
+    public void fail    (String name, Throwable t) { finish(name, t); }
+
+    /** The background pool was shut down: the graph has settled (tests) */
+    synchronized boolean settled() { return pool.isShutdown(); }
+
+    /** Start every waiting step whose dependencies are all done */
+    private void launchReady() {
+        List<Node> toRun = new ArrayList<>();
+        synchronized (this) {
+            if (!started) return;
+            for (Node n : nodes.values()) {
+                if (n.state != State.WAITING || n.step == null) continue;
+                boolean ok = true;
+                for (String d : n.deps) ok &= nodes.get(d).state == State.DONE;
+                if (ok) { n.state = State.RUNNING; n.startNs = System.nanoTime(); toRun.add(n); }
+            }
+            if (toRun.isEmpty() && !anyRunning()) pool.shutdown();   // settled: no step can finish or start any more
+        }
+        for (Node n : toRun) {
+            n.executor.execute(() -> {
+                try { n.step.run(completionFor(n.name)); }
+                catch (RuntimeException e) { finish(n.name, e); }
+            });
+        }
+    }
+
+    private Completion completionFor(String name) {
+        return new Completion() {
+            @Override public void success()            { finish(name, null); }
+            @Override public void failure(Throwable t) { finish(name, t);    }
+        };
+    }
+
+    private void finish(String name, Throwable error) {
+        Node n;
+        synchronized (this) {
+            n = nodes.get(name);
+            if (n == null || n.state == State.DONE || n.state == State.FAILED) return;  // finish once
+            n.state = error == null ? State.DONE : State.FAILED;
+            n.endNs = System.nanoTime();
+            n.error = error;
+            if (n.step == null && n.startNs == 0) n.startNs = t0;
+            if (!started) return;  // external step done early; start() reports it
+        }
+        report(n, error);
+        launchReady();
+    }
+
+    private void report(Node n, Throwable error) {
+        Listener l;
+        Report   ready = null;
+        String   failedGate = null;
+        synchronized (this) {
+            l = listener;
+            if (!finished) {
+                if (n.gating && n.state == State.FAILED) { finished = true; failedGate = n.name; }
+                else if (allGatingDone())               { finished = true; ready = buildReport(); }
+            }
+        }
+        if (l == null) return;
+        l.onStepDone(n.name, ms(n.endNs - n.startNs), error);
+        if (failedGate != null) l.onFailed(failedGate, error);
+        if (ready      != null) l.onReady(ready);
+    }
+
+    private boolean allGatingDone() {
+        for (Node n : nodes.values()) if (n.gating && n.state != State.DONE) return false;
+        return true;
+    }
+
+    private boolean anyRunning() {
+        for (Node n : nodes.values()) if (n.state == State.RUNNING) return true;
+        return false;
+    }
+
+    private Report buildReport() {
+        Report r = new Report();
+        for (Node n : nodes.values()) {
+            if (n.endNs == 0) continue;
+            r.steps.put(n.name, new long[] { ms(n.startNs - t0), ms(n.endNs - t0) });
+        }
+        r.timeToInteractiveMs = ms(System.nanoTime() - t0);
+        return r;
+    }
+
+    private static long ms(long ns) { return ns / 1_000_000; }
+}
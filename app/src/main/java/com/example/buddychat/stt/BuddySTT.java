@@ -10,20 +10,30 @@ import androidx.annotation.NonNull;
 import androidx.core.app.ActivityCompat;
 import androidx.core.content.ContextCompat;
 
-import com.bfr.buddy.speech.shared.ISTTCallback;
-import com.bfr.buddy.speech.shared.STTResult;
-import com.bfr.buddy.speech.shared.STTResultsData;
-import com.bfr.buddysdk.BuddySDK;
-import com.bfr.buddysdk.services.speech.STTTask;
+import com.example.buddychat.BuddySpeechToTextService;
+import com.example.buddychat.SpeechToTextService;
+import com.example.buddychat.SttListener;
 
+import java.util.List;
 import java.util.Locale;
+import java.util.function.LongSupplier;
 
 // ====================================================================
 // Wrapper class around BuddySDK.Speech for Speech-to-Text
 // ====================================================================
+/// Static front for the app; the engines themselves are managed by
+/// BuddySpeechToTextService (one preferred engine, automatic failover to
+/// Cerence FCF when a cloud engine degrades, see there).
 public class BuddySTT {
     // Public choices
-    public enum Engine { GOOGLE, CERENCE_FREE, CERENCE_FCF }
+    public enum Engine {
+        GOOGLE      (SpeechToTextService.SttEngineType.GOOGLE),
+        CERENCE_FREE(SpeechToTextService.SttEngineType.CERENCE_FREE_SPEECH),
+        CERENCE_FCF (SpeechToTextService.SttEngineType.CERENCE_LOCAL_FCF);
+
+        final SpeechToTextService.SttEngineType type;
+        Engine(SpeechToTextService.SttEngineType type) { this.type = type; }
+    }
 
     // --------------------------------------------------------------------
     // Internal
@@ -32,10 +42,13 @@ public class BuddySTT {
     private static final int      REQ_PERM  = 9001;
     private static final String[] MIC_PERMS = { Manifest.permission.RECORD_AUDIO };
 
-    private static boolean available;
-    private static STTTask task;
-    private static boolean continuous;
-    private static Context ctx; // ---- Memory leak... Idk how to fix ----
+    private static volatile boolean                  available;
+    private static          BuddySpeechToTextService service;
+    private static          boolean                  continuous;
+    private static          Context                  ctx; // ---- Memory leak... Idk how to fix ----
+
+    /// Whoever called start() last; the service keeps a single listener that forwards here
+    private static volatile STTListener target;
 
     private BuddySTT() {}
 
@@ -49,26 +62,19 @@ public class BuddySTT {
 
         // Guard for BuddyRobot hardware
         try {
-            // We can delete the French optional
-            switch (engine) {
-                case GOOGLE       : task = BuddySDK.Speech.createGoogleSTTTask(locale); break;
-                case CERENCE_FREE : task = BuddySDK.Speech.createCerenceFreeSpeechTask(locale); break;
-                case CERENCE_FCF  :
-                    String fcf = locale == Locale.ENGLISH ? "audio_en.fcf" : "audio_fr.fcf";
-                    task = BuddySDK.Speech.createCerenceTaskFromAssets(locale, fcf, ctx.getAssets());
-                    break;
-            }
-
-            // Success, finish initializing
-            task.initialize();
-            available = true;
-            Log.d(TAG, "Buddy STT initialised with " + engine);
+            service = new BuddySpeechToTextService(ctx.getAssets());
+            service.prepareSTTEngine(engine.type, locale);
+            service.initializeListening(forwarder);
+            Log.d(TAG, "Buddy STT initialised with " + engine + (available ? "" : " (not available)"));
         }
 
         // Not on a Buddy robot / some other failure
         catch (Throwable t) { available = false; Log.w(TAG, "Buddy STT unavailable: " + t); }
     }
 
+    /** Uplink RTT (ms, -1 unknown); sustained high, the cloud engine fails over and isn't probed again until it drops */
+    public static void setUplinkRtt(LongSupplier rttMs) { if (service != null) service.setUplinkRtt(rttMs); }
+
     // --------------------------------------------------------------------
     // Speech-to-Text Usage
     // --------------------------------------------------------------------
@@ -79,27 +85,44 @@ public class BuddySTT {
 
         /// Start listening
         Log.w(TAG, "STT started");
-
-        task.start(continuous, new ISTTCallback.Stub() {
-            @Override public void onSuccess(STTResultsData res) {
-                if (!res.getResults().isEmpty()) {
-                    STTResult r = res.getResults().get(0);
-                    cb.onText(r.getUtterance(), r.getConfidence(), r.getRule());
-                }
-            }
-            @Override public void onError(String e) { cb.onError(e); }
-        });
+        target = cb;
+        service.startListening(continuous);
     }
 
     /** Stop helper (currently never used) */
-    public static void stop  () { if (available) task.stop (); }
+    public static void stop  () { if (available) service.stopListening(); }
 
     /** Start/Pause Wrapper */
     public static void toggle (@NonNull STTListener cb) {
-        if (task.isRunning()) { task.pause(); return; }
+        if (available && service.isListening()) { service.pauseListening(); return; }
         start(cb);
     }
 
+    /** Engine health line for the debug overlay */
+    public static String stats() { return service != null ? service.stats() : "stt n/a"; }
+
+    /** Service events -> the current STTListener */
+    private static final SttListener forwarder = new SttListener() {
+        @Override public void onSpeechResult(String utterance, float confidence) {
+            STTListener cb = target; if (cb != null) cb.onText(utterance, confidence, null);
+        }
+        @Override public void onNBestResult(String engine, List<Hypothesis> nbest) {
+            STTListener cb = target; if (cb != null) cb.onNBest(engine, nbest);
+        }
+        @Override public void onPartialResult(String utterance, float confidence) {
+            STTListener cb = target; if (cb != null) cb.onPartial(utterance, confidence);
+        }
+        @Override public void onError(String err) {
+            STTListener cb = target; if (cb != null) cb.onError(err);
+        }
+        @Override public void onSttReady  () { available = true; }
+        @Override public void onSttPaused () { Log.d(TAG, "STT paused");  }
+        @Override public void onSttStopped() { Log.d(TAG, "STT stopped"); }
+        @Override public void onEngineChanged(SpeechToTextService.SttEngineType engine, String reason) {
+            Log.w(TAG, "Now listening with " + engine + " (" + reason + ")");
+        }
+    };
+
     // --------------------------------------------------------------------
     // Permission Helpers
     // --------------------------------------------------------------------
@@ -113,6 +136,3 @@ public class BuddySTT {
     }
 
 }
-
-
-
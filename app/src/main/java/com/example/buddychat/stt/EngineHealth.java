@@ -0,0 +1,75 @@
+package com.example.buddychat.stt;
+
+import androidx.annotation.NonNull;
+
+import java.util.Locale;
+
+// ====================================================================
+// Rolling error rate and latency of one STT engine
+// ====================================================================
+/// Exponentially weighted, so an unreachable cloud shows up within a few
+/// starts and a recovery does too. An engine is only judged after
+/// MIN_SAMPLES outcomes; until then it is neither degraded nor healthy.
+///
+/// An engine is degraded by errors, or by results that keep coming in
+/// slow: once the smoothed latency has gone above maxLatencyMs it only
+/// counts as fast again below okLatencyMs, so a latency hovering around
+/// the limit doesn't flip the engine back and forth. The SDK reports no
+/// end of speech, so the caller decides what a result's latency is (for
+/// a cloud engine, the uplink RTT it had to cross); -1 means unknown and
+/// only counts as a result.
+///
+/// Not thread-safe; the engine manager calls it holding its lock.
+public class EngineHealth {
+    private static final double ERROR_GAIN   = 0.2;
+    private static final double LATENCY_GAIN = 0.3;
+    private static final int    MIN_SAMPLES  = 3;
+
+    private final double maxErrorRate;
+    private final long   maxLatencyMs, okLatencyMs;
+
+    private double  errorRate;
+    private int     samples;
+    private double  latencyMs = -1;   // -1 = no known latency yet
+    private int     latencySamples;
+    private boolean slow;
+
+    public EngineHealth(double maxErrorRate, long maxLatencyMs, long okLatencyMs) {
+        this.maxErrorRate = maxErrorRate;
+        this.maxLatencyMs = maxLatencyMs;
+        this.okLatencyMs  = okLatencyMs;
+    }
+
+    /** Degraded above 50% errors, or slow above 1.5 s until back under 750 ms */
+    public static EngineHealth defaults() { return new EngineHealth(0.5, 1_500, 750); }
+
+    public void recordResult() { recordResult(-1); }
+
+    /** A result that took `latencyMs` (-1 unknown) */
+    public void recordResult(long latencyMs) {
+        samples++;
+        errorRate += ERROR_GAIN * (0 - errorRate);
+        if (latencyMs < 0) return;
+        this.latencyMs = this.latencyMs < 0 ? latencyMs : this.latencyMs + LATENCY_GAIN * (latencyMs - this.latencyMs);
+        if (++latencySamples < MIN_SAMPLES) return;
+        if      (this.latencyMs > maxLatencyMs) slow = true;
+        else if (this.latencyMs < okLatencyMs)  slow = false;
+    }
+
+    public void recordError() {
+        samples++;
+        errorRate += ERROR_GAIN * (1 - errorRate);
+    }
+
+    public boolean degraded() { return samples >= MIN_SAMPLES && (errorRate > maxErrorRate || slow); }
+    public boolean healthy () { return samples >= MIN_SAMPLES && !degraded(); }
+
+    /** Forget the history, e.g. before probing an engine again */
+    public void reset() { errorRate = 0; samples = 0; latencyMs = -1; latencySamples = 0; slow = false; }
+
+    @NonNull @Override
+    public String toString() {
+        String s = String.format(Locale.US, "errors %.0f%% (%d samples)", errorRate * 100, samples);
+        return latencyMs < 0 ? s : s + String.format(Locale.US, ", latency %.0f ms%s", latencyMs, slow ? " (slow)" : "");
+    }
+}
@@ -0,0 +1,38 @@
+package com.example.buddychat.stt;
+
+import androidx.annotation.NonNull;
+
+import com.bfr.buddy.speech.shared.STTResult;
+import com.bfr.buddy.speech.shared.STTResultsData;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+// ====================================================================
+// One entry of an engine's N-best list
+// ====================================================================
+public final class Hypothesis {
+    public final String utterance;
+    public final float  confidence;   // engine-specific scale (see RecognitionGate)
+    public final String rule;
+
+    public Hypothesis(String utterance, float confidence, String rule) {
+        this.utterance  = utterance;
+        this.confidence = confidence;
+        this.rule       = rule;
+    }
+
+    /** Every result the SDK returned, best first (empty if there were none) */
+    public static List<Hypothesis> fromResults(STTResultsData res) {
+        if (res == null || res.getResults() == null || res.getResults().isEmpty()) return Collections.emptyList();
+        List<Hypothesis> out = new ArrayList<>(res.getResults().size());
+        for (STTResult r : res.getResults()) {
+            if (r.getUtterance() != null) out.add(new Hypothesis(r.getUtterance(), r.getConfidence(), r.getRule()));
+        }
+        return out;
+    }
+
+    @NonNull @Override
+    public String toString() { return String.format("%s (%.3f)", utterance, confidence); }
+}
@@ -0,0 +1,74 @@
+package com.example.buddychat.stt;
+
+import java.util.function.LongSupplier;
+
+import com.example.buddychat.metrics.Tracer;
+
+// ====================================================================
+// Interim hypotheses of the utterance in progress, paced for the socket
+// ====================================================================
+/// At most one partial per minIntervalMs goes to UtteranceCallback.sendPartial;
+/// a newer hypothesis replaces one still waiting for its slot, and one equal
+/// to the last is dropped. All partials of an utterance share a trace id,
+/// which take() hands to the final result (and forgets, for the next one).
+///
+/// Partials come from SpeechBackend.SttTask.Listener.onPartial (engines that
+/// have them) and from UtteranceCoalescer's running text.
+class PartialThrottle {
+    private final UtteranceCallback        out;
+    private final long                     minIntervalMs;
+    private final LongSupplier             clockMs;
+    private final UtteranceCoalescer.Timer timers;
+
+    // All of the below are guarded by `this`
+    private String   trace;           // trace the final result will reuse
+    private String   latest;          // newest hypothesis, maybe not sent yet
+    private String   sent;            // last one handed to the socket
+    private long     sentMs = -1;     // -1 = nothing sent yet
+    private Runnable cancelSend;      // pending send, if any
+    private int      utterances;      // bumped by take(): a send already running for the last one is stale
+
+    PartialThrottle(UtteranceCallback out, long minIntervalMs, LongSupplier clockMs, UtteranceCoalescer.Timer timers) {
+        this.out           = out;
+        this.minIntervalMs = minIntervalMs;
+        this.clockMs       = clockMs;
+        this.timers        = timers;
+    }
+
+    /** A new interim hypothesis; sent now, or when the interval since the last send has passed */
+    void offer(String utterance) {
+        if (utterance == null || (utterance = utterance.trim()).isEmpty()) return;
+        synchronized (this) {
+            if (utterance.equals(latest)) return;
+            if (trace == null) trace = Tracer.newTraceId();
+            latest = utterance;
+            if (cancelSend != null) return;  // the pending send picks up the newest text
+            long delay = sentMs < 0 ? 0 : Math.max(0, sentMs + minIntervalMs - clockMs.getAsLong());
+            int n = utterances;
+            cancelSend = timers.schedule(() -> send(n), delay);
+        }
+    }
+
+    /** Trace of the utterance the partials belonged to (or a new one); a partial still waiting is dropped */
+    synchronized String take() {
+        String t = trace != null ? trace : Tracer.newTraceId();
+        if (cancelSend != null) { cancelSend.run(); cancelSend = null; }
+        trace = latest = sent = null;
+        utterances++;
+        return t;
+    }
+
+    private void send(int utterance) {
+        String text, t;
+        synchronized (this) {
+            if (utterance != utterances) return;
+            cancelSend = null;
+            if (trace == null || latest == null || latest.equals(sent)) return;
+            text   = latest;
+            t      = trace;
+            sent   = text;
+            sentMs = clockMs.getAsLong();
+        }
+        out.sendPartial(text, t);
+    }
+}
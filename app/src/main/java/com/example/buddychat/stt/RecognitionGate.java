@@ -0,0 +1,156 @@
+package com.example.buddychat.stt;
+
+import android.util.Log;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+// ====================================================================
+// Drops noise recognitions before they turn into LLM calls
+// ====================================================================
+/// Sits right behind the engine and looks at the whole N-best list:
+///
+///  - Junk (no letters, only fillers like "uh", "hmm") is never sent. A
+///    junk top hypothesis is replaced by the first clean alternate that
+///    passes the threshold, if any.
+///  - Confidence is gated per engine. Engines use different scales
+///    (Cerence reports 0-1000, Google 0-1), so the threshold is learned
+///    from the engine's own recent scores of clean, multi-word results:
+///    half the median, or median - 3 MAD if that is higher, but never
+///    above 0.6 of the median. Until WARMUP scores are in, only junk is
+///    dropped. One-word results need 1.25x the threshold (coughs and TV
+///    chatter mostly come out as single words). Scores are learned
+///    whether or not they pass; learning only the passing ones would
+///    ratchet the threshold up against a quiet speaker or a noisy room.
+///  - Up to maxAlternates lower-ranked clean hypotheses travel along with
+///    the accepted one (0 = none).
+///
+/// Thread-safe; engines call it from binder threads.
+public class RecognitionGate implements STTListener {
+    private static final String TAG = "RecognitionGate";
+
+    private static final int    WINDOW      = 64;     // recent scores kept per engine
+    private static final int    WARMUP      = 16;
+    private static final double MEDIAN_LOW  = 0.5;
+    private static final double MEDIAN_HIGH = 0.6;
+    private static final double MAD_K       = 3.0;
+    private static final double ONE_WORD    = 1.25;
+
+    private static final Set<String> FILLERS = new HashSet<>(Arrays.asList(
+            "uh", "um", "uhm", "hm", "hmm", "mm", "mhm", "ah", "oh", "eh", "er", "erm", "huh", "euh", "bah"));
+
+    /** Recent clean scores of one engine, with the threshold derived from them */
+    private static final class Scores {
+        final float[] ring = new float[WINDOW];
+        int   count, next;
+        float threshold;   // 0 until warmed up
+
+        void add(float score) {
+            ring[next] = score;
+            next = (next + 1) % WINDOW;
+            if (count < WINDOW) count++;
+            if (count < WARMUP) return;
+
+            float[] s = Arrays.copyOf(ring, count);
+            Arrays.sort(s);
+            float median = s[count / 2];
+            for (int i = 0; i < count; i++) s[i] = Math.abs(s[i] - median);
+            Arrays.sort(s);
+            float mad = s[count / 2];
+            threshold = (float) Math.min(MEDIAN_HIGH * median, Math.max(MEDIAN_LOW * median, median - MAD_K * mad));
+        }
+    }
+
+    private final STTListener         downstream;
+    private final Map<String, Scores> engines = new HashMap<>();   // guarded by `this`
+    private final int                 maxAlternates;
+    private       int                 accepted, dropped;
+
+    public RecognitionGate(STTListener downstream, int maxAlternates) {
+        this.downstream    = downstream;
+        this.maxAlternates = maxAlternates;
+    }
+
+    /** Current threshold for an engine, 0 while it is still warming up (monitoring) */
+    public synchronized float threshold(String engine) {
+        Scores s = engines.get(engine);
+        return s != null ? s.threshold : 0;
+    }
+
+    // --------------------------------------------------------------------
+    // STTListener
+    // --------------------------------------------------------------------
+    @Override
+    public void onNBest(String engine, List<Hypothesis> nbest) {
+        List<Hypothesis> out = filter(engine, nbest);
+        if (out != null) downstream.onNBest(engine, out);
+    }
+
+    /** Engines that only report a single result */
+    @Override
+    public void onText(String utterance, float confidence, String rule) {
+        onNBest(null, List.of(new Hypothesis(utterance, confidence, rule)));
+    }
+
+    @Override
+    public void onPartial(String utterance, float confidence) { downstream.onPartial(utterance, confidence); }
+
+    @Override
+    public void onError(String err) { downstream.onError(err); }
+
+    // --------------------------------------------------------------------
+    // Internal
+    // --------------------------------------------------------------------
+    /** Accepted hypothesis first, then the alternates to send; null if the whole list is dropped */
+    private synchronized List<Hypothesis> filter(String engine, List<Hypothesis> nbest) {
+        if (nbest.isEmpty()) return null;
+        Scores scores = engines.computeIfAbsent(String.valueOf(engine), e -> new Scores());
+
+        Hypothesis best = null, learn = null;
+        List<Hypothesis> alts = new ArrayList<>();
+        for (Hypothesis h : nbest) {
+            int words = words(h.utterance);
+            if (words == 0) continue;  // junk
+            if (learn == null && words > 1) learn = h;   // the engine's top clean pick, passing or not
+            if (best == null) {
+                if (!passes(scores, h.confidence, words)) continue;
+                best = h;
+            } else if (alts.size() < maxAlternates && !h.utterance.equalsIgnoreCase(best.utterance)) {
+                alts.add(h);
+            }
+        }
+
+        if (learn != null) scores.add(learn.confidence);   // after gating: a score doesn't judge itself
+
+        if (best == null) {
+            dropped++;
+            Log.d(TAG, String.format(Locale.US, "Dropped %s from %s (threshold %.3f; %d dropped, %d accepted)",
+                    nbest.get(0), engine, scores.threshold, dropped, accepted));
+            return null;
+        }
+        accepted++;
+        if (best != nbest.get(0)) Log.d(TAG, "Promoted " + best + " over " + nbest.get(0));
+        alts.add(0, best);
+        return alts;
+    }
+
+    private static boolean passes(Scores s, float confidence, int words) {
+        return confidence >= (words == 1 ? ONE_WORD * s.threshold : s.threshold);
+    }
+
+    /** Words that aren't fillers; 0 means the text is junk */
+    private static int words(String text) {
+        if (text == null) return 0;
+        int n = 0;
+        for (String w : text.toLowerCase(Locale.ROOT).split("[^\\p{L}\\p{N}']+")) {
+            if (!w.isEmpty() && !FILLERS.contains(w)) n++;
+        }
+        return n;
+    }
+}
@@ -2,43 +2,101 @@ package com.example.buddychat.stt;
 
 import android.os.Handler;
 import android.os.Looper;
+import android.os.SystemClock;
 
 import android.widget.TextView;
 import android.widget.Toast;
 
 import android.util.Log;
 
+import java.util.List;
+import java.util.function.BiConsumer;
+
+import com.example.buddychat.cache.ResponseCache;
+import com.example.buddychat.journal.ConversationJournal;
+import com.example.buddychat.metrics.Tracer;
+import com.example.buddychat.metrics.TurnLatency;
+import com.example.buddychat.network.ws.BackpressureListener;
+
 // ====================================================================
 // Handles Recognized Speech Events
 // ====================================================================
-public class STTCallbacks implements STTListener {
+public class STTCallbacks implements STTListener, BackpressureListener {
     private static final String TAG  = "STTCallback";
 
+    /// At most one interim hypothesis per this many ms (the latest one is sent when it elapses)
+    private static final long PARTIAL_MIN_INTERVAL_MS = 250;
+
     /// UI references that will be modified
     private final TextView          sttView;
     private final UtteranceCallback utteranceCallback;
 
+    /// Transcript on flash (every utterance, sent or not)
+    private final ConversationJournal journal;
+
     /// Handler to hop onto UI thread.
     private final Handler ui = new Handler(Looper.getMainLooper());
 
+    /// Set by ChatSocketManager when its outbound queue backs up
+    private volatile boolean congested = false;
+
+    /// Interim hypotheses of the utterance in progress, sent from the UI thread
+    private final PartialThrottle partials;
+
+    /// Optional on-device answers: cache lookup + who speaks/shows a hit (trace, reply)
+    private ResponseCache                responses;
+    private BiConsumer<String, String>   localReply;
+
     /** Initialization */
-    public STTCallbacks(TextView sttView, UtteranceCallback utteranceCallback) {
+    public STTCallbacks(TextView sttView, UtteranceCallback utteranceCallback, ConversationJournal journal) {
         this.sttView = sttView;
         this.utteranceCallback = utteranceCallback;
+        this.journal = journal;
+        this.partials = new PartialThrottle(utteranceCallback, PARTIAL_MIN_INTERVAL_MS, SystemClock::uptimeMillis,
+                (task, delayMs) -> { ui.postDelayed(task, delayMs); return () -> ui.removeCallbacks(task); });
+    }
+
+    /** Answer cached utterances locally (the server is still told, see UtteranceCallback.sendAnswered) */
+    public void setResponseCache(ResponseCache responses, BiConsumer<String, String> localReply) {
+        this.responses  = responses;
+        this.localReply = localReply;
     }
 
     // --------------------------------------------------------------------
     // Methods
     // --------------------------------------------------------------------
     @Override
-    public void onText(String utterance, float confidence, String rule) {
+    public void onText(String utterance, float confidence, String rule) { handle(utterance, confidence, rule, null); }
+
+    /** Accepted N-best result: the rest of the list goes along as alternates */
+    @Override
+    public void onNBest(String engine, List<Hypothesis> nbest) {
+        String[] alts = new String[nbest.size() - 1];
+        for (int i = 1; i < nbest.size(); i++) alts[i - 1] = nbest.get(i).utterance;
+        Hypothesis h = nbest.get(0);
+        handle(h.utterance, h.confidence, h.rule, alts.length > 0 ? alts : null);
+    }
+
+    private void handle(String utterance, float confidence, String rule, String[] alternates) {
+        TurnLatency.sttDelivered();
+        final String trace = partials.take();  // one per utterance, echoed back on the reply
+        Tracer.begin(trace);
+        journal.append(ConversationJournal.Kind.USER, trace, utterance);
+
+        /// Repetitive small talk can be answered without the round trip
+        final String cached = responses != null ? responses.lookup(utterance, trace) : null;
+        if (cached != null) localReply.accept(trace, cached);
+
         ui.post(() -> {
-            /// Send the message over the WebSocket
-            utteranceCallback.sendString(utterance);
+            /// Send the message over the WebSocket (for a local answer: just so the server knows)
+            boolean queued = cached == null
+                    ? utteranceCallback.sendString  (utterance, trace, alternates)
+                    : utteranceCallback.sendAnswered(utterance, trace, cached);
 
             /// Logging the message
-            Log.d(TAG, String.format("Utt: %s (conf: %f, rule: %s)", utterance, confidence, rule));
-            sttView.setText(String.format("User (%.3f): %s", (confidence/1000), utterance));
+            Log.d(TAG, String.format("Utt: %s (conf: %f, rule: %s, trace: %s)", utterance, confidence, rule, trace));
+            String status = cached != null ? " [local]" : !queued ? " [not sent]" : congested ? " [waiting for network]" : "";
+            sttView.setText(String.format("User (%.3f): %s%s", (confidence/1000), utterance, status));
             // Toast.makeText(sttView.getContext(), "Speech recognized", Toast.LENGTH_SHORT).show();
         });
     }
@@ -46,4 +104,15 @@ public class STTCallbacks implements STTListener {
     @Override
     public void onError(String e) { Log.e(TAG,  " error: " + e); }
 
+    /** Throttled and deduplicated (see PartialThrottle); the server may start retrieval/prompting on it */
+    @Override
+    public void onPartial(String utterance, float confidence) { partials.offer(utterance); }
+
+    /** Outbound queue backed up / drained; utterances are still queued, but the user gets a hint */
+    @Override
+    public void onBackpressure(boolean congested) {
+        this.congested = congested;
+        Log.w(TAG, congested ? "Chat send queue congested" : "Chat send queue drained");
+    }
+
 }
@@ -1,6 +1,17 @@
 package com.example.buddychat.stt;
 
+import java.util.List;
+
 public interface STTListener {
     void onText (String utterance, float confidence, String rule);
     void onError(String err);
+
+    /** Interim hypothesis of the utterance in progress, for engines that produce them */
+    default void onPartial(String utterance, float confidence) {}
+
+    /** Whole N-best list, best first (never empty); listeners that don't care get the top one */
+    default void onNBest(String engine, List<Hypothesis> nbest) {
+        Hypothesis h = nbest.get(0);
+        onText(h.utterance, h.confidence, h.rule);
+    }
 }
@@ -1,5 +0,0 @@
-package com.example.buddychat.stt;
-
-public interface UtteranceCallback {
-    void sendString(String text);
-}
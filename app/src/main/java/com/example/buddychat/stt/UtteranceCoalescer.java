@@ -0,0 +1,211 @@
+package com.example.buddychat.stt;
+
+import android.util.Log;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+// ====================================================================
+// Merges STT results that belong to one spoken sentence
+// ====================================================================
+/// In continuous listening the engine often finalizes a sentence in two or
+/// three pieces. Each piece is held for a pause window; pieces arriving
+/// within it are joined and go downstream as one onText. Whatever happens,
+/// the utterance is released maxLatencyMs after its first piece.
+///
+/// The window adapts between minPauseMs and maxPauseMs: it follows twice
+/// the smoothed gap between pieces that did get merged, and widens when a
+/// piece shows up just after a flush (a sentence we cut in two). A piece
+/// ending in . ? or !, and a short answer on its own (SHORT_WORDS words or
+/// fewer, like "yes" or "no thanks"), only waits the minimum.
+///
+/// While pieces are held, the running text goes downstream as onPartial,
+/// and so does an engine's own interim hypothesis, appended to the held
+/// text (as is when nothing is held or coalescing is off).
+/// N-best alternates only survive for single-piece utterances; a merged
+/// sentence has no meaningful alternates.
+public class UtteranceCoalescer implements STTListener {
+    private static final String TAG = "Coalescer";
+
+    private static final double GAP_GAIN    = 0.25;   // EWMA gain for the merged-gap estimate
+    private static final double WIDEN       = 1.25;   // window growth after a split utterance
+    private static final double LATE_RATIO  = 1.5;    // a piece within window*this after a flush counts as split
+    private static final int    SHORT_WORDS = 2;      // a first piece this short is a whole answer, not a fragment
+
+    /** Runs `task` after delayMs; returns what cancels it */
+    interface Timer { Runnable schedule(Runnable task, long delayMs); }
+
+    private final STTListener  downstream;
+    private final long         minPauseMs;
+    private final long         maxPauseMs;
+    private final long         maxLatencyMs;
+    private final LongSupplier clockMs;
+    private final Timer        timers;
+
+    // All of the below are guarded by `this`
+    private boolean            enabled = true;
+    private long               windowMs;
+    private double             gapEwma = -1;
+    private final StringBuilder text   = new StringBuilder();
+    private double             confSum;          // confidence weighted by piece length
+    private int                confLen;
+    private String             rule;
+    private String             engine;
+    private List<Hypothesis>   nbest;            // first piece's list, kept while it is the only one
+    private int                pieces;
+    private long               firstMs, lastMs, flushedMs = -1;
+    private Runnable           cancelTimer;
+
+    public UtteranceCoalescer(STTListener downstream, long minPauseMs, long maxPauseMs, long maxLatencyMs) {
+        this(downstream, minPauseMs, maxPauseMs, maxLatencyMs, () -> System.nanoTime() / 1_000_000, realTimer());
+    }
+
+    UtteranceCoalescer(STTListener downstream, long minPauseMs, long maxPauseMs, long maxLatencyMs,
+                       LongSupplier clockMs, Timer timers) {   // tests: a manual clock and timer
+        this.downstream   = downstream;
+        this.minPauseMs   = minPauseMs;
+        this.maxPauseMs   = maxPauseMs;
+        this.maxLatencyMs = maxLatencyMs;
+        this.clockMs      = clockMs;
+        this.timers       = timers;
+        this.windowMs     = Math.min(maxPauseMs, Math.max(minPauseMs, (minPauseMs + maxPauseMs) / 2));
+    }
+
+    private static Timer realTimer() {
+        ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "STT-coalesce");
+            t.setDaemon(true);
+            return t;
+        });
+        return (task, delayMs) -> {
+            ScheduledFuture<?> f = scheduler.schedule(task, delayMs, TimeUnit.MILLISECONDS);
+            return () -> f.cancel(false);
+        };
+    }
+
+    /** Pause window 300-1500 ms (starting at 900), released at most 1.2 s after the first piece; short answers after 300 ms */
+    public static UtteranceCoalescer withDefaults(STTListener downstream) {
+        return new UtteranceCoalescer(downstream, 300, 1_500, 1_200);
+    }
+
+    /** Off: every result goes straight through (single-shot listening has nothing to merge) */
+    public void setEnabled(boolean enabled) {
+        synchronized (this) { this.enabled = enabled; }
+        if (!enabled) flush();
+    }
+
+    /** Current pause window (monitoring) */
+    public synchronized long windowMs() { return windowMs; }
+
+    // --------------------------------------------------------------------
+    // STTListener
+    // --------------------------------------------------------------------
+    @Override
+    public void onText(String utterance, float confidence, String rule) {
+        add(null, null, utterance, confidence, rule);
+    }
+
+    @Override
+    public void onNBest(String engine, List<Hypothesis> nbest) {
+        Hypothesis h = nbest.get(0);
+        add(engine, nbest, h.utterance, h.confidence, h.rule);
+    }
+
+    @Override
+    public void onPartial(String utterance, float confidence) {
+        if (utterance == null || (utterance = utterance.trim()).isEmpty()) return;
+        String partial;
+        synchronized (this) { partial = !enabled || text.length() == 0 ? utterance : text + " " + utterance; }
+        downstream.onPartial(partial, confidence);
+    }
+
+    @Override
+    public void onError(String err) { downstream.onError(err); }
+
+    // --------------------------------------------------------------------
+    // Internal
+    // --------------------------------------------------------------------
+    private void add(String engine, List<Hypothesis> nbest, String utterance, float confidence, String rule) {
+        if (utterance == null || (utterance = utterance.trim()).isEmpty()) return;
+        String partial;
+        float  partialConf;
+        synchronized (this) {
+            if (!enabled) { partial = null; partialConf = 0; }
+            else {
+                long now = clockMs.getAsLong();
+                adapt(now);
+                this.engine = engine;
+                this.nbest  = pieces == 0 ? nbest : null;
+                if (pieces++ == 0) firstMs = now;
+                lastMs = now;
+                if (text.length() > 0) text.append(' ');
+                text.append(utterance);
+                confSum += (double) confidence * utterance.length();
+                confLen += utterance.length();
+                if (rule != null) this.rule = rule;
+
+                boolean whole = endsSentence(utterance) || (pieces == 1 && words(utterance) <= SHORT_WORDS);
+                long    pause = whole ? minPauseMs : windowMs;
+                long    delay = Math.max(0, Math.min(now + pause, firstMs + maxLatencyMs) - now);
+                if (cancelTimer != null) cancelTimer.run();
+                cancelTimer = timers.schedule(this::flush, delay);
+
+                partial     = text.toString();
+                partialConf = (float) (confSum / confLen);
+            }
+        }
+        if      (partial != null) downstream.onPartial(partial, partialConf);
+        else if (nbest   != null) downstream.onNBest  (engine, nbest);
+        else                      downstream.onText   (utterance, confidence, rule);
+    }
+
+    /** Learn from the gap before this piece (holding `this`) */
+    private void adapt(long now) {
+        if (pieces > 0) {
+            long gap = now - lastMs;
+            gapEwma  = gapEwma < 0 ? gap : gapEwma + GAP_GAIN * (gap - gapEwma);
+            windowMs = clamp((long) (2 * gapEwma));
+        } else if (flushedMs >= 0 && now - flushedMs < windowMs * LATE_RATIO) {
+            windowMs = clamp((long) (windowMs * WIDEN));
+            Log.d(TAG, "Piece " + (now - flushedMs) + " ms after a flush; window now " + windowMs + " ms");
+        }
+    }
+
+    /** Release whatever is held as one utterance */
+    private void flush() {
+        String utterance, r, e;
+        float  conf;
+        List<Hypothesis> alts;
+        synchronized (this) {
+            if (cancelTimer != null) { cancelTimer.run(); cancelTimer = null; }
+            if (pieces == 0) return;
+            if (pieces > 1) Log.d(TAG, "Merged " + pieces + " pieces in " + (lastMs - firstMs) + " ms");
+            utterance = text.toString();
+            conf      = (float) (confSum / confLen);
+            r         = rule;
+            e         = engine;
+            alts      = nbest;
+            text.setLength(0);
+            confSum = 0; confLen = 0; rule = null; engine = null; nbest = null; pieces = 0;
+            flushedMs = clockMs.getAsLong();
+        }
+        if (alts == null) { downstream.onText(utterance, conf, r); return; }
+        List<Hypothesis> out = new ArrayList<>(alts);
+        out.set(0, new Hypothesis(utterance, conf, r));  // same text, trimmed
+        downstream.onNBest(e, out);
+    }
+
+    private long clamp(long ms) { return Math.max(minPauseMs, Math.min(maxPauseMs, ms)); }
+
+    private static boolean endsSentence(String s) {
+        char c = s.charAt(s.length() - 1);
+        return c == '.' || c == '?' || c == '!';
+    }
+
+    private static int words(String s) { return s.split("\\s+").length; }
+}
@@ -3,11 +3,11 @@ package com.example.buddychat.tts;
 import android.content.Context;
 import android.util.Log;
 
-import com.bfr.buddy.speech.shared.ITTSCallback;
-import com.bfr.buddysdk.BuddySDK;
+import com.example.buddychat.metrics.TurnLatency;
+import com.example.buddychat.speech.SpeechBackends;
 
 // ====================================================================
-// Wrapper class around BuddySDK.Speech for Text-to-Speech
+// Text-to-Speech through the installed SpeechBackend (BuddySDK.Speech on the robot)
 // ====================================================================
 public class BuddyTTS {
 
@@ -15,8 +15,19 @@ public class BuddyTTS {
     private static       boolean loaded  = false;
     private static       boolean enabled = false;
 
+    /// The installed backend's speaker (ReadSpeaker on the robot), looked up per call so it can be swapped
+    private static final SpeechScheduler.Speaker SPEAKER = new SpeechScheduler.Speaker() {
+        @Override public void speak(String text, SpeechScheduler.Done done) { SpeechBackends.get().speaker().speak(text, done); }
+        @Override public void stop ()                                       { SpeechBackends.get().speaker().stop();           }
+    };
+
+    /// Everything said goes through here: one item at a time, by priority
+    private static final SpeechScheduler scheduler = new SpeechScheduler(SPEAKER);
+
     private BuddyTTS() {}  // static-only class
 
+    public static void setListener(SpeechScheduler.Listener l) { scheduler.setListener(l); }
+
     // --------------------------------------------------------------------
     // Initialization & Utility
     // --------------------------------------------------------------------
@@ -25,56 +36,49 @@ public class BuddyTTS {
 
     public static void start() {
         if (loaded) return;
-        BuddySDK.Speech.loadReadSpeaker();          // async, but cheap to call again
-        BuddySDK.Speech.setSpeakerVoice("kate");    // English voice
+        SpeechBackends.get().loadVoice("kate");     // English voice
         loaded = true;
         Log.d(TAG, "ReadSpeaker loaded");
     }
 
-    /** Stop current utterance if there is one */
-    public static void toggle() {
-        if (enabled && BuddySDK.Speech.isSpeaking()) { stop(); }
+    /** Enable/disable speech; disabling stops the current utterance and drops the queue */
+    public static synchronized void toggle() {
         enabled = !enabled;
+        scheduler.setEnabled(enabled);
         Log.w(TAG, enabled ? "TTS Enabled." : "TTS Disabled");
-        if (enabled) {speak("Hello, how are you today?");}
     }
 
-    /** Check if the class is present (it won't be on simulators, only on the BuddyRobot itself) */
-    public static boolean isAvailable() {
-        // Need to wrap it in try-except to avoid crashing locally
-        // If the SDK class itself is missing, or the service isn't bound yet, return false
-        try                         { return BuddySDK.Speech != null && BuddySDK.Speech.isReadyToSpeak();          }
-        catch (RuntimeException ex) { Log.w(TAG, "Buddy speech not ready: " + ex.getMessage()); return false; }
-    }
+    /** Check if the backend can speak (the SDK one can't on simulators, only on the BuddyRobot itself) */
+    public static boolean isAvailable() { return SpeechBackends.get().isReadyToSpeak(); }
 
     // --------------------------------------------------------------------
     // Text-to-Speech Usage
     // --------------------------------------------------------------------
-    /** Fire-and-forget speech */
-    public static void speak(String text) {
+    /** System prompt (greeting, status); jumps ahead of queued replies but never cuts one off */
+    public static void speak(String text) { enqueue(text, null, SpeechScheduler.Priority.SYSTEM); }
+
+    /** One reply chunk of turn `trace`; it starts the moment the previous item finishes */
+    public static void enqueue(String chunk, String trace) { enqueue(chunk, trace, SpeechScheduler.Priority.REPLY); }
+
+    public static synchronized void enqueue(String text, String trace, SpeechScheduler.Priority priority) {
         // Ready checks
         if (!isAvailable()) { Log.w(TAG, "TTS not ready. Call BuddyTTS.init() first."); return; }
         if (!enabled      ) { Log.w(TAG, "TTS not enabled."                          ); return; }
 
-        // Use BuddySDK Speech
-        BuddySDK.Speech.startSpeaking(
-                text,
-                new ITTSCallback.Stub() {
-                    @Override public void onSuccess(String s) { Log.d(TAG, s); }
-                    @Override public void onPause  ()         {                }
-                    @Override public void onResume ()         {                }
-                    @Override public void onError  (String s) { Log.e(TAG, s); }
-                });
+        if (priority == SpeechScheduler.Priority.REPLY) TurnLatency.speakInvoked();
+        scheduler.enqueue(text, trace, priority);
     }
 
-    /** Stop current utterance if there is one */
-    public static void stop() {
-        if (!isAvailable()) { Log.w(TAG, "'stop()' call failed -- TTS not ready."); return; }
-        BuddySDK.Speech.stopSpeaking();
-    }
+    /** Drop (and stop, if playing) everything of one turn */
+    public static int cancel(String trace) { return scheduler.cancel(trace); }
+
+    /** Stop current utterance if there is one, and drop the queued ones */
+    public static void stop() { scheduler.clear(); }
+
+    public static String stats() { return scheduler.stats(); }
 
     /** Settings for the speech, not using right now */
-    public static void setPitch (int pitch ) { BuddySDK.Speech.setSpeakerPitch (pitch ); }
-    public static void setSpeed (int speed ) { BuddySDK.Speech.setSpeakerSpeed (speed ); }
-    public static void setVolume(int volume) { BuddySDK.Speech.setSpeakerVolume(volume); }
+    public static void setPitch (int pitch ) { SpeechBackends.get().setPitch (pitch ); }
+    public static void setSpeed (int speed ) { SpeechBackends.get().setSpeed (speed ); }
+    public static void setVolume(int volume) { SpeechBackends.get().setVolume(volume); }
 }
@@ -0,0 +1,100 @@
+package com.example.buddychat.tts;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+// ====================================================================
+// Splits streamed text into speakable chunks
+// ====================================================================
+/// Text is fed in as it arrives from the socket; complete sentences come
+/// back out as soon as their terminator is seen. Long run-on sentences are
+/// also cut at clause punctuation so the first audio is not held back.
+/// Not thread-safe; SpeechPipeline serializes access.
+public class SentenceChunker {
+    private static final int MIN_CLAUSE = 40;   // only split on , ; : once the chunk is at least this long
+    private static final int MAX_CHUNK  = 220;  // force a split at whitespace past this length
+
+    // Words ending in '.' that almost never end a sentence
+    private static final String[] ABBREVIATIONS = { "mr", "mrs", "ms", "dr", "st", "vs", "etc", "e.g", "i.e" };
+
+    private final StringBuilder buf = new StringBuilder(256);
+    private       int           scanned;  // chars of buf already checked for a boundary
+
+    // --------------------------------------------------------------------
+    // Usage
+    // --------------------------------------------------------------------
+    /** Add streamed text; returns any chunks that are now complete (possibly none). */
+    public List<String> feed(CharSequence text) {
+        buf.append(text);
+        return drain(false);
+    }
+
+    /** End of the reply: everything left over is the last chunk. */
+    public List<String> flush() { return drain(true); }
+
+    public void reset() { buf.setLength(0); scanned = 0; }
+
+    // --------------------------------------------------------------------
+    // Boundary detection
+    // --------------------------------------------------------------------
+    private List<String> drain(boolean end) {
+        List<String> out = null;
+        int start = 0;
+        int i     = scanned;
+
+        for (; i < buf.length(); i++) {
+            char c = buf.charAt(i);
+            // A terminator only counts once we have seen what follows it
+            if (i + 1 >= buf.length() && !end) break;
+            boolean nextIsSpace = i + 1 >= buf.length() || Character.isWhitespace(buf.charAt(i + 1));
+            int     chunkLen    = i + 1 - start;
+
+            boolean cut;
+            switch (c) {
+                case '\n'          : cut = true; break;
+                case '.'           : cut = nextIsSpace && !isAbbreviation(start, i); break;
+                case '!': case '?' : cut = nextIsSpace; break;
+                case ',': case ';':
+                case ':'           : cut = nextIsSpace && chunkLen >= MIN_CLAUSE; break;
+                default            : cut = false;
+            }
+            if (!cut && chunkLen >= MAX_CHUNK && Character.isWhitespace(c)) cut = true;
+
+            if (cut) {
+                out   = emit(out, start, i + 1);
+                start = i + 1;
+            }
+        }
+
+        if (end) {
+            out = emit(out, start, buf.length());
+            start = buf.length();
+        }
+
+        buf.delete(0, start);
+        scanned = end ? 0 : i - start;  // resume at the char that was still missing its lookahead
+        return out == null ? Collections.emptyList() : out;
+    }
+
+    private List<String> emit(List<String> out, int from, int to) {
+        String chunk = buf.substring(from, to).trim();
+        if (chunk.isEmpty()) return out;
+        if (out == null) out = new ArrayList<>(2);
+        out.add(chunk);
+        return out;
+    }
+
+    /** Is the word ending at buf[dot] one of the known abbreviations (or a single initial)? */
+    private boolean isAbbreviation(int from, int dot) {
+        int wordStart = dot;
+        while (wordStart > from && !Character.isWhitespace(buf.charAt(wordStart - 1))) wordStart--;
+        int len = dot - wordStart;
+        char first = buf.charAt(wordStart);
+        if (len == 1 && Character.isUpperCase(first) && first != 'I') return true;  // "J. Smith"
+        for (String abbr : ABBREVIATIONS) {
+            if (abbr.length() == len && abbr.equalsIgnoreCase(buf.substring(wordStart, dot))) return true;
+        }
+        return false;
+    }
+}
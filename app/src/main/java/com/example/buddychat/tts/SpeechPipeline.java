@@ -0,0 +1,31 @@
+package com.example.buddychat.tts;
+
+// ====================================================================
+// Stage between the WebSocket and BuddyTTS
+// ====================================================================
+/// Reply text goes in as it streams; each finished sentence is queued on
+/// BuddyTTS right away, so speech starts after the first sentence instead
+/// of after the whole answer. Chunks carry the reply's trace id (see Tracer).
+public class SpeechPipeline {
+    private final SentenceChunker chunker = new SentenceChunker();
+
+    /** Streamed text for the current reply (any thread) */
+    public synchronized void feed(CharSequence text, String trace) {
+        for (String chunk : chunker.feed(text)) BuddyTTS.enqueue(chunk, trace);
+    }
+
+    /** The reply is complete; speak whatever is left */
+    public synchronized void finish(String trace) {
+        for (String chunk : chunker.flush()) BuddyTTS.enqueue(chunk, trace);
+    }
+
+    /** Whole reply at once (non-streamed llm_response) */
+    public synchronized void speakAll(String text, String trace) {
+        chunker.reset();
+        feed(text, trace);
+        finish(trace);
+    }
+
+    /** Forget any half-sentence; does not stop audio already queued */
+    public synchronized void reset() { chunker.reset(); }
+}
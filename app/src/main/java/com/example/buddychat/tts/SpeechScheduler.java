@@ -0,0 +1,249 @@
+package com.example.buddychat.tts;
+
+import android.util.Log;
+
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.Locale;
+import java.util.function.LongSupplier;
+
+import com.example.buddychat.metrics.Tracer;
+import com.example.buddychat.metrics.TurnLatency;
+
+// ====================================================================
+// One-at-a-time speech queue with priorities, deadlines and cancellation
+// ====================================================================
+/// Items wait in one FIFO per priority; the next one is taken from the
+/// highest non-empty priority the moment the current one ends (engine
+/// success or error), so two items never overlap and nothing is handed to
+/// the engine while it is still talking. A running item is never cut off
+/// by a higher priority; it only jumps the queue.
+///
+/// Every item has a deadline (its priority's maxWaitMs after enqueue); an
+/// item still waiting past it is dropped as stale instead of being spoken
+/// late. The deadline is on getting a turn started: once a turn is being
+/// spoken, the rest of it (all but fillers) plays however long the answer
+/// runs, since SpeechPipeline queues every sentence within a few seconds.
+/// cancel(trace) drops everything queued for a turn and stops it if
+/// it is the one being spoken. Completions are matched by a per-item
+/// token, so a late callback from a stopped item can't advance the queue.
+///
+/// Thread-safe; engine callbacks may come from any thread. The speaker and
+/// listener are never called holding the scheduler's lock: state changes
+/// queue the calls they need, and whichever thread isn't already running
+/// them runs them in order after letting go. A speaker that reports done
+/// from inside speak() therefore starts the next item from the same loop
+/// instead of one stack frame deeper per queued item.
+public class SpeechScheduler {
+    private static final String TAG = "SpeechScheduler";
+
+    public enum Priority {
+        SYSTEM(15_000),   // greetings, status prompts
+        REPLY (30_000),   // LLM replies, sentence by sentence
+        FILLER( 3_000);   // "hmm, let me think": useless once late
+
+        public final long maxWaitMs;
+        Priority(long maxWaitMs) { this.maxWaitMs = maxWaitMs; }
+    }
+
+    /** What actually makes sound (BuddySDK.Speech on the robot) */
+    public interface Speaker {
+        void speak(String text, Done done);   // call done exactly once, from any thread
+        void stop();
+    }
+    public interface Done { void finished(boolean ok, String info); }
+
+    /** Told what is being said, e.g. so STT can recognize its own voice */
+    public interface Listener {
+        void onSpeaking(String text, String trace);   // an item went to the speaker
+        void onIdle();                                // nothing left to say (done or stopped)
+    }
+
+    private static final class Item {
+        final String   text, trace;
+        final Priority priority;
+        final long     enqueuedNs, deadlineNs;
+        Item(String text, String trace, Priority priority, long nowNs) {
+            this.text = text; this.trace = trace; this.priority = priority;
+            this.enqueuedNs = nowNs;
+            this.deadlineNs = nowNs + priority.maxWaitMs * 1_000_000;
+        }
+    }
+
+    private final Speaker      speaker;
+    private final LongSupplier clockNs;
+
+    // All of the below are guarded by `this`
+    private final ArrayDeque<Item>[] queues;
+    private Item     current;
+    private long     currentToken;
+    private long     currentStartNs;
+    private String   liveTrace;       // turn being spoken (the last traced item that started)
+    private boolean  enabled = true;
+    private Listener listener;
+    private int      depth, maxDepth, stale, cancelled;
+    private final ArrayDeque<Runnable> calls = new ArrayDeque<>();   // speaker/listener calls not made yet
+    private boolean  dispatching;     // some thread is making them
+
+    public SpeechScheduler(Speaker speaker) { this(speaker, System::nanoTime); }
+
+    @SuppressWarnings("unchecked")
+    SpeechScheduler(Speaker speaker, LongSupplier clockNs) {   // tests: a fake clock
+        this.speaker = speaker;
+        this.clockNs = clockNs;
+        this.queues  = new ArrayDeque[Priority.values().length];
+        for (int i = 0; i < queues.length; i++) queues[i] = new ArrayDeque<>();
+    }
+
+    public synchronized void setListener(Listener l) { this.listener = l; }
+
+    /** Disabled: nothing is accepted, and whatever was queued or playing is stopped */
+    public void setEnabled(boolean enabled) {
+        synchronized (this) {
+            this.enabled = enabled;
+            if (!enabled) drop();
+        }
+        dispatch();
+    }
+
+    // --------------------------------------------------------------------
+    // Usage
+    // --------------------------------------------------------------------
+    /** Queue `text` for turn `trace` (may be null); false if disabled */
+    public boolean enqueue(String text, String trace, Priority priority) {
+        synchronized (this) {
+            if (!enabled || text == null || text.isEmpty()) return false;
+            queues[priority.ordinal()].add(new Item(text, trace, priority, clockNs.getAsLong()));
+            maxDepth = Math.max(maxDepth, ++depth);
+            if (current == null) next();
+        }
+        dispatch();
+        return true;
+    }
+
+    /** Drop every item of turn `trace`, stopping it if it is playing; returns how many went */
+    public int cancel(String trace) {
+        if (trace == null) return 0;
+        int n = 0;
+        synchronized (this) {
+            for (ArrayDeque<Item> q : queues) {
+                for (Iterator<Item> it = q.iterator(); it.hasNext(); ) {
+                    if (trace.equals(it.next().trace)) { it.remove(); depth--; n++; }
+                }
+            }
+            if (current != null && trace.equals(current.trace)) {
+                n++;
+                calls.add(speaker::stop);
+                next();
+            }
+            cancelled += n;
+        }
+        dispatch();
+        if (n > 0) Log.d(TAG, "Cancelled " + n + " item(s) of " + trace);
+        return n;
+    }
+
+    /** Drop everything and stop the speaker */
+    public void clear() {
+        synchronized (this) { drop(); }
+        dispatch();
+    }
+
+    public synchronized boolean isSpeaking() { return current != null; }
+    public synchronized int     depth()      { return depth; }
+
+    /** One line for the debug overlay */
+    public synchronized String stats() {
+        return String.format(Locale.US, "tts queue %d (max %d), stale %d, cancelled %d", depth, maxDepth, stale, cancelled);
+    }
+
+    // --------------------------------------------------------------------
+    // Internal (holding `this`)
+    // --------------------------------------------------------------------
+    private void drop() {
+        for (ArrayDeque<Item> q : queues) q.clear();
+        depth = 0;
+        if (current == null) return;
+        current = null;
+        currentToken++;           // whatever the stopped item reports later is ignored
+        calls.add(speaker::stop);
+        idle();
+    }
+
+    /** Start the next live item, or go idle */
+    private void next() {
+        Item it   = poll();
+        current   = it;
+        long token = ++currentToken;
+        if (it == null) {
+            idle();
+            return;
+        }
+        currentStartNs = clockNs.getAsLong();
+        if (it.trace != null) liveTrace = it.trace;
+        TurnLatency.ttsWait(it.enqueuedNs);
+        Listener l = listener;
+        if (l != null) calls.add(() -> l.onSpeaking(it.text, it.trace));
+        calls.add(() -> speaker.speak(it.text, (ok, info) -> finished(token, ok, info)));
+    }
+
+    private void idle() {
+        Listener l = listener;
+        if (l != null) calls.add(l::onIdle);
+    }
+
+    /** Highest-priority item that is not past its deadline (or continues the live turn); stale ones are dropped */
+    private Item poll() {
+        long now = clockNs.getAsLong();
+        for (ArrayDeque<Item> q : queues) {
+            Item it;
+            while ((it = q.poll()) != null) {
+                depth--;
+                if (now - it.deadlineNs <= 0 || continuesLiveTurn(it)) return it;
+                stale++;
+                Log.w(TAG, String.format(Locale.US, "Dropped stale %s item after %d ms: %s",
+                        it.priority, (now - it.enqueuedNs) / 1_000_000, it.text));
+            }
+        }
+        return null;
+    }
+
+    private boolean continuesLiveTurn(Item it) {
+        return it.priority != Priority.FILLER && it.trace != null && it.trace.equals(liveTrace);
+    }
+
+    private void finished(long token, boolean ok, String info) {
+        synchronized (this) {
+            if (token != currentToken) return;   // stopped/cancelled earlier
+            if (ok) {
+                TurnLatency.ttsChunkDone(currentStartNs);
+                Tracer.ttsChunk(current.trace, currentStartNs);
+            }
+            next();
+        }
+        if (!ok) Log.e(TAG, "Speaking failed: " + info);
+        dispatch();
+    }
+
+    // --------------------------------------------------------------------
+    // Speaker and listener calls (not holding `this`)
+    // --------------------------------------------------------------------
+    /** Make the queued calls in order, unless a thread further up (or elsewhere) already is */
+    private void dispatch() {
+        synchronized (this) {
+            if (dispatching) return;
+            dispatching = true;
+        }
+        while (true) {
+            Runnable call;
+            synchronized (this) {
+                if ((call = calls.poll()) == null) { dispatching = false; return; }
+            }
+            try {
+                call.run();
+            } catch (RuntimeException e) {
+                Log.e(TAG, "Speaker/listener call failed", e);
+            }
+        }
+    }
+}
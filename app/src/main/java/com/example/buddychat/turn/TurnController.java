@@ -0,0 +1,166 @@
+package com.example.buddychat.turn;
+
+import android.util.Log;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.function.Consumer;
+
+import com.example.buddychat.stt.Hypothesis;
+import com.example.buddychat.stt.STTListener;
+import com.example.buddychat.tts.SpeechScheduler;
+
+// ====================================================================
+// Half-duplex turn taking between BuddySTT and BuddyTTS
+// ====================================================================
+/// Continuous STT hears the robot's own voice. Every recognition goes
+/// through here before it can become a transcription:
+///
+///  - Self-echo: while speaking, and for ECHO_TAIL_MS after, a result
+///    whose words mostly (ECHO_OVERLAP) appear in what was just said is
+///    dropped. Coverage is measured against the last ECHO_WINDOW_MS of
+///    spoken chunks, so the STT lagging behind the speaker doesn't matter.
+///  - Barge-in: a result that is not an echo while the robot is speaking
+///    is the user talking over it. If it is a real attempt (two or more
+///    words, or a stop word like "stop"/"wait") speech is stopped
+///    (`stopSpeech`, e.g. BuddyTTS::stop), the reply being spoken is
+///    cancelled (`cancelReply` gets its trace) and
+///    the result goes on as the next turn. Single stray words during
+///    speech are dropped.
+///
+/// Thread-safe: STT results arrive on binder threads, TTS events on the
+/// SDK's callback thread.
+public class TurnController implements STTListener, SpeechScheduler.Listener {
+    private static final String TAG = "TurnController";
+
+    private static final long   ECHO_WINDOW_MS = 10_000;   // spoken text we compare against
+    private static final long   ECHO_TAIL_MS   = 1_500;    // STT results still arriving after speech stops
+    private static final double ECHO_OVERLAP   = 0.6;      // share of the result's words found in spoken text
+    private static final int    BARGE_IN_WORDS = 2;
+
+    private static final Set<String> STOP_WORDS = new HashSet<>(Arrays.asList(
+            "stop", "wait", "quiet", "shut", "enough", "pause", "buddy", "arrête", "attends", "stoppe"));
+
+    private static final class Spoken {
+        final long     atMs;
+        final String[] words;
+        Spoken(long atMs, String[] words) { this.atMs = atMs; this.words = words; }
+    }
+
+    private final STTListener      downstream;
+    private final Runnable         stopSpeech;    // silence the speaker and drop what is queued
+    private final Consumer<String> cancelReply;   // trace of the reply being spoken (may be null)
+
+    // Guarded by `this`
+    private final ArrayDeque<Spoken> spoken = new ArrayDeque<>();
+    private boolean speaking;
+    private String  speakingTrace;
+    private long    quietSinceMs = -1;   // when speech last stopped; -1 = never spoke
+    private int     echoes, bargeIns, strays;
+
+    public TurnController(STTListener downstream, Runnable stopSpeech, Consumer<String> cancelReply) {
+        this.downstream  = downstream;
+        this.stopSpeech  = stopSpeech;
+        this.cancelReply = cancelReply;
+    }
+
+    // --------------------------------------------------------------------
+    // SpeechScheduler.Listener
+    // --------------------------------------------------------------------
+    @Override
+    public synchronized void onSpeaking(String text, String trace) {
+        long now = now();
+        speaking      = true;
+        speakingTrace = trace;
+        spoken.add(new Spoken(now, words(text)));
+        while (!spoken.isEmpty() && now - spoken.peek().atMs > ECHO_WINDOW_MS) spoken.poll();
+    }
+
+    @Override
+    public synchronized void onIdle() {
+        if (speaking) quietSinceMs = now();
+        speaking = false;
+    }
+
+    // --------------------------------------------------------------------
+    // STTListener
+    // --------------------------------------------------------------------
+    @Override
+    public void onText(String utterance, float confidence, String rule) {
+        if (admit(utterance)) downstream.onText(utterance, confidence, rule);
+    }
+
+    @Override
+    public void onNBest(String engine, List<Hypothesis> nbest) {
+        if (admit(nbest.get(0).utterance)) downstream.onNBest(engine, nbest);
+    }
+
+    @Override
+    public void onPartial(String utterance, float confidence) {
+        synchronized (this) { if (speaking || echoes(words(utterance))) return; }  // wait for the final verdict
+        downstream.onPartial(utterance, confidence);
+    }
+
+    @Override
+    public void onError(String err) { downstream.onError(err); }
+
+    // --------------------------------------------------------------------
+    // Internal
+    // --------------------------------------------------------------------
+    /** Decide what a recognition is; stops speech on a barge-in. False = drop it */
+    private boolean admit(String utterance) {
+        String[] w = words(utterance);
+        String   cancel;
+        synchronized (this) {
+            if (echoes(w)) {
+                echoes++;
+                Log.d(TAG, "Self-echo dropped (" + echoes + "): " + utterance);
+                return false;
+            }
+            if (!speaking) return true;
+            if (w.length < BARGE_IN_WORDS && !hasStopWord(w)) {
+                strays++;
+                Log.d(TAG, "Stray word while speaking dropped (" + strays + "): " + utterance);
+                return false;
+            }
+            bargeIns++;
+            cancel   = speakingTrace;
+            speaking = false;
+            quietSinceMs = now();
+        }
+        Log.i(TAG, "Barge-in (" + bargeIns + "): " + utterance);
+        stopSpeech.run();
+        cancelReply.accept(cancel);
+        return true;
+    }
+
+    /** Recent enough speech, and most of `w` was in it (holding `this`) */
+    private boolean echoes(String[] w) {
+        if (w.length == 0 || spoken.isEmpty()) return false;
+        long now = now();
+        if (!speaking && (quietSinceMs < 0 || now - quietSinceMs > ECHO_TAIL_MS)) return false;
+
+        Set<String> said = new HashSet<>();
+        for (Spoken s : spoken) if (now - s.atMs <= ECHO_WINDOW_MS) said.addAll(Arrays.asList(s.words));
+        int hits = 0;
+        for (String x : w) if (said.contains(x)) hits++;
+        return hits >= ECHO_OVERLAP * w.length;
+    }
+
+    private static boolean hasStopWord(String[] w) {
+        for (String x : w) if (STOP_WORDS.contains(x)) return true;
+        return false;
+    }
+
+    private static String[] words(String text) {
+        if (text == null) return new String[0];
+        String[] w = text.toLowerCase(Locale.ROOT).split("[^\\p{L}\\p{N}']+");
+        return Arrays.stream(w).filter(s -> !s.isEmpty()).toArray(String[]::new);
+    }
+
+    private static long now() { return System.nanoTime() / 1_000_000; }
+}
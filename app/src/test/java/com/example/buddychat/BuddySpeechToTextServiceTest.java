@@ -0,0 +1,185 @@
+package com.example.buddychat;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import android.app.Application;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import com.example.buddychat.SpeechToTextService.SttEngineType;
+import com.example.buddychat.speech.SimulatedSpeechBackend;
+import com.example.buddychat.speech.SpeechBackends;
+
+// Failover is driven by errors and by cloud results slowed by the uplink; their spacing never counts
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 34, application = Application.class)   // only for android.util.Log
+public class BuddySpeechToTextServiceTest {
+    private static final long TIMEOUT_MS = 5_000;
+
+    private SimulatedSpeechBackend   speech;
+    private BuddySpeechToTextService stt;
+    private final Recorder           events = new Recorder();
+    private final AtomicLong         clock  = new AtomicLong(1_000_000);
+    private final AtomicLong         rtt    = new AtomicLong(-1);
+
+    @Before public void setUp() {
+        speech = new SimulatedSpeechBackend(0, 0);
+        SpeechBackends.install(speech);
+        stt = new BuddySpeechToTextService(null, clock::get);
+        stt.setUplinkRtt(rtt::get);
+    }
+
+    @After public void tearDown() {
+        stt.releaseService();
+        speech.shutdown();
+        SpeechBackends.install(null);   // back to the default backend
+    }
+
+    // --------------------------------------------------------------------
+    // Helpers
+    // --------------------------------------------------------------------
+    private static final class Recorder implements SttListener {
+        final List<String> seen = new ArrayList<>();
+
+        private synchronized void on(String what) { seen.add(what); notifyAll(); }
+
+        @Override public void onSpeechResult(String u, float c) { on("result " + u); }
+        @Override public void onPartialResult(String u, float c) { on("partial " + u); }
+        @Override public void onError(String err)               { on("error"); }
+        @Override public void onSttReady()                      { }
+        @Override public void onSttPaused()                     { }
+        @Override public void onSttStopped()                    { }
+        @Override public void onEngineChanged(SttEngineType engine, String reason) { on("engine " + engine); }
+
+        synchronized int count(String prefix) {
+            int n = 0;
+            for (String s : seen) if (s.startsWith(prefix)) n++;
+            return n;
+        }
+
+        synchronized List<String> all(String prefix) {
+            List<String> out = new ArrayList<>();
+            for (String s : seen) if (s.startsWith(prefix)) out.add(s);
+            return out;
+        }
+
+        synchronized void await(String prefix, int n) throws InterruptedException {
+            long end = System.currentTimeMillis() + TIMEOUT_MS;
+            while (count(prefix) < n && System.currentTimeMillis() < end) wait(20);
+            assertTrue(seen.toString(), count(prefix) >= n);
+        }
+    }
+
+    private void prepare(SttEngineType engine) {
+        stt.prepareSTTEngine(engine, Locale.ENGLISH);
+        stt.initializeListening(events);
+    }
+
+    // --------------------------------------------------------------------
+    // Tests
+    // --------------------------------------------------------------------
+    @Test public void aFailingCloudEngineFailsOverToTheLocalOne() throws Exception {
+        speech.setBroken(SttEngineType.CERENCE_FREE_SPEECH, true);
+        prepare(SttEngineType.CERENCE_FREE_SPEECH);
+        for (int i = 1; i <= 4; i++) {   // single-shot: the app starts again after each error
+            stt.startListening(false);
+            events.await("error", i);
+        }
+        events.await("engine", 1);
+        assertEquals(SttEngineType.CERENCE_LOCAL_FCF, stt.activeEngine());
+        assertTrue(events.seen.contains("engine " + SttEngineType.CERENCE_LOCAL_FCF));
+    }
+
+    @Test public void occasionalErrorsDoNotFailOver() throws Exception {
+        speech.say(10, "one", 0.9f).fail(10, "network").say(10, "two", 0.9f).say(10, "three", 0.9f)
+              .fail(10, "network").say(10, "four", 0.9f).say(10, "five", 0.9f);
+        prepare(SttEngineType.GOOGLE);
+        for (int i = 0; i < 7; i++) {
+            stt.startListening(false);
+            events.await("", i + 1);
+        }
+        assertEquals(5, events.count("result"));
+        assertEquals(SttEngineType.GOOGLE, stt.activeEngine());
+        assertTrue(stt.stats(), stt.stats().contains("GOOGLE errors"));
+    }
+
+    @Test public void resultsAloneNeverFailOverHoweverTheyAreTimed() throws Exception {
+        speech.say(10, "right away", 0.9f).say(600, "after a pause", 0.9f).say(10, "again", 0.9f)
+              .say(900, "after a longer pause", 0.9f).say(10, "and done", 0.9f);
+        prepare(SttEngineType.CERENCE_FREE_SPEECH);
+        stt.startListening(true);
+        events.await("result", 5);
+        assertEquals(SttEngineType.CERENCE_FREE_SPEECH, stt.activeEngine());
+        assertEquals(0, events.count("engine"));
+        assertTrue(stt.stats(), stt.stats().contains("errors 0% (5 samples)"));
+    }
+
+    @Test public void slowCloudResultsFailOverAndRecoverOnceTheUplinkDoes() throws Exception {
+        for (int i = 1; i <= 8; i++) speech.say(10, "result " + i, 0.9f);
+        prepare(SttEngineType.GOOGLE);
+        rtt.set(2_000);                  // evening congestion: every result arrives, seconds late
+        for (int i = 1; i <= 3; i++) {
+            stt.startListening(false);
+            events.await("result", i);
+        }
+        events.await("engine", 1);
+        assertEquals(SttEngineType.CERENCE_LOCAL_FCF, stt.activeEngine());
+        assertEquals(0, events.count("error"));
+
+        rtt.set(100);
+        stt.startListening(false);       // the uplink is fine again, but the cool-down isn't over
+        events.await("result", 4);
+        assertEquals(SttEngineType.CERENCE_LOCAL_FCF, stt.activeEngine());
+
+        clock.addAndGet(60_000);
+        for (int i = 5; i <= 7; i++) {   // probed, and three fast results: recovered
+            stt.startListening(false);
+            events.await("result", i);
+        }
+        assertEquals(SttEngineType.GOOGLE, stt.activeEngine());
+        assertTrue(stt.stats(), stt.stats().contains("GOOGLE errors 0% (3 samples), latency 100 ms"));
+        assertEquals(Arrays.asList("engine " + SttEngineType.CERENCE_LOCAL_FCF, "engine " + SttEngineType.GOOGLE),
+                events.all("engine"));
+    }
+
+    @Test public void aProbeWaitsForTheUplink() throws Exception {
+        for (int i = 1; i <= 5; i++) speech.say(10, "result " + i, 0.9f);
+        prepare(SttEngineType.GOOGLE);
+        rtt.set(2_000);
+        for (int i = 1; i <= 3; i++) {
+            stt.startListening(false);
+            events.await("result", i);
+        }
+        events.await("engine", 1);
+
+        clock.addAndGet(60_000);         // cool-down over, uplink still congested
+        stt.startListening(false);
+        events.await("result", 4);
+        assertEquals(SttEngineType.CERENCE_LOCAL_FCF, stt.activeEngine());
+        assertEquals(1, events.count("engine"));
+    }
+
+    @Test public void partialsLeadUpToTheirResult() throws Exception {
+        speech.partial(10, "what", 0.4f).partial(10, "what time", 0.5f).say(10, "what time is it", 0.9f)
+              .say(10, "next start", 0.9f);
+        prepare(SttEngineType.GOOGLE);
+        stt.startListening(false);   // single-shot: partials don't use up the start
+        events.await("result", 1);
+        Thread.sleep(100);
+        synchronized (events) {
+            assertEquals(Arrays.asList("partial what", "partial what time", "result what time is it"), events.seen);
+        }
+    }
+}
@@ -0,0 +1,198 @@
+package com.example.buddychat.cache;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import android.app.Application;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+// Fake wall clock: expiry happens exactly when the test says so
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 34, application = Application.class)   // only for android.util.Log
+public class ResponseCacheTest {
+    private static final long MINUTE_MS = 60_000, DAY_MS = 24 * 60 * MINUTE_MS;
+    private static final int  ENTRY     = 2 * (3 + 4) + 64;   // a 3-char utterance with a 4-char reply
+
+    private long          nowMs = 1_000_000;
+    private int           traces;
+    private ResponseCache cache = new ResponseCache(Long.MAX_VALUE, () -> nowMs);
+
+    // --------------------------------------------------------------------
+    // Helpers
+    // --------------------------------------------------------------------
+    /** A turn that misses, then gets `reply` from the server with `cacheField` */
+    private void serverAnswers(String utterance, String reply, String cacheField) {
+        String trace = "t" + (++traces);
+        assertNull(cache.lookup(utterance, trace));
+        cache.offer(trace, reply, cacheField);
+    }
+
+    private String ask(String utterance) { return cache.lookup(utterance, "t" + (++traces)); }
+
+    // --------------------------------------------------------------------
+    // Filling
+    // --------------------------------------------------------------------
+    @Test public void aCacheableReplyAnswersTheNextTurn() {
+        serverAnswers("Thank you!", "You're welcome", "true");
+        assertEquals("You're welcome", ask("thank   you"));
+        assertEquals(1, cache.size());
+    }
+
+    @Test public void repliesTheServerDidNotMarkAreNotCached() {
+        serverAnswers("what time is it", "It is noon", null);
+        assertNull(ask("what time is it"));
+        assertEquals(0, cache.size());
+    }
+
+    @Test public void onlyTheFirstReplyToATraceIsConsidered() {
+        assertNull(cache.lookup("hello", "t1"));
+        cache.offer("t1", "Hi!", null);          // llm_response without cache...
+        cache.offer("t1", "Hi again", "true");   // ...then anything else for the turn is ignored
+        assertNull(ask("hello"));
+    }
+
+    @Test public void repliesForUnknownTracesAreIgnored() {
+        cache.offer("never-asked", "Hi", "true");
+        cache.offer(null, "Hi", "true");
+        assertEquals(0, cache.size());
+    }
+
+    @Test public void emptyRepliesAndEmptyUtterancesAreNotCached() {
+        serverAnswers("hello", "", "true");
+        assertNull(cache.lookup("?!", "t-empty"));
+        cache.offer("t-empty", "What?", "true");
+        assertEquals(0, cache.size());
+    }
+
+    @Test public void utterancesAreNormalized() {
+        assertEquals("thank you",      ResponseCache.normalize("  Thank   you!! "));
+        assertEquals("what's up 2day", ResponseCache.normalize("What's up, 2DAY?"));
+        assertEquals("",               ResponseCache.normalize("...!?"));
+    }
+
+    // --------------------------------------------------------------------
+    // The server's cache field
+    // --------------------------------------------------------------------
+    @Test public void trueMeansTheDefaultTtl() {
+        serverAnswers("one", "aaaa", "true");
+        nowMs += DAY_MS - 1;
+        assertEquals("aaaa", ask("one"));
+        nowMs += 1;
+        assertNull(ask("one"));
+    }
+
+    @Test public void aNumberIsTheTtlInSeconds() {
+        serverAnswers("one", "aaaa", " 120 ");
+        nowMs += 2 * MINUTE_MS - 1;
+        assertEquals("aaaa", ask("one"));
+        nowMs += 1;
+        assertNull(ask("one"));
+    }
+
+    @Test public void shortTtlsAreRaisedToAMinute() {
+        serverAnswers("one", "aaaa", "5");
+        nowMs += MINUTE_MS - 1;
+        assertEquals("aaaa", ask("one"));
+    }
+
+    @Test public void longTtlsAreCappedAtAWeek() {
+        serverAnswers("one", "aaaa", String.valueOf(365L * 24 * 3600));
+        nowMs += 7 * DAY_MS;
+        assertNull(ask("one"));
+    }
+
+    @Test public void anythingElseIsNotCacheable() {
+        for (String field : new String[] { "false", "0", "-30", "soon", "", "TRUE", "1.5" }) {
+            serverAnswers("one", "aaaa", field);
+            assertEquals(field, 0, cache.size());
+        }
+    }
+
+    // --------------------------------------------------------------------
+    // Expiry and eviction
+    // --------------------------------------------------------------------
+    @Test public void anExpiredEntryIsAMissAndFreesItsBytes() {
+        serverAnswers("one", "aaaa", "60");
+        assertEquals(ENTRY, cache.bytes());
+        nowMs += MINUTE_MS;
+        assertNull(ask("one"));
+        assertEquals(0, cache.size());
+        assertEquals(0, cache.bytes());
+    }
+
+    @Test public void expiredEntriesAreDroppedWhenAnotherIsAdded() {
+        serverAnswers("one", "aaaa", "60");
+        serverAnswers("two", "bbbb", "3600");
+        nowMs += MINUTE_MS;
+        serverAnswers("six", "cccc", "3600");
+        assertEquals(2, cache.size());
+        assertEquals(2 * ENTRY, cache.bytes());
+    }
+
+    @Test public void theLeastRecentlyUsedEntryGoesPastTheCap() {
+        cache = new ResponseCache(2 * ENTRY, () -> nowMs);
+        serverAnswers("one", "aaaa", "true");
+        serverAnswers("two", "bbbb", "true");
+        assertEquals(2 * ENTRY, cache.bytes());     // exactly at the cap: both stay
+
+        assertEquals("aaaa", ask("one"));           // "two" is now the least recently used
+        serverAnswers("six", "cccc", "true");
+        assertEquals(2, cache.size());
+        assertEquals(2 * ENTRY, cache.bytes());
+        assertEquals("aaaa", ask("one"));
+        assertEquals("cccc", ask("six"));
+        assertNull(ask("two"));
+    }
+
+    @Test public void aReplyLargerThanTheCapIsNotKept() {
+        cache = new ResponseCache(ENTRY, () -> nowMs);
+        serverAnswers("one", "a much longer reply", "true");
+        assertEquals(0, cache.size());
+        assertEquals(0, cache.bytes());
+    }
+
+    @Test public void replacingAnEntryCountsOnlyTheNewOne() {
+        serverAnswers("one", "aaaa", "true");
+        nowMs += DAY_MS;                            // expired: the next turn misses and refills it
+        serverAnswers("one", "bb", "true");
+        assertEquals(1, cache.size());
+        assertEquals(2 * (3 + 2) + 64, cache.bytes());
+        assertEquals("bb", ask("one"));
+    }
+
+    @Test public void clearEmptiesTheCache() {
+        serverAnswers("one", "aaaa", "true");
+        cache.clear();
+        assertEquals(0, cache.size());
+        assertEquals(0, cache.bytes());
+        assertNull(ask("one"));
+    }
+
+    // --------------------------------------------------------------------
+    // Turns answered on-device
+    // --------------------------------------------------------------------
+    @Test public void hitsAreRememberedByTrace() {
+        serverAnswers("one", "aaaa", "true");
+        assertEquals("aaaa", cache.lookup("one", "hit"));
+        assertNull(cache.lookup("two", "miss"));
+
+        assertTrue(cache.answeredLocally("hit"));
+        assertFalse(cache.answeredLocally("miss"));
+        assertFalse(cache.answeredLocally("t1"));   // the turn that filled the cache went to the server
+        assertFalse(cache.answeredLocally(null));
+    }
+
+    @Test public void onlyTheLast32AnsweredTracesAreRemembered() {
+        serverAnswers("one", "aaaa", "true");
+        for (int i = 0; i < 33; i++) assertEquals("aaaa", cache.lookup("one", "hit" + i));
+        assertFalse(cache.answeredLocally("hit0"));
+        assertTrue(cache.answeredLocally("hit1"));
+        assertTrue(cache.answeredLocally("hit32"));
+    }
+}
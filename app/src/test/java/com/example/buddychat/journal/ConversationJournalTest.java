@@ -0,0 +1,184 @@
+package com.example.buddychat.journal;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import android.app.Application;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 34, application = Application.class)   // only for android.util.Log
+public class ConversationJournalTest {
+    private static final long TIMEOUT_MS = 10_000;
+    private static final int  HEADER     = 4 + 4 + 1 + 8 + 1;   // len, crc, kind, time, traceLen
+
+    @Rule public final TemporaryFolder tmp = new TemporaryFolder();
+
+    private ConversationJournal journal;
+
+    @After public void tearDown() { if (journal != null) journal.close(); }
+
+    // --------------------------------------------------------------------
+    // Helpers
+    // --------------------------------------------------------------------
+    /** One replayed record */
+    private static final class Rec {
+        final long offset; final ConversationJournal.Kind kind; final String trace, text;
+        Rec(long offset, ConversationJournal.Kind kind, String trace, String text) {
+            this.offset = offset; this.kind = kind; this.trace = trace; this.text = text;
+        }
+    }
+
+    private File dir() { return new File(tmp.getRoot(), "journal"); }
+
+    /** Encoded size of an ASCII record */
+    private static long size(String trace, String text) { return HEADER + trace.length() + text.length(); }
+
+    /** Append and return the offset just past the record (records are contiguous, across segments too) */
+    private long append(long at, String trace, String text) {
+        journal.append(ConversationJournal.Kind.USER, trace, text);
+        return at + size(trace, text);
+    }
+
+    /** Writes are asynchronous: wait until the journal ends at `offset` */
+    private void awaitEnd(long offset) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + TIMEOUT_MS;
+        while (journal.endOffset() != offset) {
+            assertTrue("journal ends at " + journal.endOffset() + ", expected " + offset, System.currentTimeMillis() < deadline);
+            Thread.sleep(5);
+        }
+    }
+
+    private List<Rec> replay(long from) {
+        List<Rec> out = new ArrayList<>();
+        journal.replay(from, (offset, kind, timeMs, trace, text) -> out.add(new Rec(offset, kind, trace, text)));
+        return out;
+    }
+
+    private List<String> traces(List<Rec> recs) {
+        List<String> out = new ArrayList<>();
+        for (Rec r : recs) out.add(r.trace);
+        return out;
+    }
+
+    private File[] segmentFiles() {
+        File[] f = dir().listFiles((d, n) -> n.startsWith("seg-") && n.endsWith(".log"));
+        Arrays.sort(f);
+        return f;
+    }
+
+    private static String big(int i) {
+        char[] c = new char[16_000];
+        Arrays.fill(c, (char) ('a' + i % 26));
+        return new String(c);
+    }
+
+    // --------------------------------------------------------------------
+    // Tests
+    // --------------------------------------------------------------------
+    @Test public void appendAcrossARotation() throws Exception {
+        journal = ConversationJournal.open(dir());
+        long end = 0;
+        int  n   = 2 * ConversationJournal.SEGMENT_BYTES / 16_000 + 10;   // a little over two segments
+        for (int i = 0; i < n; i++) end = append(end, "t" + i, big(i));
+        awaitEnd(end);
+
+        File[] segs = segmentFiles();
+        assertEquals(3, segs.length);
+        long second = Long.parseLong(segs[1].getName().replaceAll("\\D", ""));
+        assertTrue(second > 0 && second < ConversationJournal.SEGMENT_BYTES);
+
+        List<Rec> all = replay(0);
+        assertEquals(n, all.size());
+        long expect = 0;
+        for (int i = 0; i < n; i++) {
+            Rec r = all.get(i);
+            assertEquals(expect, r.offset);
+            assertEquals("t" + i, r.trace);
+            assertEquals(big(i), r.text);
+            expect += size(r.trace, r.text);
+        }
+        assertEquals(second, replay(second).get(0).offset);
+    }
+
+    @Test public void replayFromAMiddleOffset() throws Exception {
+        journal = ConversationJournal.open(dir());
+        long   end = 0;
+        long[] at  = new long[10];
+        for (int i = 0; i < 10; i++) { at[i] = end; end = append(end, "t" + i, "utterance " + i); }
+        awaitEnd(end);
+
+        assertEquals(Arrays.asList("t5", "t6", "t7", "t8", "t9"), traces(replay(at[5])));
+
+        // Stop after two, then resume where that left off
+        List<String> first = new ArrayList<>();
+        long next = journal.replay(at[3], (offset, kind, timeMs, trace, text) -> { first.add(trace); return first.size() < 2; });
+        assertEquals(Arrays.asList("t3", "t4"), first);
+        assertEquals(at[5], next);
+        assertEquals(Arrays.asList("t5", "t6", "t7", "t8", "t9"), traces(replay(next)));
+        assertTrue(replay(end).isEmpty());
+    }
+
+    @Test public void aCorruptLastRecordIsTruncatedOnReopen() throws Exception {
+        journal = ConversationJournal.open(dir());
+        long end = 0, last = 0;
+        for (int i = 0; i < 5; i++) { last = end; end = append(end, "t" + i, "utterance " + i); }
+        awaitEnd(end);
+        journal.close();
+        Thread.sleep(100);   // close() doesn't wait for the writer
+
+        try (RandomAccessFile raf = new RandomAccessFile(segmentFiles()[0], "rw")) {
+            raf.seek(end - 2);   // inside the text of the last record: its CRC fails
+            raf.write('#');
+        }
+
+        journal = ConversationJournal.open(dir());
+        awaitEnd(last);
+        assertEquals(Arrays.asList("t0", "t1", "t2", "t3"), traces(replay(0)));
+
+        end = append(last, "t5", "after the crash");
+        awaitEnd(end);
+        List<Rec> all = replay(0);
+        assertEquals(Arrays.asList("t0", "t1", "t2", "t3", "t5"), traces(all));
+        assertEquals(last, all.get(4).offset);
+        assertEquals("after the crash", all.get(4).text);
+    }
+
+    @Test public void replaySkipsASegmentDeletedUnderIt() throws Exception {
+        journal = ConversationJournal.open(dir());
+        long end = 0;
+        int  n   = 2 * ConversationJournal.SEGMENT_BYTES / 16_000 + 10;
+        for (int i = 0; i < n; i++) end = append(end, "t" + i, big(i));
+        awaitEnd(end);
+
+        File[] segs  = segmentFiles();
+        long   third = Long.parseLong(segs[2].getName().replaceAll("\\D", ""));
+        List<Rec> seen = new ArrayList<>();
+        long next = journal.replay(0, (offset, kind, timeMs, trace, text) -> {
+            if (seen.isEmpty()) assertTrue(segs[1].delete());   // retention, mid-replay
+            seen.add(new Rec(offset, kind, trace, text));
+            return true;
+        });
+
+        assertEquals(end, next);
+        assertFalse(seen.isEmpty());
+        long second = Long.parseLong(segs[1].getName().replaceAll("\\D", ""));
+        for (Rec r : seen) assertFalse("offset " + r.offset + " is in the deleted segment", r.offset >= second && r.offset < third);
+        assertEquals(third, seen.stream().filter(r -> r.offset >= second).findFirst().get().offset);
+        assertEquals("t" + (n - 1), seen.get(seen.size() - 1).trace);
+    }
+}
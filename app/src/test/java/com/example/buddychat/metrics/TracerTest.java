@@ -0,0 +1,143 @@
+package com.example.buddychat.metrics;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import android.app.Application;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import com.example.buddychat.network.protocol.ChatBinaryCodec;
+import com.example.buddychat.network.protocol.ChatCodec;
+import com.example.buddychat.network.protocol.ChatMessage;
+
+// Tracer is global: every test uses fresh trace ids and only looks at its own spans
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 34, application = Application.class)   // only for android.util.Log
+public class TracerTest {
+    @Rule public final TemporaryFolder dir = new TemporaryFolder();
+
+    @After public void tearDown() { Tracer.setRttSource(() -> -1); }
+
+    /** Exported rows of `trace`, oldest first, as {span, start_us, dur_us} */
+    private List<String[]> exported(String trace) throws Exception {
+        File out = Tracer.export(dir.getRoot());
+        assertNotNull(out);
+        List<String> lines = Files.readAllLines(out.toPath(), StandardCharsets.UTF_8);
+        assertTrue(lines.get(0), lines.get(0).startsWith("# trace\tspan\tstart_us\tdur_us"));
+
+        List<String[]> rows = new ArrayList<>();
+        for (String line : lines.subList(1, lines.size())) {
+            String[] f = line.split("\t");
+            assertEquals(line, 4, f.length);
+            if (f[0].equals(trace)) rows.add(Arrays.copyOfRange(f, 1, 4));
+        }
+        return rows;
+    }
+
+    private static List<String> names(List<String[]> rows) {
+        List<String> n = new ArrayList<>();
+        for (String[] r : rows) n.add(r[0]);
+        return n;
+    }
+
+    // --------------------------------------------------------------------
+    // Trace ids
+    // --------------------------------------------------------------------
+    @Test public void traceIdsAreSixteenHexChars() {
+        for (int i = 0; i < 1_000; i++) {
+            String id = Tracer.newTraceId();
+            assertTrue(id, id.matches("[0-9a-f]{16}"));
+        }
+        assertNotEquals(Tracer.newTraceId(), Tracer.newTraceId());
+    }
+
+    @Test public void aTraceIdRoundTripsThroughTheJsonFrame() throws Exception {
+        String id = Tracer.newTraceId();
+        String json = new ChatCodec().encode(new ChatMessage(ChatMessage.Type.TRANSCRIPTION, "hello", id));
+        assertEquals(id, ChatCodec.decode(json, null).trace);
+    }
+
+    @Test public void aTraceIdRoundTripsThroughTheBinaryFrame() throws Exception {
+        String id = Tracer.newTraceId();
+        ChatBinaryCodec bin = new ChatBinaryCodec();
+        int n = bin.encode(new ChatMessage(ChatMessage.Type.TRANSCRIPTION, "hello", id));
+        assertEquals(id, ChatBinaryCodec.decode(bin.buffer(), 0, n, null).trace);
+    }
+
+    // --------------------------------------------------------------------
+    // Spans
+    // --------------------------------------------------------------------
+    @Test public void aTurnExportsItsSpansInOrder() throws Exception {
+        Tracer.setRttSource(() -> 1);
+        String trace = Tracer.newTraceId();
+        long before = System.currentTimeMillis() * 1000;
+
+        Tracer.begin(trace);
+        assertEquals(trace, Tracer.latest());
+        Thread.sleep(2);
+        Tracer.queued(trace);
+        Tracer.sent(trace);
+        Thread.sleep(10);
+        Tracer.reply(trace);
+        Tracer.reply(trace);   // later deltas add nothing
+        Tracer.ttsChunk(trace, System.nanoTime() - 3_000_000);
+
+        List<String[]> rows = exported(trace);
+        assertEquals(Arrays.asList("stt", "queue", "roundtrip", "network", "server", "tts"), names(rows));
+        for (String[] r : rows) {
+            long start = Long.parseLong(r[1]), dur = Long.parseLong(r[2]);
+            assertTrue(r[0] + " starts " + start, start >= before - 1_000);
+            assertTrue(r[0] + " lasts " + dur, dur >= 0);
+        }
+        long stt = Long.parseLong(rows.get(0)[2]), roundtrip = Long.parseLong(rows.get(2)[2]);
+        long network = Long.parseLong(rows.get(3)[2]), server = Long.parseLong(rows.get(4)[2]);
+        assertTrue("stt " + stt, stt >= 2_000);
+        assertTrue("roundtrip " + roundtrip, roundtrip >= 10_000);
+        assertEquals(1_000, network);                      // the RTT source, in micros
+        assertEquals(roundtrip - network, server, 1);
+        assertEquals(Long.parseLong(rows.get(2)[1]) + network / 2, Long.parseLong(rows.get(4)[1]), 1);   // centred
+        assertTrue(Long.parseLong(rows.get(5)[2]) >= 3_000);
+    }
+
+    @Test public void withoutAnRttThereIsNoNetworkSplit() throws Exception {
+        String trace = Tracer.newTraceId();
+        Tracer.begin(trace);
+        Tracer.queued(trace);
+        Tracer.sent(trace);
+        Tracer.reply(trace);
+        assertEquals(Arrays.asList("stt", "queue", "roundtrip"), names(exported(trace)));
+    }
+
+    @Test public void aReplyWithoutATraceCountsForTheLatestTurn() throws Exception {
+        String trace = Tracer.newTraceId();
+        Tracer.begin(trace);
+        Tracer.queued(trace);
+        Tracer.sent(trace);
+        Tracer.reply(null);
+        assertEquals(Arrays.asList("stt", "queue", "roundtrip"), names(exported(trace)));
+    }
+
+    @Test public void aReplyBeforeTheSendIsNotARoundtrip() throws Exception {
+        String trace = Tracer.newTraceId();
+        Tracer.begin(trace);
+        Tracer.reply(trace);
+        Tracer.queued(trace);
+        assertEquals(Arrays.asList("stt"), names(exported(trace)));
+    }
+}
@@ -0,0 +1,83 @@
+package com.example.buddychat.network.auth;
+
+import static org.junit.Assert.assertEquals;
+
+import android.app.Application;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 34, application = Application.class)   // only for android.util.Log
+public class TokenManagerTest {
+    private static final long NOW_MS     = 1_700_000_000_000L;
+    private static final long MARGIN_MS  = 60_000;       // TokenManager.REFRESH_MARGIN_MS
+    private static final long UNKNOWN_MS = 5 * 60_000;   // TokenManager.UNKNOWN_EXP_MS
+
+    /** Unsigned JWT with the given claims JSON (the signature is never checked on-device) */
+    private static String jwt(String claims) {
+        Base64.Encoder b64 = Base64.getUrlEncoder().withoutPadding();
+        return b64.encodeToString("{\"alg\":\"HS256\",\"typ\":\"JWT\"}".getBytes(StandardCharsets.UTF_8))
+                + "." + b64.encodeToString(claims.getBytes(StandardCharsets.UTF_8))
+                + ".c2lnbmF0dXJl";
+    }
+
+    // --------------------------------------------------------------------
+    // Expiry parsing
+    // --------------------------------------------------------------------
+    @Test public void readsTheExpClaimInSeconds() {
+        assertEquals(1_700_000_600_000L, TokenManager.expiresAt(jwt("{\"user_id\":7,\"exp\":1700000600}"), NOW_MS));
+    }
+
+    @Test public void aPastExpIsReportedAsIs() {
+        assertEquals(1_699_999_000_000L, TokenManager.expiresAt(jwt("{\"exp\":1699999000}"), NOW_MS));
+    }
+
+    @Test public void aMissingExpGetsTheAssumedLifetime() {
+        assertEquals(NOW_MS + UNKNOWN_MS, TokenManager.expiresAt(jwt("{\"user_id\":7}"), NOW_MS));
+    }
+
+    @Test public void aNonNumericExpGetsTheAssumedLifetime() {
+        assertEquals(NOW_MS + UNKNOWN_MS, TokenManager.expiresAt(jwt("{\"exp\":\"soon\"}"), NOW_MS));
+        assertEquals(NOW_MS + UNKNOWN_MS, TokenManager.expiresAt(jwt("{\"exp\":null}"),   NOW_MS));
+    }
+
+    @Test public void malformedTokensGetTheAssumedLifetime() {
+        String[] bad = {
+                null,
+                "",
+                "not-a-jwt",                                  // one part
+                "header.!!!notbase64!!!.sig",                 // payload isn't base64url
+                "header." + Base64.getUrlEncoder().withoutPadding()
+                        .encodeToString("[1,2]".getBytes(StandardCharsets.UTF_8)) + ".sig",   // not an object
+                "header." + Base64.getUrlEncoder().withoutPadding()
+                        .encodeToString("{\"exp\":".getBytes(StandardCharsets.UTF_8)) + ".sig",  // truncated JSON
+        };
+        for (String t : bad) assertEquals(String.valueOf(t), NOW_MS + UNKNOWN_MS, TokenManager.expiresAt(t, NOW_MS));
+    }
+
+    // --------------------------------------------------------------------
+    // Refresh scheduling
+    // --------------------------------------------------------------------
+    @Test public void refreshIsScheduledAMarginBeforeExpiry() {
+        assertEquals(10 * 60_000 - MARGIN_MS, TokenManager.refreshDelayMs(NOW_MS + 10 * 60_000, NOW_MS));
+    }
+
+    @Test public void aTokenInsideTheMarginIsRefreshedNow() {
+        assertEquals(0, TokenManager.refreshDelayMs(NOW_MS + MARGIN_MS,      NOW_MS));
+        assertEquals(0, TokenManager.refreshDelayMs(NOW_MS + MARGIN_MS / 2,  NOW_MS));
+    }
+
+    @Test public void anExpiredTokenIsRefreshedNow() {
+        assertEquals(0, TokenManager.refreshDelayMs(TokenManager.expiresAt(jwt("{\"exp\":1699999000}"), NOW_MS), NOW_MS));
+    }
+
+    @Test public void anUnreadableTokenIsRefreshedBeforeItsAssumedExpiry() {
+        assertEquals(UNKNOWN_MS - MARGIN_MS, TokenManager.refreshDelayMs(TokenManager.expiresAt("garbage", NOW_MS), NOW_MS));
+    }
+}
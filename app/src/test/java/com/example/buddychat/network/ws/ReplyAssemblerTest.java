@@ -0,0 +1,84 @@
+package com.example.buddychat.network.ws;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class ReplyAssemblerTest {
+    private final ReplyAssembler reply = new ReplyAssembler();
+
+    @Test public void deltasAccumulate() {
+        assertFalse(reply.isActive());
+        reply.append("r1", "Hello");
+        reply.append("r1", ", wor");
+        reply.append(null, "ld");   // frames without an id continue the current reply
+        assertTrue(reply.isActive());
+        assertEquals("Hello, world", reply.snapshot());
+    }
+
+    @Test public void everyChangeBumpsTheVersion() {
+        int v0 = reply.version();
+        reply.append("r1", "a");
+        int v1 = reply.version();
+        reply.append("r1", "b");
+        assertNotEquals(v0, v1);
+        assertNotEquals(v1, reply.version());
+    }
+
+    @Test public void aNewIdStartsANewReply() {
+        reply.append("r1", "old, never finished");
+        reply.append("r2", "new");
+        assertEquals("new", reply.snapshot());
+    }
+
+    @Test public void finishReturnsTheAssembledText() {
+        reply.append("r1", "Hi ");
+        reply.append("r1", "there");
+        assertEquals("Hi there", reply.finish("r1", null));
+        assertFalse(reply.isActive());
+        assertEquals("", reply.snapshot());
+    }
+
+    @Test public void finishPrefersTheServersFullText() {
+        reply.append("r1", "Hi thre");
+        assertEquals("Hi there", reply.finish("r1", "Hi there"));
+        reply.append("r2", "Ok");
+        assertEquals("Ok", reply.finish("r2", ""));   // empty final text: keep what was streamed
+    }
+
+    @Test public void aLateDoneForASupersededReplyIsIgnored() {
+        reply.append("r1", "old");
+        reply.append("r2", "new, still ");
+        assertNull(reply.finish("r1", "old reply"));
+        assertTrue(reply.isActive());
+        reply.append("r2", "streaming");
+        assertEquals("new, still streaming", reply.finish("r2", null));
+    }
+
+    @Test public void aDoneWithoutAnIdFinishesTheCurrentReply() {
+        reply.append("r1", "text");
+        assertEquals("text", reply.finish(null, null));
+        reply.append(null, "no id");
+        assertEquals("no id", reply.finish("r2", null));
+    }
+
+    @Test public void appendAfterFinishStartsOver() {
+        reply.append("r1", "first");
+        reply.finish("r1", null);
+        reply.append("r1", "second");
+        assertEquals("second", reply.snapshot());
+    }
+
+    @Test public void resetDropsThePartialReply() {
+        reply.append("r1", "half");
+        int v = reply.version();
+        reply.reset();
+        assertFalse(reply.isActive());
+        assertEquals("", reply.snapshot());
+        assertNotEquals(v, reply.version());
+    }
+}
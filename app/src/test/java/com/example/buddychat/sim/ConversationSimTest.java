@@ -0,0 +1,159 @@
+package com.example.buddychat.sim;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.robolectric.Shadows.shadowOf;
+
+import android.Manifest;
+import android.app.Application;
+import android.os.Looper;
+import android.util.Log;
+import android.widget.Button;
+import android.widget.TextView;
+
+import java.io.File;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.function.BooleanSupplier;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+
+import com.example.buddychat.ConversationPipeline;
+import com.example.buddychat.journal.ConversationJournal;
+import com.example.buddychat.loadgen.StandInServer;
+import com.example.buddychat.metrics.TurnLatency;
+import com.example.buddychat.network.ChatApi;
+import com.example.buddychat.network.ws.ChatSocketManager;
+import com.example.buddychat.speech.SimulatedSpeechBackend;
+import com.example.buddychat.speech.SpeechBackends;
+import com.example.buddychat.stt.BuddySTT;
+import com.example.buddychat.tts.BuddyTTS;
+
+// ====================================================================
+// Headless conversation: scripted STT -> pipeline -> stand-in server -> simulated TTS
+// ====================================================================
+/// Runs the same ConversationPipeline as MainActivity on the JVM, with
+/// SimulatedSpeechBackend instead of BuddySDK.Speech and the load
+/// generator's StandInServer instead of the cloud. Timing is real (a run
+/// takes ~10 s); the main looper is pumped while waiting. The robot hears
+/// its own replies, so self-echo suppression is exercised too. Per-stage
+/// latencies are logged at the end, like the debug overlay on the robot,
+/// and every stage of both turns must have been measured.
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 34, application = Application.class)   // plain Application: BuddyApplication wants the robot's services
+public class ConversationSimTest {
+    private static final String TAG = "ConversationSim";
+
+    private static final long PUMP_MS    = 10;
+    private static final long TIMEOUT_MS = 30_000;
+
+    private static final String FIRST  = "hello robot";
+    private static final String SECOND = "what is the weather like today";
+
+    private StandInServer          server;
+    private SimulatedSpeechBackend speech;
+    private ChatSocketManager      chat;
+    private ConversationJournal    journal;
+    private ConversationPipeline   pipeline;
+    private boolean                ttsOn;   // this test enabled BuddyTTS; it is global, so turn it back off
+
+    @Before
+    public void setUp() throws Exception {
+        Application app = RuntimeEnvironment.getApplication();
+        shadowOf(app).grantPermissions(Manifest.permission.RECORD_AUDIO);
+        TurnLatency.reset();
+
+        server = StandInServer.defaults().start();
+        speech = new SimulatedSpeechBackend(100, 20)
+                .say(1_000, FIRST,  0.9f)
+                .say(3_500, SECOND, 0.85f);
+        speech.setEcho(true);
+        SpeechBackends.install(speech);
+
+        File dir = new File(app.getFilesDir(), "sim");
+        journal  = ConversationJournal.open(new File(dir, "journal"));
+        chat     = new ChatSocketManager();
+        chat.setEndpoint(server.chatEndpoint());
+        pipeline = new ConversationPipeline(chat, new TextView(app), new TextView(app), new Button(app),
+                journal, dir, true, running -> { });
+
+        BuddyTTS.init(app);
+        BuddySTT.init(app, Locale.ENGLISH, BuddySTT.Engine.GOOGLE, true);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        BuddySTT.stop();
+        if (ttsOn) BuddyTTS.toggle();
+        chat.endChat();
+        speech.shutdown();
+        SpeechBackends.install(null);   // back to the default backend
+        server.close();
+        journal.close();
+    }
+
+    @Test
+    public void scriptedConversationIsAnsweredAndSpoken() throws Exception {
+        String token = new ChatApi(ChatApi.CLIENT, server.apiBase()).loginBlocking("sim", "sim").access;
+        chat.connect(() -> token, pipeline.chatCallbacks);
+        BuddyTTS.toggle();
+        ttsOn = true;
+        BuddySTT.toggle(pipeline.input);
+
+        boolean finished = runUntil(() -> speech.remainingSteps() == 0
+                && server.transcriptions().size() >= 2
+                && Collections.frequency(speech.spoken(), "Nice to talk to you.") >= 2
+                && !speech.isSpeaking());
+
+        String latency = TurnLatency.summary();
+        for (String e : speech.events()) Log.i(TAG, e);
+        Log.i(TAG, "Latency\n" + latency + BuddyTTS.stats() + "\n" + BuddySTT.stats());
+
+        assertTrue("conversation did not finish within " + TIMEOUT_MS + " ms", finished);
+        // The robot's own voice never became a transcription
+        assertEquals(Arrays.asList(FIRST, SECOND), server.transcriptions());
+        assertTrue("nothing was interrupted", server.cancels().isEmpty());
+
+        List<String> spoken = speech.spoken();
+        assertTrue(spoken.toString(), spoken.contains("You said " + FIRST  + "."));
+        assertTrue(spoken.toString(), spoken.contains("You said " + SECOND + "."));
+
+        // Both turns went through every stage, each measured once
+        for (TurnLatency.Stage stage : Arrays.asList(TurnLatency.Stage.STT_DISPATCH, TurnLatency.Stage.SEND_QUEUE,
+                TurnLatency.Stage.SERVER, TurnLatency.Stage.SPEAK_DISPATCH, TurnLatency.Stage.TURN)) {
+            assertEquals(stage.label + "\n" + latency, 2, samples(latency, stage));
+        }
+    }
+
+    // --------------------------------------------------------------------
+    // Helpers
+    // --------------------------------------------------------------------
+    /** Sample count of `stage` in a TurnLatency.summary() table */
+    private static long samples(String summary, TurnLatency.Stage stage) {
+        for (String row : summary.split("\n")) {
+            String[] cols = row.trim().split("\\s+");
+            if (cols.length > 1 && cols[0].equals(stage.label)) return Long.parseLong(cols[1]);
+        }
+        return -1;
+    }
+
+    /** Pump the main looper (UI posts) until `done` holds; false on timeout */
+    private static boolean runUntil(BooleanSupplier done) throws InterruptedException {
+        long end = System.nanoTime() + TIMEOUT_MS * 1_000_000;
+        while (!done.getAsBoolean()) {
+            if (System.nanoTime() - end > 0) return false;
+            shadowOf(Looper.getMainLooper()).idleFor(Duration.ofMillis(PUMP_MS));
+            Thread.sleep(PUMP_MS);
+        }
+        return true;
+    }
+}
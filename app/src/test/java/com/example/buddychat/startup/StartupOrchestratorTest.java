@@ -0,0 +1,95 @@
+package com.example.buddychat.startup;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+
+public class StartupOrchestratorTest {
+    private static final long TIMEOUT_MS = 5_000;
+
+    private final StartupOrchestrator startup = new StartupOrchestrator();
+    private final Recorder            events  = new Recorder();
+
+    // --------------------------------------------------------------------
+    // Helpers
+    // --------------------------------------------------------------------
+    private static final class Recorder implements StartupOrchestrator.Listener {
+        final List<String> seen = new ArrayList<>();
+
+        private synchronized void on(String what) { seen.add(what); notifyAll(); }
+
+        @Override public void onStepDone(String step, long ms, Throwable error) { on("done " + step + (error != null ? " " + error.getMessage() : "")); }
+        @Override public void onReady(StartupOrchestrator.Report report)        { on("ready"); }
+        @Override public void onFailed(String step, Throwable error)            { on("failed " + step + " " + error.getMessage()); }
+
+        synchronized List<String> seen() { return new ArrayList<>(seen); }
+
+        synchronized void await(String what) throws InterruptedException {
+            long end = System.currentTimeMillis() + TIMEOUT_MS;
+            while (!seen.contains(what) && System.currentTimeMillis() < end) wait(20);
+            assertTrue(seen.toString(), seen.contains(what));
+        }
+    }
+
+    private static void awaitSettled(StartupOrchestrator s) throws InterruptedException {
+        long end = System.currentTimeMillis() + TIMEOUT_MS;
+        while (!s.settled() && System.currentTimeMillis() < end) Thread.sleep(10);
+        assertTrue("pool still running", s.settled());
+    }
+
+    // --------------------------------------------------------------------
+    // External steps finished before start()
+    // --------------------------------------------------------------------
+    @Test public void anEarlyExternalStepIsReportedOnce() throws Exception {
+        startup.addExternal("sdk", true);
+        startup.add("speech", true, StartupOrchestrator.Completion::success, "sdk");
+        startup.complete("sdk");
+        startup.complete("sdk");   // finish once
+        startup.start(events);
+
+        events.await("ready");
+        assertEquals(Arrays.asList("done sdk", "done speech", "ready"), events.seen());
+    }
+
+    @Test public void anEarlyExternalFailureKeepsItsError() throws Exception {
+        startup.addExternal("sdk", true);
+        startup.fail("sdk", new IllegalStateException("no robot"));
+        startup.start(events);
+
+        events.await("failed sdk no robot");
+        assertEquals(Arrays.asList("done sdk no robot", "failed sdk no robot"), events.seen());
+    }
+
+    // --------------------------------------------------------------------
+    // Background pool
+    // --------------------------------------------------------------------
+    @Test public void thePoolIsShutDownOnceEveryStepHasFinished() throws Exception {
+        startup.addExternal("sdk", true);
+        startup.add("login",   true,  StartupOrchestrator.Completion::success);
+        startup.add("profile", false, StartupOrchestrator.Completion::success, "login", "sdk");
+        startup.start(events);
+
+        events.await("done login");
+        assertFalse("sdk is still outstanding", startup.settled());
+
+        startup.complete("sdk");
+        events.await("done profile");
+        awaitSettled(startup);
+    }
+
+    @Test public void aFailedStepStillLetsThePoolGo() throws Exception {
+        startup.add("login",   true,  done -> done.failure(new RuntimeException("offline")));
+        startup.add("profile", false, StartupOrchestrator.Completion::success, "login");   // never runs
+        startup.start(events);
+
+        events.await("failed login offline");
+        awaitSettled(startup);
+        assertFalse(events.seen().toString(), events.seen().contains("done profile"));
+    }
+}
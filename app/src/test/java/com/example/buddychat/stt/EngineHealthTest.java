@@ -0,0 +1,89 @@
+package com.example.buddychat.stt;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class EngineHealthTest {
+    private final EngineHealth h = EngineHealth.defaults();
+
+    @Test public void notJudgedBeforeThreeOutcomes() {
+        h.recordError();
+        h.recordError();
+        assertFalse(h.degraded());
+        assertFalse(h.healthy());
+    }
+
+    @Test public void degradedAboveHalfTheOutcomesFailing() {
+        for (int i = 0; i < 3; i++) h.recordError();   // 20%, 36%, 49%
+        assertFalse(h.toString(), h.degraded());
+        h.recordError();                                 // 59%
+        assertTrue(h.toString(), h.degraded());
+        assertEquals("errors 59% (4 samples)", h.toString());
+    }
+
+    @Test public void resultsBringItBack() {
+        for (int i = 0; i < 4; i++) h.recordError();
+        h.recordResult();                                // 47%
+        assertTrue(h.toString(), h.healthy());
+    }
+
+    @Test public void onlyResultsIsHealthy() {
+        for (int i = 0; i < 50; i++) h.recordResult();
+        assertTrue(h.healthy());
+        assertEquals("errors 0% (50 samples)", h.toString());
+    }
+
+    @Test public void resetForgetsEverything() {
+        for (int i = 0; i < 4; i++) h.recordError();
+        h.reset();
+        assertFalse(h.degraded());
+        assertFalse(h.healthy());
+    }
+
+    // --------------------------------------------------------------------
+    // Latency
+    // --------------------------------------------------------------------
+    @Test public void sustainedSlowResultsDegrade() {
+        h.recordResult(2_000);
+        h.recordResult(2_000);
+        assertFalse(h.toString(), h.degraded());         // not judged yet
+        h.recordResult(2_000);
+        assertTrue(h.toString(), h.degraded());
+        assertEquals("errors 0% (3 samples), latency 2000 ms (slow)", h.toString());
+    }
+
+    @Test public void oneSlowResultDoesNot() {
+        h.recordResult(300);
+        h.recordResult(300);
+        h.recordResult(300);
+        h.recordResult(4_000);                           // 300 + 0.3 * 3700 = 1410
+        assertTrue(h.toString(), h.healthy());
+    }
+
+    @Test public void slowOnlyEndsBelowTheLowerMark() {
+        for (int i = 0; i < 3; i++) h.recordResult(2_000);
+        h.recordResult(1_000);                           // 1700
+        h.recordResult(1_000);                           // 1490: under the limit, not yet fast
+        assertTrue(h.toString(), h.degraded());
+        for (int i = 0; i < 3; i++) h.recordResult(200);  // 1103, 832, 642
+        assertTrue(h.toString(), h.healthy());
+    }
+
+    @Test public void unknownLatencyOnlyCountsAsAResult() {
+        for (int i = 0; i < 5; i++) h.recordResult(-1);
+        assertTrue(h.healthy());
+        assertEquals("errors 0% (5 samples)", h.toString());
+    }
+
+    @Test public void resetForgetsTheLatencyToo() {
+        for (int i = 0; i < 3; i++) h.recordResult(2_000);
+        h.reset();
+        h.recordResult(100);
+        h.recordResult(100);
+        h.recordResult(100);
+        assertTrue(h.toString(), h.healthy());
+    }
+}
@@ -0,0 +1,129 @@
+package com.example.buddychat.stt;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.robolectric.Shadows.shadowOf;
+
+import android.app.Application;
+import android.os.Looper;
+import android.widget.TextView;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+
+import com.example.buddychat.journal.ConversationJournal;
+import com.example.buddychat.turn.TurnController;
+
+// ====================================================================
+// What BuddySTT reports, through the listening chain, to the socket
+// ====================================================================
+/// RecognitionGate -> TurnController -> UtteranceCoalescer -> STTCallbacks,
+/// wired as ConversationPipeline does, with a recorder for the socket.
+/// STTCallbacks sends from the main looper, which the test pumps; the
+/// coalescer's flush is released by hand.
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 34, application = Application.class)   // a TextView and the main looper for STTCallbacks
+public class ListeningChainTest {
+    private static final long PARTIAL_INTERVAL_MS = 250;   // STTCallbacks.PARTIAL_MIN_INTERVAL_MS
+
+    @Rule public final TemporaryFolder tmp = new TemporaryFolder();
+
+    private final Sent           sent    = new Sent();
+    private final List<Runnable> flushes = new ArrayList<>();   // the coalescer's pending flush
+    private ConversationJournal  journal;
+    private UtteranceCoalescer   coalescer;
+    private TurnController       turns;
+    private RecognitionGate      input;
+
+    // --------------------------------------------------------------------
+    // Helpers
+    // --------------------------------------------------------------------
+    /** The socket side: what was handed over, and for which trace */
+    private static final class Sent implements UtteranceCallback {
+        final List<String> texts  = new ArrayList<>();
+        final List<String> traces = new ArrayList<>();
+
+        @Override public boolean sendPartial (String text, String trace)               { return add("partial " + text, trace); }
+        @Override public boolean sendString  (String text, String trace)               { return add("final " + text, trace); }
+        @Override public boolean sendAnswered(String text, String trace, String reply) { return add("answered " + text, trace); }
+
+        private boolean add(String text, String trace) { texts.add(text); traces.add(trace); return true; }
+    }
+
+    @Before
+    public void setUp() throws Exception {
+        journal = ConversationJournal.open(tmp.newFolder("journal"));
+        STTCallbacks callbacks = new STTCallbacks(new TextView(RuntimeEnvironment.getApplication()), sent, journal);
+        coalescer = new UtteranceCoalescer(callbacks, 300, 1_500, 1_200, () -> 0,
+                (task, delayMs) -> { flushes.add(task); return () -> flushes.remove(task); });
+        turns = new TurnController(coalescer, () -> { }, trace -> { });
+        input = new RecognitionGate(turns, 0);
+    }
+
+    @After public void tearDown() { journal.close(); }
+
+    /** Let the main looper run what is due `ms` from now */
+    private static void pump(long ms) { shadowOf(Looper.getMainLooper()).idleFor(Duration.ofMillis(ms)); }
+
+    /** Fire the coalescer's pending flush */
+    private void release() {
+        assertEquals(1, flushes.size());
+        flushes.remove(0).run();
+    }
+
+    private void assertOneTrace() {
+        for (String t : sent.traces) assertEquals(sent.traces.toString(), sent.traces.get(0), t);
+    }
+
+    // --------------------------------------------------------------------
+    // Engine partials
+    // --------------------------------------------------------------------
+    @Test public void enginePartialsReachTheSocketWhenNotCoalescing() {
+        coalescer.setEnabled(false);   // single-shot listening
+        input.onPartial("what is", 0.4f);
+        pump(0);
+        input.onPartial("what is the", 0.5f);
+        pump(PARTIAL_INTERVAL_MS);
+        input.onText("what is the time", 0.9f, null);
+        pump(0);
+
+        assertEquals(Arrays.asList("partial what is", "partial what is the", "final what is the time"), sent.texts);
+        assertOneTrace();
+    }
+
+    @Test public void enginePartialsFollowTheHeldPiecesWhenCoalescing() {
+        input.onText("what is the", 0.9f, null);       // held: its text is the first partial
+        pump(0);
+        input.onPartial("time in", 0.5f);              // the engine, still hearing the next piece
+        pump(PARTIAL_INTERVAL_MS);
+        input.onPartial("time in", 0.6f);              // unchanged: not sent twice
+        pump(PARTIAL_INTERVAL_MS);
+        input.onText("time in paris", 0.9f, null);
+        pump(PARTIAL_INTERVAL_MS);
+        release();
+        pump(0);
+
+        assertEquals(Arrays.asList("partial what is the", "partial what is the time in",
+                "partial what is the time in paris", "final what is the time in paris"), sent.texts);
+        assertOneTrace();
+    }
+
+    @Test public void partialsOfTheRobotsOwnVoiceStayHome() {
+        turns.onSpeaking("it is sunny in paris today", "t0");
+        input.onPartial("sunny in paris", 0.5f);
+        pump(PARTIAL_INTERVAL_MS);
+        assertTrue(sent.texts.toString(), sent.texts.isEmpty());
+    }
+}
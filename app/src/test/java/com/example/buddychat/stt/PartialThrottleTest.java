@@ -0,0 +1,176 @@
+package com.example.buddychat.stt;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Test;
+
+// Manual clock and timer: sends run on the test thread, at exact times
+public class PartialThrottleTest {
+    private static final long INTERVAL_MS = 250;
+
+    private final Timers          timers   = new Timers();
+    private final Sent            sent     = new Sent();
+    private final PartialThrottle partials = new PartialThrottle(sent, INTERVAL_MS, () -> timers.nowMs, timers);
+
+    // --------------------------------------------------------------------
+    // Helpers
+    // --------------------------------------------------------------------
+    /** Timer that only fires when the test advances the clock */
+    private static final class Timers implements UtteranceCoalescer.Timer {
+        private static final class Task {
+            final long dueMs; final Runnable run; boolean cancelled;
+            Task(long dueMs, Runnable run) { this.dueMs = dueMs; this.run = run; }
+        }
+
+        final List<Task> tasks = new ArrayList<>();
+        long nowMs = 10_000;
+
+        @Override public Runnable schedule(Runnable task, long delayMs) {
+            Task t = new Task(nowMs + delayMs, task);
+            tasks.add(t);
+            return () -> t.cancelled = true;
+        }
+
+        /** Move the clock to `toMs`, running whatever falls due on the way, in order */
+        void advanceTo(long toMs) {
+            while (true) {
+                Task next = null;
+                for (Task t : tasks) if (!t.cancelled && t.dueMs <= toMs && (next == null || t.dueMs < next.dueMs)) next = t;
+                if (next == null) break;
+                tasks.remove(next);
+                nowMs = next.dueMs;
+                next.run.run();
+            }
+            nowMs = toMs;
+        }
+
+        void advanceBy(long ms) { advanceTo(nowMs + ms); }
+    }
+
+    /** The socket side: partials handed over, and when */
+    private final class Sent implements UtteranceCallback {
+        final List<String> texts  = new ArrayList<>();
+        final List<String> traces = new ArrayList<>();
+        final List<Long>   times  = new ArrayList<>();
+
+        @Override public boolean sendPartial(String text, String trace) {
+            texts.add(text); traces.add(trace); times.add(timers.nowMs);
+            return true;
+        }
+        @Override public boolean sendString  (String text, String trace)               { throw new AssertionError(); }
+        @Override public boolean sendAnswered(String text, String trace, String reply) { throw new AssertionError(); }
+    }
+
+    private void offer(String text) {
+        partials.offer(text);
+        timers.advanceBy(0);   // what is due now runs now
+    }
+
+    // --------------------------------------------------------------------
+    // Pacing
+    // --------------------------------------------------------------------
+    @Test public void theFirstPartialGoesOutAtOnce() {
+        offer("what");
+        assertEquals(Arrays.asList("what"), sent.texts);
+        assertEquals(Arrays.asList(10_000L), sent.times);
+    }
+
+    @Test public void partialsWithinTheIntervalCoalesceIntoTheNewest() {
+        offer("what");
+        timers.advanceBy(50);
+        offer("what time");
+        timers.advanceBy(50);
+        offer("what time is");
+        assertEquals(Arrays.asList("what"), sent.texts);
+
+        timers.advanceBy(INTERVAL_MS);
+        assertEquals(Arrays.asList("what", "what time is"), sent.texts);
+        assertEquals(Arrays.asList(10_000L, 10_000L + INTERVAL_MS), sent.times);   // one interval after the last send
+    }
+
+    @Test public void aPartialAfterAQuietSpellIsNotHeldBack() {
+        offer("what");
+        timers.advanceBy(INTERVAL_MS + 100);
+        offer("what time");
+        assertEquals(Arrays.asList("what", "what time"), sent.texts);
+    }
+
+    @Test public void theIntervalHoldsAcrossUtterances() {
+        offer("hi");
+        partials.take();
+        timers.advanceBy(100);
+        offer("what");
+        assertEquals(Arrays.asList("hi"), sent.texts);
+        timers.advanceBy(INTERVAL_MS);
+        assertEquals(Arrays.asList("hi", "what"), sent.texts);
+    }
+
+    // --------------------------------------------------------------------
+    // Dedupe
+    // --------------------------------------------------------------------
+    @Test public void repeatsAreDropped() {
+        offer("what time");
+        offer("what time");
+        offer("  what time ");
+        timers.advanceBy(10 * INTERVAL_MS);
+        assertEquals(Arrays.asList("what time"), sent.texts);
+    }
+
+    @Test public void aHypothesisThatComesBackToTheSentOneIsNotResent() {
+        offer("what time");
+        timers.advanceBy(10);
+        offer("what tine");
+        offer("what time");   // back to what the server already has
+        timers.advanceBy(10 * INTERVAL_MS);
+        assertEquals(Arrays.asList("what time"), sent.texts);
+    }
+
+    @Test public void emptyPartialsAreIgnored() {
+        offer(null);
+        offer("");
+        offer("   ");
+        timers.advanceBy(10 * INTERVAL_MS);
+        assertEquals(Collections.emptyList(), sent.texts);
+    }
+
+    // --------------------------------------------------------------------
+    // Traces
+    // --------------------------------------------------------------------
+    @Test public void theFinalResultReusesThePartialsTrace() {
+        offer("what");
+        timers.advanceBy(INTERVAL_MS);
+        offer("what time");
+        assertEquals(sent.traces.get(0), sent.traces.get(1));
+        assertEquals(sent.traces.get(0), partials.take());
+    }
+
+    @Test public void everyUtteranceGetsItsOwnTrace() {
+        String first = partials.take();   // no partials: a fresh trace
+        assertTrue(first, first.matches("[0-9a-f]{16}"));
+        offer("hello");
+        String second = partials.take();
+        assertNotEquals(first, second);
+        assertEquals(second, sent.traces.get(0));
+
+        timers.advanceBy(INTERVAL_MS);
+        offer("hello");   // same words, new utterance: sent again, under a new trace
+        assertEquals(Arrays.asList("hello", "hello"), sent.texts);
+        assertNotEquals(second, sent.traces.get(1));
+    }
+
+    @Test public void aPartialStillWaitingIsDroppedByTheFinal() {
+        offer("what");
+        timers.advanceBy(10);
+        offer("what time");
+        partials.take();
+        timers.advanceBy(10 * INTERVAL_MS);
+        assertEquals(Arrays.asList("what"), sent.texts);
+    }
+}
@@ -0,0 +1,146 @@
+package com.example.buddychat.stt;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import android.app.Application;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 34, application = Application.class)   // only for android.util.Log
+public class RecognitionGateTest {
+    private static final float EPS = 1e-4f;
+
+    private final List<List<String>> out  = new ArrayList<>();
+    private final RecognitionGate    gate = new RecognitionGate(new STTListener() {
+        @Override public void onText(String u, float c, String r) { out.add(Arrays.asList(u)); }
+        @Override public void onError(String err) { }
+        @Override public void onNBest(String engine, List<Hypothesis> nbest) {
+            List<String> texts = new ArrayList<>();
+            for (Hypothesis h : nbest) texts.add(h.utterance);
+            out.add(texts);
+        }
+    }, 2);
+
+    // --------------------------------------------------------------------
+    // Helpers
+    // --------------------------------------------------------------------
+    private static Hypothesis h(String text, float conf) { return new Hypothesis(text, conf, null); }
+
+    /** Send an N-best list; returns what went downstream, or null if it was dropped */
+    private List<String> send(String engine, Hypothesis... nbest) {
+        int before = out.size();
+        gate.onNBest(engine, Arrays.asList(nbest));
+        return out.size() > before ? out.get(out.size() - 1) : null;
+    }
+
+    private void feed(String engine, float conf, int n) {
+        for (int i = 0; i < n; i++) send(engine, h("hello there robot", conf));
+    }
+
+    // --------------------------------------------------------------------
+    // Threshold
+    // --------------------------------------------------------------------
+    @Test public void everythingCleanPassesDuringWarmUp() {
+        feed("cloud", 0.8f, 15);
+        assertEquals(0, gate.threshold("cloud"), 0);
+        assertEquals(Arrays.asList("ok"), send("cloud", h("ok", 0.01f)));
+        assertEquals(16, out.size());
+    }
+
+    @Test public void tightScoresAreCappedAtSixTenthsOfTheMedian() {
+        feed("cloud", 0.8f, 16);   // MAD 0: median - 3 MAD is the median itself
+        assertEquals(0.48f, gate.threshold("cloud"), EPS);
+    }
+
+    @Test public void spreadScoresFallBackToHalfTheMedian() {
+        feed("cloud", 0.7f, 8);
+        feed("cloud", 0.9f, 8);    // median 0.9, MAD 0.2: 0.9 - 0.6 is below 0.45
+        assertEquals(0.45f, gate.threshold("cloud"), EPS);
+    }
+
+    @Test public void inBetweenTheThresholdIsMedianMinusThreeMad() {
+        feed("cloud", 0.85f, 4);
+        feed("cloud", 1.0f,  8);
+        feed("cloud", 1.15f, 4);   // median 1.0, MAD 0.15
+        assertEquals(0.55f, gate.threshold("cloud"), EPS);
+    }
+
+    @Test public void eachEngineLearnsOnItsOwnScale() {
+        feed("cerence", 800f, 16);
+        feed("google",  0.8f, 16);
+        assertEquals(480f,  gate.threshold("cerence"), 0.01f);
+        assertEquals(0.48f, gate.threshold("google"),  EPS);
+        assertEquals(null, send("cerence", h("what time is it", 400f)));
+        assertEquals(Arrays.asList("what time is it"), send("google", h("what time is it", 0.5f)));
+    }
+
+    @Test public void oneWordNeedsAQuarterMore() {
+        feed("cloud", 0.8f, 16);   // threshold 0.48, one word 0.6
+        assertEquals(null, send("cloud", h("yes", 0.55f)));
+        assertEquals(Arrays.asList("yes"), send("cloud", h("yes", 0.61f)));
+        assertEquals(Arrays.asList("yes please"), send("cloud", h("yes please", 0.55f)));
+    }
+
+    @Test public void oneWordScoresAreNotLearned() {
+        for (int i = 0; i < 20; i++) send("cloud", h("yes", 0.9f));
+        assertEquals(0, gate.threshold("cloud"), 0);
+    }
+
+    @Test public void droppedScoresAreLearnedToo() {
+        feed("cloud", 0.8f, 16);   // threshold 0.48
+        for (int i = 0; i < 16; i++) {
+            send("cloud", h("is it going to rain", 0.45f));   // a quieter speaker: dropped at first
+            send("cloud", h("what about tomorrow", 0.45f));
+            send("cloud", h("thanks robot", 0.9f));
+        }
+        // Learning only what passed would have left 0.9s beside the 0.8s: threshold 0.54
+        assertTrue(String.valueOf(gate.threshold("cloud")), gate.threshold("cloud") <= 0.48f);
+        assertEquals(Arrays.asList("is it going to rain"), send("cloud", h("is it going to rain", 0.45f)));
+    }
+
+    @Test public void aDroppedListIsLearnedFromItsTopCleanHypothesis() {
+        feed("cloud", 0.8f, 16);
+        assertEquals(null, send("cloud", h("hmm", 0.9f), h("ok", 0.1f), h("turn left", 0.2f), h("turn right", 0.3f)));
+        feed("cloud", 0.2f, 16);   // only with "turn left" learned are 0.2s the median: 0.12
+        assertEquals(0.12f, gate.threshold("cloud"), EPS);
+    }
+
+    // --------------------------------------------------------------------
+    // Junk / alternates
+    // --------------------------------------------------------------------
+    @Test public void junkIsDroppedEvenDuringWarmUp() {
+        assertEquals(null, send("cloud", h("uh hmm", 0.99f)));
+        assertEquals(null, send("cloud", h("...", 0.99f)));
+        assertEquals(null, send("cloud", h("", 0.99f)));
+        assertTrue(out.isEmpty());
+    }
+
+    @Test public void aJunkTopIsReplacedByTheFirstCleanPassingAlternate() {
+        feed("cloud", 0.8f, 16);
+        out.clear();
+        assertEquals(Arrays.asList("turn left please"),
+                send("cloud", h("hmm", 0.9f), h("turn left", 0.3f), h("turn left please", 0.7f)));
+        assertEquals(null, send("cloud", h("hmm", 0.9f), h("turn left", 0.3f)));
+    }
+
+    @Test public void alternatesAreCappedAndSkipCaseVariantsOfTheBest() {
+        assertEquals(Arrays.asList("Call mom", "call Tom", "tall mom"),
+                send("cloud", h("Call mom", 0.9f), h("call MOM", 0.8f), h("uh", 0.7f),
+                        h("call Tom", 0.6f), h("tall mom", 0.5f), h("all mom", 0.4f)));
+    }
+
+    @Test public void singleResultsGoThroughTheSameGate() {
+        gate.onText("uh", 0.9f, null);
+        gate.onText("good morning", 0.9f, null);
+        assertEquals(Arrays.asList(Arrays.asList("good morning")), out);
+    }
+}
@@ -0,0 +1,236 @@
+package com.example.buddychat.stt;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import android.app.Application;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+// Manual clock and timer: flushes run on the test thread, at exact times
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 34, application = Application.class)   // only for android.util.Log
+public class UtteranceCoalescerTest {
+    private static final long MIN_MS = 100, MAX_MS = 1_000, MAX_LATENCY_MS = 2_000;   // window starts at 550
+
+    private final Timers   timers = new Timers();
+    private final Recorder out    = new Recorder();
+
+    // --------------------------------------------------------------------
+    // Helpers
+    // --------------------------------------------------------------------
+    /** Timer that only fires when the test advances the clock */
+    private static final class Timers implements UtteranceCoalescer.Timer {
+        private static final class Task {
+            final long dueMs; final Runnable run; boolean cancelled;
+            Task(long dueMs, Runnable run) { this.dueMs = dueMs; this.run = run; }
+        }
+
+        final List<Task> tasks = new ArrayList<>();
+        long nowMs;
+
+        @Override public Runnable schedule(Runnable task, long delayMs) {
+            Task t = new Task(nowMs + delayMs, task);
+            tasks.add(t);
+            return () -> t.cancelled = true;
+        }
+
+        /** Move the clock to `toMs`, running whatever falls due on the way, in order */
+        void advanceTo(long toMs) {
+            while (true) {
+                Task next = null;
+                for (Task t : tasks) if (!t.cancelled && t.dueMs <= toMs && (next == null || t.dueMs < next.dueMs)) next = t;
+                if (next == null) break;
+                tasks.remove(next);
+                nowMs = next.dueMs;
+                next.run.run();
+            }
+            nowMs = toMs;
+        }
+    }
+
+    /** Downstream: what came out, and when */
+    private final class Recorder implements STTListener {
+        final List<String> finals   = new ArrayList<>();
+        final List<Long>   finalMs  = new ArrayList<>();
+        final List<String> partials = new ArrayList<>();
+        final List<String> nbest    = new ArrayList<>();
+
+        @Override public void onText(String u, float c, String r) { finals.add(u); finalMs.add(timers.nowMs); }
+        @Override public void onPartial(String u, float c)        { partials.add(u); }
+        @Override public void onNBest(String e, List<Hypothesis> n) {
+            for (Hypothesis h : n) nbest.add(h.utterance);
+            onText(n.get(0).utterance, n.get(0).confidence, n.get(0).rule);
+        }
+        @Override public void onError(String err) { }
+    }
+
+    private UtteranceCoalescer coalescer(long minMs, long maxMs, long maxLatencyMs) {
+        return new UtteranceCoalescer(out, minMs, maxMs, maxLatencyMs, () -> timers.nowMs, timers);
+    }
+
+    private UtteranceCoalescer coalescer() { return coalescer(MIN_MS, MAX_MS, MAX_LATENCY_MS); }
+
+    /** Deliver `text` at `atMs` */
+    private void at(long atMs, UtteranceCoalescer c, String text) {
+        timers.advanceTo(atMs);
+        c.onText(text, 1, null);
+    }
+
+    private static List<Long> ms(long... v) {
+        List<Long> out = new ArrayList<>();
+        for (long x : v) out.add(x);
+        return out;
+    }
+
+    // --------------------------------------------------------------------
+    // Merging
+    // --------------------------------------------------------------------
+    @Test public void piecesWithinTheWindowBecomeOneUtterance() {
+        UtteranceCoalescer c = coalescer();
+        c.onText("hello there you", 0.8f, null);
+        timers.advanceTo(100);
+        c.onText(" how are things ", 0.6f, "rule");
+        timers.advanceTo(5_000);
+
+        assertEquals(Arrays.asList("hello there you how are things"), out.finals);
+        assertEquals(ms(300), out.finalMs);   // the 100 ms gap set the window to 200
+        assertEquals(Arrays.asList("hello there you", "hello there you how are things"), out.partials);
+    }
+
+    @Test public void theWindowFollowsTwiceTheSmoothedMergedGap() {
+        UtteranceCoalescer c = coalescer();
+        at(0,   c, "one two three");
+        at(200, c, "four five six");     // the first gap starts the EWMA at 200
+        assertEquals(400, c.windowMs());
+        at(500, c, "seven eight nine");  // 200 + 0.25 * (300 - 200) = 225
+        assertEquals(450, c.windowMs());
+
+        timers.advanceTo(5_000);
+        assertEquals(Arrays.asList("one two three four five six seven eight nine"), out.finals);
+        assertEquals(ms(950), out.finalMs);
+    }
+
+    @Test public void aPieceJustAfterAFlushWidensTheWindow() {
+        UtteranceCoalescer c = coalescer();
+        assertEquals(550, c.windowMs());
+        at(0, c, "my name is");
+        timers.advanceTo(550);               // flushed after the 550 ms window
+        assertEquals(1, out.finals.size());
+        at(600, c, "Bob");                   // right after: a sentence we cut in two
+        assertEquals(687, c.windowMs());     // 550 * 1.25
+
+        at(5_000, c, "what about you");      // well past 1.5 windows: not a split
+        assertEquals(687, c.windowMs());
+        timers.advanceTo(10_000);
+        assertEquals(ms(550, 700, 5_687), out.finalMs);
+    }
+
+    @Test public void theWindowStaysWithinItsBounds() {
+        UtteranceCoalescer c = coalescer();
+        at(0, c, "one two three");
+        at(0, c, "four five six");           // 0 ms gap
+        assertEquals(MIN_MS, c.windowMs());
+
+        UtteranceCoalescer slow = coalescer();
+        at(1_000, slow, "one two three");
+        at(1_540, slow, "four five six");    // 540 ms gap: twice that is past the maximum
+        assertEquals(MAX_MS, slow.windowMs());
+    }
+
+    // --------------------------------------------------------------------
+    // Latency bounds
+    // --------------------------------------------------------------------
+    @Test public void maxLatencyCapsAnUtteranceThatKeepsGrowing() {
+        UtteranceCoalescer c = coalescer(MIN_MS, MAX_MS, 300);
+        for (int i = 0; i < 5; i++) at(120 * i, c, "piece number " + i);
+        timers.advanceTo(5_000);
+
+        assertEquals(Arrays.asList("piece number 0 piece number 1 piece number 2", "piece number 3 piece number 4"), out.finals);
+        assertEquals(ms(300, 660), out.finalMs);   // 300 ms after each first piece
+    }
+
+    @Test public void aFinishedSentenceOnlyWaitsTheMinimum() {
+        UtteranceCoalescer c = coalescer();
+        at(0, c, "How are you doing today?");
+        timers.advanceTo(5_000);
+        assertEquals(ms(MIN_MS), out.finalMs);
+    }
+
+    @Test public void aShortAnswerOnlyWaitsTheMinimum() {
+        UtteranceCoalescer c = coalescer(300, 1_500, 1_200);   // withDefaults
+        at(0,     c, "yes");
+        at(2_000, c, "no thanks");
+        at(4_000, c, "I am fine");                             // a possible fragment: the whole window
+        timers.advanceTo(10_000);
+        assertEquals(Arrays.asList("yes", "no thanks", "I am fine"), out.finals);
+        assertEquals(ms(300, 2_300, 4_900), out.finalMs);
+    }
+
+    @Test public void aShortSecondPieceStillMerges() {
+        UtteranceCoalescer c = coalescer();
+        at(0,   c, "what is the");
+        at(150, c, "time");
+        timers.advanceTo(5_000);
+        assertEquals(Arrays.asList("what is the time"), out.finals);
+    }
+
+    // --------------------------------------------------------------------
+    // Alternates / pass-through
+    // --------------------------------------------------------------------
+    @Test public void alternatesSurviveOnlyASinglePiece() {
+        UtteranceCoalescer c = coalescer();
+        c.onNBest("cloud", Arrays.asList(new Hypothesis(" hi robot ", 0.9f, null), new Hypothesis("high robot", 0.5f, null)));
+        timers.advanceTo(1_000);
+        assertEquals(Arrays.asList("hi robot", "high robot"), out.nbest);
+
+        out.nbest.clear();
+        c.onNBest("cloud", Arrays.asList(new Hypothesis("what is", 0.9f, null), new Hypothesis("what's", 0.5f, null)));
+        timers.advanceTo(1_050);
+        c.onNBest("cloud", Arrays.asList(new Hypothesis("the time", 0.9f, null), new Hypothesis("the thyme", 0.5f, null)));
+        timers.advanceTo(5_000);
+        assertEquals("what is the time", out.finals.get(1));
+        assertTrue(out.nbest.toString(), out.nbest.isEmpty());
+    }
+
+    @Test public void disabledPassesResultsStraightThrough() {
+        UtteranceCoalescer c = coalescer();
+        c.setEnabled(false);
+        c.onText("one", 1, null);
+        c.onText("two", 1, null);
+        assertEquals(Arrays.asList("one", "two"), out.finals);
+        assertTrue(out.partials.isEmpty());
+        assertTrue(timers.tasks.isEmpty());
+    }
+
+    // --------------------------------------------------------------------
+    // Engine partials
+    // --------------------------------------------------------------------
+    @Test public void anEnginePartialFollowsTheHeldText() {
+        UtteranceCoalescer c = coalescer();
+        c.onPartial("what is", 0.5f);                  // nothing held: as is
+        c.onText("what is the", 0.9f, null);
+        c.onPartial(" time in ", 0.5f);
+        c.onPartial("  ", 0.5f);
+        timers.advanceTo(5_000);
+        assertEquals(Arrays.asList("what is", "what is the", "what is the time in"), out.partials);
+        assertEquals(Arrays.asList("what is the"), out.finals);   // partials don't hold the utterance open
+    }
+
+    @Test public void disabledPassesEnginePartialsStraightThrough() {
+        UtteranceCoalescer c = coalescer();
+        c.setEnabled(false);
+        c.onPartial("what is", 0.5f);
+        c.onText("what is the time", 0.9f, null);
+        c.onPartial("and the", 0.5f);
+        assertEquals(Arrays.asList("what is", "and the"), out.partials);
+        assertTrue(timers.tasks.isEmpty());
+    }
+}
@@ -0,0 +1,134 @@
+package com.example.buddychat.tts;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Test;
+
+public class SentenceChunkerTest {
+    private static final int MAX_CHUNK = 220;   // SentenceChunker.MAX_CHUNK
+
+    private final SentenceChunker chunker = new SentenceChunker();
+
+    /** Feed `deltas` one by one, then flush; every chunk, in order */
+    private List<String> stream(String... deltas) {
+        List<String> out = new ArrayList<>();
+        for (String d : deltas) out.addAll(chunker.feed(d));
+        out.addAll(chunker.flush());
+        return out;
+    }
+
+    // --------------------------------------------------------------------
+    // Sentence boundaries
+    // --------------------------------------------------------------------
+    @Test public void completeSentencesComeOutAsSoonAsTheNextOneStarts() {
+        assertEquals(Arrays.asList("Hello there."), chunker.feed("Hello there. How"));
+        assertEquals(Arrays.asList("How are you?", "Fine!"), chunker.feed(" are you? Fine! "));
+        assertEquals(Collections.emptyList(), chunker.flush());
+    }
+
+    @Test public void aTerminatorWaitsForWhatFollowsIt() {
+        assertEquals(Collections.emptyList(), chunker.feed("Hello there."));
+        assertEquals(Arrays.asList("Hello there."), chunker.feed(" Next"));
+        assertEquals(Arrays.asList("Next"), chunker.flush());
+    }
+
+    @Test public void aBoundarySplitAcrossDeltas() {
+        assertEquals(Collections.emptyList(), chunker.feed("It is sunny"));
+        assertEquals(Collections.emptyList(), chunker.feed("."));
+        assertEquals(Arrays.asList("It is sunny."), chunker.feed(" Take"));
+        assertEquals(Arrays.asList("Take a hat."), stream(" a hat."));
+    }
+
+    @Test public void tokenSizedDeltasGiveTheSameChunks() {
+        String reply = "Dr. Smith paid 3.5 dollars. Was it worth it? Yes!";
+        List<String> whole = stream(reply);
+        List<String> bits  = new ArrayList<>();
+        for (int i = 0; i < reply.length(); i += 3) bits.addAll(chunker.feed(reply.substring(i, Math.min(reply.length(), i + 3))));
+        bits.addAll(chunker.flush());
+        assertEquals(Arrays.asList("Dr. Smith paid 3.5 dollars.", "Was it worth it?", "Yes!"), whole);
+        assertEquals(whole, bits);
+    }
+
+    @Test public void newlinesAlwaysCut() {
+        assertEquals(Arrays.asList("First line", "Second line"), stream("First line\nSecond line"));
+    }
+
+    @Test public void punctuationInsideAWordIsNoBoundary() {
+        assertEquals(Arrays.asList("Wow!Really?Yes."), stream("Wow!Really?Yes."));
+    }
+
+    // --------------------------------------------------------------------
+    // Dots that don't end a sentence
+    // --------------------------------------------------------------------
+    @Test public void abbreviations() {
+        assertEquals(Arrays.asList("Dr. Smith is in."), stream("Dr. Smith is in."));
+        assertEquals(Arrays.asList("Ask Mrs. Jones, e.g. today, vs. tomorrow etc. and so on."),
+                stream("Ask Mrs. Jones, e.g. today, vs. tomorrow etc. and so on."));
+    }
+
+    @Test public void abbreviationsSplitAcrossDeltas() {
+        assertEquals(Arrays.asList("Dr. Smith is in."), stream("Dr", ".", " Smith is in."));
+    }
+
+    @Test public void initials() {
+        assertEquals(Arrays.asList("J. R. R. Tolkien wrote it."), stream("J. R. R. Tolkien wrote it."));
+    }
+
+    @Test public void aCapitalIIsAWordNotAnInitial() {
+        assertEquals(Arrays.asList("So do I.", "Great."), stream("So do I. Great."));
+    }
+
+    @Test public void decimals() {
+        assertEquals(Arrays.asList("Pi is about 3.14 and e is 2.72."), stream("Pi is about 3", ".", "14 and e is 2.72."));
+    }
+
+    // --------------------------------------------------------------------
+    // Long sentences
+    // --------------------------------------------------------------------
+    @Test public void shortClausesAreNotCut() {
+        assertEquals(Arrays.asList("Yes, I can do that; sure."), stream("Yes, I can do that; sure."));
+    }
+
+    @Test public void longClausesAreCutAtTheirPunctuation() {
+        String clause = "When the weather is nice in the afternoon,";   // 42 chars
+        assertEquals(Arrays.asList(clause, "we go out."), stream(clause + " we go out."));
+    }
+
+    @Test public void aRunOnSentenceIsCutAtWhitespacePastTheMaximum() {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; sb.length() < 3 * MAX_CHUNK; i++) sb.append("word").append(i).append(' ');
+        String runOn = sb.toString().trim();
+
+        List<String> chunks = stream(runOn);
+        assertTrue(chunks.toString(), chunks.size() >= 3);
+        for (String c : chunks.subList(0, chunks.size() - 1)) {   // cut at the first space past the maximum
+            assertTrue(c.length() + " chars", c.length() >= MAX_CHUNK - 1 && c.length() < MAX_CHUNK + "word999".length());
+        }
+        assertEquals(runOn, String.join(" ", chunks));   // no word split or lost
+    }
+
+    // --------------------------------------------------------------------
+    // flush / reset
+    // --------------------------------------------------------------------
+    @Test public void flushReturnsATailWithoutPunctuation() {
+        assertEquals(Collections.emptyList(), chunker.feed("no punctuation at all"));
+        assertEquals(Arrays.asList("no punctuation at all"), chunker.flush());
+        assertEquals(Collections.emptyList(), chunker.flush());
+    }
+
+    @Test public void whitespaceOnlyTailsAreDropped() {
+        assertEquals(Arrays.asList("Done."), stream("Done.  \n "));
+    }
+
+    @Test public void resetDropsTheTail() {
+        chunker.feed("half a sent");
+        chunker.reset();
+        assertEquals(Arrays.asList("New one."), stream("New one."));
+    }
+}
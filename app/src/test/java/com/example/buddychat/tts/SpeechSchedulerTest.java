@@ -0,0 +1,243 @@
+package com.example.buddychat.tts;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import android.app.Application;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import com.example.buddychat.tts.SpeechScheduler.Priority;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 34, application = Application.class)   // only for android.util.Log
+public class SpeechSchedulerTest {
+
+    // --------------------------------------------------------------------
+    // Helpers
+    // --------------------------------------------------------------------
+    /** Speaker that only finishes when the test says so */
+    private static final class Manual implements SpeechScheduler.Speaker {
+        final List<String>               said  = new ArrayList<>();
+        final List<SpeechScheduler.Done> dones = new ArrayList<>();
+        int stops;
+
+        @Override public void speak(String text, SpeechScheduler.Done done) { said.add(text); dones.add(done); }
+        @Override public void stop() { stops++; }
+
+        /** Finish the most recent item */
+        void done() { dones.get(dones.size() - 1).finished(true, null); }
+    }
+
+    private final Manual          speaker = new Manual();
+    private final AtomicLong      clock   = new AtomicLong(System.nanoTime());
+    private final SpeechScheduler tts     = new SpeechScheduler(speaker, clock::get);
+    private final List<String>    events  = new ArrayList<>();
+
+    {
+        tts.setListener(new SpeechScheduler.Listener() {
+            @Override public void onSpeaking(String text, String trace) { events.add(text + "@" + trace); }
+            @Override public void onIdle()                              { events.add("idle"); }
+        });
+    }
+
+    private void advanceMs(long ms) { clock.addAndGet(ms * 1_000_000); }
+
+    /** Finish items until the queue is empty */
+    private void drain() { while (tts.isSpeaking()) speaker.done(); }
+
+    // --------------------------------------------------------------------
+    // Ordering
+    // --------------------------------------------------------------------
+    @Test public void higherPrioritiesJumpTheQueueButDoNotCutIn() {
+        tts.enqueue("reply 1", "t1", Priority.REPLY);
+        tts.enqueue("filler",  "t1", Priority.FILLER);
+        tts.enqueue("reply 2", "t1", Priority.REPLY);
+        tts.enqueue("hello",   null, Priority.SYSTEM);
+        assertEquals(Arrays.asList("reply 1"), speaker.said);
+        assertEquals(0, speaker.stops);
+        assertEquals(3, tts.depth());
+
+        drain();
+        assertEquals(Arrays.asList("reply 1", "hello", "reply 2", "filler"), speaker.said);
+        assertEquals(Arrays.asList("reply 1@t1", "hello@null", "reply 2@t1", "filler@t1", "idle"), events);
+    }
+
+    @Test public void aFailedItemStillAdvancesTheQueue() {
+        tts.enqueue("one", "t1", Priority.REPLY);
+        tts.enqueue("two", "t1", Priority.REPLY);
+        speaker.dones.get(0).finished(false, "engine error");
+        assertEquals(Arrays.asList("one", "two"), speaker.said);
+    }
+
+    @Test public void disabledAcceptsNothing() {
+        tts.setEnabled(false);
+        assertFalse(tts.enqueue("hi", null, Priority.SYSTEM));
+        assertFalse(tts.isSpeaking());
+        tts.setEnabled(true);
+        assertFalse(tts.enqueue("", null, Priority.SYSTEM));
+        assertTrue(tts.enqueue("hi", null, Priority.SYSTEM));
+    }
+
+    // --------------------------------------------------------------------
+    // Deadlines
+    // --------------------------------------------------------------------
+    @Test public void anItemPastItsDeadlineIsDroppedAsStale() {
+        tts.enqueue("a long reply", "t1", Priority.REPLY);
+        tts.enqueue("let me think", "t2", Priority.FILLER);
+        tts.enqueue("more reply",   "t1", Priority.REPLY);
+        advanceMs(Priority.FILLER.maxWaitMs + 1);   // the filler is late, the reply is not
+
+        drain();
+        assertEquals(Arrays.asList("a long reply", "more reply"), speaker.said);
+        assertTrue(tts.stats(), tts.stats().contains("stale 1,"));
+        assertEquals(0, tts.depth());
+    }
+
+    @Test public void aReplyLongerThanItsDeadlineIsSpokenToTheEnd() {
+        tts.enqueue("hello", null, Priority.SYSTEM);
+        for (int i = 1; i <= 8; i++) tts.enqueue("sentence " + i, "t1", Priority.REPLY);   // queued within a few seconds
+        for (int i = 0; i < 9; i++) { advanceMs(6_000); speaker.done(); }                 // 54 s of speech
+        assertEquals(9, speaker.said.size());
+        assertEquals("sentence 8", speaker.said.get(8));
+        assertTrue(tts.stats(), tts.stats().contains("stale 0,"));
+    }
+
+    @Test public void aTurnThatNeverStartedStillGoesStale() {
+        tts.enqueue("reply 1",  "t1", Priority.REPLY);
+        tts.enqueue("reply 2",  "t2", Priority.REPLY);
+        tts.enqueue("filler 1", "t1", Priority.FILLER);
+        advanceMs(Priority.REPLY.maxWaitMs + 1);   // t1 is still playing; t2 never started
+        drain();
+        assertEquals(Arrays.asList("reply 1"), speaker.said);
+        assertTrue(tts.stats(), tts.stats().contains("stale 2,"));
+    }
+
+    // --------------------------------------------------------------------
+    // Cancellation
+    // --------------------------------------------------------------------
+    @Test public void cancelDropsATurnAndStopsItIfPlaying() {
+        tts.enqueue("t1 first",  "t1", Priority.REPLY);
+        tts.enqueue("t1 second", "t1", Priority.REPLY);
+        tts.enqueue("t2 only",   "t2", Priority.REPLY);
+        tts.enqueue("t1 filler", "t1", Priority.FILLER);
+
+        assertEquals(3, tts.cancel("t1"));   // two queued and the one playing
+        assertEquals(1, speaker.stops);
+        assertEquals(Arrays.asList("t1 first", "t2 only"), speaker.said);
+        assertEquals(0, tts.depth());
+        assertTrue(tts.stats(), tts.stats().contains("cancelled 3"));
+
+        speaker.dones.get(0).finished(true, null);   // the stopped item reports late
+        assertTrue(tts.isSpeaking());
+        assertEquals(2, speaker.said.size());
+
+        assertEquals(0, tts.cancel("t9"));
+        assertEquals(0, tts.cancel(null));
+        drain();
+        assertEquals("idle", events.get(events.size() - 1));
+    }
+
+    @Test public void cancelOfAQueuedTurnLeavesThePlayingOneAlone() {
+        tts.enqueue("t1 reply", "t1", Priority.REPLY);
+        tts.enqueue("t2 reply", "t2", Priority.REPLY);
+        assertEquals(1, tts.cancel("t2"));
+        assertEquals(0, speaker.stops);
+        drain();
+        assertEquals(Arrays.asList("t1 reply"), speaker.said);
+    }
+
+    @Test public void clearStopsEverythingAndIgnoresTheLateDone() {
+        tts.enqueue("one", "t1", Priority.REPLY);
+        tts.enqueue("two", "t2", Priority.SYSTEM);
+        tts.clear();
+        assertEquals(1, speaker.stops);
+        assertFalse(tts.isSpeaking());
+        assertEquals(Arrays.asList("one@t1", "idle"), events);
+
+        speaker.done();
+        assertEquals(Arrays.asList("one"), speaker.said);
+    }
+
+    // --------------------------------------------------------------------
+    // Locking
+    // --------------------------------------------------------------------
+    /** Finishes every item from inside speak(), like SimulatedSpeechBackend */
+    private static final class Instant implements SpeechScheduler.Speaker {
+        final List<String> said  = new ArrayList<>();
+        SpeechScheduler    owner;
+        int                maxDepth, depth, locked;
+
+        @Override public void speak(String text, SpeechScheduler.Done done) {
+            if (Thread.holdsLock(owner)) locked++;
+            said.add(text);
+            maxDepth = Math.max(maxDepth, ++depth);
+            done.finished(true, null);
+            depth--;
+        }
+        @Override public void stop() { if (Thread.holdsLock(owner)) locked++; }
+    }
+
+    @Test public void theSpeakerAndListenerAreCalledOutsideTheLock() {
+        Instant instant = new Instant();
+        SpeechScheduler s = new SpeechScheduler(instant, clock::get);
+        instant.owner = s;
+        int[] locked = {0};
+        s.setListener(new SpeechScheduler.Listener() {
+            @Override public void onSpeaking(String text, String trace) { if (Thread.holdsLock(s)) locked[0]++; }
+            @Override public void onIdle()                              { if (Thread.holdsLock(s)) locked[0]++; }
+        });
+        s.enqueue("one", "t1", Priority.REPLY);
+        s.cancel("t1");
+        s.clear();
+        s.setEnabled(false);
+
+        tts.enqueue("two", "t2", Priority.REPLY);   // the manual speaker stops on cancel and clear
+        tts.cancel("t2");
+        tts.enqueue("three", "t3", Priority.REPLY);
+        tts.clear();
+        assertEquals(0, instant.locked + locked[0]);
+        assertEquals(Arrays.asList("one"), instant.said);
+        assertEquals(2, speaker.stops);
+    }
+
+    @Test public void aSpeakerThatFinishesSynchronouslyDoesNotRecurse() {
+        // The first item is held so the rest queue up behind it; its done then runs the whole queue
+        Instant instant = new Instant();
+        List<SpeechScheduler.Done> held = new ArrayList<>();
+        SpeechScheduler s = new SpeechScheduler(new SpeechScheduler.Speaker() {
+            @Override public void speak(String text, SpeechScheduler.Done done) {
+                if (held.isEmpty()) held.add(done); else instant.speak(text, done);
+            }
+            @Override public void stop() {}
+        }, clock::get);
+        instant.owner = s;
+        List<String> heard = new ArrayList<>();
+        s.setListener(new SpeechScheduler.Listener() {
+            @Override public void onSpeaking(String text, String trace) { heard.add(text); }
+            @Override public void onIdle()                              { heard.add("idle"); }
+        });
+
+        int n = 20_000;   // deep enough to overflow the stack if each done recursed into the next speak
+        for (int i = 0; i < n; i++) s.enqueue("sentence " + i, "t1", Priority.REPLY);
+        assertEquals(n - 1, s.depth());
+
+        held.get(0).finished(true, null);
+        assertFalse(s.isSpeaking());
+        assertEquals(n - 1, instant.said.size());
+        assertEquals("sentence " + (n - 1), instant.said.get(n - 2));
+        assertEquals(1, instant.maxDepth);
+        assertEquals(0, instant.locked);
+        assertEquals(n + 1, heard.size());
+        assertEquals("idle", heard.get(n));
+    }
+}
@@ -0,0 +1,130 @@
+package com.example.buddychat.turn;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import android.app.Application;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import com.example.buddychat.stt.Hypothesis;
+import com.example.buddychat.stt.STTListener;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 34, application = Application.class)   // only for android.util.Log
+public class TurnControllerTest {
+    private static final String SAID = "I am Buddy, a little robot who likes to talk";
+
+    private final List<String>   passed    = new ArrayList<>();
+    private final List<String>   partials  = new ArrayList<>();
+    private final List<String>   cancelled = new ArrayList<>();
+    private       int            stops;
+    private final TurnController turns     = new TurnController(new STTListener() {
+        @Override public void onText(String u, float c, String r) { passed.add(u); }
+        @Override public void onPartial(String u, float c)        { partials.add(u); }
+        @Override public void onError(String err) { }
+    }, () -> stops++, cancelled::add);
+
+    private void hear(String text) { turns.onText(text, 0.9f, null); }
+
+    // --------------------------------------------------------------------
+    // Self-echo
+    // --------------------------------------------------------------------
+    @Test public void ownVoiceIsDroppedWhileSpeaking() {
+        turns.onSpeaking(SAID, "t1");
+        hear("a little robot");
+        hear("Buddy likes to talk");
+        assertTrue(passed.toString(), passed.isEmpty());
+        assertTrue(cancelled.isEmpty());
+        assertEquals(0, stops);
+    }
+
+    @Test public void echoTailEndsAfterOneAndAHalfSeconds() throws Exception {
+        turns.onSpeaking(SAID, "t1");
+        turns.onIdle();
+        hear("a little robot");      // STT lagging behind the speaker
+        assertTrue(passed.isEmpty());
+
+        Thread.sleep(1_600);
+        hear("a little robot");      // now it is the user repeating it
+        assertEquals(Arrays.asList("a little robot"), passed);
+    }
+
+    @Test public void partialOverlapIsNotAnEcho() {
+        turns.onSpeaking(SAID, "t1");
+        turns.onIdle();
+        hear("is a robot happy today");   // 2 of 5 words were said: below 60%
+        assertEquals(Arrays.asList("is a robot happy today"), passed);
+    }
+
+    @Test public void nothingIsAnEchoBeforeTheRobotSpoke() {
+        hear("a little robot");
+        assertEquals(Arrays.asList("a little robot"), passed);
+    }
+
+    // --------------------------------------------------------------------
+    // Barge-in
+    // --------------------------------------------------------------------
+    @Test public void aStrayWordWhileSpeakingIsDropped() {
+        turns.onSpeaking(SAID, "t1");
+        hear("yeah");
+        assertTrue(passed.isEmpty());
+        assertTrue(cancelled.isEmpty());
+        assertEquals(0, stops);
+    }
+
+    @Test public void aStopWordBargesIn() {
+        turns.onSpeaking(SAID, "t1");
+        hear("Stop!");
+        assertEquals(Arrays.asList("Stop!"), passed);
+        assertEquals(Arrays.asList("t1"), cancelled);
+        assertEquals(1, stops);
+
+        hear("thanks");              // speech was stopped: no longer a barge-in
+        assertEquals(Arrays.asList("Stop!", "thanks"), passed);
+        assertEquals(1, cancelled.size());
+        assertEquals(1, stops);
+    }
+
+    @Test public void twoWordsBargeIn() {
+        turns.onSpeaking("Let me tell you a story", "t1");
+        turns.onSpeaking("Once upon a time", "t2");
+        hear("sing me a song instead");
+        assertEquals(Arrays.asList("sing me a song instead"), passed);
+        assertEquals(Arrays.asList("t2"), cancelled);
+        assertEquals(1, stops);
+    }
+
+    @Test public void nBestIsJudgedByItsTopHypothesis() {
+        List<String> seen = new ArrayList<>();
+        TurnController t = new TurnController(new STTListener() {
+            @Override public void onText(String u, float c, String r) { }
+            @Override public void onError(String err) { }
+            @Override public void onNBest(String e, List<Hypothesis> n) { seen.add(n.get(0).utterance + "/" + n.size()); }
+        }, () -> stops++, cancelled::add);
+        t.onSpeaking(SAID, "t1");
+        t.onNBest("cloud", Arrays.asList(new Hypothesis("little robot", 0.9f, null), new Hypothesis("what time is it", 0.5f, null)));
+        t.onNBest("cloud", Arrays.asList(new Hypothesis("what time is it", 0.9f, null), new Hypothesis("little robot", 0.5f, null)));
+        assertEquals(Arrays.asList("what time is it/2"), seen);
+        assertEquals(Arrays.asList("t1"), cancelled);
+    }
+
+    // --------------------------------------------------------------------
+    // Partials
+    // --------------------------------------------------------------------
+    @Test public void partialsWaitWhileSpeakingAndDuringTheEchoTail() {
+        turns.onSpeaking(SAID, "t1");
+        turns.onPartial("tell me", 0.5f);
+        turns.onIdle();
+        turns.onPartial("a little", 0.5f);
+        turns.onPartial("what time", 0.5f);
+        assertEquals(Arrays.asList("what time"), partials);
+    }
+}
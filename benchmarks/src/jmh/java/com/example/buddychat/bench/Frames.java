@@ -0,0 +1,27 @@
+package com.example.buddychat.bench;
+
+import com.example.buddychat.network.protocol.ChatMessage;
+
+/** Representative frames shared by the benchmarks */
+final class Frames {
+    static final String UTTERANCE = "what is the weather like this afternoon";
+    static final String TRACE     = "t-1a2b3c4d";
+    static final String[] ALTS    = { "what is the weather like this after noon", "what's the weather like this afternoon" };
+
+    private Frames() {}
+
+    static ChatMessage delta() {
+        ChatMessage m = new ChatMessage(ChatMessage.Type.LLM_DELTA, " the weather today", TRACE);
+        m.id   = "r-5f2c";
+        m.time = "2025-07-10T19:28:58Z";
+        return m;
+    }
+
+    /** What ChatSocketManager.sendString queues once the outbox has numbered it */
+    static ChatMessage transcription(String[] alts) {
+        ChatMessage m = new ChatMessage(ChatMessage.Type.TRANSCRIPTION, UTTERANCE, TRACE);
+        m.seq  = "1042";
+        m.alts = alts;
+        return m;
+    }
+}
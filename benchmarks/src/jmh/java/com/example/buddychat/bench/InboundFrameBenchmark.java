@@ -0,0 +1,56 @@
+package com.example.buddychat.bench;
+
+import java.util.EnumSet;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import com.example.buddychat.network.protocol.ChatBinaryCodec;
+import com.example.buddychat.network.protocol.ChatCodec;
+import com.example.buddychat.network.protocol.ChatMessage;
+
+// ====================================================================
+// Inbound frames, as ChatUiCallbacks.onMessage / ChatSocketManager see them
+// ====================================================================
+/// A streamed reply is dozens of llm_delta frames per turn, so decoding
+/// one is the per-frame cost of the reply path. Pings are decoded by the
+/// manager with `wanted = null` and should stay cheap too.
+@State(Scope.Thread)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class InboundFrameBenchmark {
+
+    /// Same filter as ChatUiCallbacks.WANTED
+    private static final Set<ChatMessage.Type> WANTED = EnumSet.of(
+            ChatMessage.Type.LLM_RESPONSE, ChatMessage.Type.LLM_DELTA, ChatMessage.Type.LLM_DONE);
+
+    private String deltaJson, doneJson, pingJson, pongJson;
+    private byte[] deltaBin;
+
+    @Setup
+    public void setUp() {
+        deltaJson = "{\"type\":\"llm_delta\",\"id\":\"r-5f2c\",\"data\":\" the weather today\",\"trace\":\"t-1a2b3c4d\",\"time\":\"2025-07-10T19:28:58Z\"}";
+        doneJson  = "{\"type\":\"llm_done\",\"id\":\"r-5f2c\",\"trace\":\"t-1a2b3c4d\",\"cache\":\"3600\","
+                  + "\"data\":\"It looks sunny this afternoon, with a light breeze. Would you like to go for a walk?\"}";
+        pingJson  = "{\"type\":\"ping\",\"id\":\"417\"}";
+        pongJson  = "{\"type\":\"pong\",\"id\":\"417\",\"server_time\":1720657738123}";
+
+        ChatBinaryCodec codec = new ChatBinaryCodec();
+        int n = codec.encode(Frames.delta());
+        deltaBin = java.util.Arrays.copyOf(codec.buffer(), n);
+    }
+
+    @Benchmark public ChatMessage jsonDelta()       throws ChatCodec.MalformedFrameException { return ChatCodec.decode(deltaJson, WANTED); }
+    @Benchmark public ChatMessage jsonDone()        throws ChatCodec.MalformedFrameException { return ChatCodec.decode(doneJson,  WANTED); }
+    @Benchmark public ChatMessage jsonFilteredOut() throws ChatCodec.MalformedFrameException { return ChatCodec.decode(pingJson,  WANTED); }
+    @Benchmark public ChatMessage jsonControl()     throws ChatCodec.MalformedFrameException { return ChatCodec.decode(pongJson,  null  ); }
+
+    @Benchmark
+    public ChatMessage binaryDelta() throws ChatBinaryCodec.MalformedFrameException {
+        return ChatBinaryCodec.decode(deltaBin, 0, deltaBin.length, null);
+    }
+}
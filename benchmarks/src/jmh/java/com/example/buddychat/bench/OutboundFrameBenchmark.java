@@ -0,0 +1,43 @@
+package com.example.buddychat.bench;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+
+import com.example.buddychat.network.protocol.ChatBinaryCodec;
+import com.example.buddychat.network.protocol.ChatCodec;
+import com.example.buddychat.network.protocol.ChatMessage;
+
+// ====================================================================
+// Outbound encoding, as ChatSocketManager does at flush time
+// ====================================================================
+/// One codec per socket manager, reused for every frame (so its buffers
+/// are warm); the message itself is built per send, like sendString does.
+@State(Scope.Thread)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class OutboundFrameBenchmark {
+    private final ChatCodec       json   = new ChatCodec();
+    private final ChatBinaryCodec binary = new ChatBinaryCodec();
+
+    /** Bare transcription: the allocation-light fast path */
+    @Benchmark
+    public String jsonBare() {
+        return json.encode(new ChatMessage(ChatMessage.Type.TRANSCRIPTION, Frames.UTTERANCE));
+    }
+
+    /** What the robot actually sends: trace + outbox seq */
+    @Benchmark
+    public String jsonTranscription() { return json.encode(Frames.transcription(null)); }
+
+    @Benchmark
+    public String jsonWithAlternates() { return json.encode(Frames.transcription(Frames.ALTS)); }
+
+    @Benchmark
+    public int binaryTranscription() { return binary.encode(Frames.transcription(null)); }
+
+    @Benchmark
+    public int binaryWithAlternates() { return binary.encode(Frames.transcription(Frames.ALTS)); }
+}
@@ -0,0 +1,113 @@
+package com.example.buddychat.bench;
+
+import java.util.concurrent.TimeUnit;
+
+import okhttp3.Protocol;
+import okhttp3.Request;
+import okhttp3.Response;
+import okhttp3.WebSocket;
+import okhttp3.WebSocketListener;
+import okio.ByteString;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.infra.Blackhole;
+
+import com.example.buddychat.network.protocol.ChatMessage;
+import com.example.buddychat.network.ws.ChatListener;
+import com.example.buddychat.network.ws.ChatSocketManager;
+import com.example.buddychat.network.ws.Heartbeat;
+import com.example.buddychat.network.ws.LinkQuality;
+import com.example.buddychat.network.ws.ReconnectPolicy;
+import com.example.buddychat.stt.UtteranceCallback;
+
+// ====================================================================
+// STT result -> UtteranceCallback -> ChatSocketManager -> frame on the wire
+// ====================================================================
+/// ConversationPipeline's send path per utterance: the UtteranceCallback
+/// hop into a real ChatSocketManager (lock, dropping superseded partials,
+/// the outbound queue, encoding with the socket's framing) up to the
+/// WebSocket.send. The socket is a stub that opens at once and takes every
+/// frame into the Blackhole; OkHttp's writer, the outbox fsync and the
+/// Android UI posts are out of scope (they are I/O, not CPU).
+///
+/// Partials are the hot case: a continuous-listening user can produce
+/// several per second, each one superseding the last.
+@State(Scope.Thread)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class SttDispatchBenchmark {
+
+    /// Open socket that never leaves the process; its buffer is always empty
+    private static final class StubSocket implements WebSocket {
+        private final Request request;
+        Blackhole wire;
+        StubSocket(Request request) { this.request = request; }
+
+        @Override public Request request()                      { return request; }
+        @Override public long    queueSize()                    { return 0; }
+        @Override public boolean send(String text)              { if (wire != null) wire.consume(text);  return true; }
+        @Override public boolean send(ByteString bytes)         { if (wire != null) wire.consume(bytes); return true; }
+        @Override public boolean close(int code, String reason) { return true; }
+        @Override public void    cancel()                       { }
+    }
+
+    private static final ChatListener IGNORE = new ChatListener() {
+        @Override public void onOpen() { }
+        @Override public void onMessage(String json) { }
+        @Override public void onMessage(ChatMessage msg) { }
+        @Override public void onClosed() { }
+        @Override public void onError(Throwable t) { }
+        @Override public void onReconnecting(int attempt, long delayMs) { }
+        @Override public void onLinkQuality(LinkQuality quality, long rttMs) { }
+    };
+
+    private static final long NO_PINGS_MS = TimeUnit.HOURS.toMillis(1);   // no heartbeat thread writing during a run
+
+    private StubSocket        socket;
+    private WebSocketListener session;
+    private ChatSocketManager chat;
+    private UtteranceCallback callback;   // called through the interface, as STTCallbacks does
+
+    @Setup
+    public void setUp() {
+        chat = new ChatSocketManager(ReconnectPolicy.defaults(), ChatSocketManager.DEFAULT_MAX_PENDING,
+                new Heartbeat(NO_PINGS_MS, 3 * NO_PINGS_MS, NO_PINGS_MS),
+                (req, listener) -> { socket = new StubSocket(req); session = listener; return socket; });
+        chat.connect("token", IGNORE);
+        session.onOpen(socket, new Response.Builder()
+                .request(socket.request()).protocol(Protocol.HTTP_1_1).code(101).message("Switching Protocols").build());
+
+        // Same adapter as ConversationPipeline
+        callback = new UtteranceCallback() {
+            @Override public boolean sendString  (String text, String trace)               { return chat.sendString  (text, trace);        }
+            @Override public boolean sendString  (String text, String trace, String[] alts){ return chat.sendString  (text, trace, alts);  }
+            @Override public boolean sendAnswered(String text, String trace, String reply) { return chat.sendAnswered(text, trace, reply); }
+            @Override public boolean sendPartial (String text, String trace)               { return chat.sendPartial (text, trace);        }
+        };
+    }
+
+    @TearDown
+    public void tearDown() { chat.endChat(); }
+
+    @Benchmark
+    public boolean finalWithAlternates(Blackhole bh) {
+        socket.wire = bh;
+        return callback.sendString(Frames.UTTERANCE, Frames.TRACE, Frames.ALTS);
+    }
+
+    @Benchmark
+    public boolean partial(Blackhole bh) {
+        socket.wire = bh;
+        return callback.sendPartial(Frames.UTTERANCE, Frames.TRACE);
+    }
+
+    @Benchmark
+    public boolean answeredLocally(Blackhole bh) {
+        socket.wire = bh;
+        return callback.sendAnswered(Frames.UTTERANCE, Frames.TRACE, "It looks sunny this afternoon.");
+    }
+}
@@ -0,0 +1,243 @@
+package com.example.buddychat.loadgen;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import okhttp3.ConnectionPool;
+import okhttp3.Dispatcher;
+import okhttp3.HttpUrl;
+import okhttp3.OkHttpClient;
+
+import com.example.buddychat.network.ChatApi;
+import com.example.buddychat.network.ChatLog;
+import com.example.buddychat.network.ws.ChatSocketManager;
+
+// ====================================================================
+// Load generator: N robots chatting with the server at once
+// ====================================================================
+/// ./gradlew :loadgen:run --args="--stand-in --sessions 200 --turns 5"
+/// ./gradlew :loadgen:run --args="--api https://sandbox.cognibot.org/api/ --ws https://sandbox.cognibot.org/ws/chat/
+///                                --users robots.txt --sessions 50 --script care-home.txt"
+///
+/// Every session is a VirtualRobot on its own thread with its own
+/// ChatSocketManager (the robot's client code, from :protocol), all
+/// sharing one OkHttp pool. Progress is printed every few seconds, and
+/// the latency distributions and error counts at the end (LoadReport).
+/// The exit code is 1 if the turn error rate is above --max-error-rate.
+///
+/// --serve only runs the stand-in server, e.g. on port 8000 for an
+/// emulator built with TEST_LOCAL=1.
+public final class LoadGenerator {
+
+    private static final String USAGE = String.join(System.lineSeparator(),
+            "usage: loadgen [options]",
+            "  --api URL              REST base (default " + ChatApi.CLOUD + ")",
+            "  --ws URL               chat endpoint (default " + ChatSocketManager.DEFAULT_ENDPOINT + ")",
+            "  --user NAME            login (default $BUDDY_USER)",
+            "  --password PASS        (default $BUDDY_PASS)",
+            "  --users FILE           one user:password per line, used round-robin",
+            "  --sessions N           concurrent robots (default 10)",
+            "  --turns N              utterances per robot (default: the script's length)",
+            "  --ramp-ms MS           spread the session starts over MS (default 5000)",
+            "  --think-ms MIN[-MAX]   pause before each utterance (default 2000-5000)",
+            "  --script FILE          utterances, one per line; \"@<ms> text\" fixes the think time",
+            "  --turn-timeout-ms MS   a reply (or connect) slower than this fails (default 30000)",
+            "  --binary               ask for bin1 frames",
+            "  --seed N               think-time randomness (default 1)",
+            "  --report-every-ms MS   progress interval (default 5000)",
+            "  --max-error-rate R     exit 1 if failed/sent turns exceeds R (0..1)",
+            "  --verbose              client debug logs",
+            "  --stand-in             run against an in-process stand-in server",
+            "  --stand-in-think-ms MS stand-in delay before it answers (default 300)",
+            "  --serve [PORT]         only run the stand-in server (default port 8000)");
+
+    // --------------------------------------------------------------------
+    // Options
+    // --------------------------------------------------------------------
+    public static final class Options {
+        public HttpUrl      api              = ChatApi.CLOUD;
+        public HttpUrl      ws               = ChatSocketManager.DEFAULT_ENDPOINT;
+        public List<String> users            = new ArrayList<>();   // "user:password"
+        public int          sessions         = 10;
+        public int          turns            = -1;                  // -1: script length
+        public long         rampMs           = 5_000;
+        public long         thinkMinMs       = 2_000;
+        public long         thinkMaxMs       = 5_000;
+        public String       scriptFile;
+        public long         turnTimeoutMs    = 30_000;
+        public boolean      binary;
+        public long         seed             = 1;
+        public long         reportEveryMs    = 5_000;
+        public double       maxErrorRate     = 1;
+        public boolean      verbose;
+        public boolean      standIn;
+        public long         standInThinkMs   = 300;
+        public int          servePort        = -1;                  // >= 0: --serve
+
+        public static Options parse(String[] args) throws IOException {
+            Options o = new Options();
+            String user = System.getenv("BUDDY_USER"), pass = System.getenv("BUDDY_PASS");
+            for (int i = 0; i < args.length; i++) {
+                String a = args[i];
+                switch (a) {
+                    case "--api":               o.api            = url(value(args, ++i, a)); break;
+                    case "--ws":                o.ws             = url(value(args, ++i, a)); break;
+                    case "--user":              user             = value(args, ++i, a); break;
+                    case "--password":          pass             = value(args, ++i, a); break;
+                    case "--users":             o.users.addAll(readUsers(value(args, ++i, a))); break;
+                    case "--sessions":          o.sessions       = (int) number(args, ++i, a); break;
+                    case "--turns":             o.turns          = (int) number(args, ++i, a); break;
+                    case "--ramp-ms":           o.rampMs         = number(args, ++i, a); break;
+                    case "--think-ms":          thinkRange(o, value(args, ++i, a)); break;
+                    case "--script":            o.scriptFile     = value(args, ++i, a); break;
+                    case "--turn-timeout-ms":   o.turnTimeoutMs  = number(args, ++i, a); break;
+                    case "--binary":            o.binary         = true; break;
+                    case "--seed":              o.seed           = number(args, ++i, a); break;
+                    case "--report-every-ms":   o.reportEveryMs  = number(args, ++i, a); break;
+                    case "--max-error-rate":    o.maxErrorRate   = Double.parseDouble(value(args, ++i, a)); break;
+                    case "--verbose":           o.verbose        = true; break;
+                    case "--stand-in":          o.standIn        = true; break;
+                    case "--stand-in-think-ms": o.standInThinkMs = number(args, ++i, a); break;
+                    case "--serve":
+                        o.servePort = i + 1 < args.length && !args[i + 1].startsWith("--") ? (int) number(args, ++i, a) : 8000;
+                        break;
+                    default: throw new IllegalArgumentException("unknown option " + a);
+                }
+            }
+            if (o.users.isEmpty() && o.servePort < 0) {
+                if (user == null && o.standIn) { user = "loadgen"; pass = "loadgen"; }
+                if (user == null || pass == null) throw new IllegalArgumentException("no credentials (--user/--password, --users or $BUDDY_USER/$BUDDY_PASS)");
+                o.users.add(user + ":" + pass);
+            }
+            if (o.sessions < 1) throw new IllegalArgumentException("--sessions must be at least 1");
+            return o;
+        }
+
+        private static String value(String[] args, int i, String opt) {
+            if (i >= args.length) throw new IllegalArgumentException(opt + " needs a value");
+            return args[i];
+        }
+
+        private static long number(String[] args, int i, String opt) {
+            try                             { return Long.parseLong(value(args, i, opt)); }
+            catch (NumberFormatException e) { throw new IllegalArgumentException(opt + " needs a number"); }
+        }
+
+        private static HttpUrl url(String s) {
+            HttpUrl u = HttpUrl.parse(s.replaceFirst("^ws", "http"));   // OkHttp dials ws(s):// as http(s)://
+            if (u == null) throw new IllegalArgumentException("bad URL " + s);
+            return u;
+        }
+
+        private static void thinkRange(Options o, String s) {
+            String[] p = s.split("-", 2);
+            o.thinkMinMs = Long.parseLong(p[0].trim());
+            o.thinkMaxMs = p.length > 1 ? Long.parseLong(p[1].trim()) : o.thinkMinMs;
+        }
+
+        private static List<String> readUsers(String file) throws IOException {
+            List<String> out = new ArrayList<>();
+            for (String line : Files.readAllLines(Paths.get(file), StandardCharsets.UTF_8)) {
+                line = line.trim();
+                if (line.isEmpty() || line.startsWith("#")) continue;
+                if (line.indexOf(':') < 0) throw new IllegalArgumentException("expected user:password in " + file + ": " + line);
+                out.add(line);
+            }
+            return out;
+        }
+    }
+
+    // --------------------------------------------------------------------
+    // Entry point
+    // --------------------------------------------------------------------
+    public static void main(String[] args) throws Exception {
+        Options opt;
+        try {
+            opt = Options.parse(args);
+        } catch (IllegalArgumentException | IOException e) {
+            System.err.println(e.getMessage());
+            System.err.println(USAGE);
+            System.exit(2);
+            return;
+        }
+        ChatLog.setMinLevel(opt.verbose ? ChatLog.DEBUG : ChatLog.WARN);
+
+        if (opt.servePort >= 0) { serve(opt); return; }
+
+        LoadReport report = run(opt, System.out);
+        if (report.errorRate() > opt.maxErrorRate) {
+            System.out.printf(Locale.US, "FAILED: error rate %.2f%% is above %.2f%%%n", 100 * report.errorRate(), 100 * opt.maxErrorRate);
+            System.exit(1);
+        }
+        System.exit(0);   // OkHttp's pool threads would keep the JVM up for a minute
+    }
+
+    /** Run the whole load; progress and the summary go to `out` (null: quiet) */
+    public static LoadReport run(Options opt, PrintStream out) throws IOException, InterruptedException {
+        StandInServer standIn = null;
+        if (opt.standIn) {
+            standIn = new StandInServer(opt.standInThinkMs, 20, StandInServer.ECHO).start();
+            opt.api = standIn.apiBase();
+            opt.ws  = standIn.chatEndpoint();
+        }
+        LoadScript script = new LoadScript(opt.scriptFile != null ? LoadScript.load(Paths.get(opt.scriptFile)) : LoadScript.defaultLines(),
+                opt.thinkMinMs, opt.thinkMaxMs);
+        if (opt.turns < 0) opt.turns = script.size();
+
+        LoadReport     report = new LoadReport();
+        OkHttpClient   http   = client(opt.sessions);
+        CountDownLatch left   = new CountDownLatch(opt.sessions);
+        long           t0     = System.nanoTime();
+        if (out != null) out.printf(Locale.US, "== %d sessions x %d turns against %s, ramp %d ms, think %d-%d ms%s ==%n",
+                opt.sessions, opt.turns, opt.ws, opt.rampMs, opt.thinkMinMs, opt.thinkMaxMs, opt.binary ? ", bin1" : "");
+
+        try {
+            for (int i = 0; i < opt.sessions; i++) {
+                String[] cred  = opt.users.get(i % opt.users.size()).split(":", 2);
+                VirtualRobot robot = new VirtualRobot(i, opt, http, script, report, cred[0], cred[1]);
+                Thread t = new Thread(() -> { try { robot.run(); } finally { left.countDown(); } }, "robot-" + i);
+                t.setDaemon(true);
+                t.start();
+            }
+            while (!left.await(opt.reportEveryMs, TimeUnit.MILLISECONDS)) {
+                if (out != null) out.println(report.progress(elapsedMs(t0)));
+            }
+            if (out != null) out.print(report.summary(elapsedMs(t0), opt.sessions));
+        } finally {
+            http.dispatcher().executorService().shutdown();
+            http.connectionPool().evictAll();
+            if (standIn != null) standIn.close();
+        }
+        return report;
+    }
+
+    /** Run only the stand-in server until the process is killed */
+    private static void serve(Options opt) throws IOException, InterruptedException {
+        StandInServer s = new StandInServer(opt.standInThinkMs, 20, StandInServer.ECHO).start(opt.servePort);
+        System.out.println("Stand-in server: REST " + s.apiBase() + ", chat " + s.chatEndpoint());
+        Thread.currentThread().join();
+    }
+
+    /** One pool for every robot; OkHttp's default of 5 handshakes per host would throttle the ramp */
+    private static OkHttpClient client(int sessions) {
+        Dispatcher d = new Dispatcher();
+        d.setMaxRequests       (Math.max(64, 2 * sessions));
+        d.setMaxRequestsPerHost(Math.max(64, 2 * sessions));
+        return new OkHttpClient.Builder()
+                .dispatcher(d)
+                .connectionPool(new ConnectionPool(Math.max(5, sessions), 1, TimeUnit.MINUTES))
+                .build();
+    }
+
+    private static long elapsedMs(long t0) { return (System.nanoTime() - t0) / 1_000_000; }
+
+    private LoadGenerator() {}
+}
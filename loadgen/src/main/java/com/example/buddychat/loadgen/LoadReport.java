@@ -0,0 +1,121 @@
+package com.example.buddychat.loadgen;
+
+import java.util.EnumMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import com.example.buddychat.metrics.LatencyHistogram;
+
+// ====================================================================
+// Latency distributions and error counts of one load run
+// ====================================================================
+/// Shared by every session; all of it is safe from any thread
+/// (LatencyHistogram and atomics, no locks).
+///
+/// A turn is one transcription sent; it is answered when its llm_done
+/// (or llm_response) arrives, failed otherwise. The error rate is failed
+/// turns over sent turns. Session-level failures (login, connect) are
+/// counted separately since they never get to send.
+public final class LoadReport {
+
+    public enum Error {
+        LOGIN    ("login"),       // token/ failed: session never started
+        PROFILE  ("profile"),     // profile/ failed (the session still chats)
+        CONNECT  ("connect"),     // socket not open within the turn timeout
+        SEND     ("send"),        // the socket manager refused the frame (queue full / no chat)
+        TIMEOUT  ("timeout"),     // no complete reply within the turn timeout
+        DROPPED  ("dropped"),     // the chat closed or gave up mid-turn
+        RECONNECT("reconnect");   // socket dropped and was retried (not a failed turn by itself)
+
+        public final String label;
+        Error(String label) { this.label = label; }
+    }
+
+    // Latencies (microseconds)
+    public final LatencyHistogram login      = new LatencyHistogram();
+    public final LatencyHistogram profile    = new LatencyHistogram();
+    public final LatencyHistogram connect    = new LatencyHistogram();
+    public final LatencyHistogram firstReply = new LatencyHistogram();   // transcription sent -> first reply frame
+    public final LatencyHistogram fullReply  = new LatencyHistogram();   // transcription sent -> llm_done
+
+    // Counters
+    private final AtomicInteger   started    = new AtomicInteger();
+    private final AtomicInteger   connected  = new AtomicInteger();
+    private final AtomicInteger   finished   = new AtomicInteger();   // ran all their turns
+    private final AtomicInteger   open       = new AtomicInteger();   // sockets open right now
+    private final AtomicInteger   sent       = new AtomicInteger();
+    private final AtomicInteger   answered   = new AtomicInteger();
+    private final AtomicLongArray errors     = new AtomicLongArray(Error.values().length);
+
+    void sessionStarted () { started  .incrementAndGet(); }
+    void sessionFinished() { finished .incrementAndGet(); }
+    void socketOpened   () { connected.incrementAndGet(); open.incrementAndGet(); }
+    void socketClosed   () { open     .decrementAndGet(); }
+    void turnSent       () { sent     .incrementAndGet(); }
+    void turnAnswered   () { answered .incrementAndGet(); }
+    void error(Error e)    { errors.incrementAndGet(e.ordinal()); }
+
+    public int  started  () { return started  .get(); }
+    public int  connected() { return connected.get(); }
+    public int  finished () { return finished .get(); }
+    public int  sent     () { return sent     .get(); }
+    public int  answered () { return answered .get(); }
+    public long errors(Error e) { return errors.get(e.ordinal()); }
+
+    /** Turns sent but never answered */
+    public int failedTurns() { return sent() - answered(); }
+
+    /** Failed turns / sent turns (0 if nothing was sent) */
+    public double errorRate() { return sent() == 0 ? 0 : (double) failedTurns() / sent(); }
+
+    public Map<Error, Long> errorCounts() {
+        Map<Error, Long> out = new EnumMap<>(Error.class);
+        for (Error e : Error.values()) if (errors(e) > 0) out.put(e, errors(e));
+        return out;
+    }
+
+    // --------------------------------------------------------------------
+    // Output
+    // --------------------------------------------------------------------
+    /** One line for the periodic progress output */
+    public String progress(long elapsedMs) {
+        return String.format(Locale.US, "[%4ds] open %d/%d  turns %d sent, %d answered  reply p50 %s p99 %s ms  errors %d",
+                elapsedMs / 1000, open.get(), started(), sent(), answered(),
+                ms(firstReply.percentile(0.50)), ms(firstReply.percentile(0.99)), totalErrors());
+    }
+
+    /** The final report */
+    public String summary(long elapsedMs, int sessions) {
+        StringBuilder sb = new StringBuilder();
+        sb.append(String.format(Locale.US, "== Result after %.1f s ==%n", elapsedMs / 1000.0));
+        sb.append(String.format(Locale.US, "sessions  %d started, %d connected, %d finished all turns, %d never started%n",
+                started(), connected(), finished(), sessions - started()));
+        sb.append(String.format(Locale.US, "turns     %d sent, %d answered, %d failed (error rate %.2f%%)%n",
+                sent(), answered(), failedTurns(), 100 * errorRate()));
+        sb.append(String.format(Locale.US, "%-12s %7s %9s %9s %9s %9s   (ms)%n", "", "n", "p50", "p90", "p99", "max"));
+        row(sb, "login",       login);
+        row(sb, "profile",     profile);
+        row(sb, "connect",     connect);
+        row(sb, "first reply", firstReply);
+        row(sb, "full reply",  fullReply);
+        sb.append("errors   ");
+        if (totalErrors() == 0) sb.append(" none");
+        for (Map.Entry<Error, Long> e : errorCounts().entrySet()) sb.append(' ').append(e.getKey().label).append(' ').append(e.getValue());
+        return sb.append(System.lineSeparator()).toString();
+    }
+
+    private long totalErrors() {
+        long n = 0;
+        for (Error e : Error.values()) n += errors(e);
+        return n;
+    }
+
+    private static void row(StringBuilder sb, String name, LatencyHistogram h) {
+        sb.append(String.format(Locale.US, "%-12s %7d %9s %9s %9s %9s%n", name, h.count(),
+                ms(h.percentile(0.50)), ms(h.percentile(0.90)), ms(h.percentile(0.99)), ms(h.max())));
+    }
+
+    private static String ms(long micros) { return micros < 0 ? "-" : String.format(Locale.US, "%.1f", micros / 1000.0); }
+}
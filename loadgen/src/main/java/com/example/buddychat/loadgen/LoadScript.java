@@ -0,0 +1,87 @@
+package com.example.buddychat.loadgen;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+// ====================================================================
+// What the simulated users say, and how long they think before each line
+// ====================================================================
+/// Script file: one utterance per line; blank lines and lines starting
+/// with # are skipped. A line may start with "@<ms> " to fix the think
+/// time before it (e.g. "@8000 tell me a story"); other lines wait a
+/// random think time between thinkMinMs and thinkMaxMs.
+///
+/// Sessions walk the script from different starting lines (see line())
+/// so the server isn't asked the same thing by everyone at once.
+public final class LoadScript {
+
+    public static final class Line {
+        public final String text;
+        public final long   thinkMs;   // < 0: random
+        Line(String text, long thinkMs) { this.text = text; this.thinkMs = thinkMs; }
+    }
+
+    private final List<Line> lines;
+    private final long       thinkMinMs;
+    private final long       thinkMaxMs;
+
+    public LoadScript(List<Line> lines, long thinkMinMs, long thinkMaxMs) {
+        if (lines.isEmpty())          throw new IllegalArgumentException("empty script");
+        if (thinkMaxMs < thinkMinMs)  throw new IllegalArgumentException("think time max < min");
+        this.lines      = Collections.unmodifiableList(new ArrayList<>(lines));
+        this.thinkMinMs = thinkMinMs;
+        this.thinkMaxMs = thinkMaxMs;
+    }
+
+    /** A short care-home conversation */
+    public static List<Line> defaultLines() {
+        return parse(Arrays.asList(
+                "hello buddy",
+                "what day is it today",
+                "what is the weather like",
+                "can you tell me a joke",
+                "when is my daughter coming to visit",
+                "I would like to listen to some music",
+                "thank you, that was lovely"));
+    }
+
+    public static List<Line> load(Path file) throws IOException {
+        return parse(Files.readAllLines(file, StandardCharsets.UTF_8));
+    }
+
+    static List<Line> parse(List<String> raw) {
+        List<Line> out = new ArrayList<>();
+        for (String s : raw) {
+            s = s.trim();
+            if (s.isEmpty() || s.startsWith("#")) continue;
+            long think = -1;
+            if (s.startsWith("@")) {
+                int sp = s.indexOf(' ');
+                if (sp < 0) throw new IllegalArgumentException("think time without text: " + s);
+                try                             { think = Long.parseLong(s.substring(1, sp)); }
+                catch (NumberFormatException e) { throw new IllegalArgumentException("bad think time: " + s); }
+                s = s.substring(sp + 1).trim();
+            }
+            out.add(new Line(s, think));
+        }
+        return out;
+    }
+
+    public int size() { return lines.size(); }
+
+    /** Turn `turn` of session `session` */
+    public Line line(int session, int turn) { return lines.get((session + turn) % lines.size()); }
+
+    /** Think time before `line` */
+    public long thinkMs(Line line, Random random) {
+        if (line.thinkMs >= 0) return line.thinkMs;
+        return thinkMinMs + (long) (random.nextDouble() * (thinkMaxMs - thinkMinMs));
+    }
+}
@@ -0,0 +1,263 @@
+package com.example.buddychat.loadgen;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.UnaryOperator;
+
+import okhttp3.HttpUrl;
+import okhttp3.Response;
+import okhttp3.WebSocket;
+import okhttp3.WebSocketListener;
+import okhttp3.mockwebserver.Dispatcher;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+import okio.ByteString;
+
+import com.example.buddychat.network.ChatApi;
+import com.example.buddychat.network.model.AuthResponse;
+import com.example.buddychat.network.protocol.ChatBinaryCodec;
+import com.example.buddychat.network.protocol.ChatCodec;
+import com.example.buddychat.network.protocol.ChatMessage;
+
+// ====================================================================
+// Local stand-in for the cognibot server: REST auth/profile and the chat socket
+// ====================================================================
+/// REST, under /api/:
+///  - token/ logs in (any username; the password must match setPassword if one is set),
+///  - token/refresh/ trades a refresh token for a new access token,
+///  - profile/ and health/ answer with fixed JSON (profile needs a token).
+///
+/// Every upgrade on /ws/chat/ with a token it issued gets a socket that:
+///  - pongs pings and acks transcriptions that carry a seq,
+///  - answers a transcription (unless it was already answered on-device)
+///    thinkMs later with the reply streamed as llm_delta words and an
+///    llm_done, all echoing the transcription's trace,
+///  - stops streaming a reply when told to cancel it,
+///  - closes normally on end_chat,
+///  - speaks bin1 when asked to (?proto=bin1), JSON otherwise.
+/// What it received is kept for assertions.
+public final class StandInServer implements AutoCloseable {
+
+    private final MockWebServer            server = new MockWebServer();
+    private final long                     thinkMs;
+    private final long                     wordMs;
+    private final UnaryOperator<String>    replies;
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "StandIn-server");
+        t.setDaemon(true);
+        return t;
+    });
+
+    // All of the below are guarded by `this`
+    private final Map<String, String> accessTokens   = new HashMap<>();   // token -> username
+    private final Map<String, String> refreshTokens  = new HashMap<>();
+    private final List<String>        transcriptions = new ArrayList<>();
+    private final List<String>        cancels        = new ArrayList<>();
+    private String                    password;      // null = any password
+    private int                       issued, logins, partials, connects, rejected;
+
+    /** Credentials sent to token/ (only the password is checked) */
+    private static final class Credentials { String username, password; }
+
+    public StandInServer(long thinkMs, long wordMs, UnaryOperator<String> replies) {
+        this.thinkMs = thinkMs;
+        this.wordMs  = wordMs;
+        this.replies = replies;
+        server.setDispatcher(new Dispatcher() {
+            @Override public MockResponse dispatch(RecordedRequest req) { return route(req); }
+        });
+    }
+
+    /// Reply that repeats what it heard
+    public static final UnaryOperator<String> ECHO = text -> "You said " + text + ". Nice to talk to you.";
+
+    /** 150 ms to "think", 20 ms per streamed word, ECHO replies */
+    public static StandInServer defaults() { return new StandInServer(150, 20, ECHO); }
+
+    /** Require this password on login (null: accept any) */
+    public synchronized void setPassword(String password) { this.password = password; }
+
+    /** Any free port on localhost */
+    public StandInServer start() throws IOException { server.start(); return this; }
+
+    /** A fixed port on every interface (an emulator reaches the host as 10.0.2.2) */
+    public StandInServer start(int port) throws IOException { server.start(InetAddress.getByName("0.0.0.0"), port); return this; }
+
+    /** REST base for ChatApi */
+    public HttpUrl apiBase()      { return server.url("/api/"); }
+
+    /** Chat endpoint for ChatSocketManager.setEndpoint */
+    public HttpUrl chatEndpoint() { return server.url("/ws/chat/"); }
+
+    public synchronized List<String> transcriptions() { return Collections.unmodifiableList(new ArrayList<>(transcriptions)); }
+    public synchronized List<String> cancels()        { return Collections.unmodifiableList(new ArrayList<>(cancels));        }
+    public synchronized int          logins()         { return logins;   }
+    public synchronized int          partials()       { return partials; }
+    public synchronized int          connects()       { return connects; }
+    public synchronized int          rejected()       { return rejected; }   // 401s, REST and sockets
+
+    @Override public void close() throws IOException {
+        scheduler.shutdownNow();
+        server.shutdown();
+    }
+
+    // --------------------------------------------------------------------
+    // Routing
+    // --------------------------------------------------------------------
+    private MockResponse route(RecordedRequest req) {
+        HttpUrl url = req.getRequestUrl();
+        switch (url.encodedPath()) {
+            case "/api/health/":        return json(200, "{\"status\":\"ok\",\"version\":\"stand-in\"}");
+            case "/api/token/":         return login  (req.getBody().readUtf8());
+            case "/api/token/refresh/": return refresh(req.getBody().readUtf8());
+            case "/api/profile/":       return profile(req.getHeader("Authorization"));
+            case "/ws/chat/":           return upgrade(url);
+            default:                    return new MockResponse().setResponseCode(404);
+        }
+    }
+
+    private synchronized MockResponse login(String body) {
+        Credentials c = ChatApi.parse(body, Credentials.class);
+        if (c == null || c.username == null || (password != null && !password.equals(c.password))) return unauthorized();
+        logins++;
+        String refresh = "sr-" + (++issued);
+        refreshTokens.put(refresh, c.username);
+        return json(200, "{\"access\":\"" + issue(c.username) + "\",\"refresh\":\"" + refresh + "\"}");
+    }
+
+    private synchronized MockResponse refresh(String body) {
+        AuthResponse r    = ChatApi.parse(body, AuthResponse.class);
+        String       user = r != null ? refreshTokens.get(r.refresh) : null;
+        if (user == null) return unauthorized();
+        return json(200, "{\"access\":\"" + issue(user) + "\"}");
+    }
+
+    private synchronized MockResponse profile(String authorization) {
+        String user = authorization != null && authorization.startsWith("Bearer ")
+                ? accessTokens.get(authorization.substring(7)) : null;
+        if (user == null) return unauthorized();
+        return json(200, "{\"id\":1,\"role\":\"plwd\","
+                + "\"plwd\":{\"id\":2,\"username\":\"" + user + "\",\"first_name\":\"Stand\",\"last_name\":\"In\",\"is_staff\":false},"
+                + "\"caregiver\":{\"id\":3,\"username\":\"carer\",\"first_name\":\"Care\",\"last_name\":\"Giver\",\"is_staff\":false}}");
+    }
+
+    private synchronized MockResponse upgrade(HttpUrl url) {
+        if (!accessTokens.containsKey(url.queryParameter("token"))) return unauthorized();
+        connects++;
+        boolean binary = ChatBinaryCodec.PROTOCOL.equals(url.queryParameter("proto"));
+        MockResponse res = new MockResponse().withWebSocketUpgrade(new Connection(binary));
+        return binary ? res.setHeader("X-Chat-Proto", ChatBinaryCodec.PROTOCOL) : res;
+    }
+
+    /** Holding `this` */
+    private String issue(String user) {
+        String access = "sa-" + (++issued);
+        accessTokens.put(access, user);
+        return access;
+    }
+
+    private MockResponse unauthorized() {
+        synchronized (this) { rejected++; }
+        return json(401, "{\"detail\":\"Invalid credentials\"}");
+    }
+
+    private static MockResponse json(int code, String body) {
+        return new MockResponse().setResponseCode(code).setHeader("Content-Type", "application/json").setBody(body);
+    }
+
+    // --------------------------------------------------------------------
+    // One socket
+    // --------------------------------------------------------------------
+    private final class Connection extends WebSocketListener {
+        private final boolean         binary;
+        private final ChatCodec       codec = new ChatCodec();         // guarded by `this`
+        private final ChatBinaryCodec bin   = new ChatBinaryCodec();   // guarded by `this`
+        private ScheduledFuture<?>    replying;
+        private String                replyTrace;
+        private int                   replyId;
+
+        Connection(boolean binary) { this.binary = binary; }
+
+        @Override public void onMessage(WebSocket ws, String text) {
+            try                                         { handle(ws, ChatCodec.decode(text, null)); }
+            catch (ChatCodec.MalformedFrameException e) { /* ignored, like the server */ }
+        }
+
+        @Override public void onMessage(WebSocket ws, ByteString bytes) {
+            byte[] b = bytes.toByteArray();
+            try                                               { handle(ws, ChatBinaryCodec.decode(b, 0, b.length, null)); }
+            catch (ChatBinaryCodec.MalformedFrameException e) { /* ignored, like the server */ }
+        }
+
+        @Override public void onClosing(WebSocket ws, int code, String reason) { ws.close(code, null); }
+        @Override public void onFailure(WebSocket ws, Throwable t, Response r) { }
+
+        private void handle(WebSocket ws, ChatMessage msg) {
+            switch (msg.type) {
+                case PING:
+                    ChatMessage pong = new ChatMessage(ChatMessage.Type.PONG, null);
+                    pong.id = msg.id;
+                    send(ws, pong);
+                    break;
+                case TRANSCRIPTION:
+                    synchronized (StandInServer.this) { transcriptions.add(msg.data); }
+                    if (msg.seq != null) send(ws, new ChatMessage(ChatMessage.Type.ACK, msg.seq));
+                    if (msg.cached == null) reply(ws, msg.trace, replies.apply(msg.data));
+                    break;
+                case TRANSCRIPTION_PARTIAL:
+                    synchronized (StandInServer.this) { partials++; }
+                    break;
+                case CANCEL:
+                    synchronized (StandInServer.this) { cancels.add(msg.trace); }
+                    synchronized (this) {
+                        if (replying != null && msg.trace != null && msg.trace.equals(replyTrace)) replying.cancel(false);
+                    }
+                    break;
+                case END_CHAT:
+                    ws.close(1000, "bye");
+                    break;
+                default:
+                    break;
+            }
+        }
+
+        /** Stream `text` word by word after thinkMs, then llm_done with the full text */
+        private synchronized void reply(WebSocket ws, String trace, String text) {
+            String   id    = "r" + (++replyId);
+            String[] words = text.split(" ");
+            int[]    next  = { 0 };
+            replyTrace = trace;
+            ScheduledFuture<?>[] self = new ScheduledFuture<?>[1];
+            self[0] = scheduler.scheduleWithFixedDelay(() -> {
+                synchronized (this) { if (replying != self[0]) return; }
+                if (next[0] < words.length) {
+                    ChatMessage d = new ChatMessage(ChatMessage.Type.LLM_DELTA, (next[0] == 0 ? "" : " ") + words[next[0]++], trace);
+                    d.id = id;
+                    send(ws, d);
+                    return;
+                }
+                ChatMessage done = new ChatMessage(ChatMessage.Type.LLM_DONE, text, trace);
+                done.id = id;
+                send(ws, done);
+                self[0].cancel(false);
+            }, thinkMs, wordMs, TimeUnit.MILLISECONDS);
+            replying = self[0];
+        }
+
+        private synchronized void send(WebSocket ws, ChatMessage msg) {
+            if (!binary) { ws.send(codec.encode(msg)); return; }
+            int n = bin.encode(msg);
+            ws.send(ByteString.of(bin.buffer(), 0, n));
+        }
+    }
+}
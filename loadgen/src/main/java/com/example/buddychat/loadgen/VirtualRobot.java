@@ -0,0 +1,203 @@
+package com.example.buddychat.loadgen;
+
+import java.io.IOException;
+import java.util.EnumSet;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import okhttp3.OkHttpClient;
+
+import com.example.buddychat.network.ChatApi;
+import com.example.buddychat.network.ChatLog;
+import com.example.buddychat.network.model.AuthResponse;
+import com.example.buddychat.network.protocol.ChatCodec;
+import com.example.buddychat.network.protocol.ChatMessage;
+import com.example.buddychat.network.ws.ChatListener;
+import com.example.buddychat.network.ws.ChatSocketManager;
+import com.example.buddychat.network.ws.Heartbeat;
+import com.example.buddychat.network.ws.LinkQuality;
+import com.example.buddychat.network.ws.ReconnectPolicy;
+
+// ====================================================================
+// One simulated robot: log in, read the profile, chat for N turns, hang up
+// ====================================================================
+/// Runs on its own thread and does what the app does at startup, with the
+/// same ChatApi and ChatSocketManager (default reconnect policy and
+/// heartbeat). Each turn sends a transcription with trace "lg<session>-<turn>"
+/// and waits for the reply frames echoing it: the first one gives the
+/// time to first reply, llm_done (or a one-shot llm_response) completes
+/// the turn. Frames without a trace count for the current turn.
+///
+/// A turn that isn't complete within turnTimeoutMs fails; a chat that
+/// closes or gives up reconnecting ends the session early.
+final class VirtualRobot implements Runnable, ChatListener {
+    private static final String TAG = "Robot";
+
+    // Chat frames that belong to a turn
+    private static final Set<ChatMessage.Type> REPLIES = EnumSet.of(
+            ChatMessage.Type.LLM_DELTA, ChatMessage.Type.LLM_DONE, ChatMessage.Type.LLM_RESPONSE);
+
+    private final int                   id;
+    private final LoadGenerator.Options opt;
+    private final ChatApi               api;
+    private final LoadScript            script;
+    private final LoadReport            report;
+    private final String                user, password;
+    private final Random                random;
+    private final ChatSocketManager     chat;
+
+    // All of the below are guarded by `this`
+    private boolean opened, closed;
+    private String  trace;          // current turn, null between turns
+    private long    sentNanos;
+    private boolean firstSeen, done;
+
+    VirtualRobot(int id, LoadGenerator.Options opt, OkHttpClient http, LoadScript script, LoadReport report,
+                 String user, String password) {
+        this.id       = id;
+        this.opt      = opt;
+        this.api      = new ChatApi(http, opt.api);
+        this.script   = script;
+        this.report   = report;
+        this.user     = user;
+        this.password = password;
+        this.random   = new Random(opt.seed * 31 + id);
+        this.chat     = new ChatSocketManager(ReconnectPolicy.defaults(), ChatSocketManager.DEFAULT_MAX_PENDING,
+                Heartbeat.defaults(), http);
+        chat.setEndpoint(opt.ws);
+        chat.setBinaryFraming(opt.binary);
+    }
+
+    @Override public void run() {
+        try {
+            sleep(opt.rampMs * id / Math.max(1, opt.sessions));   // spread the starts over the ramp
+            report.sessionStarted();
+            chatSession();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            chat.endChat();
+        }
+    }
+
+    private void chatSession() throws InterruptedException {
+        // Login
+        long t = System.nanoTime();
+        String token;
+        try {
+            AuthResponse tokens = api.loginBlocking(user, password);
+            token = tokens.access;
+            report.login.record(micros(t));
+        } catch (IOException | RuntimeException e) {
+            fail(LoadReport.Error.LOGIN, e);
+            return;
+        }
+
+        // Profile (the app shows it before chatting; failure is not fatal there either)
+        t = System.nanoTime();
+        try                                       { api.fetchProfileBlocking(token); report.profile.record(micros(t)); }
+        catch (IOException | RuntimeException e) { fail(LoadReport.Error.PROFILE, e); }
+
+        // Connect
+        t = System.nanoTime();
+        chat.connect(() -> token, this);
+        synchronized (this) {
+            await(() -> opened || closed, opt.turnTimeoutMs);
+            if (!opened) { fail(LoadReport.Error.CONNECT, null); return; }
+        }
+        report.connect.record(micros(t));
+
+        // Turns
+        for (int turn = 0; turn < opt.turns; turn++) {
+            LoadScript.Line line = script.line(id, turn);
+            sleep(script.thinkMs(line, random));
+            if (!turn(line.text, "lg" + id + "-" + turn)) return;
+        }
+        report.sessionFinished();
+    }
+
+    /** One turn; false if the session can't go on */
+    private boolean turn(String text, String traceId) throws InterruptedException {
+        synchronized (this) {
+            if (closed) { fail(LoadReport.Error.DROPPED, null); return false; }
+            trace     = traceId;
+            firstSeen = false;
+            done      = false;
+            sentNanos = System.nanoTime();
+        }
+        // Not holding `this` while calling into the manager (lock order: never robot -> manager)
+        boolean queued = chat.sendString(text, traceId);
+        synchronized (this) {
+            if (!queued) { trace = null; fail(LoadReport.Error.SEND, null); return !closed; }
+            report.turnSent();
+            await(() -> done || closed, opt.turnTimeoutMs);
+            trace = null;
+            if (done)   return true;
+            if (closed) { fail(LoadReport.Error.DROPPED, null); return false; }
+            fail(LoadReport.Error.TIMEOUT, null);
+            return true;   // a slow reply isn't a dead chat; the next turn may still work
+        }
+    }
+
+    // --------------------------------------------------------------------
+    // ChatListener (OkHttp / reconnect threads)
+    // --------------------------------------------------------------------
+    @Override public synchronized void onOpen() {
+        if (!opened) report.socketOpened();
+        opened = true;
+        notifyAll();
+    }
+
+    @Override public void onMessage(String json) {
+        try                                         { onMessage(ChatCodec.decode(json, REPLIES)); }
+        catch (ChatCodec.MalformedFrameException e) { ChatLog.w(TAG, "#" + id + " bad frame: " + e.getMessage()); }
+    }
+
+    @Override public synchronized void onMessage(ChatMessage msg) {
+        if (msg == null || !REPLIES.contains(msg.type) || trace == null) return;
+        if (msg.trace != null && !msg.trace.equals(trace)) return;   // late reply to an earlier turn
+        if (!firstSeen) { firstSeen = true; report.firstReply.record(micros(sentNanos)); }
+        if (msg.type == ChatMessage.Type.LLM_DELTA) return;
+        report.fullReply.record(micros(sentNanos));
+        report.turnAnswered();
+        done = true;
+        notifyAll();
+    }
+
+    @Override public synchronized void onClosed() {
+        if (opened && !closed) report.socketClosed();
+        closed = true;
+        notifyAll();
+    }
+
+    @Override public void onError(Throwable t) { ChatLog.w(TAG, "#" + id + " chat failed: " + t); }
+
+    @Override public void onReconnecting(int attempt, long delayMs) { report.error(LoadReport.Error.RECONNECT); }
+
+    @Override public void onLinkQuality(LinkQuality quality, long rttMs) { }
+
+    // --------------------------------------------------------------------
+    // Helpers
+    // --------------------------------------------------------------------
+    private interface Condition { boolean holds(); }
+
+    /** wait() on `this` (held) until `c` holds or timeoutMs passes */
+    private void await(Condition c, long timeoutMs) throws InterruptedException {
+        long end = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMs);
+        while (!c.holds()) {
+            long left = TimeUnit.NANOSECONDS.toMillis(end - System.nanoTime());
+            if (left <= 0) return;
+            wait(left);
+        }
+    }
+
+    private void fail(LoadReport.Error kind, Throwable t) {
+        report.error(kind);
+        ChatLog.d(TAG, "#" + id + " " + kind.label + (t != null ? ": " + t : ""));
+    }
+
+    private static void sleep(long ms) throws InterruptedException { if (ms > 0) Thread.sleep(ms); }
+
+    private static long micros(long sinceNanos) { return (System.nanoTime() - sinceNanos) / 1_000; }
+}
@@ -0,0 +1,76 @@
+package com.example.buddychat.loadgen;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+
+// ====================================================================
+// Short load runs against the stand-in server
+// ====================================================================
+/// Small enough for every build (~5 s): 20 robots x 3 turns over JSON,
+/// a few over bin1, and a run where every login is refused.
+public class LoadGeneratorTest {
+
+    private static LoadGenerator.Options quick(int sessions, int turns, String... extra) throws Exception {
+        String[] base = { "--sessions", String.valueOf(sessions), "--turns", String.valueOf(turns),
+                "--ramp-ms", "200", "--think-ms", "50-150", "--turn-timeout-ms", "10000", "--report-every-ms", "1000" };
+        String[] args = Arrays.copyOf(base, base.length + extra.length);
+        System.arraycopy(extra, 0, args, base.length, extra.length);
+        return LoadGenerator.Options.parse(args);
+    }
+
+    @Test
+    public void everyTurnIsAnsweredByTheStandIn() throws Exception {
+        LoadReport r = LoadGenerator.run(quick(20, 3, "--stand-in", "--stand-in-think-ms", "50"), System.out);
+
+        assertEquals(20, r.connected());
+        assertEquals(20, r.finished());
+        assertEquals(60, r.sent());
+        assertEquals(60, r.answered());
+        assertEquals(60, r.fullReply.count());
+        assertEquals(60, r.firstReply.count());
+        assertTrue(r.errorCounts().toString(), r.errorCounts().isEmpty());
+        assertEquals(0.0, r.errorRate(), 0);
+    }
+
+    @Test
+    public void binaryFramingWorksEndToEnd() throws Exception {
+        LoadReport r = LoadGenerator.run(quick(5, 2, "--stand-in", "--stand-in-think-ms", "50", "--binary"), System.out);
+
+        assertEquals(10, r.answered());
+        assertTrue(r.errorCounts().toString(), r.errorCounts().isEmpty());
+    }
+
+    @Test
+    public void refusedLoginsAreSessionErrorsNotTurns() throws Exception {
+        try (StandInServer server = StandInServer.defaults().start()) {
+            server.setPassword("secret");
+            LoadGenerator.Options opt = quick(5, 2, "--user", "robot", "--password", "wrong");
+            opt.api = server.apiBase();
+            opt.ws  = server.chatEndpoint();
+
+            LoadReport r = LoadGenerator.run(opt, System.out);
+
+            assertEquals(5, r.errors(LoadReport.Error.LOGIN));
+            assertEquals(0, r.connected());
+            assertEquals(0, r.sent());
+            assertEquals(5, server.rejected());
+            assertEquals(0, server.connects());
+        }
+    }
+
+    @Test
+    public void scriptLinesMayFixTheirThinkTime() {
+        List<LoadScript.Line> lines = LoadScript.parse(Arrays.asList("# greeting", "", "hello buddy", "@8000 tell me a story"));
+
+        assertEquals(2, lines.size());
+        assertEquals("hello buddy", lines.get(0).text);
+        assertEquals(-1, lines.get(0).thinkMs);
+        assertEquals("tell me a story", lines.get(1).text);
+        assertEquals(8000, lines.get(1).thinkMs);
+    }
+}
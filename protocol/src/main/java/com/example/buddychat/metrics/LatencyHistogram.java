@@ -0,0 +1,74 @@
+package com.example.buddychat.metrics;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+// ====================================================================
+// Fixed-memory, lock-free latency histogram
+// ====================================================================
+/// Log-linear buckets over microseconds: values below 16 us get a bucket
+/// each, above that every power of two is split into 8 sub-buckets, so any
+/// reported percentile is within 12.5% of the true value. 272 buckets cover
+/// up to ~19 hours (larger values land in the last bucket); that is ~2 KiB
+/// per histogram no matter how many samples are recorded.
+///
+/// record() is a single atomic increment, safe from any thread.
+public class LatencyHistogram {
+    private static final int SUB_BITS = 3;                   // 8 sub-buckets per power of two
+    private static final int LINEAR   = 1 << (SUB_BITS + 1); // 0..15 us stored exactly
+    private static final int MAX_EXP  = 36;
+    private static final int BUCKETS  = LINEAR + (MAX_EXP - SUB_BITS - 1) * (1 << SUB_BITS);
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+
+    public void record(long micros) {
+        counts.incrementAndGet(indexOf(Math.max(0, micros)));
+    }
+
+    public long count() {
+        long n = 0;
+        for (int i = 0; i < BUCKETS; i++) n += counts.get(i);
+        return n;
+    }
+
+    /** Value at quantile q (0..1) in microseconds (bucket midpoint), or -1 if empty */
+    public long percentile(double q) {
+        long total = count();
+        if (total == 0) return -1;
+        long rank = Math.max(1, (long) Math.ceil(q * total));
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += counts.get(i);
+            if (seen >= rank) return midpointOf(i);
+        }
+        return midpointOf(BUCKETS - 1);
+    }
+
+    /** Largest recorded value (bucket midpoint), or -1 if empty */
+    public long max() {
+        for (int i = BUCKETS - 1; i >= 0; i--) if (counts.get(i) != 0) return midpointOf(i);
+        return -1;
+    }
+
+    public void reset() { for (int i = 0; i < BUCKETS; i++) counts.set(i, 0); }
+
+    // --------------------------------------------------------------------
+    // Bucket math
+    // --------------------------------------------------------------------
+    static int indexOf(long v) {
+        if (v < LINEAR) return (int) v;
+        int exp = 63 - Long.numberOfLeadingZeros(v);              // >= SUB_BITS + 1
+        if (exp >= MAX_EXP) return BUCKETS - 1;
+        int sub = (int) (v >>> (exp - SUB_BITS)) & ((1 << SUB_BITS) - 1);
+        return LINEAR + (exp - SUB_BITS - 1) * (1 << SUB_BITS) + sub;
+    }
+
+    static long midpointOf(int index) {
+        if (index < LINEAR) return index;
+        int  i     = index - LINEAR;
+        int  exp   = i / (1 << SUB_BITS) + SUB_BITS + 1;
+        int  sub   = i % (1 << SUB_BITS);
+        long width = 1L << (exp - SUB_BITS);
+        long lower = (1L << exp) + sub * width;
+        return lower + width / 2;
+    }
+}
@@ -0,0 +1,121 @@
+package com.example.buddychat.network;
+
+import java.io.IOException;
+
+import okhttp3.Call;
+import okhttp3.HttpUrl;
+import okhttp3.MediaType;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.RequestBody;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonObject;
+
+import com.example.buddychat.network.model.AuthResponse;
+import com.example.buddychat.network.model.Profile;
+
+// ====================================================================
+// The cognibot REST API: requests and replies, no platform code
+// ====================================================================
+/// Builds the /token/, /token/refresh/, /profile/ and /health/ requests
+/// and parses their replies. The app (NetworkUtils) enqueues them with its
+/// caching and callbacks; tools call the blocking variants from their own
+/// threads.
+public class ChatApi {
+    /// Shared by REST and chat sockets, so they reuse one pool/dispatcher
+    public static final OkHttpClient CLIENT = new OkHttpClient();
+
+    public static final HttpUrl CLOUD = HttpUrl.get("https://cognibot.org/api/");
+    // https://sandbox.cognibot.org/api/ | http://10.0.2.2:8000/api/ (local docker container)
+
+    private static final Gson      GSON = new Gson();
+    private static final MediaType JSON = MediaType.get("application/json");
+
+    /** Non-2xx reply; `code` lets callers tell a rejected token (401) from an outage */
+    public static class HttpException extends IOException {
+        public final int code;
+        public HttpException(int code) { super("HTTP " + code); this.code = code; }
+    }
+
+    private final OkHttpClient http;
+    private final HttpUrl      base;   // ends in /api/
+
+    public ChatApi(OkHttpClient http, HttpUrl base) {
+        this.http = http;
+        this.base = base;
+    }
+
+    public HttpUrl base() { return base; }
+
+    // --------------------------------------------------------------------
+    // Requests
+    // --------------------------------------------------------------------
+    public Request.Builder healthRequest() { return new Request.Builder().url(url("health/")).get(); }
+
+    public Request loginRequest(String username, String password) {
+        JsonObject payload = new JsonObject();
+        payload.addProperty("username", username);
+        payload.addProperty("password", password);
+        return post("token/", payload);
+    }
+
+    public Request refreshRequest(String refreshToken) {
+        JsonObject payload = new JsonObject();
+        payload.addProperty("refresh", refreshToken);
+        return post("token/refresh/", payload);
+    }
+
+    /** Without a token: only good for reading a cached copy */
+    public Request.Builder profileRequest(String accessToken) {
+        Request.Builder b = new Request.Builder().url(url("profile/")).get();
+        if (accessToken != null) b.header("Authorization", "Bearer " + accessToken);
+        return b;
+    }
+
+    // --------------------------------------------------------------------
+    // Replies
+    // --------------------------------------------------------------------
+    /** Body of a successful reply; HttpException otherwise */
+    public static String body(Response r) throws IOException {
+        try (ResponseBody b = r.body()) {
+            if (!r.isSuccessful()) throw new HttpException(r.code());
+            return b != null ? b.string() : "";
+        }
+    }
+
+    /** Token pair; a refresh reply without "refresh" (no rotation) keeps `previousRefresh` */
+    public static AuthResponse parseTokens(String raw, String previousRefresh) {
+        AuthResponse ar = GSON.fromJson(raw, AuthResponse.class);
+        if (ar.refresh == null) ar.refresh = previousRefresh;
+        return ar;
+    }
+
+    public static Profile parseProfile(String raw) { return GSON.fromJson(raw, Profile.class); }
+
+    public static <T> T parse(String raw, Class<T> type) { return GSON.fromJson(raw, type); }
+
+    // --------------------------------------------------------------------
+    // Blocking calls (tools, worker threads)
+    // --------------------------------------------------------------------
+    public AuthResponse loginBlocking(String username, String password) throws IOException {
+        return parseTokens(execute(loginRequest(username, password)), null);
+    }
+
+    public Profile fetchProfileBlocking(String accessToken) throws IOException {
+        return parseProfile(execute(profileRequest(accessToken).build()));
+    }
+
+    private String execute(Request req) throws IOException {
+        Call call = http.newCall(req);
+        try (Response r = call.execute()) { return body(r); }
+    }
+
+    private Request post(String path, JsonObject payload) {
+        return new Request.Builder().url(url(path)).post(RequestBody.create(GSON.toJson(payload), JSON)).build();
+    }
+
+    private HttpUrl url(String path) { return base.resolve(path); }
+}
@@ -0,0 +1,37 @@
+package com.example.buddychat.network;
+
+// ====================================================================
+// Logging for the chat client, without android.util.Log
+// ====================================================================
+/// Same call shape as android.util.Log (priorities use its numbers), so
+/// the app installs a sink that forwards to Log.println and every other
+/// JVM (benchmarks, load generator) gets stderr. The default sink drops
+/// anything below `minLevel` (WARN) so hundreds of sessions stay readable.
+public final class ChatLog {
+    public static final int VERBOSE = 2, DEBUG = 3, INFO = 4, WARN = 5, ERROR = 6;
+
+    public interface Sink { void log(int level, String tag, String msg, Throwable t); }
+
+    private static volatile Sink sink     = ChatLog::stderr;
+    private static volatile int  minLevel = WARN;
+
+    private ChatLog() {}  // static-only class
+
+    public static void setSink    (Sink s)    { sink = s != null ? s : ChatLog::stderr; }
+    public static void setMinLevel(int level) { minLevel = level; }
+
+    public static void d(String tag, String msg)              { log(DEBUG, tag, msg, null); }
+    public static void i(String tag, String msg)              { log(INFO,  tag, msg, null); }
+    public static void w(String tag, String msg)              { log(WARN,  tag, msg, null); }
+    public static void e(String tag, String msg)              { log(ERROR, tag, msg, null); }
+    public static void e(String tag, String msg, Throwable t) { log(ERROR, tag, msg, t);    }
+
+    private static void log(int level, String tag, String msg, Throwable t) {
+        if (level >= minLevel) sink.log(level, tag, msg, t);
+    }
+
+    private static void stderr(int level, String tag, String msg, Throwable t) {
+        System.err.println("VDIWE".charAt(level - VERBOSE) + "/" + tag + ": " + msg);
+        if (t != null) t.printStackTrace();
+    }
+}
@@ -0,0 +1,199 @@
+package com.example.buddychat.network.protocol;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Set;
+
+// ====================================================================
+// Compact binary framing for the chat WebSocket ("bin1")
+// ====================================================================
+/// Layout of one binary frame:
+///
+///   [version:1] [type:1] ( [tag:1] [len:varint] [utf-8 bytes:len] )*
+///
+/// Fields are optional and may come in any order; unknown tags are skipped
+/// by length, so the server can add fields without breaking old robots.
+/// Varints are unsigned LEB128. A typical transcription is ~30 bytes
+/// smaller than its JSON text frame and decodes without any scanning.
+///
+/// Encoding reuses one growable buffer per instance; not thread-safe.
+public class ChatBinaryCodec {
+    public static final String PROTOCOL = "bin1";   // value negotiated in the ?proto= query / X-Chat-Proto header
+    public static final byte   VERSION  = 1;
+
+    // Field tags
+    private static final byte TAG_DATA   = 1;
+    private static final byte TAG_TIME   = 2;
+    private static final byte TAG_ID     = 3;
+    private static final byte TAG_TRACE  = 4;
+    private static final byte TAG_SEQ    = 5;   // decimal text, like the JSON number
+    private static final byte TAG_CACHE  = 6;
+    private static final byte TAG_CACHED = 7;
+    private static final byte TAG_ALT    = 8;   // repeated, one per alternate, best first
+
+    // Wire codes for ChatMessage.Type; stable, never reorder
+    private static final ChatMessage.Type[] BY_CODE = {
+            ChatMessage.Type.UNKNOWN,        // 0
+            ChatMessage.Type.TRANSCRIPTION,  // 1
+            ChatMessage.Type.END_CHAT,       // 2
+            ChatMessage.Type.LLM_RESPONSE,   // 3
+            ChatMessage.Type.LLM_DELTA,      // 4
+            ChatMessage.Type.LLM_DONE,       // 5
+            ChatMessage.Type.SESSION,        // 6
+            ChatMessage.Type.PING,           // 7
+            ChatMessage.Type.PONG,           // 8
+            ChatMessage.Type.ACK,            // 9
+            ChatMessage.Type.TRANSCRIPTION_PARTIAL,  // 10
+            ChatMessage.Type.CANCEL,         // 11
+    };
+
+    private byte[] buf = new byte[256];
+    private int    len;
+
+    /** Thrown for frames that are truncated or from an unsupported version */
+    public static class MalformedFrameException extends Exception {
+        MalformedFrameException(String msg) { super(msg); }
+    }
+
+    // ====================================================================
+    // Encoding
+    // ====================================================================
+    /** Encode into the internal buffer; returns the frame length (see buffer()) */
+    public int encode(ChatMessage msg) {
+        len = 0;
+        ensure(2);
+        buf[len++] = VERSION;
+        buf[len++] = codeOf(msg.type);
+        putField(TAG_DATA,   msg.data  );
+        putField(TAG_TIME,   msg.time  );
+        putField(TAG_ID,     msg.id    );
+        putField(TAG_TRACE,  msg.trace );
+        putField(TAG_SEQ,    msg.seq   );
+        putField(TAG_CACHE,  msg.cache );
+        putField(TAG_CACHED, msg.cached);
+        if (msg.alts != null) for (String alt : msg.alts) putField(TAG_ALT, alt);
+        return len;
+    }
+
+    /** Bytes of the last encode(); valid until the next call */
+    public byte[] buffer() { return buf; }
+
+    private void putField(byte tag, String value) {
+        if (value == null) return;
+        int utfLen = utf8Length(value);
+        ensure(1 + 5 + utfLen);
+        buf[len++] = tag;
+        putVarint(utfLen);
+        putUtf8(value);
+    }
+
+    private void putVarint(int v) {
+        while ((v & ~0x7F) != 0) { buf[len++] = (byte) ((v & 0x7F) | 0x80); v >>>= 7; }
+        buf[len++] = (byte) v;
+    }
+
+    /** Hand-rolled so we write straight into `buf` instead of allocating via getBytes() */
+    private void putUtf8(String s) {
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (c < 0x80) {
+                buf[len++] = (byte) c;
+            } else if (c < 0x800) {
+                buf[len++] = (byte) (0xC0 | (c >> 6));
+                buf[len++] = (byte) (0x80 | (c & 0x3F));
+            } else if (Character.isHighSurrogate(c) && i + 1 < s.length() && Character.isLowSurrogate(s.charAt(i + 1))) {
+                int cp = Character.toCodePoint(c, s.charAt(++i));
+                buf[len++] = (byte) (0xF0 | (cp >> 18));
+                buf[len++] = (byte) (0x80 | ((cp >> 12) & 0x3F));
+                buf[len++] = (byte) (0x80 | ((cp >> 6) & 0x3F));
+                buf[len++] = (byte) (0x80 | (cp & 0x3F));
+            } else {
+                if (Character.isSurrogate(c)) c = '?';  // lone surrogate, same as String.getBytes
+                buf[len++] = (byte) (0xE0 | (c >> 12));
+                buf[len++] = (byte) (0x80 | ((c >> 6) & 0x3F));
+                buf[len++] = (byte) (0x80 | (c & 0x3F));
+            }
+        }
+    }
+
+    private static int utf8Length(String s) {
+        int n = 0;
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if      (c < 0x80 ) n += 1;
+            else if (c < 0x800) n += 2;
+            else if (Character.isHighSurrogate(c) && i + 1 < s.length() && Character.isLowSurrogate(s.charAt(i + 1))) { n += 4; i++; }
+            else                n += 3;
+        }
+        return n;
+    }
+
+    private void ensure(int extra) {
+        if (len + extra <= buf.length) return;
+        byte[] bigger = new byte[Math.max(buf.length * 2, len + extra)];
+        System.arraycopy(buf, 0, bigger, 0, len);
+        buf = bigger;
+    }
+
+    private static byte codeOf(ChatMessage.Type t) {
+        for (int i = 0; i < BY_CODE.length; i++) if (BY_CODE[i] == t) return (byte) i;
+        return 0;
+    }
+
+    // ====================================================================
+    // Decoding
+    // ====================================================================
+    /** Type of a frame from its header alone, so unwanted frames can be dropped without copying them */
+    public static ChatMessage.Type peekType(byte version, byte code) {
+        if (version != VERSION || code < 0 || code >= BY_CODE.length) return ChatMessage.Type.UNKNOWN;
+        return BY_CODE[code];
+    }
+
+    /** Decode a frame, or return null if its type is not in `wanted` (null accepts everything) */
+    public static ChatMessage decode(byte[] b, int off, int length, Set<ChatMessage.Type> wanted) throws MalformedFrameException {
+        final int end = off + length;
+        if (length < 2)         throw new MalformedFrameException("Frame too short");
+        if (b[off] != VERSION)  throw new MalformedFrameException("Unsupported version " + b[off]);
+
+        ChatMessage msg = new ChatMessage();
+        msg.type = peekType(b[off], b[off + 1]);
+        if (wanted != null && !wanted.contains(msg.type)) return null;
+
+        int i = off + 2;
+        while (i < end) {
+            byte tag = b[i++];
+
+            // Varint length
+            int n = 0, shift = 0;
+            while (true) {
+                if (i >= end || shift > 28) throw new MalformedFrameException("Bad varint");
+                byte x = b[i++];
+                n |= (x & 0x7F) << shift;
+                if ((x & 0x80) == 0) break;
+                shift += 7;
+            }
+            if (n < 0 || n > end - i) throw new MalformedFrameException("Field overruns frame");
+
+            switch (tag) {
+                case TAG_DATA  : msg.data   = new String(b, i, n, StandardCharsets.UTF_8); break;
+                case TAG_TIME  : msg.time   = new String(b, i, n, StandardCharsets.UTF_8); break;
+                case TAG_ID    : msg.id     = new String(b, i, n, StandardCharsets.UTF_8); break;
+                case TAG_TRACE : msg.trace  = new String(b, i, n, StandardCharsets.UTF_8); break;
+                case TAG_SEQ   : msg.seq    = new String(b, i, n, StandardCharsets.UTF_8); break;
+                case TAG_CACHE : msg.cache  = new String(b, i, n, StandardCharsets.UTF_8); break;
+                case TAG_CACHED: msg.cached = new String(b, i, n, StandardCharsets.UTF_8); break;
+                case TAG_ALT   : msg.alts   = append(msg.alts, new String(b, i, n, StandardCharsets.UTF_8)); break;
+                default        : break;  // unknown field: skip
+            }
+            i += n;
+        }
+        return msg;
+    }
+
+    private static String[] append(String[] a, String s) {
+        if (a == null) return new String[] { s };
+        String[] out = Arrays.copyOf(a, a.length + 1);
+        out[a.length] = s;
+        return out;
+    }
+}
@@ -0,0 +1,284 @@
+package com.example.buddychat.network.protocol;
+
+import java.util.Set;
+
+// ====================================================================
+// Single-pass codec for the chat WebSocket JSON frames
+// ====================================================================
+/// Decoding walks the frame once. Values are only recorded as index spans;
+/// strings are unescaped at the end, and only for fields we keep. If "type"
+/// turns out to be something the caller doesn't want, we return right
+/// there and the rest of the frame is never looked at.
+///
+/// Encoding builds frames in a reused StringBuilder with proper JSON
+/// escaping (the old String.format path broke on quotes and newlines).
+/// An instance is not thread-safe; give each sending thread its own or
+/// synchronize around it.
+public class ChatCodec {
+    private final StringBuilder out = new StringBuilder(256);
+
+    // ====================================================================
+    // Decoding
+    // ====================================================================
+    /** Thrown for frames that are not a JSON object we can walk */
+    public static class MalformedFrameException extends Exception {
+        MalformedFrameException(String msg, int pos) { super(msg + " at " + pos); }
+    }
+
+    /**
+     * Decode a frame, or return null if its type is not in `wanted`
+     * (a null `wanted` accepts everything, including unknown types).
+     */
+    public static ChatMessage decode(String raw, Set<ChatMessage.Type> wanted) throws MalformedFrameException {
+        final int n = raw.length();
+        int i = skipWs(raw, 0);
+        if (i >= n || raw.charAt(i) != '{') throw new MalformedFrameException("Expected '{'", i);
+        i++;
+
+        ChatMessage msg = new ChatMessage();
+        boolean typeSeen = false;
+        // Spans of the raw values we may keep: [start, end)
+        int dataS = -1, dataE = -1, timeS = -1, timeE = -1, idS = -1, idE = -1,
+            trS   = -1, trE   = -1, sqS   = -1, sqE   = -1, caS = -1, caE = -1, cdS = -1, cdE = -1;
+
+        while (true) {
+            i = skipWs(raw, i);
+            if (i >= n) throw new MalformedFrameException("Unterminated object", i);
+            char c = raw.charAt(i);
+            if (c == '}') break;
+            if (c == ',') { i++; continue; }
+            if (c != '"') throw new MalformedFrameException("Expected key", i);
+
+            // Key (no unescaping; our keys are plain ASCII)
+            int keyS = i + 1;
+            int keyE = skipString(raw, i) - 1;
+            i = skipWs(raw, keyE + 1);
+            if (i >= n || raw.charAt(i) != ':') throw new MalformedFrameException("Expected ':'", i);
+            i = skipWs(raw, i + 1);
+
+            int valS = i;
+            int valE = skipValue(raw, i);
+            i = valE;
+
+            switch (keyOf(raw, keyS, keyE)) {
+                case K_TYPE:
+                    msg.type = typeOf(raw, valS, valE);
+                    typeSeen = true;
+                    if (wanted != null && !wanted.contains(msg.type)) return null;  // early out
+                    break;
+                case K_DATA  : dataS = valS; dataE = valE; break;
+                case K_TIME  : timeS = valS; timeE = valE; break;
+                case K_ID    : idS   = valS; idE   = valE; break;
+                case K_TRACE : trS   = valS; trE   = valE; break;
+                case K_SEQ   : sqS   = valS; sqE   = valE; break;
+                case K_CACHE : caS   = valS; caE   = valE; break;
+                case K_CACHED: cdS   = valS; cdE   = valE; break;
+                default      : break;
+            }
+        }
+
+        if (!typeSeen && wanted != null && !wanted.contains(ChatMessage.Type.UNKNOWN)) return null;
+        if (dataS >= 0) msg.data   = valueText(raw, dataS, dataE);
+        if (timeS >= 0) msg.time   = valueText(raw, timeS, timeE);
+        if (idS   >= 0) msg.id     = valueText(raw, idS,   idE  );
+        if (trS   >= 0) msg.trace  = valueText(raw, trS,   trE  );
+        if (sqS   >= 0) msg.seq    = valueText(raw, sqS,   sqE  );
+        if (caS   >= 0) msg.cache  = valueText(raw, caS,   caE  );
+        if (cdS   >= 0) msg.cached = valueText(raw, cdS,   cdE  );
+        return msg;
+    }
+
+    // --------------------------------------------------------------------
+    // Keys / types
+    // --------------------------------------------------------------------
+    private static final int K_OTHER = 0, K_TYPE = 1, K_DATA = 2, K_TIME = 3, K_ID = 4,
+                             K_TRACE = 5, K_SEQ  = 6, K_CACHE = 7, K_CACHED = 8;
+
+    private static int keyOf(String s, int from, int to) {
+        int len = to - from;
+        if (len == 4) {
+            if (s.startsWith("type", from)) return K_TYPE;
+            if (s.startsWith("data", from)) return K_DATA;
+            if (s.startsWith("time", from)) return K_TIME;
+        }
+        if (len == 2 && s.startsWith("id",     from)) return K_ID;
+        if (len == 3 && s.startsWith("seq",    from)) return K_SEQ;
+        if (len == 5 && s.startsWith("trace",  from)) return K_TRACE;
+        if (len == 5 && s.startsWith("cache",  from)) return K_CACHE;
+        if (len == 6 && s.startsWith("cached", from)) return K_CACHED;
+        return K_OTHER;
+    }
+
+    private static ChatMessage.Type typeOf(String s, int valS, int valE) {
+        if (s.charAt(valS) != '"') return ChatMessage.Type.UNKNOWN;
+        int from = valS + 1, len = valE - 1 - from;
+        for (ChatMessage.Type t : TYPES) {
+            if (t.wire.length() == len && s.startsWith(t.wire, from)) return t;
+        }
+        return ChatMessage.Type.UNKNOWN;
+    }
+    private static final ChatMessage.Type[] TYPES = ChatMessage.Type.values();
+
+    // --------------------------------------------------------------------
+    // Scanning helpers (each returns the index just past what it skipped)
+    // --------------------------------------------------------------------
+    private static int skipWs(String s, int i) {
+        while (i < s.length()) {
+            char c = s.charAt(i);
+            if (c != ' ' && c != '\t' && c != '\n' && c != '\r') break;
+            i++;
+        }
+        return i;
+    }
+
+    private static int skipString(String s, int i) throws MalformedFrameException {
+        for (int j = i + 1; j < s.length(); j++) {
+            char c = s.charAt(j);
+            if (c == '\\') { j++; continue; }
+            if (c == '"' ) return j + 1;
+        }
+        throw new MalformedFrameException("Unterminated string", i);
+    }
+
+    private static int skipValue(String s, int i) throws MalformedFrameException {
+        if (i >= s.length()) throw new MalformedFrameException("Expected value", i);
+        char c = s.charAt(i);
+        if (c == '"') return skipString(s, i);
+        if (c == '{' || c == '[') {
+            // Nested containers: track depth, hop over strings
+            int depth = 0;
+            for (int j = i; j < s.length(); j++) {
+                char d = s.charAt(j);
+                if      (d == '"')             { j = skipString(s, j) - 1; }
+                else if (d == '{' || d == '[') { depth++; }
+                else if (d == '}' || d == ']') { if (--depth == 0) return j + 1; }
+            }
+            throw new MalformedFrameException("Unterminated container", i);
+        }
+        // Number / true / false / null: runs until a delimiter
+        int j = i;
+        while (j < s.length()) {
+            char d = s.charAt(j);
+            if (d == ',' || d == '}' || d == ']' || d == ' ' || d == '\n' || d == '\r' || d == '\t') break;
+            j++;
+        }
+        if (j == i) throw new MalformedFrameException("Expected value", i);
+        return j;
+    }
+
+    /** Strings are unescaped; anything else is returned as its literal text (null stays null) */
+    private static String valueText(String s, int from, int to) throws MalformedFrameException {
+        if (s.charAt(from) != '"') {
+            String lit = s.substring(from, to);
+            return "null".equals(lit) ? null : lit;
+        }
+        int bodyS = from + 1, bodyE = to - 1;
+        int esc = s.indexOf('\\', bodyS);
+        if (esc < 0 || esc >= bodyE) return s.substring(bodyS, bodyE);  // common case: nothing to unescape
+
+        StringBuilder sb = new StringBuilder(bodyE - bodyS);
+        sb.append(s, bodyS, esc);
+        for (int j = esc; j < bodyE; j++) {
+            char c = s.charAt(j);
+            if (c != '\\') { sb.append(c); continue; }
+            char e = s.charAt(++j);
+            switch (e) {
+                case 'n': sb.append('\n'); break;
+                case 't': sb.append('\t'); break;
+                case 'r': sb.append('\r'); break;
+                case 'b': sb.append('\b'); break;
+                case 'f': sb.append('\f'); break;
+                case 'u':
+                    if (j + 4 >= bodyE) throw new MalformedFrameException("Bad \\u escape", j);
+                    sb.append(hex4(s, j + 1));
+                    j += 4;
+                    break;
+                default : sb.append(e);  // \" \\ \/
+            }
+        }
+        return sb.toString();
+    }
+
+    /** The four ASCII hex digits at `at` as a char */
+    private static char hex4(String s, int at) throws MalformedFrameException {
+        int v = 0;
+        for (int k = at; k < at + 4; k++) {
+            char c = s.charAt(k);
+            int  d = c >= '0' && c <= '9' ? c - '0'
+                   : c >= 'a' && c <= 'f' ? c - 'a' + 10
+                   : c >= 'A' && c <= 'F' ? c - 'A' + 10 : -1;
+            if (d < 0) throw new MalformedFrameException("Bad \\u escape", at - 1);
+            v = (v << 4) | d;
+        }
+        return (char) v;
+    }
+
+    // ====================================================================
+    // Encoding
+    // ====================================================================
+    /** {"type":"transcription","data":"..."} */
+    public String transcription(String text) {
+        out.setLength(0);
+        out.append("{\"type\":\"transcription\",\"data\":");
+        appendString(out, text);
+        return out.append('}').toString();
+    }
+
+    /** Any typed message; end_chat keeps its numeric data unquoted */
+    public String encode(ChatMessage msg) {
+        if (msg.type == ChatMessage.Type.TRANSCRIPTION && msg.time == null && msg.id == null && msg.trace == null && msg.seq == null && msg.cached == null && msg.alts == null) return transcription(msg.data);
+        out.setLength(0);
+        out.append("{\"type\":");
+        appendString(out, msg.type.wire);
+        if (msg.data != null) {
+            out.append(",\"data\":");
+            if (msg.type == ChatMessage.Type.END_CHAT) out.append(msg.data);
+            else                                       appendString(out, msg.data);
+        }
+        if (msg.time   != null) { out.append(",\"time\":"  ); appendString(out, msg.time  ); }
+        if (msg.id     != null) { out.append(",\"id\":"    ); appendString(out, msg.id    ); }
+        if (msg.trace  != null) { out.append(",\"trace\":" ); appendString(out, msg.trace ); }
+        if (msg.seq    != null) { out.append(",\"seq\":"   ).append(msg.seq);               }
+        if (msg.cached != null) { out.append(",\"cached\":"); appendString(out, msg.cached); }
+        if (msg.alts   != null) {
+            out.append(",\"alts\":[");
+            for (int i = 0; i < msg.alts.length; i++) { if (i > 0) out.append(','); appendString(out, msg.alts[i]); }
+            out.append(']');
+        }
+        return out.append('}').toString();
+    }
+
+    /** {"type":"end_chat","data":<millis>} */
+    public String endChat(long timeMillis) {
+        out.setLength(0);
+        return out.append("{\"type\":\"end_chat\",\"data\":").append(timeMillis).append('}').toString();
+    }
+
+    public static ChatMessage endChatMessage(long timeMillis) {
+        return new ChatMessage(ChatMessage.Type.END_CHAT, Long.toString(timeMillis));
+    }
+
+    /** Append `s` as a quoted, escaped JSON string */
+    public static void appendString(StringBuilder sb, String s) {
+        if (s == null) { sb.append("null"); return; }
+        sb.append('"');
+        int run = 0;  // start of the current run of chars that need no escaping
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            String rep;
+            switch (c) {
+                case '"' : rep = "\\\""; break;
+                case '\\': rep = "\\\\"; break;
+                case '\n': rep = "\\n";  break;
+                case '\r': rep = "\\r";  break;
+                case '\t': rep = "\\t";  break;
+                default  :
+                    if (c >= 0x20 && c != 0x2028 && c != 0x2029) continue;
+                    rep = String.format("\\u%04x", (int) c);
+            }
+            sb.append(s, run, i).append(rep);
+            run = i + 1;
+        }
+        sb.append(s, run, s.length()).append('"');
+    }
+}
@@ -0,0 +1,52 @@
+package com.example.buddychat.network.protocol;
+
+// ====================================================================
+// One decoded chat frame
+// ====================================================================
+/// Only the fields the robot actually reads; anything else in the frame is
+/// skipped by the codec without being materialized.
+public class ChatMessage {
+    public enum Type {
+        TRANSCRIPTION        ("transcription"),
+        END_CHAT             ("end_chat"),
+        LLM_RESPONSE         ("llm_response"),
+        LLM_DELTA            ("llm_delta"),
+        LLM_DONE             ("llm_done"),
+        SESSION              ("session"),
+        PING                 ("ping"),
+        PONG                 ("pong"),
+        ACK                  ("ack"),            // server has every transcription up to seq "data"
+        TRANSCRIPTION_PARTIAL("transcription_partial"),  // interim hypothesis; the transcription with the same trace wins
+        CANCEL               ("cancel"),         // user barged in: stop generating the reply to "trace"
+        UNKNOWN              ("");
+
+        public final String wire;
+        Type(String wire) { this.wire = wire; }
+    }
+
+    public Type   type = Type.UNKNOWN;
+    public String data;   // string payload (numbers are kept as their literal text)
+    public String time;
+    public String id;     // reply id for streamed replies
+    public String trace;  // turn/trace id: set on transcriptions, echoed back on the replies to them
+    public String seq;    // outbox sequence number of a transcription (a JSON number on the wire)
+    public String cache;  // on replies: cacheable for this many seconds ("true" = default TTL)
+    public String cached; // on transcriptions: already answered on-device with this text, don't reply
+    public String[] alts; // on transcriptions: lower-ranked STT hypotheses (outbound only)
+
+    public ChatMessage() {}
+
+    public ChatMessage(Type type, String data) {
+        this.type = type;
+        this.data = data;
+    }
+
+    public ChatMessage(Type type, String data, String trace) {
+        this(type, data);
+        this.trace = trace;
+    }
+
+    /** data, or a fallback when the frame had none */
+    public String dataOr(String fallback) { return data != null ? data : fallback; }
+    public String timeOr(String fallback) { return time != null ? time : fallback; }
+}
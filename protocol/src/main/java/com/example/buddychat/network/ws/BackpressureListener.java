@@ -0,0 +1,6 @@
+package com.example.buddychat.network.ws;
+
+// Interface for outbound queue pressure changes (called with the socket manager's lock held; keep it cheap)
+public interface BackpressureListener {
+    void onBackpressure(boolean congested);
+}
@@ -0,0 +1,14 @@
+package com.example.buddychat.network.ws;
+
+import com.example.buddychat.network.protocol.ChatMessage;
+
+// Interface for inbound WebSocket events (never called with the socket manager's lock held; calling back into it is fine)
+public interface ChatListener {
+    void onOpen();
+    void onMessage(String json);
+    void onMessage(ChatMessage msg);   // already-decoded frame (binary framing)
+    void onClosed();
+    void onError(Throwable t);
+    void onReconnecting(int attempt, long delayMs);  // connection dropped, retrying after delayMs
+    void onLinkQuality(LinkQuality quality, long rttMs);  // on change only; rttMs is smoothed, -1 if unknown
+}
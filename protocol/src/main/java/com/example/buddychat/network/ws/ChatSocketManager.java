@@ -0,0 +1,788 @@
+package com.example.buddychat.network.ws;
+
+import androidx.annotation.NonNull;
+import okhttp3.*;
+import okio.ByteString;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.EnumSet;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+import com.example.buddychat.network.ChatApi;
+import com.example.buddychat.network.ChatLog;
+import com.example.buddychat.network.protocol.ChatBinaryCodec;
+import com.example.buddychat.network.protocol.ChatCodec;
+import com.example.buddychat.network.protocol.ChatMessage;
+
+// ====================================================================
+// WebSocket Manager
+// ====================================================================
+/// Connect, disconnect, send...
+/// Refers to a separate ChatListener utility for handling messages
+///
+/// Every socket gets a generation number. Events from a socket whose
+/// generation is no longer current (closed by the user, replaced by a
+/// reconnect) are dropped, so a late onClosed/onFailure can't flip the UI.
+/// Unexpected drops are retried with jittered exponential backoff, and the
+/// reconnect carries the same session id plus resume=1 so the server can
+/// keep the conversation context.
+///
+/// Outbound frames go through a bounded queue: they are held while the
+/// socket is connecting or reconnecting and flushed on open, and writing
+/// pauses while OkHttp's own outgoing buffer is backed up. Crossing the
+/// high-water marks is reported to a BackpressureListener.
+///
+/// Optional binary framing: with setBinaryFraming(true) the socket asks for
+/// proto=bin1; if the upgrade response confirms it (X-Chat-Proto: bin1),
+/// typed frames go out as ChatBinaryCodec ByteStrings. Otherwise, and for
+/// any text frame the server sends, JSON is used.
+///
+/// Warm standby: prewarm() opens the socket for the next chat before the user
+/// asks for it (DNS, TLS and the upgrade happen then) and keeps it idle with
+/// WebSocket pings. connect() then promotes it instead of dialing, and
+/// anything the server sent meanwhile (e.g. the greeting) is replayed to the
+/// listener. A standby socket that drops is simply discarded. Whether this
+/// shortens Start-to-first-reply has not been measured on the robot; the
+/// LATENCY log labels each Start warm or cold so it can be.
+///
+/// Liveness: the chat has its own OkHttp client (no read timeout, protocol
+/// pings at half the dead-peer deadline) and an application-level
+/// ping/pong (see Heartbeat) for RTT. Link quality changes go to
+/// ChatListener.onLinkQuality: SLOW means the server answers late, LOST means
+/// nothing came back at all and the socket is being replaced.
+///
+/// With a DurableOutbox set, transcriptions are persisted with a sequence
+/// number before they are queued, even with no chat running. Every time a
+/// socket opens (and whenever the queue drains), unacked ones that this
+/// socket hasn't sent yet are merged back into the queue in seq order.
+public class ChatSocketManager {
+    private static final String TAG  = "ChatWS";
+
+    /// Cloud chat endpoint; see setEndpoint
+    public static final HttpUrl DEFAULT_ENDPOINT = HttpUrl.get("https://cognibot.org/ws/chat/");  // sandbox.cognibot.org | cognibot.org
+
+    private static final int STANDBY_MAX_EARLY = 32;  // frames held for the chat a standby socket is promoted to
+
+    private static final int NORMAL_CLOSURE = 1000;
+
+    public  static final int  DEFAULT_MAX_PENDING = 64;
+    private static final long HIGH_WATER_BYTES    = 1L << 20;   // OkHttp fails the socket at 16 MiB; back off long before
+    private static final long LOW_WATER_BYTES     = 64 * 1024;
+    private static final long DRAIN_POLL_MS       = 100;
+
+    // Frames the manager handles itself before the listener sees them
+    private static final Set<ChatMessage.Type> CONTROL = EnumSet.of(
+            ChatMessage.Type.SESSION, ChatMessage.Type.PING, ChatMessage.Type.PONG, ChatMessage.Type.ACK);
+
+    // Every type a listener could be given (UNKNOWN also covers bin1 frames of another version)
+    private static final Set<ChatMessage.Type> ANY_KNOWN = EnumSet.complementOf(EnumSet.of(ChatMessage.Type.UNKNOWN));
+
+    private static final String PROTO_PARAM  = "proto";
+    private static final String PROTO_HEADER = "X-Chat-Proto";
+
+    private final ReconnectPolicy          policy;
+    private final int                      maxPending;
+    private final Heartbeat                heartbeat;   // guarded by `this`
+    private final WebSocket.Factory        sockets;
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "ChatWS-reconnect");
+        t.setDaemon(true);
+        return t;
+    });
+
+    // All of the below are guarded by `this`
+    private HttpUrl            endpoint = DEFAULT_ENDPOINT;
+    private WebSocket          socket;
+    private ChatListener       listener;
+    private Supplier<String>   tokens;          // asked on every (re)connect, so reconnects get a fresh token
+    private String             sessionId;       // stable across reconnects of one chat
+    private int                generation;      // bumped for every new socket and on endChat
+    private int                attempt;         // reconnect attempts since the last successful open
+    private boolean            opened;          // current chat has been opened at least once
+    private ScheduledFuture<?> pendingReconnect;
+
+    // Warm standby (guarded by `this`)
+    private boolean             standby;                        // current socket is pre-opened, no chat yet
+    private boolean             promoting;                      // connect() is replaying `early`; new frames queue behind it
+    private final ArrayDeque<Object> early = new ArrayDeque<>();   // String / ChatMessage received while on standby
+
+    // Heartbeat (guarded by `this`)
+    private ScheduledFuture<?> heartbeatTask;
+    private LinkQuality        quality = LinkQuality.GOOD;         // last value reported to the listener
+
+    // Outbound queue (also guarded by `this`)
+    private final ArrayDeque<Outbound> pending = new ArrayDeque<>();
+    private       boolean              socketOpen;   // current socket has fired onOpen
+    private       boolean              congested;
+    private       ScheduledFuture<?>   drainPoll;
+    private       BackpressureListener backpressure;
+    private       SendObserver         observer;
+
+    // Durable outbox (guarded by `this`)
+    private       DurableOutbox        outbox;
+    private       long                 lastWrittenSeq;   // highest seq handed to the current socket
+
+    // Framing (guarded by `this`)
+    private final ChatCodec       codec  = new ChatCodec();        // reused encode buffers
+    private final ChatBinaryCodec binary = new ChatBinaryCodec();
+    private       boolean         binaryRequested;                 // ask for bin1 on the next connect
+    private       boolean         binaryActive;                    // server accepted bin1 on the current socket
+    private volatile Set<ChatMessage.Type> binaryTypes = ANY_KNOWN;  // bin1 frames decoded for the listener
+
+    /** A queued frame: typed messages are encoded at send time, once the framing is known */
+    private static final class Outbound {
+        final ChatMessage msg;
+        final String      json;
+        final boolean     turn;   // a live user turn: reported to the SendObserver (not replays or answered turns)
+        Outbound(ChatMessage msg, String json)               { this(msg, json, false); }
+        Outbound(ChatMessage msg, String json, boolean turn) { this.msg = msg; this.json = json; this.turn = turn; }
+    }
+
+    public ChatSocketManager() { this(ReconnectPolicy.defaults(), DEFAULT_MAX_PENDING, Heartbeat.defaults()); }
+
+    public ChatSocketManager(@NonNull ReconnectPolicy policy, int maxPending, @NonNull Heartbeat heartbeat) {
+        this(policy, maxPending, heartbeat, ChatApi.CLIENT);
+    }
+
+    /// `base` lends its connection pool and dispatcher (on the robot the REST one: a TLS session
+    /// primed by /health/ helps the upgrade) but none of its timeouts: a chat socket is silent
+    /// for minutes, liveness is the pings' job
+    public ChatSocketManager(@NonNull ReconnectPolicy policy, int maxPending, @NonNull Heartbeat heartbeat, @NonNull OkHttpClient base) {
+        this(policy, maxPending, heartbeat, (WebSocket.Factory) base.newBuilder()
+                .connectTimeout(10, TimeUnit.SECONDS)
+                .writeTimeout  (10, TimeUnit.SECONDS)
+                .readTimeout   ( 0, TimeUnit.MILLISECONDS)
+                // OkHttp fails the socket when a protocol ping goes unanswered by the next one: dead within ~deadline
+                .pingInterval(heartbeat.deadlineMs() / 2, TimeUnit.MILLISECONDS)
+                .build());
+    }
+
+    /// Sockets come from `sockets` as they are, no timeouts added: for a stand-in transport
+    /// (the benchmarks drive the real send path over a socket that never leaves the process)
+    public ChatSocketManager(@NonNull ReconnectPolicy policy, int maxPending, @NonNull Heartbeat heartbeat, @NonNull WebSocket.Factory sockets) {
+        this.policy     = policy;
+        this.maxPending = maxPending;
+        this.heartbeat  = heartbeat.copy();
+        this.sockets    = sockets;
+    }
+
+    /** Request compact binary frames on the next connect (JSON stays the fallback) */
+    public synchronized void setBinaryFraming(boolean enabled) { this.binaryRequested = enabled; }
+
+    /** Binary frames of other types are dropped from their two header bytes, never copied or decoded */
+    public void setBinaryTypes(Set<ChatMessage.Type> types) {
+        this.binaryTypes = types != null ? EnumSet.copyOf(types) : ANY_KNOWN;
+    }
+
+    /**
+     * Persist transcriptions and replay the unacked ones on every (re)connect. Set it once it
+     * has loaded (DurableOutbox.open(file, manager::setOutbox)); a socket that is already open
+     * gets the backlog right away.
+     */
+    public synchronized void setOutbox(DurableOutbox outbox) {
+        this.outbox = outbox;
+        if (!standby && requeueUnacked()) flush();
+    }
+
+    /** Chat socket URL without query (local server, stand-in); null = DEFAULT_ENDPOINT */
+    public synchronized void setEndpoint(HttpUrl url) { this.endpoint = url != null ? url : DEFAULT_ENDPOINT; }
+
+    /** Who to tell when the outbound queue backs up / drains (e.g. STTCallbacks) */
+    public synchronized void setBackpressureListener(BackpressureListener l) { this.backpressure = l; }
+
+    /** Who to tell when a user's transcription is queued / written (e.g. turn latency metrics) */
+    public synchronized void setSendObserver(SendObserver o) { this.observer = o; }
+
+    // --------------------------------------------------------------------
+    // Socket control functions
+    // --------------------------------------------------------------------
+    public void connect(@NonNull String accessToken, @NonNull ChatListener listener) {
+        connect(() -> accessToken, listener);
+    }
+
+    /** Preferred: e.g. TokenManager::currentAccessToken, a field read with no network round trip */
+    public void connect(@NonNull Supplier<String> tokens, @NonNull ChatListener listener) {
+        ChatListener closed = null;
+        boolean      replay = false;
+        synchronized (this) {
+            if (standby && socket != null) {
+                replay = promote(tokens, listener);
+            } else {
+                closed         = stopChat();
+                this.listener  = listener;
+                this.tokens    = tokens;
+                this.sessionId = UUID.randomUUID().toString();
+                this.attempt   = 0;
+                this.opened    = false;
+                open(false);
+            }
+        }
+        if (closed != null) closed.onClosed();   // the chat this one replaces
+        if (replay) replayEarly(listener);
+    }
+
+    /**
+     * Open the socket for the next chat now and hold it idle; connect() promotes it instead of dialing.
+     * No-op while a chat (or another standby socket) exists.
+     */
+    public synchronized void prewarm(@NonNull Supplier<String> tokens) {
+        if (sessionId != null || tokens.get() == null) return;
+        this.listener  = null;
+        this.tokens    = tokens;
+        this.sessionId = UUID.randomUUID().toString();
+        this.attempt   = 0;
+        this.opened    = false;
+        this.standby   = true;
+        early.clear();
+        open(false);
+    }
+
+    /** A pre-opened socket is waiting for connect() (monitoring) */
+    public synchronized boolean isStandby() { return standby && socket != null; }
+
+    /**
+     * connect() on a standby socket (holding `this`): hand it the listener. Returns true if the
+     * socket is already open, and the caller must then replayEarly() once it has let go of `this`.
+     */
+    private boolean promote(Supplier<String> tokens, ChatListener l) {
+        ChatLog.d(TAG, "Promoting standby socket" + (socketOpen ? "" : " (still connecting)"));
+        this.listener = l;
+        this.tokens   = tokens;
+        this.standby  = false;
+        if (!socketOpen) return false;  // handleOpen will report it like any other connect
+        requeueUnacked();
+        flush();
+        promoting = true;               // frames arriving now go behind the early ones
+        return true;
+    }
+
+    /** Report the open and what the standby socket already got, in order (not holding `this`) */
+    private void replayEarly(ChatListener l) {
+        l.onOpen();
+        while (true) {
+            Object f;
+            synchronized (this) {
+                f = promoting ? early.poll() : null;   // endChat() in the meantime stops the replay
+                if (f == null) { promoting = false; return; }
+            }
+            if (f instanceof String) l.onMessage((String) f);
+            else                     l.onMessage((ChatMessage) f);
+        }
+    }
+
+    /** Send a string the WebSocket (called from the main thread) (auto-format as JSON) */
+    public synchronized boolean sendString(String text) { return sendString(text, null); }
+
+    /** Transcription tagged with the utterance's trace id; the server echoes it on its replies */
+    public synchronized boolean sendString(String text, String traceId) { return sendString(text, traceId, null); }
+
+    /** Same, with the STT engine's lower-ranked hypotheses (not kept in the outbox; a replay goes without) */
+    public synchronized boolean sendString(String text, String traceId, String[] alternates) {
+        ChatMessage msg = new ChatMessage(ChatMessage.Type.TRANSCRIPTION, text, traceId);
+        msg.alts = alternates;
+        dropPartials(traceId);  // the final wins
+        if (outbox == null) return enqueue(new Outbound(msg, null, true));
+
+        outbox.add(msg);  // durable from here on, whatever happens to the socket
+        if (sessionId == null || standby) { ChatLog.d(TAG, "No chat; seq " + msg.seq + " kept for the next one"); return true; }
+        if (!enqueue(new Outbound(msg, null, true))) ChatLog.d(TAG, "Seq " + msg.seq + " stays in the outbox until the queue drains");
+        return true;
+    }
+
+    /**
+     * Tell the server about a turn answered on-device (see ResponseCache) so its context stays
+     * coherent; it must not reply. Best effort: not persisted in the outbox.
+     */
+    public synchronized boolean sendAnswered(String text, String traceId, String localReply) {
+        ChatMessage msg = new ChatMessage(ChatMessage.Type.TRANSCRIPTION, text, traceId);
+        msg.cached = localReply;
+        return enqueue(new Outbound(msg, null));
+    }
+
+    /**
+     * Interim hypothesis for the utterance `traceId`, so the server can start on it early.
+     * Droppable: only sent on an open socket with room in the queue, replaces a partial of
+     * the same utterance that is still queued, and never goes to the outbox.
+     */
+    public synchronized boolean sendPartial(String text, String traceId) {
+        if (sessionId == null || standby || !socketOpen || congested) return false;
+        if (pending.size() >= maxPending / 2) return false;  // keep the room for finals
+        dropPartials(traceId);
+        return enqueue(new Outbound(new ChatMessage(ChatMessage.Type.TRANSCRIPTION_PARTIAL, text, traceId), null));
+    }
+
+    /** The user interrupted the reply to `traceId`; the server may stop generating it. Best effort */
+    public synchronized boolean sendCancel(String traceId) {
+        if (sessionId == null || standby) return false;
+        return enqueue(new Outbound(new ChatMessage(ChatMessage.Type.CANCEL, null, traceId), null));
+    }
+
+    /**
+     * Queue JSON for the WebSocket (called from the main thread). Frames sent while
+     * the socket is still connecting are held and flushed on open. Raw JSON is
+     * always sent as a text frame, even in binary mode.
+     * @return false if there is no chat or the outbound queue is full
+     */
+    public synchronized boolean sendJson(String json) { return enqueue(new Outbound(null, json)); }
+
+    private boolean enqueue(Outbound frame) {
+        if (sessionId == null || standby) { ChatLog.w(TAG, "No chat session; dropping frame"); return false; }
+        if (pending.size() >= maxPending) {
+            ChatLog.w(TAG, "Outbound queue full (" + maxPending + "); rejecting frame");
+            updateCongestion();
+            return false;
+        }
+        pending.add(frame);
+        if (observer != null && frame.turn) observer.queued(frame.msg.trace);
+        flush();
+        return true;
+    }
+
+    /** Frames waiting to be handed to OkHttp (monitoring) */
+    public synchronized int queueSize() { return pending.size(); }
+
+    /** Bytes sitting in OkHttp's own outgoing buffer for the current socket (monitoring) */
+    public synchronized long queuedBytes() { return socket != null ? socket.queueSize() : 0; }
+
+    /** Smoothed application-level RTT of the current socket in ms, -1 if unknown (monitoring) */
+    public synchronized long rttMs() { return heartbeat.rttMs(); }
+
+    public synchronized LinkQuality linkQuality() { return quality; }
+
+    /** End the chat */
+    public void endChat() {
+        ChatListener l;
+        synchronized (this) { l = stopChat(); }
+        if (l != null) l.onClosed();
+    }
+
+    /** endChat() holding `this`; returns the listener to tell about the close, if anyone was told it opened */
+    private ChatListener stopChat() {
+        boolean active = socket != null || pendingReconnect != null;
+        generation++;  // anything still in flight from the old socket is now stale
+        cancelReconnect();
+        stopHeartbeat();
+        resetQueue();
+        sessionId = null;
+        promoting = false;
+        early.clear();
+        if (standby) { active = false; standby = false; }  // nobody was told about it
+        if (socket != null) {
+            write(socket, new Outbound(ChatCodec.endChatMessage(System.currentTimeMillis()), null));
+            socket.close(NORMAL_CLOSURE, "user ended");
+            socket = null;
+        }
+        // The old socket's own onClosed is stale now, so report the close here
+        return active ? listener : null;
+    }
+
+    // --------------------------------------------------------------------
+    // Connection / reconnection
+    // --------------------------------------------------------------------
+    /** Open a socket for the current session under a fresh generation */
+    private void open(boolean resume) {
+        HttpUrl url  = buildUrl(endpoint, tokens.get(), sessionId, resume, binaryRequested);
+        socketOpen   = false;  // hold outbound frames until onOpen
+        binaryActive = false;  // until the server confirms it
+
+        // Connect
+        ChatLog.d("WS", String.format("Connecting to: %s (resume: %b)", redacted(url), resume));
+        Request req = new Request.Builder().url(url).build();
+        socket = sockets.newWebSocket(req, new Session(++generation));   // async open
+    }
+
+    private static HttpUrl buildUrl(HttpUrl endpoint, String accessToken, String sessionId, boolean resume, boolean binary) {
+        HttpUrl.Builder b = endpoint.newBuilder();
+        b.addQueryParameter("token",   accessToken)
+         .addQueryParameter("source",  "buddyrobot")
+         .addQueryParameter("session", sessionId);
+        if (resume) b.addQueryParameter("resume", "1");
+        if (binary) b.addQueryParameter(PROTO_PARAM, ChatBinaryCodec.PROTOCOL);
+        return b.build();
+    }
+
+    /** `url` for the log: the access token rides in the query and must not end up in logcat */
+    private static String redacted(HttpUrl url) {
+        if (url.queryParameter("token") == null) return url.toString();
+        return url.newBuilder().setQueryParameter("token", "REDACTED").build().toString();
+    }
+
+    /** The socket of generation `gen` died unexpectedly; retry or give up */
+    private void scheduleReconnect(int gen, Throwable cause) {
+        ChatListener l, lost;
+        long         rtt;
+        boolean      giveUp;
+        int          n;
+        long         delay = 0;
+        synchronized (this) {
+            if (gen != generation) return;
+            if (standby) { dropStandby(cause); return; }
+            socket     = null;
+            socketOpen = false;   // keep `pending`; it is flushed on the resumed socket
+            stopHeartbeat();
+            l      = listener;
+            lost   = reportQuality(LinkQuality.LOST);
+            rtt    = heartbeat.rttMs();
+            n      = attempt;
+            giveUp = !policy.shouldRetry(n);
+
+            if (giveUp) {
+                ChatLog.w(TAG, "Giving up after " + n + " reconnect attempts");
+                generation++;
+                resetQueue();
+                sessionId = null;
+            } else {
+                attempt++;
+                delay = policy.delayMs(n);
+                ChatLog.w(TAG, String.format("Reconnecting in %d ms (attempt %d)", delay, n + 1));
+
+                final int expected = ++generation;  // reserve: endChat/connect in the meantime will bump past it
+                pendingReconnect = scheduler.schedule(() -> {
+                    synchronized (ChatSocketManager.this) {
+                        if (generation != expected) return;
+                        pendingReconnect = null;
+                        open(true);
+                    }
+                }, delay, TimeUnit.MILLISECONDS);
+            }
+        }
+        if (lost != null) lost.onLinkQuality(LinkQuality.LOST, rtt);
+        if (l == null) return;
+        if (giveUp) { l.onError(cause); l.onClosed(); }
+        else        l.onReconnecting(n + 1, delay);
+    }
+
+    /** The standby socket died before anyone used it; the next connect() just dials normally */
+    private void dropStandby(Object why) {
+        ChatLog.d(TAG, "Standby socket dropped: " + why);
+        stopHeartbeat();
+        socket    = null;
+        standby   = false;
+        sessionId = null;
+        generation++;
+        early.clear();
+        resetQueue();
+    }
+
+    private void cancelReconnect() {
+        if (pendingReconnect != null) { pendingReconnect.cancel(false); pendingReconnect = null; }
+    }
+
+    // --------------------------------------------------------------------
+    // Heartbeat
+    // --------------------------------------------------------------------
+    private void startHeartbeat(int gen) {  // holding `this`
+        stopHeartbeat();
+        heartbeat.reset(now());
+        long every = heartbeat.intervalMs();
+        heartbeatTask = scheduler.scheduleWithFixedDelay(() -> heartbeatTick(gen), every, every, TimeUnit.MILLISECONDS);
+    }
+
+    private void stopHeartbeat() {  // holding `this`
+        if (heartbeatTask != null) { heartbeatTask.cancel(false); heartbeatTask = null; }
+    }
+
+    /** Check the link, then ping; a peer silent past the deadline gets its socket cancelled (-> reconnect) */
+    private void heartbeatTick(int gen) {
+        WebSocket    dead = null;
+        ChatListener l;
+        LinkQuality  q;
+        long         rtt;
+        synchronized (this) {
+            if (gen != generation || socket == null || !socketOpen) return;
+            long now = now();
+            q = heartbeat.assess(now);
+            if (q == LinkQuality.LOST) {
+                dead = socket;
+            } else {
+                String id = heartbeat.nextPing(now);
+                if (id != null) {
+                    ChatMessage ping = new ChatMessage(ChatMessage.Type.PING, null);
+                    ping.id = id;
+                    write(socket, new Outbound(ping, null));  // bypasses the queue; it measures the link, not us
+                }
+            }
+            rtt = heartbeat.rttMs();
+            l   = reportQuality(q);
+        }
+        if (l != null) l.onLinkQuality(q, rtt);
+        if (dead != null) {
+            ChatLog.w(TAG, String.format("No reply for %d ms; dropping dead socket", heartbeat.deadlineMs()));
+            dead.cancel();  // -> onFailure -> scheduleReconnect
+        }
+    }
+
+    /** Record `q`; returns the listener to notify if it changed (holding `this`) */
+    private ChatListener reportQuality(LinkQuality q) {
+        if (q == quality) return null;
+        quality = q;
+        ChatLog.i(TAG, String.format("Link %s (rtt %d ms, jitter %d ms)", q, heartbeat.rttMs(), heartbeat.rttVarMs()));
+        return standby ? null : listener;
+    }
+
+    private static long now() { return System.nanoTime() / 1_000_000; }
+
+    // --------------------------------------------------------------------
+    // Outbound queue (all called holding `this`)
+    // --------------------------------------------------------------------
+    /** Hand as many queued frames to OkHttp as its buffer allows */
+    private void flush() {
+        if (socket != null && socketOpen) {
+            while (!pending.isEmpty()) {
+                if (socket.queueSize() > HIGH_WATER_BYTES) break;      // let OkHttp drain first
+                if (!write(socket, pending.peek())) break;            // closing; keep it for the reconnect
+                Outbound sent = pending.poll();
+                if (observer != null && sent.turn) observer.sent(sent.msg.trace);
+                if (isTranscription(sent)) wroteSeq(sent.msg);
+            }
+        }
+        updateCongestion();
+    }
+
+    private void wroteSeq(ChatMessage msg) {
+        if (outbox == null || msg.seq == null) return;
+        long seq = Long.parseLong(msg.seq);
+        lastWrittenSeq = Math.max(lastWrittenSeq, seq);
+        outbox.written(seq);
+    }
+
+    /**
+     * Merge unacked outbox entries this socket hasn't written yet into the queue, in seq order
+     * (frames without a seq keep their place). Covers frames lost with a dead socket, ones
+     * sent while no chat was running, and ones the full queue turned away.
+     */
+    private boolean requeueUnacked() {
+        if (outbox == null || !socketOpen) return false;
+        List<ChatMessage> missing = outbox.unackedAfter(lastWrittenSeq);
+        if (missing.isEmpty()) return false;
+
+        Set<String> queued = new HashSet<>();
+        for (Outbound o : pending) if (o.msg != null && o.msg.seq != null) queued.add(o.msg.seq);
+
+        ArrayDeque<Outbound> merged = new ArrayDeque<>(pending.size() + missing.size());
+        int m = 0, added = 0;
+        for (Outbound o : pending) {
+            if (o.msg != null && o.msg.seq != null) {
+                long seq = Long.parseLong(o.msg.seq);
+                for (; m < missing.size() && Long.parseLong(missing.get(m).seq) < seq; m++) {
+                    if (queued.add(missing.get(m).seq)) { merged.add(new Outbound(missing.get(m), null)); added++; }
+                }
+            }
+            merged.add(o);
+        }
+        for (; m < missing.size(); m++) {
+            if (queued.add(missing.get(m).seq)) { merged.add(new Outbound(missing.get(m), null)); added++; }
+        }
+        if (added == 0) return false;
+        pending.clear();
+        pending.addAll(merged);
+        ChatLog.i(TAG, "Replaying " + added + " unacked transcription(s) from the outbox");
+        return true;
+    }
+
+    /** Remove queued, not yet written partials of one utterance */
+    private void dropPartials(String traceId) {
+        if (traceId == null) return;
+        pending.removeIf(o -> o.msg != null && o.msg.type == ChatMessage.Type.TRANSCRIPTION_PARTIAL && traceId.equals(o.msg.trace));
+    }
+
+    private static boolean isTranscription(Outbound f) {
+        return f.msg != null && f.msg.type == ChatMessage.Type.TRANSCRIPTION;
+    }
+
+    /** Encode with the framing negotiated for this socket */
+    private boolean write(WebSocket ws, Outbound frame) {
+        if (frame.msg == null) return ws.send(frame.json);
+        if (binaryActive) {
+            int len = binary.encode(frame.msg);
+            return ws.send(ByteString.of(binary.buffer(), 0, len));
+        }
+        return ws.send(codec.encode(frame.msg));
+    }
+
+    /** Recompute the congested flag (with hysteresis) and poll for drain while it is set */
+    private void updateCongestion() {
+        long bytes = socket != null ? socket.queueSize() : 0;
+        boolean now = congested
+                ? (pending.size() > maxPending / 4 || bytes > LOW_WATER_BYTES)
+                : (pending.size() >= maxPending * 3 / 4 || bytes > HIGH_WATER_BYTES);
+
+        if (now && drainPoll == null && socketOpen) {
+            drainPoll = scheduler.scheduleWithFixedDelay(() -> {
+                synchronized (ChatSocketManager.this) { flush(); }
+            }, DRAIN_POLL_MS, DRAIN_POLL_MS, TimeUnit.MILLISECONDS);
+        }
+        if (!now && drainPoll != null) { drainPoll.cancel(false); drainPoll = null; }
+
+        if (now == congested) return;
+        congested = now;
+        if (!now && requeueUnacked()) {  // pick up anything the full queue turned away
+            scheduler.execute(() -> { synchronized (ChatSocketManager.this) { flush(); } });
+        }
+        ChatLog.w(TAG, String.format("Outbound %s (%d queued, %d bytes in socket)",
+                now ? "congested" : "drained", pending.size(), bytes));
+        if (backpressure != null) backpressure.onBackpressure(now);
+    }
+
+    private void resetQueue() {
+        pending.clear();
+        socketOpen = false;
+        updateCongestion();
+    }
+
+    // --------------------------------------------------------------------
+    // Session-scoped event handlers (called with the socket's generation)
+    // --------------------------------------------------------------------
+    private void handleOpen(int gen, Response res) {
+        ChatListener l, recovered;
+        boolean resumed, bin;
+        synchronized (this) {
+            if (gen != generation) return;
+            startHeartbeat(gen);
+            recovered = reportQuality(LinkQuality.GOOD);
+            binaryActive = binaryRequested && ChatBinaryCodec.PROTOCOL.equals(res.header(PROTO_HEADER));
+            bin        = binaryActive;
+            resumed    = opened;
+            opened     = true;
+            attempt    = 0;
+            socketOpen = true;
+            l = listener;
+            lastWrittenSeq = 0;         // nothing of the outbox is on this socket yet
+            if (!standby) requeueUnacked();
+            flush();  // frames sent during the connecting window
+        }
+        ChatLog.d(TAG, (resumed ? "Reconnected" : "Connected") + (bin ? " (bin1)" : " (json)") + (l == null ? " [standby]" : ""));
+        if (l != null) l.onOpen();
+        if (recovered != null) recovered.onLinkQuality(LinkQuality.GOOD, -1);
+    }
+
+    /** Listener for a frame of generation `gen`; null if stale or held for a standby socket */
+    private synchronized ChatListener deliverTo(int gen, Object frame) {
+        if (gen != generation) return null;
+        heartbeat.onInbound(now());
+        if (standby) {
+            if (early.size() < STANDBY_MAX_EARLY) early.add(frame);
+            return null;
+        }
+        if (promoting) { early.add(frame); return null; }   // connect() is still replaying; keep the order
+        return listener;
+    }
+
+    private void handleText(int gen, String text) {
+        try {
+            ChatMessage ctl = ChatCodec.decode(text, CONTROL);  // stops right after "type" for chat frames
+            if (ctl != null && handleControl(gen, ctl)) return;
+        } catch (ChatCodec.MalformedFrameException ignored) { }  // the listener reports it
+        ChatListener l = deliverTo(gen, text);
+        if (l != null) l.onMessage(text);
+    }
+
+    private void handleBinary(int gen, ByteString bytes) {
+        ChatMessage.Type t = bytes.size() < 2 ? ChatMessage.Type.UNKNOWN : ChatBinaryCodec.peekType(bytes.getByte(0), bytes.getByte(1));
+        if (!CONTROL.contains(t) && !binaryTypes.contains(t)) {
+            synchronized (this) { if (gen == generation) heartbeat.onInbound(now()); }   // still proof of life
+            return;
+        }
+        try {
+            byte[] b = bytes.toByteArray();
+            ChatMessage msg = ChatBinaryCodec.decode(b, 0, b.length, null);
+            if (CONTROL.contains(msg.type) && handleControl(gen, msg)) return;
+            ChatListener l = deliverTo(gen, msg);
+            if (l != null) l.onMessage(msg);
+        } catch (ChatBinaryCodec.MalformedFrameException e) {
+            ChatLog.w(TAG, "Bad binary frame: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Frames for the manager itself. The server may hand out its own session id
+     * ({"type":"session","data":"..."}), which is used for resumes and still passed on.
+     * Pings and pongs are consumed here (returns true).
+     */
+    private boolean handleControl(int gen, ChatMessage msg) {
+        ChatListener l = null;
+        LinkQuality  q = null;
+        long         rtt;
+        synchronized (this) {
+            if (gen != generation) return true;
+            long now = now();
+            switch (msg.type) {
+                case SESSION:
+                    if (msg.data != null && !msg.data.isEmpty()) sessionId = msg.data;
+                    return false;
+                case PING:  // the server checking on us
+                    heartbeat.onInbound(now);
+                    ChatMessage pong = new ChatMessage(ChatMessage.Type.PONG, null);
+                    pong.id = msg.id;
+                    if (socket != null) write(socket, new Outbound(pong, null));
+                    return true;
+                case PONG:
+                    if (heartbeat.onPong(msg.id, now) >= 0) { q = heartbeat.assess(now); l = reportQuality(q); }
+                    rtt = heartbeat.rttMs();
+                    break;
+                case ACK:
+                    heartbeat.onInbound(now);
+                    try { if (outbox != null && msg.data != null) outbox.ack(Long.parseLong(msg.data.trim())); }
+                    catch (NumberFormatException e) { ChatLog.w(TAG, "Bad ack: " + msg.data); }
+                    return true;
+                default:
+                    return false;
+            }
+        }
+        if (l != null) l.onLinkQuality(q, rtt);
+        return true;
+    }
+
+    private void handleClosed(int gen, int code, String reason) {
+        if (code != NORMAL_CLOSURE) {
+            scheduleReconnect(gen, new IOException("Closed: " + code + " " + reason));
+            return;
+        }
+        ChatListener l;
+        synchronized (this) {
+            if (gen != generation) return;
+            if (standby) { dropStandby("closed " + code); return; }
+            stopHeartbeat();
+            socket = null;
+            generation++;
+            resetQueue();
+            sessionId = null;
+            l = listener;
+        }
+        if (l != null) l.onClosed();
+    }
+
+    /** One of these per socket, so callbacks always know which generation they belong to */
+    private final class Session extends WebSocketListener {
+        private final int gen;
+        Session(int gen) { this.gen = gen; }
+
+        @Override public void onOpen(@NonNull WebSocket ws, @NonNull Response res) { handleOpen(gen, res); }
+
+        @Override public void onMessage(@NonNull WebSocket ws, @NonNull String     text ) { handleText  (gen, text ); }
+        @Override public void onMessage(@NonNull WebSocket ws, @NonNull ByteString bytes) { handleBinary(gen, bytes); }
+
+        @Override public void onClosing(@NonNull WebSocket ws, int code, @NonNull String reason) {
+            ChatLog.d(TAG, "Closing: " + reason);
+            ws.close(code, reason);
+        }
+
+        @Override public void onClosed(@NonNull WebSocket ws, int code, @NonNull String reason) {
+            handleClosed(gen, code, reason);
+        }
+
+        @Override public void onFailure(@NonNull WebSocket ws, @NonNull Throwable t, Response res) {
+            ChatLog.e(TAG, "Error", t);
+            scheduleReconnect(gen, t);
+        }
+    }
+}
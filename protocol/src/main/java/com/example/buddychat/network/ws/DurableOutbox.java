@@ -0,0 +1,327 @@
+package com.example.buddychat.network.ws;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.LongSupplier;
+import java.util.zip.CRC32;
+
+import com.example.buddychat.network.ChatLog;
+import com.example.buddychat.network.protocol.ChatMessage;
+
+// ====================================================================
+// Disk-backed outbox for transcriptions, with sequence numbers and acks
+// ====================================================================
+/// Every transcription gets the next sequence number and is appended to
+/// outbox.log before ChatSocketManager queues it. The server acks
+/// cumulatively ({"type":"ack","data":<seq>}), and acks go into the same
+/// log. Whatever is unacked when a socket opens (after a drop, or after
+/// an app restart) is sent again in seq order, and the server drops seqs
+/// it already has.
+///
+/// Cost per utterance: add() encodes the record and hands it to the
+/// outbox thread, so the caller (ChatSocketManager, holding its lock, on
+/// the main thread) never touches the file. The write lands in the page
+/// cache, which survives the app being killed; fsync is group-committed
+/// at most every FSYNC_BATCH_MS, so only a power cut inside that window
+/// can lose an utterance. Compaction runs on the outbox thread too.
+///
+/// The log is read on the outbox thread when it is opened. Use
+/// open(file, whenLoaded) and attach the outbox once it is loaded, so no
+/// caller ever waits for that read (the other methods block until then).
+///
+/// Until the server has acked anything, the outbox can't tell "delivered"
+/// from "lost", so a frame counts as acked once it is written to the
+/// socket (the pre-outbox behaviour, no duplicates). Entries older than
+/// MAX_AGE_MS are not replayed; a stale sentence is worse than a lost one.
+/// Entries dropped for age or because the outbox is full are logged as a
+/// local ack, so they stay dropped after a restart.
+///
+/// Record: [len:int32] [crc32:int32] [type:1] [seq:int64] ( [time:int64] [traceLen:1] [trace] [utf-8 text] )
+public class DurableOutbox {
+    private static final String TAG = "Outbox";
+
+    private static final byte  MSG = 'M', ACK = 'A', LOCAL_ACK = 'L';   // LOCAL_ACK: written() while the server doesn't ack, or dropped
+    static final         int   MAX_ENTRIES     = 256;            // beyond this the oldest unacked are dropped
+    static final         long  MAX_AGE_MS      = 5 * 60_000;
+    private static final long  FSYNC_BATCH_MS  = 100;
+    static final         long  COMPACT_BYTES   = 256 * 1024;     // rewrite the log once it is mostly acked history
+
+    /** One unacked transcription */
+    private static final class Entry {
+        final ChatMessage msg;
+        final long        seq;
+        final long        timeMs;
+        Entry(ChatMessage msg, long seq, long timeMs) { this.msg = msg; this.seq = seq; this.timeMs = timeMs; }
+    }
+
+    private final File                     file;
+    private final LongSupplier             clockMs;
+    private final CountDownLatch           loaded = new CountDownLatch(1);
+    private final ScheduledExecutorService io     = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "Outbox");
+        t.setDaemon(true);
+        return t;
+    });
+
+    // Guarded by `this`
+    private final ArrayDeque<Entry> unacked = new ArrayDeque<>();
+    private       long              nextSeq = 1;
+    private       long              acked;           // highest seq acked
+    private       boolean           serverAcks;      // the server has sent at least one ack (ever)
+    private       boolean           syncPending;
+    private       boolean           compactPending;
+    private       long              logBytes;        // size of the log once every queued write has landed
+    private       long              compactAtBytes;  // logBytes when the pending compaction was queued
+    private       ByteBuffer        buf = ByteBuffer.allocate(1024);
+    private final CRC32             crc = new CRC32();
+
+    // Outbox thread only
+    private       FileChannel       log;             // null: could not open the file; memory only
+
+    private DurableOutbox(File file, LongSupplier clockMs) { this.file = file; this.clockMs = clockMs; }
+
+    /** Returns at once; the log is read on the outbox thread (first use waits for it) */
+    public static DurableOutbox open(File file) { return open(file, null); }
+
+    /** Same, and calls `whenLoaded` on the outbox thread once the log has been read */
+    public static DurableOutbox open(File file, Consumer<DurableOutbox> whenLoaded) {
+        return open(file, whenLoaded, System::currentTimeMillis);
+    }
+
+    static DurableOutbox open(File file, Consumer<DurableOutbox> whenLoaded, LongSupplier clockMs) {
+        DurableOutbox o = new DurableOutbox(file, clockMs);
+        o.io.execute(() -> {
+            o.load();
+            if (whenLoaded != null) whenLoaded.accept(o);
+        });
+        return o;
+    }
+
+    // --------------------------------------------------------------------
+    // Usage (ChatSocketManager)
+    // --------------------------------------------------------------------
+    /** Assign msg.seq and persist it; from here on it survives a dropped socket or an app restart */
+    public void add(ChatMessage msg) {
+        awaitLoaded();
+        synchronized (this) {
+            long seq = nextSeq++;
+            long now = clockMs.getAsLong();
+            msg.seq  = Long.toString(seq);
+            unacked.add(new Entry(msg, seq, now));
+            append(MSG, seq, now, msg.trace, msg.data);
+            if (unacked.size() > MAX_ENTRIES) {
+                ChatLog.w(TAG, "Outbox full; dropping seq " + unacked.peek().seq);
+                ackUpTo(unacked.peek().seq, LOCAL_ACK);
+            }
+        }
+    }
+
+    /** Cumulative ack from the server */
+    public void ack(long seq) {
+        awaitLoaded();
+        synchronized (this) {
+            serverAcks = true;
+            ackUpTo(seq, ACK);
+        }
+    }
+
+    /** A frame went out on the socket; counts as delivered while the server doesn't ack */
+    public synchronized void written(long seq) { if (!serverAcks) ackUpTo(seq, LOCAL_ACK); }
+
+    /** Unacked transcriptions with seq > `afterSeq`, oldest first (expired ones are dropped) */
+    public List<ChatMessage> unackedAfter(long afterSeq) {
+        awaitLoaded();
+        synchronized (this) {
+            long cutoff  = clockMs.getAsLong() - MAX_AGE_MS;
+            long expired = -1;
+            for (Entry e : unacked) {   // in seq order, so also in time order
+                if (e.timeMs >= cutoff) break;
+                expired = e.seq;
+            }
+            if (expired >= 0) {
+                ChatLog.w(TAG, "Dropping stale entries up to seq " + expired);
+                ackUpTo(expired, LOCAL_ACK);
+            }
+            List<ChatMessage> out = new ArrayList<>();
+            for (Entry e : unacked) if (e.seq > afterSeq) out.add(e.msg);
+            return out;
+        }
+    }
+
+    public synchronized int size() { return unacked.size(); }
+
+    /** Finish pending writes, fsync and close the file (the outbox is unusable afterwards) */
+    public void close() {
+        awaitLoaded();
+        io.execute(() -> {
+            try { if (log != null) { log.force(false); log.close(); } }
+            catch (IOException e) { ChatLog.w(TAG, "Close failed: " + e); }
+            log = null;
+        });
+        io.shutdown();
+        try { io.awaitTermination(5, TimeUnit.SECONDS); } catch (InterruptedException e) { Thread.currentThread().interrupt(); }
+    }
+
+    // --------------------------------------------------------------------
+    // Log (holding `this`; the file itself is only touched on the outbox thread)
+    // --------------------------------------------------------------------
+    private void ackUpTo(long seq, byte type) {
+        if (seq <= acked) return;
+        acked = seq;
+        while (!unacked.isEmpty() && unacked.peek().seq <= seq) unacked.poll();
+        append(type, seq, 0, null, null);
+        if (logBytes > COMPACT_BYTES && !compactPending) {
+            compactPending = true;
+            compactAtBytes = logBytes;
+            io.execute(this::compact);
+        }
+    }
+
+    /** Encode a record and queue its write */
+    private void append(byte type, long seq, long timeMs, String trace, String text) {
+        byte[] record = encode(type, seq, timeMs, trace, text);
+        logBytes += record.length;
+        io.execute(() -> write(record));
+        if (!syncPending) {
+            syncPending = true;
+            io.schedule(this::sync, FSYNC_BATCH_MS, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private byte[] encode(byte type, long seq, long timeMs, String trace, String text) {
+        byte[] tr = trace == null ? new byte[0] : trace.getBytes(StandardCharsets.US_ASCII);
+        byte[] tx = text  == null ? new byte[0] : text .getBytes(StandardCharsets.UTF_8);
+        int bodyLen = 1 + 8 + (type == MSG ? 8 + 1 + Math.min(tr.length, 255) + tx.length : 0);
+        if (buf.capacity() < 8 + bodyLen) buf = ByteBuffer.allocate(Math.max(buf.capacity() * 2, 8 + bodyLen));
+
+        buf.clear();
+        buf.position(8);
+        buf.put(type).putLong(seq);
+        if (type == MSG) buf.putLong(timeMs).put((byte) Math.min(tr.length, 255)).put(tr, 0, Math.min(tr.length, 255)).put(tx);
+        crc.reset();
+        crc.update(buf.array(), 8, bodyLen);
+        buf.putInt(0, bodyLen).putInt(4, (int) crc.getValue());
+        return Arrays.copyOf(buf.array(), 8 + bodyLen);
+    }
+
+    // --------------------------------------------------------------------
+    // File (outbox thread)
+    // --------------------------------------------------------------------
+    private void write(byte[] record) {
+        if (log == null) return;
+        try {
+            ByteBuffer b = ByteBuffer.wrap(record);
+            while (b.hasRemaining()) log.write(b);
+        } catch (IOException e) { ChatLog.w(TAG, "Write failed: " + e); }
+    }
+
+    private void sync() {
+        synchronized (this) { syncPending = false; }
+        try { if (log != null) log.force(false); }
+        catch (IOException e) { ChatLog.w(TAG, "fsync failed: " + e); }
+    }
+
+    /**
+     * Rewrite the log with just the unacked entries (plus the ack watermark), then rename it over
+     * the old one. Records queued after the snapshot land in the new file; one may repeat an entry
+     * the snapshot already has, which load() skips.
+     */
+    private void compact() {
+        byte[][] records;
+        synchronized (this) {
+            compactPending = false;
+            records = new byte[unacked.size() + 1][];
+            int i = 0;
+            records[i++] = encode(serverAcks ? ACK : LOCAL_ACK, acked, 0, null, null);
+            for (Entry e : unacked) records[i++] = encode(MSG, e.seq, e.timeMs, e.msg.trace, e.msg.data);
+            long snapshot = 0;
+            for (byte[] r : records) snapshot += r.length;
+            logBytes = snapshot + (logBytes - compactAtBytes);   // writes queued behind the compaction go to the new file
+        }
+        if (log == null) return;
+        File tmp = new File(file.getPath() + ".tmp");
+        try {
+            FileChannel next = new RandomAccessFile(tmp, "rw").getChannel();
+            next.truncate(0);
+            FileChannel old = log;
+            log = next;
+            for (byte[] r : records) write(r);
+            log.force(false);
+            old.close();
+            if (!tmp.renameTo(file)) throw new IOException("rename failed");
+            ChatLog.d(TAG, "Compacted to " + (records.length - 1) + " entries");
+        } catch (IOException e) { ChatLog.w(TAG, "Compaction failed: " + e); }
+    }
+
+    // --------------------------------------------------------------------
+    // Loading (outbox thread, once)
+    // --------------------------------------------------------------------
+    private void load() {
+        synchronized (this) {
+            try {
+                RandomAccessFile raf = new RandomAccessFile(file, "rw");
+                log = raf.getChannel();
+                ByteBuffer all = ByteBuffer.allocate((int) Math.min(log.size(), Integer.MAX_VALUE));
+                while (all.hasRemaining() && log.read(all) >= 0) { }
+                all.flip();
+
+                int  good    = 0;
+                long lastMsg = 0;   // seqs only grow; a repeat is a compaction overlap
+                while (all.remaining() >= 8) {
+                    int len = all.getInt(good), sum = all.getInt(good + 4);
+                    if (len < 9 || good + 8 + len > all.limit()) break;
+                    crc.reset();
+                    crc.update(all.array(), good + 8, len);
+                    if ((int) crc.getValue() != sum) break;
+
+                    ByteBuffer r = ByteBuffer.wrap(all.array(), good + 8, len);
+                    byte type = r.get();
+                    long seq  = r.getLong();
+                    nextSeq = Math.max(nextSeq, seq + 1);
+                    if (type == ACK || type == LOCAL_ACK) {
+                        if (type == ACK) serverAcks = true;
+                        acked = Math.max(acked, seq);
+                        while (!unacked.isEmpty() && unacked.peek().seq <= seq) unacked.poll();
+                    } else if (type == MSG && seq > acked && seq > lastMsg) {
+                        long   time = r.getLong();
+                        int    tl   = r.get() & 0xFF;
+                        String tr   = tl > 0 ? new String(all.array(), r.position(), tl, StandardCharsets.US_ASCII) : null;
+                        r.position(r.position() + tl);
+                        String tx   = new String(all.array(), r.position(), r.remaining(), StandardCharsets.UTF_8);
+                        unacked.add(new Entry(new ChatMessage(ChatMessage.Type.TRANSCRIPTION, tx, tr), seq, time));
+                        unacked.peekLast().msg.seq = Long.toString(seq);
+                        lastMsg = seq;
+                    }
+                    good += 8 + len;
+                    all.position(good);
+                }
+                log.truncate(good);   // drop a torn tail from a crash mid-write
+                log.position(good);
+                logBytes = good;
+                ChatLog.d(TAG, String.format("Loaded: %d unacked, next seq %d", unacked.size(), nextSeq));
+            } catch (IOException e) {
+                log = null;
+                ChatLog.e(TAG, "Outbox file unusable, keeping it in memory only: " + e);
+            } finally {
+                loaded.countDown();
+            }
+        }
+    }
+
+    private void awaitLoaded() {
+        try { loaded.await(); } catch (InterruptedException e) { Thread.currentThread().interrupt(); }
+    }
+}
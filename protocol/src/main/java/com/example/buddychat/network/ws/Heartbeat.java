@@ -0,0 +1,98 @@
+package com.example.buddychat.network.ws;
+
+// ====================================================================
+// Application-level ping/pong bookkeeping for one chat socket
+// ====================================================================
+/// Every intervalMs the socket sends {"type":"ping","id":n} and the server
+/// answers {"type":"pong","id":n}. Because the pong goes through the
+/// server's app code, the round trip covers "is the server keeping up",
+/// not just "is the TCP path alive" (OkHttp's protocol pings cover that).
+///
+/// RTT is smoothed the way TCP does it (srtt gains 1/8, rttvar 1/4).
+/// Any inbound frame counts as proof of life; if nothing arrives for
+/// deadlineMs the peer is declared LOST. That deadline, like the "ping
+/// unanswered for slowRttMs" rule, is only applied once the server has
+/// answered a ping on this socket, so a server without pong support is
+/// never declared dead or slow by mistake.
+///
+/// Not thread-safe; ChatSocketManager calls it holding its lock.
+public class Heartbeat {
+    private final long intervalMs;
+    private final long deadlineMs;
+    private final long slowRttMs;
+
+    // Per-socket state (reset on every open)
+    private long    lastInboundMs;
+    private long    pingSeq;
+    private String  outstandingId;      // ping waiting for its pong, or null
+    private long    outstandingSentMs;
+    private boolean pongSeen;
+    private double  srtt = -1, rttvar;
+
+    public Heartbeat(long intervalMs, long deadlineMs, long slowRttMs) {
+        this.intervalMs = intervalMs;
+        this.deadlineMs = deadlineMs;
+        this.slowRttMs  = slowRttMs;
+    }
+
+    /** Ping every 5 s, dead after 15 s of silence, slow above 1.5 s RTT */
+    public static Heartbeat defaults() { return new Heartbeat(5_000, 15_000, 1_500); }
+
+    /** Fresh copy with the same settings, for a new socket */
+    public Heartbeat copy() { return new Heartbeat(intervalMs, deadlineMs, slowRttMs); }
+
+    public long intervalMs() { return intervalMs; }
+    public long deadlineMs() { return deadlineMs; }
+
+    // --------------------------------------------------------------------
+    // Events
+    // --------------------------------------------------------------------
+    public void reset(long nowMs) {
+        lastInboundMs = nowMs;
+        outstandingId = null;
+        pongSeen      = false;
+        srtt          = -1;
+        rttvar        = 0;
+    }
+
+    public void onInbound(long nowMs) { lastInboundMs = nowMs; }
+
+    /** Id for the next ping, or null while the previous one is still unanswered */
+    public String nextPing(long nowMs) {
+        if (outstandingId != null) return null;
+        outstandingId     = Long.toString(++pingSeq);
+        outstandingSentMs = nowMs;
+        return outstandingId;
+    }
+
+    /** A pong arrived; returns its RTT in ms, or -1 if it doesn't match the outstanding ping */
+    public long onPong(String id, long nowMs) {
+        onInbound(nowMs);
+        if (id == null || !id.equals(outstandingId)) return -1;
+        long rtt = nowMs - outstandingSentMs;
+        outstandingId = null;
+        pongSeen      = true;
+        if (srtt < 0) { srtt = rtt; rttvar = rtt / 2.0; }
+        else {
+            rttvar = 0.75  * rttvar + 0.25  * Math.abs(srtt - rtt);
+            srtt   = 0.875 * srtt   + 0.125 * rtt;
+        }
+        return rtt;
+    }
+
+    // --------------------------------------------------------------------
+    // Readings
+    // --------------------------------------------------------------------
+    /** Smoothed RTT in ms, -1 before the first pong */
+    public long rttMs() { return srtt < 0 ? -1 : Math.round(srtt); }
+
+    /** RTT deviation in ms (jitter), 0 before the first pong */
+    public long rttVarMs() { return Math.round(rttvar); }
+
+    public LinkQuality assess(long nowMs) {
+        if (pongSeen && nowMs - lastInboundMs > deadlineMs)                             return LinkQuality.LOST;
+        if (pongSeen && outstandingId != null && nowMs - outstandingSentMs > slowRttMs) return LinkQuality.SLOW;
+        if (srtt > slowRttMs)                                                           return LinkQuality.SLOW;
+        return LinkQuality.GOOD;
+    }
+}
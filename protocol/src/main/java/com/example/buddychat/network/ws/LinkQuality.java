@@ -0,0 +1,8 @@
+package com.example.buddychat.network.ws;
+
+// How the chat link looks from the robot's side (see Heartbeat)
+public enum LinkQuality {
+    GOOD,   // pongs come back quickly
+    SLOW,   // the socket is alive but the server answers late: "server slow"
+    LOST    // nothing at all within the deadline: "network dead", the socket is being replaced
+}
@@ -0,0 +1,35 @@
+package com.example.buddychat.network.ws;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+// ====================================================================
+// Exponential backoff with full jitter for WebSocket reconnects
+// ====================================================================
+/// delay(n) = random(0, min(maxDelay, baseDelay * 2^n)), with a small floor
+/// so a burst of failures never turns into a tight loop. Jitter keeps a
+/// care home full of robots from hammering the server in lock-step after
+/// the Wi-Fi comes back.
+public class ReconnectPolicy {
+    private final long baseDelayMs;
+    private final long maxDelayMs;
+    private final int  maxAttempts;  // <= 0 means retry forever
+
+    public ReconnectPolicy(long baseDelayMs, long maxDelayMs, int maxAttempts) {
+        this.baseDelayMs = baseDelayMs;
+        this.maxDelayMs  = maxDelayMs;
+        this.maxAttempts = maxAttempts;
+    }
+
+    /** 0.5 s doubling up to 30 s, giving up after 10 tries (~3-4 minutes worst case) */
+    public static ReconnectPolicy defaults() { return new ReconnectPolicy(500, 30_000, 10); }
+
+    public boolean shouldRetry(int attempt) { return maxAttempts <= 0 || attempt < maxAttempts; }
+
+    /** Delay before reconnect attempt number `attempt` (0-based) */
+    public long delayMs(int attempt) {
+        long ceiling = baseDelayMs << Math.min(attempt, 20);  // cap the shift, not just the result
+        ceiling = Math.min(maxDelayMs, ceiling);
+        long floor = Math.min(baseDelayMs, ceiling) / 2;
+        return floor + ThreadLocalRandom.current().nextLong(ceiling - floor + 1);
+    }
+}
@@ -0,0 +1,8 @@
+package com.example.buddychat.network.ws;
+
+// Interface for a live transcription's progress through the outbound queue; turns answered on-device and
+// outbox replays are not reported (called with the socket manager's lock held; keep it cheap)
+public interface SendObserver {
+    void queued(String trace);   // accepted into the queue
+    void sent  (String trace);   // handed to OkHttp
+}
@@ -0,0 +1,8 @@
+package com.example.buddychat.stt;
+
+public interface UtteranceCallback {
+    boolean sendString(String text, String traceId);  // false if the utterance could not be queued
+    default boolean sendString(String text, String traceId, String[] alternates) { return sendString(text, traceId); }  // lower-ranked STT hypotheses, may be null
+    boolean sendAnswered(String text, String traceId, String localReply);  // answered on-device; keeps the server's context in step
+    boolean sendPartial (String text, String traceId);  // interim hypothesis, droppable; the final sendString uses the same trace
+}
@@ -0,0 +1,105 @@
+package com.example.buddychat.metrics;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class LatencyHistogramTest {
+    private final LatencyHistogram h = new LatencyHistogram();
+
+    /** Reported value is within the 12.5% the bucket layout promises */
+    private static void assertClose(long expected, long actual) {
+        assertTrue("expected ~" + expected + " but was " + actual, Math.abs(actual - expected) <= expected / 8);
+    }
+
+    // --------------------------------------------------------------------
+    // Bucket math
+    // --------------------------------------------------------------------
+    @Test public void smallValuesAreExact() {
+        for (int v = 0; v < 16; v++) {
+            assertEquals(v, LatencyHistogram.indexOf(v));
+            assertEquals(v, LatencyHistogram.midpointOf(v));
+        }
+    }
+
+    @Test public void firstLogBucketStartsAtSixteen() {
+        assertEquals(16, LatencyHistogram.indexOf(16));
+        assertEquals(16, LatencyHistogram.indexOf(17));   // 16..17 share a bucket
+        assertEquals(17, LatencyHistogram.indexOf(18));
+        assertEquals(17, LatencyHistogram.midpointOf(16));
+    }
+
+    @Test public void powersOfTwoOpenANewBucket() {
+        int below = LatencyHistogram.indexOf(1023), at = LatencyHistogram.indexOf(1024);
+        assertEquals(below + 1, at);
+        assertEquals(1024 + 64, LatencyHistogram.midpointOf(at));   // 1024..1151, width 128
+    }
+
+    @Test public void indexAndMidpointAgreeEverywhere() {
+        for (long v = 1; v < (1L << 36); v = v * 3 / 2 + 1) {
+            assertClose(v, LatencyHistogram.midpointOf(LatencyHistogram.indexOf(v)));
+        }
+    }
+
+    @Test public void valuesPastTheTopShareTheLastBucket() {
+        int last = LatencyHistogram.indexOf((1L << 36) - 1);
+        assertEquals(last, LatencyHistogram.indexOf(1L << 36));
+        assertEquals(last, LatencyHistogram.indexOf(Long.MAX_VALUE));
+
+        h.record(Long.MAX_VALUE);
+        assertEquals(1, h.count());
+        assertEquals(LatencyHistogram.midpointOf(last), h.max());
+    }
+
+    @Test public void negativeValuesCountAsZero() {
+        h.record(-5);
+        assertEquals(1, h.count());
+        assertEquals(0, h.max());
+    }
+
+    // --------------------------------------------------------------------
+    // Percentiles
+    // --------------------------------------------------------------------
+    @Test public void anEmptyHistogramReportsMinusOne() {
+        assertEquals(0,  h.count());
+        assertEquals(-1, h.percentile(0.5));
+        assertEquals(-1, h.percentile(0.99));
+        assertEquals(-1, h.max());
+    }
+
+    @Test public void percentilesOfExactValues() {
+        for (int v = 1; v <= 10; v++) h.record(v);
+        assertEquals(1,  h.percentile(0));
+        assertEquals(5,  h.percentile(0.5));
+        assertEquals(10, h.percentile(0.95));
+        assertEquals(10, h.percentile(1));
+        assertEquals(10, h.max());
+    }
+
+    @Test public void percentilesOfAUniformDistribution() {
+        for (int ms = 1; ms <= 1_000; ms++) h.record(ms * 1_000L);
+        assertEquals(1_000, h.count());
+        assertClose(500_000, h.percentile(0.50));
+        assertClose(950_000, h.percentile(0.95));
+        assertClose(990_000, h.percentile(0.99));
+        assertClose(1_000_000, h.max());
+    }
+
+    @Test public void aSlowTailShowsUpOnlyInTheHighPercentiles() {
+        for (int i = 0; i < 98; i++) h.record(200_000);
+        h.record(3_000_000);
+        h.record(3_000_000);
+        assertClose(200_000,   h.percentile(0.50));
+        assertClose(200_000,   h.percentile(0.95));
+        assertClose(3_000_000, h.percentile(0.99));
+    }
+
+    @Test public void resetEmptiesEveryBucket() {
+        h.record(10);
+        h.record(1L << 40);
+        h.reset();
+        assertEquals(0,  h.count());
+        assertEquals(-1, h.percentile(0.5));
+    }
+}
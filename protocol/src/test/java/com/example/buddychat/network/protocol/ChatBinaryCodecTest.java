@@ -0,0 +1,130 @@
+package com.example.buddychat.network.protocol;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.fail;
+
+import java.util.Arrays;
+import java.util.EnumSet;
+
+import org.junit.Test;
+
+public class ChatBinaryCodecTest {
+    private final ChatBinaryCodec codec = new ChatBinaryCodec();
+
+    private byte[] encode(ChatMessage msg) {
+        int n = codec.encode(msg);   // first: it may grow the buffer
+        return Arrays.copyOf(codec.buffer(), n);
+    }
+
+    private static ChatMessage decode(byte[] b) throws ChatBinaryCodec.MalformedFrameException {
+        return ChatBinaryCodec.decode(b, 0, b.length, null);
+    }
+
+    private static void assertMalformed(byte[] b) {
+        try {
+            decode(b);
+            fail("decoded " + Arrays.toString(b));
+        } catch (ChatBinaryCodec.MalformedFrameException expected) { }
+    }
+
+    // --------------------------------------------------------------------
+    // Round trips
+    // --------------------------------------------------------------------
+    @Test public void everyFieldSurvivesARoundTrip() throws Exception {
+        ChatMessage m = new ChatMessage(ChatMessage.Type.TRANSCRIPTION, "héllo 😀 wörld", "t-1");
+        m.time   = "12:00";
+        m.id     = "r7";
+        m.seq    = "42";
+        m.cache  = "yes";
+        m.cached = "a local reply";
+        m.alts   = new String[] { "hello world", "", "yellow whirled" };
+
+        ChatMessage d = decode(encode(m));
+        assertEquals(m.type,   d.type);
+        assertEquals(m.data,   d.data);
+        assertEquals(m.time,   d.time);
+        assertEquals(m.id,     d.id);
+        assertEquals(m.trace,  d.trace);
+        assertEquals(m.seq,    d.seq);
+        assertEquals(m.cache,  d.cache);
+        assertEquals(m.cached, d.cached);
+        assertArrayEquals(m.alts, d.alts);
+    }
+
+    @Test public void absentFieldsStayNull() throws Exception {
+        ChatMessage d = decode(encode(new ChatMessage(ChatMessage.Type.PING, null)));
+        assertEquals(ChatMessage.Type.PING, d.type);
+        assertNull(d.data);
+        assertNull(d.alts);
+    }
+
+    @Test public void longFieldsUseMultiByteLengths() throws Exception {
+        char[] c = new char[70_000];
+        Arrays.fill(c, 'x');
+        ChatMessage m = new ChatMessage(ChatMessage.Type.LLM_DONE, new String(c));
+        assertEquals(m.data, decode(encode(m)).data);
+    }
+
+    @Test public void unknownTagsAreSkipped() throws Exception {
+        byte[] b = { ChatBinaryCodec.VERSION, 4, 99, 2, 'z', 'z', 1, 2, 'h', 'i' };
+        ChatMessage d = decode(b);
+        assertEquals(ChatMessage.Type.LLM_DELTA, d.type);
+        assertEquals("hi", d.data);
+    }
+
+    // --------------------------------------------------------------------
+    // Header / filtering
+    // --------------------------------------------------------------------
+    @Test public void peekTypeReadsTheHeaderOnly() {
+        assertEquals(ChatMessage.Type.LLM_DONE, ChatBinaryCodec.peekType(ChatBinaryCodec.VERSION, (byte) 5));
+        assertEquals(ChatMessage.Type.UNKNOWN,  ChatBinaryCodec.peekType((byte) 2, (byte) 5));
+        assertEquals(ChatMessage.Type.UNKNOWN,  ChatBinaryCodec.peekType(ChatBinaryCodec.VERSION, (byte) 120));
+        assertEquals(ChatMessage.Type.UNKNOWN,  ChatBinaryCodec.peekType(ChatBinaryCodec.VERSION, (byte) -1));
+    }
+
+    @Test public void unwantedTypesAreDroppedEvenIfTheRestIsBroken() throws Exception {
+        byte[] b = { ChatBinaryCodec.VERSION, 1, 1, 50, 'x' };   // data overruns the frame
+        assertNull(ChatBinaryCodec.decode(b, 0, b.length, EnumSet.of(ChatMessage.Type.LLM_DONE)));
+    }
+
+    @Test public void decodesASlice() throws Exception {
+        byte[] frame = encode(new ChatMessage(ChatMessage.Type.ACK, "9"));
+        byte[] b     = new byte[frame.length + 4];
+        System.arraycopy(frame, 0, b, 2, frame.length);
+        assertEquals("9", ChatBinaryCodec.decode(b, 2, frame.length, null).data);
+    }
+
+    // --------------------------------------------------------------------
+    // Malformed input
+    // --------------------------------------------------------------------
+    @Test public void everyTruncationIsMalformed() throws Exception {
+        byte[] full = encode(new ChatMessage(ChatMessage.Type.LLM_RESPONSE, "a reply", "t-9"));
+        for (int n = 0; n < full.length; n++) {
+            if (n == 2) continue;   // header only: a valid frame with no fields
+            if (n > 2 && isFieldBoundary(full, n)) continue;
+            assertMalformed(Arrays.copyOf(full, n));
+        }
+    }
+
+    /** True if `n` bytes of `b` end exactly after a whole field */
+    private static boolean isFieldBoundary(byte[] b, int n) {
+        int i = 2;
+        while (i < n) i += 2 + b[i + 1];   // lengths here are < 128: one varint byte
+        return i == n;
+    }
+
+    @Test public void otherVersionsAreMalformed() {
+        assertMalformed(new byte[] { 2, 1 });
+    }
+
+    @Test public void overlongVarintsAreMalformed() {
+        assertMalformed(new byte[] { ChatBinaryCodec.VERSION, 1, 1, (byte) 0x80, (byte) 0x80, (byte) 0x80, (byte) 0x80, (byte) 0x80, 1 });
+    }
+
+    @Test public void hugeLengthsAreMalformed() {
+        // Integer.MAX_VALUE: `i + n` would wrap negative and slip past a naive bounds check
+        assertMalformed(new byte[] { ChatBinaryCodec.VERSION, 1, 1, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, 0x07, 'x' });
+    }
+}
@@ -0,0 +1,141 @@
+package com.example.buddychat.network.protocol;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.fail;
+
+import java.util.EnumSet;
+
+import org.junit.Test;
+
+public class ChatCodecTest {
+
+    private final ChatCodec codec = new ChatCodec();
+
+    private ChatMessage roundTrip(ChatMessage msg) throws Exception {
+        return ChatCodec.decode(codec.encode(msg), null);
+    }
+
+    private static void assertMalformed(String raw) {
+        try {
+            ChatCodec.decode(raw, null);
+            fail("accepted: " + raw);
+        } catch (ChatCodec.MalformedFrameException expected) {
+            // the only exception a bad frame may produce
+        }
+    }
+
+    // --------------------------------------------------------------------
+    // Round trips
+    // --------------------------------------------------------------------
+    @Test
+    public void everyFieldSurvivesARoundTrip() throws Exception {
+        ChatMessage m = new ChatMessage(ChatMessage.Type.LLM_DELTA, "hi", "t-1");
+        m.time   = "2026-01-01T10:00:00";
+        m.id     = "r7";
+        m.seq    = "42";
+        m.cached = "local answer";
+
+        ChatMessage d = roundTrip(m);
+
+        assertEquals(ChatMessage.Type.LLM_DELTA, d.type);
+        assertEquals("hi", d.data);
+        assertEquals("t-1", d.trace);
+        assertEquals(m.time, d.time);
+        assertEquals("r7", d.id);
+        assertEquals("42", d.seq);
+        assertEquals("local answer", d.cached);
+    }
+
+    @Test
+    public void escapesRoundTrip() throws Exception {
+        String text = "quote \" backslash \\ slash / newline \n tab \t cr \r bell \u0007 nul \u0000 ls \u2028 ps \u2029";
+        assertEquals(text, roundTrip(new ChatMessage(ChatMessage.Type.TRANSCRIPTION, text)).data);
+    }
+
+    @Test
+    public void surrogatePairsRoundTripRawAndEscaped() throws Exception {
+        String emoji = "smile \uD83D\uDE00 ok";
+        assertEquals(emoji, roundTrip(new ChatMessage(ChatMessage.Type.TRANSCRIPTION, emoji)).data);
+        assertEquals(emoji, ChatCodec.decode("{\"type\":\"transcription\",\"data\":\"smile \\ud83d\\uDE00 ok\"}", null).data);
+    }
+
+    @Test
+    public void endChatKeepsItsNumberUnquoted() throws Exception {
+        String json = codec.encode(ChatCodec.endChatMessage(1234L));
+        assertEquals("{\"type\":\"end_chat\",\"data\":1234}", json);
+        assertEquals("1234", ChatCodec.decode(json, null).data);
+    }
+
+    @Test
+    public void alternatesAreEncodedAsAnArray() {
+        ChatMessage m = new ChatMessage(ChatMessage.Type.TRANSCRIPTION, "a", "t");
+        m.alts = new String[] { "b", "c\"" };
+        assertEquals("{\"type\":\"transcription\",\"data\":\"a\",\"trace\":\"t\",\"alts\":[\"b\",\"c\\\"\"]}", codec.encode(m));
+    }
+
+    @Test
+    public void unknownKeysAndNestedValuesAreSkipped() throws Exception {
+        ChatMessage d = ChatCodec.decode(
+                " { \"meta\" : {\"a\":[1,{\"b\":\"}\"}]}, \"type\":\"llm_done\", \"n\":-1.5e3, \"ok\":true, \"data\":null }", null);
+        assertEquals(ChatMessage.Type.LLM_DONE, d.type);
+        assertNull(d.data);
+    }
+
+    // --------------------------------------------------------------------
+    // The `wanted` filter
+    // --------------------------------------------------------------------
+    @Test
+    public void unwantedTypesAreDroppedEvenIfTheRestIsBroken() throws Exception {
+        // Early out right after "type": the broken tail is never looked at
+        assertNull(ChatCodec.decode("{\"type\":\"ping\",\"data\":\"\\uZZZZ\"", EnumSet.of(ChatMessage.Type.PONG)));
+        assertEquals(ChatMessage.Type.PONG, ChatCodec.decode("{\"type\":\"pong\",\"id\":\"1\"}", EnumSet.of(ChatMessage.Type.PONG)).type);
+    }
+
+    @Test
+    public void framesWithoutTypeAreUnknown() throws Exception {
+        assertNull(ChatCodec.decode("{\"data\":\"x\"}", EnumSet.of(ChatMessage.Type.LLM_DONE)));
+        assertEquals(ChatMessage.Type.UNKNOWN, ChatCodec.decode("{\"data\":\"x\"}", EnumSet.of(ChatMessage.Type.UNKNOWN)).type);
+        assertEquals(ChatMessage.Type.UNKNOWN, ChatCodec.decode("{\"type\":\"brand_new\"}", null).type);
+    }
+
+    // --------------------------------------------------------------------
+    // Malformed input
+    // --------------------------------------------------------------------
+    @Test
+    public void badUnicodeEscapesAreMalformed() {
+        assertMalformed("{\"type\":\"llm_done\",\"data\":\"\\uZZZZ\"}");
+        assertMalformed("{\"type\":\"llm_done\",\"data\":\"\\u+fff\"}");   // Integer.parseInt would accept this
+        assertMalformed("{\"type\":\"llm_done\",\"data\":\"\\u12\"}");
+        assertMalformed("{\"type\":\"llm_done\",\"data\":\"\\u\"}");
+    }
+
+    @Test
+    public void everyTruncationIsMalformed() throws Exception {
+        ChatMessage m = new ChatMessage(ChatMessage.Type.LLM_DELTA, "h\u00e9llo \"w\" \\ \uD83D\uDE00 \u0001", "t-9");
+        m.seq = "17";
+        m.id  = "r1";
+        String json = codec.encode(m);
+        ChatCodec.decode(json, null);   // the whole frame is fine
+        for (int cut = 0; cut < json.length(); cut++) assertMalformed(json.substring(0, cut));
+    }
+
+    @Test
+    public void notAnObjectIsMalformed() {
+        assertMalformed("");
+        assertMalformed("   ");
+        assertMalformed("[]");
+        assertMalformed("\"type\"");
+        assertMalformed("{\"type\" \"ping\"}");
+        assertMalformed("{type:\"ping\"}");
+        assertMalformed("{\"type\":}");
+    }
+
+    @Test
+    public void encodeReusesItsBufferSafely() {
+        String first  = codec.transcription("one");
+        String second = codec.transcription("two");
+        assertEquals("{\"type\":\"transcription\",\"data\":\"one\"}", first);
+        assertEquals("{\"type\":\"transcription\",\"data\":\"two\"}", second);
+    }
+}
@@ -0,0 +1,409 @@
+package com.example.buddychat.network.ws;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import okhttp3.Protocol;
+import okhttp3.Request;
+import okhttp3.Response;
+import okhttp3.WebSocket;
+import okhttp3.WebSocketListener;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okio.ByteString;
+
+import com.example.buddychat.network.ChatLog;
+import com.example.buddychat.network.protocol.ChatBinaryCodec;
+import com.example.buddychat.network.protocol.ChatCodec;
+import com.example.buddychat.network.protocol.ChatMessage;
+
+public class ChatSocketManagerTest {
+    private static final String GREETING = "{\"type\":\"llm_response\",\"data\":\"hello\"}";
+
+    private static final int  SMALL_QUEUE = 8;                          // congested at 6, drained at 2
+    private static final long NO_PINGS_MS = TimeUnit.HOURS.toMillis(1);   // no heartbeat frames during a test
+
+    private MockWebServer     server;
+    private ChatSocketManager chat;
+    private Recorder          events;
+
+    @Before public void setUp() throws IOException {
+        server = new MockWebServer();
+        server.start();
+        chat   = new ChatSocketManager(new ReconnectPolicy(10, 10, 1), ChatSocketManager.DEFAULT_MAX_PENDING, Heartbeat.defaults());
+        chat.setEndpoint(server.url("/ws/chat/"));
+        events = new Recorder();
+    }
+
+    @After public void tearDown() throws IOException {
+        chat.endChat();
+        server.shutdown();
+    }
+
+    // --------------------------------------------------------------------
+    // Helpers
+    // --------------------------------------------------------------------
+    /** Records callbacks in order, and whether any ran holding the manager's lock */
+    private final class Recorder implements ChatListener {
+        final List<String>   seen   = new ArrayList<>();
+        final CountDownLatch closed = new CountDownLatch(1);
+        volatile boolean     locked;
+
+        private synchronized void on(String what) {
+            if (Thread.holdsLock(chat)) locked = true;
+            seen.add(what);
+            notifyAll();
+        }
+
+        @Override public void onOpen()                                       { on("open"); }
+        @Override public void onMessage(String json)                         { on("message " + json); }
+        @Override public void onMessage(ChatMessage msg)                     { on("message " + msg.data); }
+        @Override public void onClosed()                                     { on("closed"); closed.countDown(); }
+        @Override public void onError(Throwable t)                           { on("error"); }
+        @Override public void onReconnecting(int attempt, long delayMs)      { on("reconnecting " + attempt); }
+        @Override public void onLinkQuality(LinkQuality quality, long rttMs) { on("link " + quality); }
+
+        synchronized void await(int n) throws InterruptedException {
+            long end = System.currentTimeMillis() + 5_000;
+            while (seen.size() < n && System.currentTimeMillis() < end) wait(50);
+            assertTrue("only " + seen, seen.size() >= n);
+        }
+
+        synchronized List<String> seen() { return new ArrayList<>(seen); }
+    }
+
+    /** Records onBackpressure calls, and whether they got the `false` after a `true` */
+    private static final class Pressure implements BackpressureListener {
+        final List<Boolean> seen = new ArrayList<>();
+
+        @Override public synchronized void onBackpressure(boolean congested) { seen.add(congested); notifyAll(); }
+
+        synchronized void await(int n) throws InterruptedException {
+            long end = System.currentTimeMillis() + 5_000;
+            while (seen.size() < n && System.currentTimeMillis() < end) wait(50);
+            assertTrue("only " + seen, seen.size() >= n);
+        }
+
+        synchronized List<Boolean> seen() { return new ArrayList<>(seen); }
+    }
+
+    /// Socket that never leaves the process and takes frames only as the test allows:
+    /// `accept` frames more, with `buffered` bytes already sitting in OkHttp's buffer
+    private static final class StallingSocket implements WebSocket {
+        private final Request request;
+        final List<String>    wire = new ArrayList<>();
+        volatile int          accept;
+        volatile long         buffered;
+        StallingSocket(Request request) { this.request = request; }
+
+        @Override public Request request()                      { return request; }
+        @Override public long    queueSize()                    { return buffered; }
+        @Override public synchronized boolean send(String text) {
+            if (accept <= 0) return false;
+            accept--;
+            wire.add(text);
+            return true;
+        }
+        @Override public boolean send(ByteString bytes)         { return send(bytes.utf8()); }
+        @Override public boolean close(int code, String reason) { return true; }
+        @Override public void    cancel()                       { }
+        synchronized List<String> wire() { return new ArrayList<>(wire); }
+    }
+
+    private StallingSocket    stalled;
+    private WebSocketListener stalledSession;
+
+    /** A manager with a SMALL_QUEUE over a StallingSocket, connected and open */
+    private ChatSocketManager openStalled() {
+        ChatSocketManager m = new ChatSocketManager(new ReconnectPolicy(10, 10, 1), SMALL_QUEUE,
+                new Heartbeat(NO_PINGS_MS, 3 * NO_PINGS_MS, NO_PINGS_MS),
+                (req, listener) -> { stalled = new StallingSocket(req); stalledSession = listener; return stalled; });
+        m.connect("token", events);
+        stalledSession.onOpen(stalled, new Response.Builder()
+                .request(stalled.request()).protocol(Protocol.HTTP_1_1).code(101).message("Switching Protocols").build());
+        return m;
+    }
+
+    /** Wait for the drain poll to bring the queue down to `n` frames */
+    private static void awaitQueue(ChatSocketManager m, int n) throws InterruptedException {
+        long end = System.currentTimeMillis() + 5_000;
+        while (m.queueSize() != n && System.currentTimeMillis() < end) Thread.sleep(20);
+        assertEquals(n, m.queueSize());
+        Thread.sleep(250);   // and give a wrong transition two more polls to show up
+    }
+
+    private static String frame(int i) { return "{\"type\":\"test\",\"data\":\"" + i + "\"}"; }
+
+    /** Upgrade that greets the client; counts down `opened` once the greeting is out */
+    private static MockResponse greeter(CountDownLatch opened) {
+        return new MockResponse().withWebSocketUpgrade(new WebSocketListener() {
+            @Override public void onOpen(WebSocket ws, Response r) { ws.send(GREETING); opened.countDown(); }
+            @Override public void onClosing(WebSocket ws, int code, String reason) { ws.close(code, null); }
+        });
+    }
+
+    // --------------------------------------------------------------------
+    // Listener calls happen outside the lock
+    // --------------------------------------------------------------------
+    @Test public void connectAndEndChat() throws Exception {
+        server.enqueue(greeter(new CountDownLatch(1)));
+        chat.connect("token", events);
+        events.await(2);
+        chat.endChat();
+        assertTrue(events.closed.await(5, TimeUnit.SECONDS));
+
+        assertEquals(Arrays.asList("open", "message " + GREETING, "closed"), events.seen());
+        assertFalse("a callback ran holding the lock", events.locked);
+    }
+
+    @Test public void promotedStandbyReplaysInOrder() throws Exception {
+        CountDownLatch opened = new CountDownLatch(1);
+        server.enqueue(greeter(opened));
+        chat.prewarm(() -> "token");
+        assertTrue(opened.await(5, TimeUnit.SECONDS));
+        Thread.sleep(200);   // let the greeting reach the standby socket
+
+        chat.connect(() -> "token", events);
+        events.await(2);
+        assertEquals(Arrays.asList("open", "message " + GREETING), events.seen());
+        assertFalse("a callback ran holding the lock", events.locked);
+    }
+
+    @Test public void reconnectThenGiveUp() throws Exception {
+        server.enqueue(new MockResponse().withWebSocketUpgrade(new WebSocketListener() {
+            @Override public void onOpen(WebSocket ws, Response r) { ws.close(1011, "server error"); }
+        }));
+        server.enqueue(new MockResponse().setResponseCode(503));   // the resume fails: out of attempts
+        chat.connect("token", events);
+        assertTrue(events.closed.await(5, TimeUnit.SECONDS));
+
+        List<String> seen = events.seen();
+        assertEquals("open", seen.get(0));
+        assertTrue(seen.toString(), seen.contains("reconnecting 1"));
+        assertTrue(seen.toString(), seen.contains("link LOST"));
+        assertEquals(Arrays.asList("error", "closed"), seen.subList(seen.size() - 2, seen.size()));
+        assertFalse("a callback ran holding the lock", events.locked);
+    }
+
+    @Test public void aServerThatNeverPongsIsNotReportedSlow() throws Exception {
+        chat = new ChatSocketManager(new ReconnectPolicy(10, 10, 1), ChatSocketManager.DEFAULT_MAX_PENDING, new Heartbeat(50, 400, 100));
+        chat.setEndpoint(server.url("/ws/chat/"));
+        server.enqueue(greeter(new CountDownLatch(1)));   // answers no ping, like today's backend
+        chat.connect("token", events);
+        events.await(2);
+        Thread.sleep(800);                                 // many ticks, two deadlines
+
+        List<String> seen = events.seen();
+        assertFalse(seen.toString(), seen.contains("link SLOW"));
+        assertFalse(seen.toString(), seen.contains("link LOST"));
+        assertFalse(seen.toString(), seen.contains("closed"));
+    }
+
+    @Test public void theAccessTokenStaysOutOfTheLog() throws Exception {
+        List<String> logged = new ArrayList<>();
+        ChatLog.setSink((level, tag, msg, t) -> { synchronized (logged) { logged.add(msg); } });
+        ChatLog.setMinLevel(ChatLog.VERBOSE);
+        try {
+            server.enqueue(greeter(new CountDownLatch(1)));
+            chat.connect("secret-access-token", events);
+            events.await(2);
+            assertTrue(server.takeRequest().getPath().contains("token=secret-access-token"));
+        } finally {
+            ChatLog.setSink(null);
+            ChatLog.setMinLevel(ChatLog.WARN);
+        }
+        synchronized (logged) {
+            assertTrue(logged.toString(), logged.stream().anyMatch(m -> m.contains("token=REDACTED")));
+            assertFalse(logged.toString(), logged.stream().anyMatch(m -> m.contains("secret-access-token")));
+        }
+    }
+
+    // --------------------------------------------------------------------
+    // Binary framing
+    // --------------------------------------------------------------------
+    @Test public void unwantedBinaryFramesNeverReachTheListener() throws Exception {
+        ChatBinaryCodec bin = new ChatBinaryCodec();
+        server.enqueue(new MockResponse().setHeader("X-Chat-Proto", ChatBinaryCodec.PROTOCOL)
+                .withWebSocketUpgrade(new WebSocketListener() {
+                    @Override public void onOpen(WebSocket ws, Response r) {
+                        for (ChatMessage.Type t : new ChatMessage.Type[] { ChatMessage.Type.TRANSCRIPTION, ChatMessage.Type.LLM_DELTA, ChatMessage.Type.LLM_DONE }) {
+                            ChatMessage m = new ChatMessage(t, t.wire);
+                            ws.send(ByteString.of(bin.buffer(), 0, bin.encode(m)));
+                        }
+                        ws.send(ByteString.of((byte) 9, (byte) 5));   // another version
+                    }
+                    @Override public void onClosing(WebSocket ws, int code, String reason) { ws.close(code, null); }
+                }));
+        chat.setBinaryFraming(true);
+        chat.setBinaryTypes(EnumSet.of(ChatMessage.Type.LLM_DELTA, ChatMessage.Type.LLM_DONE));
+        chat.connect("token", events);
+        events.await(3);
+        Thread.sleep(100);
+
+        assertEquals(Arrays.asList("open", "message llm_delta", "message llm_done"), events.seen());
+    }
+
+    // --------------------------------------------------------------------
+    // Bounded queue and backpressure
+    // --------------------------------------------------------------------
+    @Test public void framesQueueBehindAStalledUpgradeUntilTheQueueIsFull() throws Exception {
+        List<String> received = new ArrayList<>();
+        CountDownLatch all = new CountDownLatch(SMALL_QUEUE);
+        server.enqueue(new MockResponse().setHeadersDelay(500, TimeUnit.MILLISECONDS)   // the peer sits on the upgrade
+                .withWebSocketUpgrade(new WebSocketListener() {
+                    @Override public void onMessage(WebSocket ws, String text) {
+                        synchronized (received) { received.add(text); }
+                        all.countDown();
+                    }
+                    @Override public void onClosing(WebSocket ws, int code, String reason) { ws.close(code, null); }
+                }));
+        chat = new ChatSocketManager(new ReconnectPolicy(10, 10, 1), SMALL_QUEUE, Heartbeat.defaults());
+        chat.setEndpoint(server.url("/ws/chat/"));
+        Pressure pressure = new Pressure();
+        chat.setBackpressureListener(pressure);
+        chat.connect("token", events);
+
+        List<String> sent = new ArrayList<>();
+        for (int i = 0; i < SMALL_QUEUE; i++) {
+            assertTrue("frame " + i, chat.sendJson(frame(i)));
+            sent.add(frame(i));
+            assertEquals("frame " + i, i + 1 >= SMALL_QUEUE * 3 / 4 ? Arrays.asList(true) : Arrays.asList(), pressure.seen());
+        }
+        assertFalse("a full queue took another frame", chat.sendJson(frame(SMALL_QUEUE)));
+        assertEquals(SMALL_QUEUE, chat.queueSize());
+        assertEquals(Arrays.asList(true), pressure.seen());   // rejecting reports nothing new
+
+        pressure.await(2);   // the upgrade completes: everything held is flushed
+        assertEquals(Arrays.asList(true, false), pressure.seen());
+        assertTrue(all.await(5, TimeUnit.SECONDS));
+        synchronized (received) { assertEquals(sent, received); }
+        assertEquals(0, chat.queueSize());
+    }
+
+    @Test public void drainingHasHysteresisBetweenTheMarks() throws Exception {
+        chat = openStalled();
+        Pressure pressure = new Pressure();
+        chat.setBackpressureListener(pressure);
+
+        for (int i = 0; i < 5; i++) assertTrue(chat.sendJson(frame(i)));
+        assertEquals(Arrays.asList(), pressure.seen());        // 5 < 3/4 of 8
+        assertTrue(chat.sendJson(frame(5)));
+        assertEquals(Arrays.asList(true), pressure.seen());    // 6: high-water mark
+        assertTrue(chat.sendJson(frame(6)));
+        assertTrue(chat.sendJson(frame(7)));
+        assertFalse(chat.sendJson(frame(8)));                  // full
+
+        stalled.accept = 5;
+        awaitQueue(chat, 3);
+        assertEquals(Arrays.asList(true), pressure.seen());    // 3 is below the high mark but above 1/4
+
+        stalled.accept = 1;
+        awaitQueue(chat, 2);
+        assertEquals(Arrays.asList(true, false), pressure.seen());   // 2: low-water mark
+
+        for (int i = 0; i < 3; i++) assertTrue(chat.sendJson(frame(10 + i)));
+        assertEquals(Arrays.asList(true, false), pressure.seen());   // 5 again: not congested until 6
+        assertTrue(chat.sendJson(frame(13)));
+        assertEquals(Arrays.asList(true, false, true), pressure.seen());
+
+        List<String> wire = stalled.wire();
+        for (int i = 0; i < 6; i++) assertEquals(frame(i), wire.get(i));
+    }
+
+    @Test public void aBackedUpSocketBufferCongestsTheQueue() throws Exception {
+        chat = openStalled();
+        Pressure pressure = new Pressure();
+        chat.setBackpressureListener(pressure);
+        stalled.accept   = Integer.MAX_VALUE;
+        stalled.buffered = 2L << 20;                           // past the 1 MiB high-water mark
+
+        assertTrue(chat.sendJson(frame(0)));
+        assertEquals(1, chat.queueSize());                     // held back, not handed to OkHttp
+        assertEquals(Arrays.asList(true), pressure.seen());
+
+        stalled.buffered = 512 * 1024;                         // below high water, above low water
+        awaitQueue(chat, 0);
+        assertEquals(Arrays.asList(true), pressure.seen());
+
+        stalled.buffered = 0;
+        pressure.await(2);
+        assertEquals(Arrays.asList(true, false), pressure.seen());
+    }
+
+    // --------------------------------------------------------------------
+    // Interim hypotheses
+    // --------------------------------------------------------------------
+    /** "type data trace" of each frame on the wire */
+    private List<String> wireSummary() throws Exception {
+        List<String> out = new ArrayList<>();
+        for (String f : stalled.wire()) {
+            ChatMessage m = ChatCodec.decode(f, null);
+            out.add(m.type.wire + " " + m.data + " " + m.trace);
+        }
+        return out;
+    }
+
+    @Test public void partialsNeedAnOpenSocket() {
+        assertFalse(chat.sendPartial("hello", "t1"));   // no chat at all
+        chat = new ChatSocketManager(new ReconnectPolicy(10, 10, 1), SMALL_QUEUE,
+                new Heartbeat(NO_PINGS_MS, 3 * NO_PINGS_MS, NO_PINGS_MS), (req, listener) -> new StallingSocket(req));
+        chat.connect("token", events);
+        assertFalse(chat.sendPartial("hello", "t1"));   // still connecting: never held like other frames
+        assertEquals(0, chat.queueSize());
+    }
+
+    @Test public void aQueuedPartialIsReplacedByANewerOne() throws Exception {
+        chat = openStalled();
+        assertTrue(chat.sendPartial("what", "t1"));
+        assertTrue(chat.sendPartial("other", "t2"));
+        assertTrue(chat.sendPartial("what time", "t1"));
+        assertEquals(2, chat.queueSize());
+
+        stalled.accept = Integer.MAX_VALUE;
+        assertTrue(chat.sendCancel("t0"));   // any frame flushes the queue
+        assertEquals(Arrays.asList("transcription_partial other t2", "transcription_partial what time t1", "cancel null t0"),
+                wireSummary());
+    }
+
+    @Test public void theFinalDropsItsQueuedPartials() throws Exception {
+        chat = openStalled();
+        assertTrue(chat.sendPartial("what time", "t1"));
+        assertTrue(chat.sendPartial("other", "t2"));
+        assertEquals(2, chat.queueSize());
+
+        stalled.accept = Integer.MAX_VALUE;
+        assertTrue(chat.sendString("what time is it", "t1"));
+        assertEquals(0, chat.queueSize());
+        assertEquals(Arrays.asList("transcription_partial other t2", "transcription what time is it t1"), wireSummary());
+    }
+
+    @Test public void partialsLeaveHalfTheQueueToFinals() {
+        chat = openStalled();
+        for (int i = 0; i < SMALL_QUEUE / 2; i++) assertTrue(chat.sendJson(frame(i)));
+        assertFalse(chat.sendPartial("what", "t1"));
+        assertEquals(SMALL_QUEUE / 2, chat.queueSize());
+        assertTrue(chat.sendString("what time is it", "t1"));   // finals still get in
+    }
+
+    @Test public void partialsAreRefusedWhileCongested() {
+        chat = openStalled();
+        stalled.accept   = Integer.MAX_VALUE;
+        stalled.buffered = 2L << 20;
+        assertTrue(chat.sendJson(frame(0)));                     // congests on the socket's buffer
+        assertFalse(chat.sendPartial("what", "t1"));
+        assertEquals(1, chat.queueSize());
+    }
+}
@@ -0,0 +1,224 @@
+package com.example.buddychat.network.ws;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.example.buddychat.network.protocol.ChatMessage;
+
+public class DurableOutboxTest {
+    @Rule public final TemporaryFolder tmp = new TemporaryFolder();
+
+    private final AtomicLong clock = new AtomicLong(1_000_000);
+    private File          file;
+    private DurableOutbox outbox;
+
+    @Before public void setUp() throws IOException { file = new File(tmp.getRoot(), "outbox.log"); }
+
+    @After public void tearDown() { if (outbox != null) outbox.close(); }
+
+    // --------------------------------------------------------------------
+    // Helpers
+    // --------------------------------------------------------------------
+    /** Close the current outbox (if any) and open the file again */
+    private DurableOutbox reopen() throws InterruptedException {
+        if (outbox != null) outbox.close();
+        CountDownLatch loaded = new CountDownLatch(1);
+        outbox = DurableOutbox.open(file, o -> loaded.countDown(), clock::get);
+        assertTrue("load", loaded.await(5, TimeUnit.SECONDS));
+        return outbox;
+    }
+
+    private ChatMessage add(String text) {
+        ChatMessage msg = new ChatMessage(ChatMessage.Type.TRANSCRIPTION, text, "t-" + text);
+        outbox.add(msg);
+        return msg;
+    }
+
+    private List<String> texts(long afterSeq) {
+        List<String> out = new ArrayList<>();
+        for (ChatMessage m : outbox.unackedAfter(afterSeq)) out.add(m.data);
+        return out;
+    }
+
+    private static List<String> list(String... s) { return Arrays.asList(s); }
+
+    // --------------------------------------------------------------------
+    // Replay
+    // --------------------------------------------------------------------
+    @Test public void seqsAreAssignedInOrder() throws Exception {
+        reopen();
+        assertEquals("1", add("a").seq);
+        assertEquals("2", add("b").seq);
+        assertEquals("3", add("c").seq);
+        assertEquals(list("a", "b", "c"), texts(0));
+        assertEquals(list("c"),           texts(2));
+    }
+
+    @Test public void replayAfterAnAckKeepsOrderAcrossARestart() throws Exception {
+        reopen();
+        for (String s : new String[] { "a", "b", "c", "d" }) add(s);
+        outbox.ack(2);
+        assertEquals(list("c", "d"), texts(0));
+
+        reopen();
+        assertEquals(list("c", "d"), texts(0));
+        List<ChatMessage> replay = outbox.unackedAfter(0);
+        assertEquals("3",   replay.get(0).seq);
+        assertEquals("t-c", replay.get(0).trace);
+        assertEquals("5",   add("e").seq);   // numbering goes on where it stopped
+        assertEquals(list("c", "d", "e"), texts(0));
+    }
+
+    @Test public void writtenCountsAsAckedOnlyUntilTheServerAcks() throws Exception {
+        reopen();
+        add("a");
+        outbox.written(1);
+        assertEquals(0, outbox.size());
+
+        add("b");
+        outbox.ack(2);
+        add("c");
+        outbox.written(3);   // the server acks now, so a write is not delivery
+        assertEquals(list("c"), texts(0));
+
+        reopen();
+        add("d");
+        outbox.written(4);   // remembered across a restart
+        assertEquals(list("c", "d"), texts(0));
+    }
+
+    @Test public void unicodeTextSurvivesTheLog() throws Exception {
+        reopen();
+        add("Grüße, 😀 \"quoted\"\nnext line");
+        reopen();
+        assertEquals(list("Grüße, 😀 \"quoted\"\nnext line"), texts(0));
+    }
+
+    // --------------------------------------------------------------------
+    // Crashes
+    // --------------------------------------------------------------------
+    @Test public void aTornRecordIsDroppedAndTheLogGoesOn() throws Exception {
+        reopen();
+        add("a");
+        add("b");
+        outbox.close();
+        outbox = null;
+
+        // Killed halfway through writing "c": a length and some of its body
+        long good = file.length();
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            raf.seek(good);
+            raf.writeInt(40);
+            raf.writeInt(0x12345678);
+            raf.write(new byte[] { 'M', 0, 0, 0 });
+        }
+
+        reopen();
+        assertEquals(list("a", "b"), texts(0));
+        assertEquals(good, file.length());   // the torn tail is cut off
+        assertEquals("3", add("c").seq);
+
+        reopen();
+        assertEquals(list("a", "b", "c"), texts(0));
+    }
+
+    @Test public void aCorruptRecordEndsTheLogThere() throws Exception {
+        reopen();
+        add("a");
+        long afterA = fileLengthAfterClose();
+        reopen();
+        add("b");
+        fileLengthAfterClose();
+
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            raf.seek(afterA + 12);   // inside b's seq: the CRC no longer matches
+            raf.write(0x7F);
+        }
+        reopen();
+        assertEquals(list("a"), texts(0));
+    }
+
+    private long fileLengthAfterClose() {
+        outbox.close();
+        outbox = null;
+        return file.length();
+    }
+
+    // --------------------------------------------------------------------
+    // Compaction
+    // --------------------------------------------------------------------
+    @Test public void acknowledgedHistoryIsCompactedAway() throws Exception {
+        reopen();
+        StringBuilder kb = new StringBuilder();
+        while (kb.length() < 1024) kb.append("lorem ipsum ");
+        int n = (int) (2 * DurableOutbox.COMPACT_BYTES / 1024);
+        for (int i = 1; i <= n; i++) {
+            add(kb + " " + i);
+            outbox.ack(i);
+        }
+        add("still unacked");
+        outbox.close();
+        outbox = null;
+
+        assertTrue("log is " + file.length() + " bytes", file.length() < DurableOutbox.COMPACT_BYTES);
+        assertFalse(new File(file.getPath() + ".tmp").exists());
+        reopen();
+        assertEquals(list("still unacked"), texts(0));
+        assertEquals(Integer.toString(n + 2), add("next").seq);
+    }
+
+    // --------------------------------------------------------------------
+    // Dropping
+    // --------------------------------------------------------------------
+    @Test public void staleEntriesAreNotReplayedAndStayDropped() throws Exception {
+        reopen();
+        add("old");
+        clock.addAndGet(DurableOutbox.MAX_AGE_MS - 1000);
+        add("recent");
+        clock.addAndGet(2000);   // "old" is now past MAX_AGE_MS, "recent" is not
+        assertEquals(list("recent"), texts(0));
+
+        clock.addAndGet(DurableOutbox.MAX_AGE_MS);
+        reopen();
+        assertEquals(list(), texts(0));
+        clock.addAndGet(-DurableOutbox.MAX_AGE_MS);   // even if the clock steps back, they were dropped for good
+        reopen();
+        assertEquals(list(), texts(0));
+    }
+
+    @Test public void entriesDroppedWhenFullDoNotComeBack() throws Exception {
+        reopen();
+        for (int i = 1; i <= DurableOutbox.MAX_ENTRIES + 3; i++) add("m" + i);
+        assertEquals(DurableOutbox.MAX_ENTRIES, outbox.size());
+        assertEquals("m4", texts(0).get(0));
+
+        reopen();
+        assertEquals(DurableOutbox.MAX_ENTRIES, outbox.size());
+        assertEquals("m4", texts(0).get(0));
+    }
+
+    @Test public void anUnusableFileFallsBackToMemory() throws Exception {
+        file = tmp.newFolder("not-a-file");
+        reopen();
+        assertEquals("1", add("a").seq);
+        assertEquals(list("a"), texts(0));
+        assertTrue(outbox.unackedAfter(1).isEmpty());
+    }
+}
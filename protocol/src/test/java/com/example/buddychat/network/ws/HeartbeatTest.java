@@ -0,0 +1,94 @@
+package com.example.buddychat.network.ws;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class HeartbeatTest {
+    private static final long INTERVAL = 5_000, DEADLINE = 15_000, SLOW = 1_500;
+
+    private final Heartbeat hb = new Heartbeat(INTERVAL, DEADLINE, SLOW);
+
+    @Before public void setUp() { hb.reset(0); }
+
+    /** Ping at `sentMs` and answer it at `pongMs`; returns the measured RTT */
+    private long roundTrip(long sentMs, long pongMs) {
+        String id = hb.nextPing(sentMs);
+        assertNotNull(id);
+        return hb.onPong(id, pongMs);
+    }
+
+    // --------------------------------------------------------------------
+    // RTT
+    // --------------------------------------------------------------------
+    @Test public void rttIsSmoothedLikeTcp() {
+        assertEquals(-1, hb.rttMs());
+        assertEquals(100, roundTrip(0, 100));
+        assertEquals(100, hb.rttMs());
+        assertEquals(50,  hb.rttVarMs());
+
+        assertEquals(300, roundTrip(5_000, 5_300));
+        assertEquals(125, hb.rttMs());      // 0.875 * 100 + 0.125 * 300
+        assertEquals(88,  hb.rttVarMs());   // 0.75 * 50 + 0.25 * 200
+    }
+
+    @Test public void onlyOnePingIsOutstanding() {
+        String id = hb.nextPing(0);
+        assertNull(hb.nextPing(5_000));
+        assertEquals(-1, hb.onPong("999", 5_100));   // not ours
+        assertNull(hb.nextPing(5_200));
+        assertEquals(5_300, hb.onPong(id, 5_300));
+        assertNotNull(hb.nextPing(10_000));
+    }
+
+    @Test public void resetForgetsTheLastSocket() {
+        roundTrip(0, 2_000);
+        hb.nextPing(5_000);
+        hb.reset(6_000);
+        assertEquals(-1, hb.rttMs());
+        assertNotNull(hb.nextPing(6_000));
+        assertEquals(LinkQuality.GOOD, hb.assess(60_000));   // no pong on the new socket yet
+    }
+
+    // --------------------------------------------------------------------
+    // Quality
+    // --------------------------------------------------------------------
+    @Test public void aFastPeerIsGood() {
+        roundTrip(0, 80);
+        assertEquals(LinkQuality.GOOD, hb.assess(1_000));
+    }
+
+    @Test public void aSlowSmoothedRttIsSlow() {
+        roundTrip(0, 2_000);
+        assertEquals(LinkQuality.SLOW, hb.assess(2_000));
+    }
+
+    @Test public void aLateAnswerIsSlowOnceThePeerHasPonged() {
+        roundTrip(0, 100);
+        hb.nextPing(5_000);
+        assertEquals(LinkQuality.GOOD, hb.assess(5_000 + SLOW));
+        assertEquals(LinkQuality.SLOW, hb.assess(5_000 + SLOW + 1));
+    }
+
+    @Test public void silencePastTheDeadlineIsLost() {
+        roundTrip(0, 100);
+        hb.nextPing(5_000);
+        assertEquals(LinkQuality.SLOW, hb.assess(100 + DEADLINE));
+        assertEquals(LinkQuality.LOST, hb.assess(100 + DEADLINE + 1));
+
+        hb.onInbound(16_000);   // any frame counts as proof of life
+        assertEquals(LinkQuality.SLOW, hb.assess(16_001));
+    }
+
+    @Test public void aPeerThatNeverPongsIsNeverSlowOrLost() {
+        assertNotNull(hb.nextPing(5_000));
+        for (long t = 5_000; t <= 600_000; t += INTERVAL) {
+            assertNull(hb.nextPing(t));   // the first ping stays outstanding
+            assertEquals("at " + t + " ms", LinkQuality.GOOD, hb.assess(t));
+        }
+        assertEquals(-1, hb.rttMs());
+    }
+}